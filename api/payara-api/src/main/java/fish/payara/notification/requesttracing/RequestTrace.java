@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -184,6 +184,20 @@ public class RequestTrace implements Serializable, Comparable<RequestTrace> {
         assignReferences();
     }
     
+    /**
+     * Resets the trace so that the same instance can be used to record another one.
+     * This must only be used on a trace that has not been handed to anything else, such as a trace store.
+     */
+    public void clear() {
+        trace.clear();
+        spanLogs.clear();
+        started = false;
+        completed = false;
+        startTime = null;
+        endTime = null;
+        elapsedTime = 0;
+    }
+
     /**
      * Gets how long the trace took.
      * If the trace has not finished then this will be 0.
@@ -1,7 +1,7 @@
 /*
  *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *  Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *  Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *  The contents of this file are subject to the terms of either the GNU
  *  General Public License Version 2 only ("GPL") or the Common Development
@@ -46,6 +46,7 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  *Span state that is copied across boundaries and stores a reference to the parent trace
@@ -63,13 +64,13 @@ public class RequestTraceSpanContext implements Serializable, io.opentracing.Spa
     private final Map<String, String> baggageItems;
 
     protected RequestTraceSpanContext() {
-        spanId = UUID.randomUUID();
-        traceId = UUID.randomUUID();
+        spanId = randomId();
+        traceId = randomId();
         baggageItems = new HashMap<>();
     }
 
     protected RequestTraceSpanContext(UUID traceId) {
-        spanId = UUID.randomUUID();
+        spanId = randomId();
         this.traceId = traceId;
         baggageItems = new HashMap<>();
     }
@@ -80,6 +81,18 @@ public class RequestTraceSpanContext implements Serializable, io.opentracing.Spa
         baggageItems = new HashMap<>();
     }
 
+    /**
+     * Creates a random (version 4) UUID. Unlike {@link UUID#randomUUID()} this does not go through the shared
+     * {@link java.security.SecureRandom}, as span and trace IDs are created for every traced request and only
+     * need to be unique, not unpredictable.
+     */
+    private static UUID randomId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
     public UUID getSpanId() {
         return spanId;
     }
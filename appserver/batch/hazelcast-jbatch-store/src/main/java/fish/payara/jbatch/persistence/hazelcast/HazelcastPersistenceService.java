@@ -1,7 +1,7 @@
 /*
     DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
 
-    Copyright (c) 2016 Payara Foundation and/or its affiliates. All rights reserved.
+    Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
 
     The contents of this file are subject to the terms of the Common Development
     and Distribution License("CDDL") (collectively, the "License").  You
@@ -18,9 +18,9 @@ package fish.payara.jbatch.persistence.hazelcast;
 
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
-import com.hazelcast.core.IdGenerator;
+import com.hazelcast.query.Predicates;
 import com.ibm.jbatch.container.context.impl.StepContextImpl;
-import com.ibm.jbatch.container.jobinstance.JobInstanceImpl;
+import com.ibm.jbatch.container.exception.PersistenceException;
 import com.ibm.jbatch.container.jobinstance.RuntimeFlowInSplitExecution;
 import com.ibm.jbatch.container.jobinstance.RuntimeJobExecution;
 import com.ibm.jbatch.container.jobinstance.StepExecutionImpl;
@@ -30,259 +30,679 @@ import com.ibm.jbatch.container.services.IJobExecution;
 import com.ibm.jbatch.container.services.IPersistenceManagerService;
 import com.ibm.jbatch.container.status.JobStatus;
 import com.ibm.jbatch.container.status.StepStatus;
+import com.ibm.jbatch.container.util.TCCLObjectInputStream;
 import com.ibm.jbatch.spi.services.IBatchConfig;
+import fish.payara.nucleus.hazelcast.HazelcastCore;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.batch.operations.NoSuchJobExecutionException;
 import javax.batch.runtime.BatchStatus;
 import javax.batch.runtime.JobInstance;
 import javax.batch.runtime.StepExecution;
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
 
 /**
+ * Batch job repository backed by the Hazelcast data grid run by {@link HazelcastCore},
+ * in front of the JDBC repository.
+ * <p>
+ * Every write goes to the JDBC repository first, on the calling thread, so checkpoints
+ * and step executions and statuses commit or roll back with the chunk transaction and
+ * are exactly as durable as with the JDBC repository alone. The JDBC repository stays
+ * the system of record and generates the instance and execution ids.
+ * <p>
+ * Job statuses are cached in the grid once written, so every member reads them without
+ * going to the database. Job instance names and running executions are kept in grid
+ * maps indexed by job name, so {@link #jobOperatorGetJobInstanceIds} and
+ * {@link #jobOperatorGetRunningExecutions} are answered by indexed queries. The
+ * entries for a job name are loaded from the JDBC repository the first time it is
+ * queried. Grid entries expire after {@value #TTL_PROPERTY} seconds.
+ * <p>
+ * Setting {@value #WRITE_BEHIND_PROPERTY} switches to write-behind: checkpoint data,
+ * step executions and job and step statuses are written to the grid and written behind
+ * to the JDBC repository, coalesced per entity and flushed in the order they were last
+ * made, at most {@value #WRITE_DELAY_PROPERTY} milliseconds later. Checkpoints and job
+ * statuses are then read from the grid, so a checkpoint costs a grid write rather than
+ * a database round trip. This gives up the atomicity of the checkpoint with the chunk
+ * transaction: a checkpoint is kept if the chunk rolls back after it was written, and
+ * updates not yet flushed are lost if the member stops without shutting down. Every
+ * other operation first flushes the pending updates of this member.
  *
  * @author steve
  */
-public class HazelcastPersistenceService implements IPersistenceManagerService{
-    
-    public final static String JOB_INSTANCE_MAP = "JobInstanceMap";
-    public final static String CHECKPOINTMAP = "CheckpointMap";
-    private IMap jobInstanceMap;
-    private IMap checkpointMAP;
-    private HazelcastInstance theInstance;
-    private IdGenerator jobInstanceIdGenerator;
-    private IdGenerator checkpointIdGenerator;
+public class HazelcastPersistenceService implements IPersistenceManagerService {
+
+    private static final Logger logger = Logger.getLogger(HazelcastPersistenceService.class.getName());
+
+    // System properties
+    public static final String ENABLED_PROPERTY = "fish.payara.jbatch.hazelcast.enabled";
+    public static final String TTL_PROPERTY = "fish.payara.jbatch.hazelcast.ttl";
+    public static final String WRITE_BEHIND_PROPERTY = "fish.payara.jbatch.hazelcast.writebehind";
+    public static final String WRITE_DELAY_PROPERTY = "fish.payara.jbatch.hazelcast.writedelay";
+
+    private static final int DEFAULT_TTL = 3600;
+    private static final int DEFAULT_WRITE_DELAY = 1000;
+
+    public static final String CHECKPOINT_MAP = "payara-jbatch-checkpoints";
+    public static final String JOB_STATUS_MAP = "payara-jbatch-job-status";
+    public static final String JOB_INSTANCE_MAP = "payara-jbatch-job-instances";
+    public static final String JOB_INSTANCE_TAG_MAP = "payara-jbatch-job-instance-tags";
+    public static final String RUNNING_EXECUTION_MAP = "payara-jbatch-running-executions";
+    public static final String FINISHED_EXECUTION_MAP = "payara-jbatch-finished-executions";
+    public static final String LOADED_QUERY_MAP = "payara-jbatch-loaded-queries";
+
+    private final IPersistenceManagerService delegate;
+    private HazelcastInstance hazelcast;
+    private int ttl;
+
+    // Pending writes to the JDBC repository in write-behind mode, in the order of their last update
+    private final Map<String, Runnable> pendingWrites = new LinkedHashMap<>();
+    private final Object flushLock = new Object();
+    private boolean writeBehind;
+    private ScheduledExecutorService writeBehindExecutor;
+
+    private IMap<String, byte[]> checkpoints;
+    private IMap<Long, byte[]> jobStatuses;
+    private IMap<Long, String> jobInstances;
+    private IMap<Long, String> jobInstanceTags;
+    private IMap<Long, String> runningExecutions;
+    private IMap<Long, Boolean> finishedExecutions;
+    private IMap<String, Boolean> loadedQueries;
+
+    /**
+     * @param delegate the initialised JDBC persistence manager to write to
+     */
+    public HazelcastPersistenceService(IPersistenceManagerService delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param delegate the initialised JDBC persistence manager to write to
+     * @param hazelcast the instance to keep the grid maps in, or null for the one run by {@link HazelcastCore}
+     */
+    HazelcastPersistenceService(IPersistenceManagerService delegate, HazelcastInstance hazelcast) {
+        this.delegate = delegate;
+        this.hazelcast = hazelcast;
+    }
+
+    /**
+     * Returns true if the batch repository should be backed by the data grid,
+     * i.e. it has been enabled and Hazelcast is running.
+     */
+    public static boolean isEnabled() {
+        HazelcastCore core = HazelcastCore.getCore();
+        return Boolean.getBoolean(ENABLED_PROPERTY) && core != null && core.isEnabled();
+    }
 
     @Override
-    public int jobOperatorGetJobInstanceCount(String jobName) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void init(IBatchConfig batchConfig) {
+        if (hazelcast == null) {
+            hazelcast = HazelcastCore.getCore().getInstance();
+        }
+        checkpoints = hazelcast.getMap(CHECKPOINT_MAP);
+        jobStatuses = hazelcast.getMap(JOB_STATUS_MAP);
+        jobInstances = hazelcast.getMap(JOB_INSTANCE_MAP);
+        jobInstanceTags = hazelcast.getMap(JOB_INSTANCE_TAG_MAP);
+        runningExecutions = hazelcast.getMap(RUNNING_EXECUTION_MAP);
+        finishedExecutions = hazelcast.getMap(FINISHED_EXECUTION_MAP);
+        loadedQueries = hazelcast.getMap(LOADED_QUERY_MAP);
+
+        // values are the job name, or the app tag and job name
+        jobInstances.addIndex("this", false);
+        jobInstanceTags.addIndex("this", false);
+        runningExecutions.addIndex("this", false);
+
+        ttl = Integer.getInteger(TTL_PROPERTY, DEFAULT_TTL);
+        writeBehind = Boolean.getBoolean(WRITE_BEHIND_PROPERTY);
+        if (writeBehind) {
+            int writeDelay = Integer.getInteger(WRITE_DELAY_PROPERTY, DEFAULT_WRITE_DELAY);
+            writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "payara-jbatch-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writeBehindExecutor.scheduleWithFixedDelay(this::flushQuietly, writeDelay, writeDelay, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
-    public int jobOperatorGetJobInstanceCount(String jobName, String appTag) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void shutdown() {
+        if (writeBehindExecutor != null) {
+            writeBehindExecutor.shutdown();
+        }
+        flushQuietly();
+        delegate.shutdown();
     }
 
+    // Checkpoints, step executions and statuses: written through, or behind if enabled
+
     @Override
-    public Map<Long, String> jobOperatorGetExternalJobInstanceData() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void updateCheckpointData(CheckpointDataKey key, CheckpointData value) {
+        if (!writeBehind) {
+            delegate.updateCheckpointData(key, value);
+            return;
+        }
+        byte[] data = serialize(value);
+        checkpoints.set(key.getCommaSeparatedKey(), data, ttl, TimeUnit.SECONDS);
+        CheckpointData snapshot = (CheckpointData) deserialize(data);
+        writeBehind("checkpoint:" + key.getCommaSeparatedKey(), () -> delegate.updateCheckpointData(key, snapshot));
     }
 
     @Override
-    public List<Long> jobOperatorGetJobInstanceIds(String jobName, int start, int count) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public CheckpointData getCheckpointData(CheckpointDataKey key) {
+        if (!writeBehind) {
+            return delegate.getCheckpointData(key);
+        }
+        byte[] data = checkpoints.get(key.getCommaSeparatedKey());
+        if (data != null) {
+            return (CheckpointData) deserialize(data);
+        }
+        flush();
+        CheckpointData checkpointData = delegate.getCheckpointData(key);
+        if (checkpointData != null) {
+            // don't replace a checkpoint written since it was read
+            checkpoints.putIfAbsent(key.getCommaSeparatedKey(), serialize(checkpointData), ttl, TimeUnit.SECONDS);
+        }
+        return checkpointData;
     }
 
     @Override
-    public List<Long> jobOperatorGetJobInstanceIds(String jobName, String appTag, int start, int count) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void createCheckpointData(CheckpointDataKey key, CheckpointData value) {
+        flush();
+        delegate.createCheckpointData(key, value);
+        if (writeBehind) {
+            checkpoints.set(key.getCommaSeparatedKey(), serialize(value), ttl, TimeUnit.SECONDS);
+        }
     }
 
     @Override
-    public Timestamp jobOperatorQueryJobExecutionTimestamp(long key, TimestampType timetype) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void updateStepExecution(StepContextImpl stepContext) {
+        if (!writeBehind) {
+            delegate.updateStepExecution(stepContext);
+            return;
+        }
+        // the step context is only read when written, so the latest metrics are stored
+        writeBehind("stepExecution:" + stepContext.getStepExecutionId(), () -> delegate.updateStepExecution(stepContext));
     }
 
     @Override
-    public String jobOperatorQueryJobExecutionBatchStatus(long key) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void updateStepStatus(long stepExecutionId, StepStatus stepStatus) {
+        if (!writeBehind) {
+            delegate.updateStepStatus(stepExecutionId, stepStatus);
+            return;
+        }
+        StepStatus snapshot = (StepStatus) deserialize(serialize(stepStatus));
+        writeBehind("stepStatus:" + stepExecutionId, () -> delegate.updateStepStatus(stepExecutionId, snapshot));
     }
 
     @Override
-    public String jobOperatorQueryJobExecutionExitStatus(long key) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void updateJobStatus(long instanceId, JobStatus jobStatus) {
+        if (!writeBehind) {
+            delegate.updateJobStatus(instanceId, jobStatus);
+            jobStatuses.set(instanceId, serialize(jobStatus), ttl, TimeUnit.SECONDS);
+            return;
+        }
+        byte[] data = serialize(jobStatus);
+        jobStatuses.set(instanceId, data, ttl, TimeUnit.SECONDS);
+        JobStatus snapshot = (JobStatus) deserialize(data);
+        writeBehind("jobStatus:" + instanceId, () -> delegate.updateJobStatus(instanceId, snapshot));
     }
 
     @Override
-    public long jobOperatorQueryJobExecutionJobInstanceId(long executionID) throws NoSuchJobExecutionException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public JobStatus getJobStatus(long instanceId) {
+        byte[] data = jobStatuses.get(instanceId);
+        if (data != null) {
+            return (JobStatus) deserialize(data);
+        }
+        flush();
+        JobStatus jobStatus = delegate.getJobStatus(instanceId);
+        if (jobStatus != null) {
+            // don't replace a status written since it was read
+            jobStatuses.putIfAbsent(instanceId, serialize(jobStatus), ttl, TimeUnit.SECONDS);
+        }
+        return jobStatus;
     }
 
     @Override
-    public List<StepExecution> getStepExecutionsForJobExecution(long execid) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public JobStatus createJobStatus(long jobInstanceId) {
+        flush();
+        JobStatus jobStatus = delegate.createJobStatus(jobInstanceId);
+        jobStatuses.set(jobInstanceId, serialize(jobStatus), ttl, TimeUnit.SECONDS);
+        return jobStatus;
     }
 
+    // Indexed queries
+
     @Override
-    public Map<String, StepExecution> getMostRecentStepExecutionsForJobInstance(long instanceId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public List<Long> jobOperatorGetJobInstanceIds(String jobName, int start, int count) {
+        if (loadedQueries.get("name:" + jobName) == null) {
+            flush();
+            Map<Long, String> loaded = new LinkedHashMap<>();
+            for (Long id : delegate.jobOperatorGetJobInstanceIds(jobName, 0, Integer.MAX_VALUE)) {
+                loaded.put(id, jobName);
+            }
+            jobInstances.putAll(loaded);
+            loadedQueries.set("name:" + jobName, Boolean.TRUE);
+        }
+        return page(jobInstances.keySet(Predicates.equal("this", jobName)), start, count);
     }
 
     @Override
-    public void updateBatchStatusOnly(long executionId, BatchStatus batchStatus, Timestamp timestamp) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public List<Long> jobOperatorGetJobInstanceIds(String jobName, String appTag, int start, int count) {
+        String tagged = taggedName(jobName, appTag);
+        if (loadedQueries.get("tag:" + tagged) == null) {
+            flush();
+            Map<Long, String> loaded = new LinkedHashMap<>();
+            for (Long id : delegate.jobOperatorGetJobInstanceIds(jobName, appTag, 0, Integer.MAX_VALUE)) {
+                loaded.put(id, tagged);
+            }
+            jobInstanceTags.putAll(loaded);
+            loadedQueries.set("tag:" + tagged, Boolean.TRUE);
+        }
+        return page(jobInstanceTags.keySet(Predicates.equal("this", tagged)), start, count);
     }
 
     @Override
-    public void markJobStarted(long key, Timestamp startTS) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public Set<Long> jobOperatorGetRunningExecutions(String jobName) {
+        if (loadedQueries.get("running:" + jobName) == null) {
+            flush();
+            for (Long id : delegate.jobOperatorGetRunningExecutions(jobName)) {
+                // skip executions another member finished after they were read
+                if (!finishedExecutions.containsKey(id)) {
+                    runningExecutions.set(id, jobName);
+                }
+            }
+            loadedQueries.set("running:" + jobName, Boolean.TRUE);
+        }
+        return new HashSet<>(runningExecutions.keySet(Predicates.equal("this", jobName)));
     }
 
     @Override
-    public void updateWithFinalExecutionStatusesAndTimestamps(long key, BatchStatus batchStatus, String exitStatus, Timestamp updatets) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public JobInstance createJobInstance(String name, String apptag, String jobXml) {
+        flush();
+        JobInstance jobInstance = delegate.createJobInstance(name, apptag, jobXml);
+        indexJobInstance(jobInstance, name, apptag);
+        return jobInstance;
     }
 
     @Override
-    public IJobExecution jobOperatorGetJobExecution(long jobExecutionId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public JobInstance createSubJobInstance(String name, String apptag) {
+        flush();
+        JobInstance jobInstance = delegate.createSubJobInstance(name, apptag);
+        indexJobInstance(jobInstance, name, apptag);
+        return jobInstance;
     }
 
     @Override
-    public Properties getParameters(long executionId) throws NoSuchJobExecutionException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public RuntimeJobExecution createJobExecution(JobInstance jobInstance, Properties jobParameters, BatchStatus batchStatus) {
+        flush();
+        RuntimeJobExecution jobExecution = delegate.createJobExecution(jobInstance, jobParameters, batchStatus);
+        indexExecution(jobExecution.getExecutionId(), jobInstance.getJobName(), batchStatus);
+        return jobExecution;
     }
 
     @Override
-    public List<IJobExecution> jobOperatorGetJobExecutions(long jobInstanceId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public RuntimeFlowInSplitExecution createFlowInSplitExecution(JobInstance jobInstance, BatchStatus batchStatus) {
+        flush();
+        RuntimeFlowInSplitExecution flowExecution = delegate.createFlowInSplitExecution(jobInstance, batchStatus);
+        indexExecution(flowExecution.getExecutionId(), jobInstance.getJobName(), batchStatus);
+        return flowExecution;
     }
 
     @Override
-    public Set<Long> jobOperatorGetRunningExecutions(String jobName) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void updateBatchStatusOnly(long executionId, BatchStatus batchStatus, Timestamp timestamp) {
+        flush();
+        delegate.updateBatchStatusOnly(executionId, batchStatus, timestamp);
+        updateRunningExecution(executionId, batchStatus);
     }
 
     @Override
-    public String getJobCurrentTag(long jobInstanceId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void updateWithFinalExecutionStatusesAndTimestamps(long key, BatchStatus batchStatus, String exitStatus, Timestamp updatets) {
+        flush();
+        delegate.updateWithFinalExecutionStatusesAndTimestamps(key, batchStatus, exitStatus, updatets);
+        updateRunningExecution(key, batchStatus);
     }
 
+    /**
+     * Purges the jobs of the application from the JDBC repository, then removes the grid
+     * entries of the purged job instances, their checkpoints and executions. Entries of
+     * other applications are kept.
+     */
     @Override
     public void purge(String apptag) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        flush();
+        delegate.purge(apptag);
+
+        // the instances left in the repository, by job name
+        Map<String, Set<Long>> remaining = new HashMap<>();
+        Set<Long> purged = new HashSet<>();
+        for (Map.Entry<Long, String> entry : jobInstances.entrySet()) {
+            removeIfPurged(jobInstances, entry.getKey(), entry.getValue(), remaining, purged);
+        }
+        for (Map.Entry<Long, String> entry : jobInstanceTags.entrySet()) {
+            String tagged = entry.getValue();
+            removeIfPurged(jobInstanceTags, entry.getKey(), tagged.substring(tagged.indexOf('\u0000') + 1), remaining, purged);
+        }
+        for (String checkpointKey : checkpoints.keySet()) {
+            // keys start with the job instance id
+            if (purged.contains(Long.valueOf(checkpointKey.substring(0, checkpointKey.indexOf(','))))) {
+                checkpoints.delete(checkpointKey);
+            }
+        }
+        for (Long executionId : runningExecutions.keySet()) {
+            try {
+                delegate.getJobInstanceIdByExecutionId(executionId);
+            } catch (NoSuchJobExecutionException e) {
+                runningExecutions.delete(executionId);
+            }
+        }
     }
 
+    // Passed to the JDBC repository once pending writes are flushed
+
     @Override
-    public JobStatus getJobStatusFromExecution(long executionId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void markJobStarted(long key, Timestamp startTS) {
+        flush();
+        delegate.markJobStarted(key, startTS);
     }
 
     @Override
-    public long getJobInstanceIdByExecutionId(long executionId) throws NoSuchJobExecutionException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public int jobOperatorGetJobInstanceCount(String jobName) {
+        flush();
+        return delegate.jobOperatorGetJobInstanceCount(jobName);
     }
 
     @Override
-    public JobInstance createJobInstance(String name, String apptag, String jobXml) {
-        long id = jobInstanceIdGenerator.newId();
-        JobInstanceImpl result = new JobInstanceImpl(id);
-        return null;
+    public int jobOperatorGetJobInstanceCount(String jobName, String appTag) {
+        flush();
+        return delegate.jobOperatorGetJobInstanceCount(jobName, appTag);
     }
 
     @Override
-    public RuntimeJobExecution createJobExecution(JobInstance jobInstance, Properties jobParameters, BatchStatus batchStatus) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public Map<Long, String> jobOperatorGetExternalJobInstanceData() {
+        flush();
+        return delegate.jobOperatorGetExternalJobInstanceData();
     }
 
     @Override
-    public StepExecutionImpl createStepExecution(long jobExecId, StepContextImpl stepContext) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public Timestamp jobOperatorQueryJobExecutionTimestamp(long key, TimestampType timetype) {
+        flush();
+        return delegate.jobOperatorQueryJobExecutionTimestamp(key, timetype);
     }
 
     @Override
-    public void updateStepExecution(StepContextImpl stepContext) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public String jobOperatorQueryJobExecutionBatchStatus(long key) {
+        flush();
+        return delegate.jobOperatorQueryJobExecutionBatchStatus(key);
     }
 
     @Override
-    public void updateWithFinalPartitionAggregateStepExecution(long rootJobExecutionId, StepContextImpl stepContext) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public String jobOperatorQueryJobExecutionExitStatus(long key) {
+        flush();
+        return delegate.jobOperatorQueryJobExecutionExitStatus(key);
     }
 
     @Override
-    public JobStatus createJobStatus(long jobInstanceId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public long jobOperatorQueryJobExecutionJobInstanceId(long executionID) throws NoSuchJobExecutionException {
+        flush();
+        return delegate.jobOperatorQueryJobExecutionJobInstanceId(executionID);
     }
 
     @Override
-    public JobStatus getJobStatus(long instanceId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public List<StepExecution> getStepExecutionsForJobExecution(long execid) {
+        flush();
+        return delegate.getStepExecutionsForJobExecution(execid);
     }
 
     @Override
-    public void updateJobStatus(long instanceId, JobStatus jobStatus) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public Map<String, StepExecution> getMostRecentStepExecutionsForJobInstance(long instanceId) {
+        flush();
+        return delegate.getMostRecentStepExecutionsForJobInstance(instanceId);
     }
 
     @Override
-    public StepStatus createStepStatus(long stepExecId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public IJobExecution jobOperatorGetJobExecution(long jobExecutionId) {
+        flush();
+        return delegate.jobOperatorGetJobExecution(jobExecutionId);
     }
 
     @Override
-    public StepStatus getStepStatus(long instanceId, String stepName) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public Properties getParameters(long executionId) throws NoSuchJobExecutionException {
+        flush();
+        return delegate.getParameters(executionId);
     }
 
     @Override
-    public void updateStepStatus(long stepExecutionId, StepStatus stepStatus) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public List<IJobExecution> jobOperatorGetJobExecutions(long jobInstanceId) {
+        flush();
+        return delegate.jobOperatorGetJobExecutions(jobInstanceId);
     }
 
     @Override
-    public String getTagName(long jobExecutionId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public String getJobCurrentTag(long jobInstanceId) {
+        flush();
+        return delegate.getJobCurrentTag(jobInstanceId);
     }
 
     @Override
-    public void updateCheckpointData(CheckpointDataKey key, CheckpointData value) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public JobStatus getJobStatusFromExecution(long executionId) {
+        flush();
+        return delegate.getJobStatusFromExecution(executionId);
     }
 
     @Override
-    public CheckpointData getCheckpointData(CheckpointDataKey key) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public long getJobInstanceIdByExecutionId(long executionId) throws NoSuchJobExecutionException {
+        flush();
+        return delegate.getJobInstanceIdByExecutionId(executionId);
     }
 
     @Override
-    public void createCheckpointData(CheckpointDataKey key, CheckpointData value) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public StepExecutionImpl createStepExecution(long jobExecId, StepContextImpl stepContext) {
+        flush();
+        return delegate.createStepExecution(jobExecId, stepContext);
     }
 
     @Override
-    public long getMostRecentExecutionId(long jobInstanceId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void updateWithFinalPartitionAggregateStepExecution(long rootJobExecutionId, StepContextImpl stepContext) {
+        flush();
+        delegate.updateWithFinalPartitionAggregateStepExecution(rootJobExecutionId, stepContext);
     }
 
     @Override
-    public JobInstance createSubJobInstance(String name, String apptag) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public StepStatus createStepStatus(long stepExecId) {
+        flush();
+        return delegate.createStepStatus(stepExecId);
     }
 
     @Override
-    public RuntimeFlowInSplitExecution createFlowInSplitExecution(JobInstance jobInstance, BatchStatus batchStatus) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public StepStatus getStepStatus(long instanceId, String stepName) {
+        flush();
+        return delegate.getStepStatus(instanceId, stepName);
     }
 
     @Override
-    public StepExecution getStepExecutionByStepExecutionId(long stepExecId) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public String getTagName(long jobExecutionId) {
+        flush();
+        return delegate.getTagName(jobExecutionId);
     }
 
     @Override
-    public void init(IBatchConfig batchConfig) {
+    public long getMostRecentExecutionId(long jobInstanceId) {
+        flush();
+        return delegate.getMostRecentExecutionId(jobInstanceId);
+    }
+
+    @Override
+    public StepExecution getStepExecutionByStepExecutionId(long stepExecId) {
+        flush();
+        return delegate.getStepExecutionByStepExecutionId(stepExecId);
+    }
+
+    private void writeBehind(String key, Runnable write) {
+        synchronized (pendingWrites) {
+            // move the entity to the end, so writes stay in the order of their last update
+            pendingWrites.remove(key);
+            pendingWrites.put(key, write);
+        }
+    }
+
+    /**
+     * Writes all pending updates of this member to the JDBC repository. If a write
+     * fails, it and the writes after it stay pending and the failure is thrown.
+     */
+    private void flush() {
+        synchronized (flushLock) {
+            List<Map.Entry<String, Runnable>> writes;
+            synchronized (pendingWrites) {
+                if (pendingWrites.isEmpty()) {
+                    return;
+                }
+                writes = new ArrayList<>(pendingWrites.entrySet());
+                pendingWrites.clear();
+            }
+
+            Iterator<Map.Entry<String, Runnable>> iterator = writes.iterator();
+            try {
+                while (iterator.hasNext()) {
+                    iterator.next().getValue().run();
+                    iterator.remove();
+                }
+            } catch (RuntimeException e) {
+                synchronized (pendingWrites) {
+                    // keep the failed writes ahead of the ones made since, unless superseded
+                    Map<String, Runnable> retry = new LinkedHashMap<>();
+                    for (Map.Entry<String, Runnable> write : writes) {
+                        if (!pendingWrites.containsKey(write.getKey())) {
+                            retry.put(write.getKey(), write.getValue());
+                        }
+                    }
+                    retry.putAll(pendingWrites);
+                    pendingWrites.clear();
+                    pendingWrites.putAll(retry);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void flushQuietly() {
         try {
-            String hazelcastJNDIName = batchConfig.getDatabaseConfigurationBean().getJndiName();
-            InitialContext ctx = new InitialContext();
-            theInstance = HazelcastInstance.class.cast(ctx.lookup(hazelcastJNDIName));
-            jobInstanceMap = theInstance.getMap(JOB_INSTANCE_MAP);
-            checkpointMAP = theInstance.getMap(CHECKPOINTMAP);
-            jobInstanceIdGenerator = theInstance.getIdGenerator(JOB_INSTANCE_MAP+"ID");
-            checkpointIdGenerator = theInstance.getIdGenerator(CHECKPOINTMAP + "ID");
-        } catch (NamingException ex) {
-            Logger.getLogger(HazelcastPersistenceService.class.getName()).log(Level.SEVERE, "Unable to find the Hazelcast Instance for JBatch Persistence", ex);
+            flush();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to write batch job data to the JDBC repository, will retry", e);
         }
     }
 
-    @Override
-    public void shutdown() {
+    // Grid indexes
+
+    private void indexJobInstance(JobInstance jobInstance, String name, String apptag) {
+        if (jobInstance != null) {
+            jobInstances.set(jobInstance.getInstanceId(), name);
+            jobInstanceTags.set(jobInstance.getInstanceId(), taggedName(name, apptag));
+        }
+    }
+
+    private void indexExecution(long executionId, String jobName, BatchStatus batchStatus) {
+        if (jobName != null && isRunning(batchStatus)) {
+            runningExecutions.set(executionId, jobName);
+        }
+    }
+
+    private void updateRunningExecution(long executionId, BatchStatus batchStatus) {
+        if (!isRunning(batchStatus)) {
+            finishedExecutions.set(executionId, Boolean.TRUE, ttl, TimeUnit.SECONDS);
+            runningExecutions.delete(executionId);
+        }
+    }
+
+    private void removeIfPurged(IMap<Long, String> index, Long instanceId, String jobName,
+            Map<String, Set<Long>> remaining, Set<Long> purged) {
+        Set<Long> instanceIds = remaining.computeIfAbsent(jobName,
+                name -> new HashSet<>(delegate.jobOperatorGetJobInstanceIds(name, 0, Integer.MAX_VALUE)));
+        if (!instanceIds.contains(instanceId)) {
+            index.delete(instanceId);
+            jobStatuses.delete(instanceId);
+            purged.add(instanceId);
+        }
+    }
+
+    private static boolean isRunning(BatchStatus batchStatus) {
+        return batchStatus == BatchStatus.STARTING || batchStatus == BatchStatus.STARTED
+                || batchStatus == BatchStatus.STOPPING;
+    }
+
+    private static String taggedName(String jobName, String appTag) {
+        return appTag + '\u0000' + jobName;
+    }
+
+    /**
+     * Returns the ids from the newest, like the JDBC repository.
+     */
+    private static List<Long> page(Set<Long> ids, int start, int count) {
+        List<Long> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted, Collections.reverseOrder());
+        if (start >= sorted.size()) {
+            return new ArrayList<>();
+        }
+        return sorted.subList(start, (int) Math.min((long) start + count, sorted.size()));
+    }
+
+    private static byte[] serialize(Serializable object) {
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    private static Serializable deserialize(byte[] data) {
+        try (ObjectInputStream in = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(data))) {
+            return (Serializable) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    /**
+     * Resolves classes with the thread context class loader like {@link TCCLObjectInputStream},
+     * which cannot load arrays such as the restart token of a checkpoint.
+     */
+    private static class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+
+        ContextClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, Thread.currentThread().getContextClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
     }
-    
 }
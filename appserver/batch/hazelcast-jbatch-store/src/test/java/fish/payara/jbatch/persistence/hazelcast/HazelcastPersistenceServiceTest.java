@@ -0,0 +1,386 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.jbatch.persistence.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.ibm.jbatch.container.context.impl.StepContextImpl;
+import com.ibm.jbatch.container.exception.PersistenceException;
+import com.ibm.jbatch.container.jobinstance.JobInstanceImpl;
+import com.ibm.jbatch.container.jobinstance.RuntimeJobExecution;
+import com.ibm.jbatch.container.persistence.CheckpointData;
+import com.ibm.jbatch.container.persistence.CheckpointDataKey;
+import com.ibm.jbatch.container.services.IPersistenceManagerService;
+import com.ibm.jbatch.container.status.JobStatus;
+import com.ibm.jbatch.container.status.StepStatus;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import javax.batch.operations.NoSuchJobExecutionException;
+import javax.batch.runtime.BatchStatus;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HazelcastPersistenceServiceTest {
+
+    private static HazelcastInstance hazelcast;
+
+    private IPersistenceManagerService delegate;
+    private HazelcastPersistenceService service;
+
+    @Before
+    public void setUp() {
+        if (hazelcast == null) {
+            Config config = new Config(UUID.randomUUID().toString());
+            config.setProperty("hazelcast.logging.type", "jdk");
+            JoinConfig join = config.getNetworkConfig().getJoin();
+            join.getMulticastConfig().setEnabled(false);
+            join.getTcpIpConfig().setEnabled(false);
+            hazelcast = Hazelcast.newHazelcastInstance(config);
+        }
+        delegate = mock(IPersistenceManagerService.class);
+        service = new HazelcastPersistenceService(delegate, hazelcast);
+        service.init(null);
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+        for (String map : Arrays.asList(HazelcastPersistenceService.CHECKPOINT_MAP, HazelcastPersistenceService.JOB_STATUS_MAP,
+                HazelcastPersistenceService.JOB_INSTANCE_MAP, HazelcastPersistenceService.JOB_INSTANCE_TAG_MAP,
+                HazelcastPersistenceService.RUNNING_EXECUTION_MAP, HazelcastPersistenceService.FINISHED_EXECUTION_MAP,
+                HazelcastPersistenceService.LOADED_QUERY_MAP)) {
+            hazelcast.getMap(map).clear();
+        }
+    }
+
+    /**
+     * Replaces the service with one in write-behind mode that is only flushed by the
+     * calls of the test.
+     */
+    private void enableWriteBehind() {
+        service.shutdown();
+        System.setProperty(HazelcastPersistenceService.WRITE_BEHIND_PROPERTY, "true");
+        System.setProperty(HazelcastPersistenceService.WRITE_DELAY_PROPERTY, "3600000");
+        try {
+            service = new HazelcastPersistenceService(delegate, hazelcast);
+            service.init(null);
+        } finally {
+            System.clearProperty(HazelcastPersistenceService.WRITE_BEHIND_PROPERTY);
+            System.clearProperty(HazelcastPersistenceService.WRITE_DELAY_PROPERTY);
+        }
+    }
+
+    @AfterClass
+    public static void shutdownHazelcast() {
+        if (hazelcast != null) {
+            hazelcast.shutdown();
+            hazelcast = null;
+        }
+    }
+
+    @Test
+    public void writesGoToTheRepositoryInCallOrder() {
+        CheckpointDataKey key = new CheckpointDataKey(1, "step", "READER");
+        CheckpointData checkpoint = new CheckpointData(1, "step", "READER");
+        StepContextImpl stepContext = mock(StepContextImpl.class);
+        StepStatus stepStatus = new StepStatus(2);
+        JobStatus jobStatus = new JobStatus(1);
+
+        service.updateCheckpointData(key, checkpoint);
+        service.updateStepExecution(stepContext);
+        service.updateStepStatus(2, stepStatus);
+        service.updateJobStatus(1, jobStatus);
+        service.updateCheckpointData(key, checkpoint);
+
+        InOrder order = inOrder(delegate);
+        order.verify(delegate).updateCheckpointData(key, checkpoint);
+        order.verify(delegate).updateStepExecution(stepContext);
+        order.verify(delegate).updateStepStatus(2, stepStatus);
+        order.verify(delegate).updateJobStatus(1, jobStatus);
+        order.verify(delegate).updateCheckpointData(key, checkpoint);
+    }
+
+    @Test
+    public void failedWriteIsNotCachedAndCanBeRetried() {
+        JobStatus stored = new JobStatus(1);
+        stored.setExitStatus("stored");
+        JobStatus failed = new JobStatus(1);
+        failed.setExitStatus("failed");
+        when(delegate.getJobStatus(1)).thenReturn(stored);
+        doThrow(new PersistenceException(new IllegalStateException("rolled back")))
+                .when(delegate).updateJobStatus(1, failed);
+
+        try {
+            service.updateJobStatus(1, failed);
+            fail("The repository failure should be thrown to the caller");
+        } catch (PersistenceException e) {
+            // expected
+        }
+        assertEquals("stored", service.getJobStatus(1).getExitStatus());
+
+        JobStatus retried = new JobStatus(1);
+        retried.setExitStatus("retried");
+        service.updateJobStatus(1, retried);
+        assertEquals("retried", service.getJobStatus(1).getExitStatus());
+        verify(delegate, times(1)).getJobStatus(1);
+    }
+
+    @Test
+    public void checkpointsAreReadFromTheRepository() {
+        CheckpointDataKey key = new CheckpointDataKey(1, "step", "WRITER");
+        CheckpointData checkpoint = new CheckpointData(1, "step", "WRITER");
+        when(delegate.getCheckpointData(key)).thenReturn(checkpoint);
+
+        service.updateCheckpointData(key, checkpoint);
+        assertSame(checkpoint, service.getCheckpointData(key));
+        service.getCheckpointData(key);
+        verify(delegate, times(2)).getCheckpointData(key);
+    }
+
+    @Test
+    public void jobInstanceIdsArePagedFromTheNewest() {
+        when(delegate.jobOperatorGetJobInstanceIds("job", 0, Integer.MAX_VALUE)).thenReturn(Arrays.asList(5L, 4L, 3L, 2L, 1L));
+        when(delegate.createJobInstance("job", "app", "xml")).thenReturn(new JobInstanceImpl(6, "xml"));
+
+        assertEquals(Arrays.asList(5L, 4L), service.jobOperatorGetJobInstanceIds("job", 0, 2));
+        service.createJobInstance("job", "app", "xml");
+        assertEquals(Arrays.asList(6L, 5L), service.jobOperatorGetJobInstanceIds("job", 0, 2));
+        assertEquals(Arrays.asList(4L, 3L), service.jobOperatorGetJobInstanceIds("job", 2, 2));
+        assertEquals(Arrays.asList(2L, 1L), service.jobOperatorGetJobInstanceIds("job", 4, 10));
+        assertEquals(Collections.emptyList(), service.jobOperatorGetJobInstanceIds("job", 6, 10));
+        assertEquals(Collections.emptyList(), service.jobOperatorGetJobInstanceIds("other", 0, 10));
+        verify(delegate, times(1)).jobOperatorGetJobInstanceIds("job", 0, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void jobInstanceIdsArePagedByAppTag() {
+        when(delegate.jobOperatorGetJobInstanceIds("job", "app", 0, Integer.MAX_VALUE)).thenReturn(Arrays.asList(3L, 1L));
+        when(delegate.createJobInstance("job", "other", "xml")).thenReturn(new JobInstanceImpl(4, "xml"));
+
+        service.createJobInstance("job", "other", "xml");
+        assertEquals(Arrays.asList(3L, 1L), service.jobOperatorGetJobInstanceIds("job", "app", 0, 10));
+        assertEquals(Collections.singletonList(1L), service.jobOperatorGetJobInstanceIds("job", "app", 1, 10));
+    }
+
+    @Test
+    public void runningExecutionsFollowStatusUpdates() {
+        when(delegate.jobOperatorGetRunningExecutions("job")).thenReturn(new HashSet<>(Arrays.asList(10L, 11L)));
+        RuntimeJobExecution execution = mock(RuntimeJobExecution.class);
+        when(execution.getExecutionId()).thenReturn(12L);
+        when(delegate.createJobExecution(any(), any(), any())).thenReturn(execution);
+        JobInstanceImpl jobInstance = new JobInstanceImpl(1);
+        jobInstance.setJobName("job");
+
+        assertEquals(new HashSet<>(Arrays.asList(10L, 11L)), service.jobOperatorGetRunningExecutions("job"));
+        service.createJobExecution(jobInstance, new Properties(), BatchStatus.STARTING);
+        service.updateBatchStatusOnly(10, BatchStatus.STOPPING, null);
+        service.updateWithFinalExecutionStatusesAndTimestamps(11, BatchStatus.COMPLETED, "done", null);
+        assertEquals(new HashSet<>(Arrays.asList(10L, 12L)), service.jobOperatorGetRunningExecutions("job"));
+        service.updateBatchStatusOnly(10, BatchStatus.STOPPED, null);
+        assertEquals(Collections.singleton(12L), service.jobOperatorGetRunningExecutions("job"));
+        verify(delegate, times(1)).jobOperatorGetRunningExecutions("job");
+    }
+
+    @Test
+    public void executionsFinishedBeforeLoadingAreNotRunning() {
+        service.updateWithFinalExecutionStatusesAndTimestamps(10, BatchStatus.FAILED, "failed", null);
+        when(delegate.jobOperatorGetRunningExecutions("job")).thenReturn(new HashSet<>(Arrays.asList(10L, 11L)));
+
+        assertEquals(Collections.singleton(11L), service.jobOperatorGetRunningExecutions("job"));
+    }
+
+    @Test
+    public void purgeOnlyRemovesTheEntriesOfTheAppTag() throws Exception {
+        when(delegate.createJobInstance(eq("job"), anyString(), anyString()))
+                .thenReturn(new JobInstanceImpl(1, "xml"), new JobInstanceImpl(2, "xml"));
+        service.createJobInstance("job", "purged", "xml");
+        service.createJobInstance("job", "kept", "xml");
+        service.createJobStatus(1);
+        when(delegate.createJobStatus(anyLong())).thenReturn(new JobStatus(2));
+        service.updateJobStatus(2, new JobStatus(2));
+        when(delegate.jobOperatorGetJobInstanceIds("job", 0, Integer.MAX_VALUE)).thenReturn(Collections.singletonList(2L));
+        when(delegate.getJobStatus(1)).thenReturn(null);
+
+        service.purge("purged");
+
+        verify(delegate).purge("purged");
+        assertEquals(Collections.singletonList(2L), service.jobOperatorGetJobInstanceIds("job", 0, 10));
+        assertEquals(Collections.singletonList(2L), service.jobOperatorGetJobInstanceIds("job", "kept", 0, 10));
+        assertEquals(Collections.emptyList(), service.jobOperatorGetJobInstanceIds("job", "purged", 0, 10));
+        assertNull(service.getJobStatus(1));
+        assertEquals(2L, service.getJobStatus(2).getJobInstanceId());
+    }
+
+    @Test
+    public void purgeRemovesPurgedRunningExecutions() throws Exception {
+        when(delegate.jobOperatorGetRunningExecutions("job")).thenReturn(new HashSet<>(Arrays.asList(10L, 11L)));
+        service.jobOperatorGetRunningExecutions("job");
+        when(delegate.getJobInstanceIdByExecutionId(10)).thenThrow(new NoSuchJobExecutionException());
+        when(delegate.getJobInstanceIdByExecutionId(11)).thenReturn(1L);
+
+        service.purge("app");
+
+        assertEquals(Collections.singleton(11L), service.jobOperatorGetRunningExecutions("job"));
+    }
+
+    @Test
+    public void checkpointsAreServedFromTheGridWhenWrittenBehind() {
+        enableWriteBehind();
+        CheckpointDataKey key = new CheckpointDataKey(1, "step", "READER");
+        CheckpointData checkpoint = new CheckpointData(1, "step", "READER");
+        checkpoint.setRestartToken(new byte[] {1, 2, 3});
+
+        service.updateCheckpointData(key, checkpoint);
+        checkpoint.setRestartToken(new byte[] {4});
+
+        assertArrayEquals(new byte[] {1, 2, 3}, service.getCheckpointData(key).getRestartToken());
+        verify(delegate, never()).getCheckpointData(any());
+        verify(delegate, never()).updateCheckpointData(any(), any());
+    }
+
+    @Test
+    public void checkpointMissIsReadFromTheRepositoryOnce() {
+        enableWriteBehind();
+        CheckpointDataKey key = new CheckpointDataKey(1, "step", "WRITER");
+        CheckpointData checkpoint = new CheckpointData(1, "step", "WRITER");
+        checkpoint.setRestartToken(new byte[] {7});
+        when(delegate.getCheckpointData(key)).thenReturn(checkpoint);
+
+        assertArrayEquals(new byte[] {7}, service.getCheckpointData(key).getRestartToken());
+        assertArrayEquals(new byte[] {7}, service.getCheckpointData(key).getRestartToken());
+        verify(delegate, times(1)).getCheckpointData(key);
+    }
+
+    @Test
+    public void writesBehindAreCoalescedAndFlushedBeforeTheRepositoryIsRead() {
+        enableWriteBehind();
+        CheckpointDataKey key = new CheckpointDataKey(1, "step", "READER");
+        CheckpointData checkpoint = new CheckpointData(1, "step", "READER");
+        checkpoint.setRestartToken(new byte[] {1});
+        StepContextImpl stepContext = mock(StepContextImpl.class);
+        when(stepContext.getStepExecutionId()).thenReturn(2L);
+
+        service.updateCheckpointData(key, checkpoint);
+        service.updateStepExecution(stepContext);
+        service.updateJobStatus(1, new JobStatus(1));
+        checkpoint.setRestartToken(new byte[] {2});
+        service.updateCheckpointData(key, checkpoint);
+        verify(delegate, never()).updateCheckpointData(any(), any());
+
+        service.jobOperatorGetJobInstanceCount("job");
+
+        ArgumentCaptor<CheckpointData> written = ArgumentCaptor.forClass(CheckpointData.class);
+        InOrder order = inOrder(delegate);
+        order.verify(delegate).updateStepExecution(stepContext);
+        order.verify(delegate).updateJobStatus(eq(1L), any(JobStatus.class));
+        order.verify(delegate).updateCheckpointData(eq(key), written.capture());
+        order.verify(delegate).jobOperatorGetJobInstanceCount("job");
+        assertArrayEquals(new byte[] {2}, written.getValue().getRestartToken());
+        verify(delegate, times(1)).updateCheckpointData(any(), any());
+    }
+
+    @Test
+    public void failedWriteBehindIsRetriedOnTheNextFlush() {
+        enableWriteBehind();
+        doThrow(new PersistenceException(new IllegalStateException("unavailable")))
+                .doNothing()
+                .when(delegate).updateStepStatus(eq(2L), any(StepStatus.class));
+
+        service.updateStepStatus(2, new StepStatus(2));
+        try {
+            service.jobOperatorGetJobInstanceCount("job");
+            fail("The repository failure should be thrown to the caller");
+        } catch (PersistenceException e) {
+            // expected
+        }
+        service.jobOperatorGetJobInstanceCount("job");
+        service.jobOperatorGetJobInstanceCount("job");
+
+        verify(delegate, times(2)).updateStepStatus(eq(2L), any(StepStatus.class));
+        verify(delegate, times(2)).jobOperatorGetJobInstanceCount("job");
+    }
+
+    @Test
+    public void purgeRemovesTheCheckpointsOfPurgedInstances() throws Exception {
+        enableWriteBehind();
+        when(delegate.createJobInstance(eq("job"), anyString(), anyString()))
+                .thenReturn(new JobInstanceImpl(1, "xml"), new JobInstanceImpl(2, "xml"));
+        service.createJobInstance("job", "purged", "xml");
+        service.createJobInstance("job", "kept", "xml");
+        CheckpointDataKey purgedKey = new CheckpointDataKey(1, "step", "READER");
+        CheckpointDataKey keptKey = new CheckpointDataKey(2, "step", "READER");
+        service.updateCheckpointData(purgedKey, new CheckpointData(1, "step", "READER"));
+        service.updateCheckpointData(keptKey, new CheckpointData(2, "step", "READER"));
+        when(delegate.jobOperatorGetJobInstanceIds("job", 0, Integer.MAX_VALUE)).thenReturn(Collections.singletonList(2L));
+
+        service.purge("purged");
+
+        assertNull(service.getCheckpointData(purgedKey));
+        assertEquals(2L, service.getCheckpointData(keptKey).getjobInstanceId());
+        verify(delegate, times(1)).getCheckpointData(any());
+    }
+}
@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2019] Payara Foundation and/or affiliates
 
 package com.sun.enterprise.resource;
 
@@ -51,6 +52,7 @@ import javax.resource.spi.ConnectionEventListener;
 import javax.security.auth.Subject;
 import javax.transaction.xa.XAResource;
 import javax.transaction.Transaction;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -78,7 +80,7 @@ public class ResourceHandle implements
     private int shareCount;   // sharing within a component (XA only)
     private boolean supportsXAResource = false;
 
-    private volatile boolean busy;
+    private final AtomicBoolean busy = new AtomicBoolean();
 
     private Subject subject = null;
 
@@ -382,10 +384,19 @@ public class ResourceHandle implements
     }
 
     public void setBusy(boolean isBusy){
-        busy = isBusy;
+        busy.set(isBusy);
+    }
+
+    /**
+     * Marks this handle as busy if it is not already.
+     *
+     * @return true if the handle was free and has been marked busy by this call
+     */
+    public boolean trySetBusy(){
+        return busy.compareAndSet(false, true);
     }
 
     public boolean isBusy(){
-        return busy;
+        return busy.get();
     }
 }
@@ -1231,11 +1231,14 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
     protected void notifyWaitingThreads() {
         // notify the first thread in the waitqueue
         Object waitMonitor = null;
-        synchronized (waitQueue) {
-            if (waitQueue.getQueueLength() > 0) {
-                waitMonitor = waitQueue.remove();
-                if(poolLifeCycleListener != null) {
-                    poolLifeCycleListener.connectionRequestDequeued();
+        // avoid taking the queue monitor on every resource release when nobody is waiting
+        if (waitQueue.getQueueLength() > 0) {
+            synchronized (waitQueue) {
+                if (waitQueue.getQueueLength() > 0) {
+                    waitMonitor = waitQueue.remove();
+                    if(poolLifeCycleListener != null && waitMonitor != null) {
+                        poolLifeCycleListener.connectionRequestDequeued();
+                    }
                 }
             }
         }
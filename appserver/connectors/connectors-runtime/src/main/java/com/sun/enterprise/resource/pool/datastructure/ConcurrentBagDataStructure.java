@@ -0,0 +1,324 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.resource.pool.datastructure;
+
+import com.sun.appserv.connectors.internal.api.PoolingException;
+import com.sun.enterprise.resource.ResourceHandle;
+import com.sun.enterprise.resource.allocator.ResourceAllocator;
+import com.sun.enterprise.resource.pool.ResourceHandler;
+import com.sun.logging.LogDomains;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lock free datastructure for pool.
+ * <p>
+ * Resources are claimed by atomically marking them busy. A thread first tries the resources it
+ * returned most recently, which are usually still free when a request thread gets and returns
+ * connections repeatedly, and then polls a shared queue of free resources. A resource that is
+ * returned while another thread waits in {@link #getResource(long, TimeUnit)} is handed to that
+ * thread directly and never becomes free in between.
+ */
+public class ConcurrentBagDataStructure implements DataStructure {
+
+    protected final static Logger _logger =
+            LogDomains.getLogger(ConcurrentBagDataStructure.class, LogDomains.RSR_LOGGER);
+
+    private static final int RECENTLY_RETURNED_LIMIT = 8;
+    private static final Object CANCELLED = new Object();
+
+    private final ResourceHandler handler;
+    // every resource in the pool, mapped to whether it has an entry in the free queue
+    private final ConcurrentHashMap<ResourceHandle, AtomicBoolean> resources =
+            new ConcurrentHashMap<ResourceHandle, AtomicBoolean>();
+    private final ConcurrentLinkedQueue<ResourceHandle> freeQueue = new ConcurrentLinkedQueue<ResourceHandle>();
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<Waiter>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ThreadLocal<ArrayList<WeakReference<ResourceHandle>>> recentlyReturned =
+            new ThreadLocal<ArrayList<WeakReference<ResourceHandle>>>() {
+                @Override
+                protected ArrayList<WeakReference<ResourceHandle>> initialValue() {
+                    return new ArrayList<WeakReference<ResourceHandle>>(RECENTLY_RETURNED_LIMIT);
+                }
+            };
+    private volatile int maxSize;
+
+    public ConcurrentBagDataStructure(String parameters, int maxSize,
+                                      ResourceHandler handler, String strategyClass) {
+        this.maxSize = maxSize;
+        this.handler = handler;
+        if (_logger.isLoggable(Level.FINEST)) {
+            _logger.log(Level.FINEST, "pool.datastructure.concurrentbagds.init");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int addResource(ResourceAllocator allocator, int count) throws PoolingException {
+        int numResAdded = 0;
+        while (numResAdded < count) {
+            int current = size.get();
+            if (current >= maxSize) {
+                break;
+            }
+            if (!size.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            ResourceHandle handle;
+            try {
+                handle = handler.createResource(allocator);
+            } catch (Exception e) {
+                size.decrementAndGet();
+                PoolingException pe = new PoolingException(e.getMessage());
+                pe.initCause(e);
+                throw pe;
+            }
+            // a new resource is busy until it has been offered to a waiting thread or made free
+            handle.setBusy(true);
+            resources.put(handle, new AtomicBoolean());
+            returnResource(handle);
+            numResAdded++;
+        }
+        return numResAdded;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResourceHandle getResource() {
+        ArrayList<WeakReference<ResourceHandle>> recent = recentlyReturned.get();
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            ResourceHandle h = recent.remove(i).get();
+            if (h != null && claim(h)) {
+                return h;
+            }
+        }
+        ResourceHandle h;
+        while ((h = freeQueue.poll()) != null) {
+            AtomicBoolean queued = resources.get(h);
+            if (queued == null) {
+                continue;
+            }
+            // clear the flag before claiming, so that a concurrent return re-queues the resource
+            queued.set(false);
+            if (claim(h)) {
+                return h;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets a resource, waiting until one is returned to the datastructure if none is free.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of the timeout
+     * @return ResourceHandle, or null if none became available in time
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public ResourceHandle getResource(long timeout, TimeUnit unit) throws InterruptedException {
+        ResourceHandle h = getResource();
+        if (h != null) {
+            return h;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Waiter waiter = new Waiter();
+        waiters.offer(waiter);
+        // a resource returned before the waiter was queued is not handed off, so look again
+        h = getResource();
+        if (h != null) {
+            if (!waiter.compareAndSet(null, CANCELLED)) {
+                returnResource((ResourceHandle) waiter.get());
+            }
+            waiters.remove(waiter);
+            return h;
+        }
+        while (true) {
+            Object handedOff = waiter.get();
+            if (handedOff != null) {
+                return (ResourceHandle) handedOff;
+            }
+            long remaining = deadline - System.nanoTime();
+            boolean interrupted = Thread.interrupted();
+            if (remaining <= 0 || interrupted) {
+                if (waiter.compareAndSet(null, CANCELLED)) {
+                    waiters.remove(waiter);
+                    if (interrupted) {
+                        throw new InterruptedException();
+                    }
+                    return null;
+                }
+                // a resource was handed off at the same time, keep it
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                continue;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private boolean claim(ResourceHandle h) {
+        if (!h.trySetBusy()) {
+            return false;
+        }
+        // a removed resource stays busy so that no other thread can claim it either
+        return resources.containsKey(h);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeResource(ResourceHandle resource) {
+        if (resources.remove(resource) != null) {
+            size.decrementAndGet();
+            handler.deleteResource(resource);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void returnResource(ResourceHandle resource) {
+        while (true) {
+            Waiter waiter;
+            while ((waiter = waiters.poll()) != null) {
+                // the resource stays busy, so it passes straight to the waiting thread
+                if (waiter.compareAndSet(null, resource)) {
+                    LockSupport.unpark(waiter.thread);
+                    return;
+                }
+            }
+            release(resource);
+            // a thread may have started waiting after the waiters were polled
+            if (waiters.isEmpty() || !claim(resource)) {
+                return;
+            }
+        }
+    }
+
+    private void release(ResourceHandle resource) {
+        ArrayList<WeakReference<ResourceHandle>> recent = recentlyReturned.get();
+        if (recent.isEmpty() || recent.get(recent.size() - 1).get() != resource) {
+            if (recent.size() == RECENTLY_RETURNED_LIMIT) {
+                recent.remove(0);
+            }
+            recent.add(new WeakReference<ResourceHandle>(resource));
+        }
+        resource.setBusy(false);
+        AtomicBoolean queued = resources.get(resource);
+        if (queued != null && queued.compareAndSet(false, true)) {
+            freeQueue.offer(resource);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFreeListSize() {
+        int free = 0;
+        for (ResourceHandle h : resources.keySet()) {
+            if (!h.isBusy()) {
+                free++;
+            }
+        }
+        return free;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAll() {
+        for (ResourceHandle h : resources.keySet()) {
+            removeResource(h);
+        }
+        freeQueue.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getResourcesSize() {
+        return size.get();
+    }
+
+    /**
+     * Set maxSize based on the new max pool size set on the connection pool
+     * during a reconfiguration.
+     *
+     * @param maxSize
+     */
+    @Override
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public ArrayList<ResourceHandle> getAllResources() {
+        return new ArrayList<ResourceHandle>(resources.keySet());
+    }
+
+    /**
+     * A thread waiting for a resource. Holds the handed off resource, or {@link #CANCELLED} once
+     * the thread has stopped waiting.
+     */
+    private static final class Waiter extends AtomicReference<Object> {
+
+        final Thread thread = Thread.currentThread();
+    }
+}
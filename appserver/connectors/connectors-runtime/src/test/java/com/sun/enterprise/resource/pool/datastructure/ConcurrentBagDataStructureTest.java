@@ -0,0 +1,257 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.resource.pool.datastructure;
+
+import com.sun.appserv.connectors.internal.api.PoolingException;
+import com.sun.enterprise.resource.ResourceHandle;
+import com.sun.enterprise.resource.allocator.ResourceAllocator;
+import com.sun.enterprise.resource.pool.ResourceHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentBagDataStructureTest {
+
+    private final List<ResourceHandle> deleted = new ArrayList<ResourceHandle>();
+    private final ConcurrentBagDataStructure bag = new ConcurrentBagDataStructure(null, 100, new TestResourceHandler(), null);
+
+    @Test
+    public void returnedResourceIsServedToTheSameThreadFirst() throws Exception {
+        bag.addResource(null, 3);
+        ResourceHandle first = bag.getResource();
+        ResourceHandle second = bag.getResource();
+        ResourceHandle third = bag.getResource();
+        assertNull(bag.getResource());
+
+        bag.returnResource(first);
+        bag.returnResource(second);
+        assertSame(second, bag.getResource());
+        assertSame(first, bag.getResource());
+        assertNull(bag.getResource());
+        assertTrue(third.isBusy());
+    }
+
+    @Test
+    public void resourceReturnedByAnotherThreadIsServedFromTheSharedQueue() throws Exception {
+        bag.addResource(null, 1);
+        final ResourceHandle handle = bag.getResource();
+        Thread returner = new Thread() {
+            @Override
+            public void run() {
+                bag.returnResource(handle);
+            }
+        };
+        returner.start();
+        returner.join();
+
+        assertEquals(1, bag.getFreeListSize());
+        assertSame(handle, bag.getResource());
+        assertEquals(0, bag.getFreeListSize());
+    }
+
+    @Test
+    public void returnedResourceIsHandedToAWaitingThread() throws Exception {
+        bag.addResource(null, 1);
+        ResourceHandle handle = bag.getResource();
+        final AtomicReference<ResourceHandle> received = new AtomicReference<ResourceHandle>();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    received.set(bag.getResource(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        waiter.start();
+        awaitParked(waiter);
+
+        bag.returnResource(handle);
+        waiter.join(10000);
+        assertSame(handle, received.get());
+        assertTrue(handle.isBusy());
+        assertEquals(0, bag.getFreeListSize());
+        assertNull(bag.getResource());
+    }
+
+    @Test
+    public void waitingForAResourceTimesOut() throws Exception {
+        bag.addResource(null, 1);
+        ResourceHandle handle = bag.getResource();
+        assertNull(bag.getResource(20, TimeUnit.MILLISECONDS));
+
+        // the timed out waiter must not swallow the next returned resource
+        bag.returnResource(handle);
+        assertSame(handle, bag.getResource());
+    }
+
+    @Test
+    public void removedResourceIsNotServed() throws Exception {
+        bag.addResource(null, 2);
+        ResourceHandle first = bag.getResource();
+        ResourceHandle second = bag.getResource();
+        bag.returnResource(first);
+        bag.returnResource(second);
+
+        bag.removeResource(second);
+        assertEquals(1, bag.getResourcesSize());
+        assertEquals(1, deleted.size());
+        assertSame(first, bag.getResource());
+        assertNull(bag.getResource());
+    }
+
+    @Test
+    public void addResourceStopsAtTheMaximumSize() throws Exception {
+        bag.setMaxSize(2);
+        assertEquals(2, bag.addResource(null, 3));
+        assertEquals(0, bag.addResource(null, 1));
+        assertEquals(2, bag.getResourcesSize());
+        assertEquals(2, bag.getFreeListSize());
+    }
+
+    @Test
+    public void borrowAndReturnUnderContention() throws Exception {
+        final int resources = 4;
+        final int threads = 16;
+        final int iterations = 2000;
+        bag.addResource(null, resources);
+
+        final Set<ResourceHandle> inUse = ConcurrentHashMap.newKeySet();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger borrowed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] borrowers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final boolean waiting = i % 2 == 0;
+            borrowers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < iterations; j++) {
+                            ResourceHandle handle = waiting ? bag.getResource(10, TimeUnit.SECONDS) : bag.getResource();
+                            if (handle == null) {
+                                if (waiting) {
+                                    failures.incrementAndGet();
+                                }
+                                continue;
+                            }
+                            if (!handle.isBusy() || !inUse.add(handle)) {
+                                // handed out to two threads at once
+                                failures.incrementAndGet();
+                            }
+                            borrowed.incrementAndGet();
+                            Thread.yield();
+                            inUse.remove(handle);
+                            bag.returnResource(handle);
+                        }
+                    } catch (InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            borrowers[i].start();
+        }
+        start.countDown();
+        for (Thread borrower : borrowers) {
+            borrower.join(60000);
+            assertFalse(borrower.isAlive());
+        }
+
+        assertEquals(0, failures.get());
+        assertTrue(borrowed.get() >= threads / 2 * iterations);
+        assertEquals(resources, bag.getResourcesSize());
+        assertEquals(resources, bag.getFreeListSize());
+        for (int i = 0; i < resources; i++) {
+            assertNotNull(bag.getResource());
+        }
+        assertNull(bag.getResource());
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.TIMED_WAITING, thread.getState());
+    }
+
+    private class TestResourceHandler implements ResourceHandler {
+
+        @Override
+        public void deleteResource(ResourceHandle resourceHandle) {
+            deleted.add(resourceHandle);
+        }
+
+        @Override
+        public ResourceHandle createResource(ResourceAllocator allocator) throws PoolingException {
+            return new ResourceHandle(new Object(), null, allocator, null);
+        }
+
+        @Override
+        public void createResourceAndAddToPool() throws PoolingException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set getInvalidConnections(Set connections) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void invalidConnectionDetected(ResourceHandle h) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -278,6 +278,12 @@ public abstract class BaseContainer implements Container, EjbContainerFacade, Ja
 
     protected static final String SINGLETON_BEAN_POOL_PROP = "singleton-bean-pool";
 
+    /**
+     * glassfish-ejb-jar.xml enterprise-beans property that selects the {@link com.sun.ejb.containers.util.pool.ConcurrentPool}
+     * for stateless session and message driven bean pools.
+     */
+    protected static final String CONCURRENT_BEAN_POOL_PROP = "concurrent-bean-pool";
+
     protected ClassLoader loader = null;
     protected Class<?> ejbClass = null;
     protected Class sfsbSerializedClass = null;
@@ -45,6 +45,7 @@ import com.sun.ejb.ComponentContext;
 import com.sun.ejb.EjbInvocation;
 import com.sun.ejb.containers.util.pool.AbstractPool;
 import com.sun.ejb.containers.util.pool.BlockingPool;
+import com.sun.ejb.containers.util.pool.ConcurrentPool;
 import com.sun.ejb.containers.util.pool.NonBlockingPool;
 import com.sun.ejb.containers.util.pool.ObjectFactory;
 import com.sun.ejb.monitoring.stats.EjbMonitoringStatsProvider;
@@ -250,7 +251,15 @@ public class StatelessSessionContainer
 
         poolProp = new PoolProperties(ejbContainer, beanPoolDes);
         String val = ejbDescriptor.getEjbBundleDescriptor().getEnterpriseBeansProperty(SINGLETON_BEAN_POOL_PROP);
-        if(poolProp.maxWaitTimeInMillis != -1) {
+        String concurrent = ejbDescriptor.getEjbBundleDescriptor().getEnterpriseBeansProperty(CONCURRENT_BEAN_POOL_PROP);
+        if (Boolean.parseBoolean(concurrent) && !Boolean.parseBoolean(val)) {
+            pool= new ConcurrentPool(getContainerId(), ejbDescriptor.getName(),
+                sessionCtxFactory, poolProp.steadyPoolSize,
+                poolProp.poolResizeQuantity, poolProp.maxPoolSize,
+                poolProp.poolIdleTimeoutInSeconds, loader,
+                poolProp.maxWaitTimeInMillis);
+        }
+        else if(poolProp.maxWaitTimeInMillis != -1) {
             pool= new BlockingPool(getContainerId(), ejbDescriptor.getName(),
                 sessionCtxFactory, poolProp.steadyPoolSize,
                 poolProp.poolResizeQuantity, poolProp.maxPoolSize,
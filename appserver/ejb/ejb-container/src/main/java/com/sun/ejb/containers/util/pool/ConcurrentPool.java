@@ -0,0 +1,522 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.ejb.containers.util.pool;
+
+import com.sun.ejb.containers.EJBContextImpl;
+import com.sun.ejb.containers.EjbContainerUtilImpl;
+import com.sun.enterprise.util.Utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * <p>Object pool that does not share a monitor between the threads using it. It can be used
+ * instead of {@link NonBlockingPool} and {@link BlockingPool} and keeps the same steady size,
+ * resize quantity, maximum size and idle timeout semantics.
+ * <p>Pooled objects are kept on a lock free stack, so the most recently used object is handed
+ * out first and idle objects collect at the bottom where the resizer removes them.
+ * <p>When a maximum wait time is given the pool blocks once maxPoolSize objects are in use. Each
+ * object in use holds a permit of a fair {@link Semaphore}, so a returned object wakes up the
+ * thread that has waited longest.
+ */
+public class ConcurrentPool extends AbstractPool {
+
+    private final ConcurrentLinkedDeque<Object> available = new ConcurrentLinkedDeque<>();
+    // null unless the pool blocks
+    private final Semaphore permits;
+
+    private final AtomicInteger availableCount = new AtomicInteger();
+    private final AtomicInteger liveCount = new AtomicInteger();
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder success = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+
+    private final AtomicBoolean addedResizeTask = new AtomicBoolean();
+    private final AtomicBoolean addedIdleBeanWork = new AtomicBoolean();
+    private final AtomicBoolean inResizing = new AtomicBoolean();
+    private final boolean blocking;
+    private final boolean maintainSteadySize;
+    private volatile boolean poolClosed;
+    private TimerTask poolTimerTask;
+
+    /**
+     * @param maxWaitTimeInMillis the time to wait for an object once maxPoolSize objects are in use,
+     * 0 to wait indefinitely or -1 to create objects beyond maxPoolSize as {@link NonBlockingPool} does
+     */
+    public ConcurrentPool(long beanId, String poolName, ObjectFactory factory,
+        int steadyPoolSize, int resizeQuantity,
+        int maxPoolSize, int idleTimeoutInSeconds,
+        ClassLoader loader, int maxWaitTimeInMillis)
+    {
+        this.poolName = poolName;
+        this.beanId = beanId;
+        this.factory = factory;
+        this.steadyPoolSize = (steadyPoolSize <= 0) ? 0 : steadyPoolSize;
+        this.resizeQuantity = (resizeQuantity <= 0) ? 0 : resizeQuantity;
+        this.maxPoolSize = (maxPoolSize <= 0)
+            ? Integer.MAX_VALUE : maxPoolSize;
+        this.steadyPoolSize = (this.steadyPoolSize > this.maxPoolSize)
+            ? this.maxPoolSize : this.steadyPoolSize;
+        this.idleTimeoutInSeconds = (idleTimeoutInSeconds <= 0) ? 0 : idleTimeoutInSeconds;
+        this.maxWaitTimeInMillis = maxWaitTimeInMillis;
+        this.blocking = maxWaitTimeInMillis >= 0;
+        this.permits = blocking ? new Semaphore(this.maxPoolSize, true) : null;
+        this.containerClassLoader = loader;
+        this.maintainSteadySize = this.steadyPoolSize > 0;
+
+        if ((this.idleTimeoutInSeconds > 0) && (this.resizeQuantity > 0)) {
+            try {
+                this.poolTimerTask = new PoolResizeTimerTask();
+                EjbContainerUtilImpl.getInstance().getTimer().scheduleAtFixedRate
+                    (poolTimerTask, idleTimeoutInSeconds*1000L,
+                     idleTimeoutInSeconds*1000L);
+                if(_logger.isLoggable(Level.FINE)) {
+                    _logger.log(Level.FINE, "[Pool-{0}]: Added PoolResizeTimerTask...", poolName);
+                }
+            } catch (Throwable th) {
+                _logger.log(Level.WARNING,"[Pool-" +
+                            poolName + "]: Could not add"
+                            + " PoolTimerTask. Continuing anyway...", th);
+            }
+        }
+    }
+
+    @Override
+    public Object getObject(Object param) throws PoolException {
+        if (blocking) {
+            acquirePermit();
+        }
+        Object obj = takeAvailable();
+        if (obj != null) {
+            success.increment();
+            return obj;
+        }
+        liveCount.incrementAndGet();
+        try {
+            return create(param);
+        } catch (RuntimeException ex) {
+            releasePermit();
+            throw ex;
+        }
+    }
+
+    private void acquirePermit() throws PoolException {
+        // The timed tryAcquire respects fairness, unlike tryAcquire()
+        try {
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            waitingCount.incrementAndGet();
+            try {
+                if (maxWaitTimeInMillis == 0) {
+                    permits.acquire();
+                } else if (!permits.tryAcquire(maxWaitTimeInMillis, TimeUnit.MILLISECONDS)) {
+                    throw new PoolException("Pool Instance not obtained" +
+                       " within given time interval.");
+                }
+            } finally {
+                waitingCount.decrementAndGet();
+            }
+        } catch (InterruptedException inEx) {
+            throw new PoolException("Thread interrupted.", inEx);
+        }
+    }
+
+    private void releasePermit() {
+        if (blocking) {
+            permits.release();
+        }
+    }
+
+    /**
+     * Takes the most recently returned object from the stack.
+     */
+    private Object takeAvailable() {
+        Object obj = available.pollFirst();
+        if (obj != null && availableCount.decrementAndGet() < steadyPoolSize) {
+            scheduleResize();
+        }
+        return obj;
+    }
+
+    /**
+     * Creates an object for which liveCount has already been incremented.
+     */
+    private Object create(Object param) {
+        created.increment();
+        poolProbeNotifier.ejbObjectAddedEvent(beanId, appName, modName, ejbName);
+        if (maintainSteadySize && availableCount.get() < steadyPoolSize) {
+            scheduleResize();
+        }
+        try {
+            return factory.create(param);
+        } catch (RuntimeException th) {
+            liveCount.decrementAndGet();
+            created.decrement();
+            poolProbeNotifier.ejbObjectAddFailedEvent(beanId, appName, modName, ejbName);
+            throw th;
+        }
+    }
+
+    /**
+     * Return an object back to the pool. An object that is obtained through
+     * getObject() must always be returned back to the pool using either
+     * returnObject(obj) or through destroyObject(obj).
+     * @param object
+     */
+    @Override
+    public void returnObject(Object object) {
+        returned.increment();
+        // A thread which found the stack empty while this object was being returned may have
+        // created another, so liveCount of a blocking pool can briefly exceed maxPoolSize
+        if (poolClosed || (blocking && liveCount.get() > maxPoolSize)) {
+            destroy(object);
+        } else if (availableCount.incrementAndGet() > maxPoolSize) {
+            availableCount.decrementAndGet();
+            destroy(object);
+        } else {
+            available.offerFirst(object);
+        }
+        releasePermit();
+    }
+
+    /**
+     * Destroys an Object. Note that applications should not ignore
+     * the reference to the object that they got from getObject(). An object
+     * that is obtained through getObject() must always be returned back to
+     * the pool using either returnObject(obj) or through destroyObject(obj).
+     * This method tells that the object should be destroyed and cannot
+     * be reused.
+     * @param object Object to be destroyed.
+     */
+    @Override
+    public void destroyObject(Object object) {
+        destroy(object);
+        releasePermit();
+    }
+
+    private void destroy(Object object) {
+        liveCount.decrementAndGet();
+        destroyed.increment();
+        poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
+        try {
+            factory.destroy(object);
+        } catch (Exception ex) {
+            _logger.log(Level.FINE, "exception in destroyObject", ex);
+        }
+    }
+
+    /**
+    * Preload the pool with objects.
+    * @param count the number of objects to be added.
+    */
+    protected void preload(int count) {
+        for (int i = 0; i < count; i++) {
+            int current = availableCount.get();
+            if (current >= maxPoolSize) {
+                return;
+            }
+            if (!availableCount.compareAndSet(current, current + 1)) {
+                i--;
+                continue;
+            }
+            Object obj;
+            try {
+                obj = factory.create(null);
+            } catch (Exception ex) {
+                //Need not throw this exception up since we are pre-populating
+                availableCount.decrementAndGet();
+                return;
+            }
+            liveCount.incrementAndGet();
+            created.increment();
+            poolProbeNotifier.ejbObjectAddedEvent(beanId, appName, modName, ejbName);
+            available.offerFirst(obj);
+        }
+    }
+
+    /**
+    * Close the pool
+    */
+    @Override
+    public void close() {
+        poolClosed = true;
+        if (poolTimerTask != null) {
+            try {
+                poolTimerTask.cancel();
+            } catch (Throwable th) {
+                //Can safely ignore this!!
+            }
+        }
+
+        ClassLoader origLoader =
+            Utility.setContextClassLoader(containerClassLoader);
+        try {
+            Object obj;
+            while ((obj = available.pollFirst()) != null) {
+                availableCount.decrementAndGet();
+                destroy(obj);
+            }
+            if(_logger.isLoggable(Level.FINE)) {
+                _logger.log(Level.FINE, "Pool-{0}]: Pool closed....", poolName);
+            }
+            unregisterProbeProvider();
+        } finally {
+            Utility.setContextClassLoader(origLoader);
+        }
+        poolTimerTask = null;
+    }
+
+    @Override
+    protected void removeIdleObjects() {
+    }
+
+    private void scheduleResize() {
+        if (!maintainSteadySize || poolClosed || !addedResizeTask.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            EjbContainerUtilImpl.getInstance().addWork(() -> {
+                try {
+                    doResize();
+                } finally {
+                    addedResizeTask.set(false);
+                }
+            });
+        } catch (Exception ex) {
+            addedResizeTask.set(false);
+            _logger.log(Level.WARNING,
+                        "[Pool-"+poolName+"]: Cannot perform "
+                        + " pool resize task", ex);
+        }
+    }
+
+    protected void doResize() {
+        if (poolClosed || !inResizing.compareAndSet(false, true)) {
+            return;
+        }
+
+        ClassLoader origLoader =
+            Utility.setContextClassLoader(containerClassLoader);
+        try {
+            int curSize = availableCount.get();
+            if (curSize > steadyPoolSize) {
+                //possible to reduce pool size....
+                if ((idleTimeoutInSeconds <= 0) || (resizeQuantity <= 0)) {
+                    return;
+                }
+                int victimCount = Math.min(resizeQuantity, curSize - steadyPoolSize);
+                long allowedIdleTime = System.currentTimeMillis() -
+                    idleTimeoutInSeconds*1000L;
+                for (Object victim : takeIdle(victimCount, allowedIdleTime)) {
+                    destroy(victim);
+                }
+            } else if (curSize < steadyPoolSize && maintainSteadySize) {
+                //Need to populate....
+                int populateCount = 0;
+                if (resizeQuantity <= 0) {
+                    populateCount = steadyPoolSize - curSize;
+                } else {
+                    while ((curSize + populateCount) < steadyPoolSize) {
+                        populateCount += resizeQuantity;
+                    }
+                    if ((curSize + populateCount) > maxPoolSize) {
+                        populateCount -= (curSize + populateCount) - maxPoolSize;
+                    }
+                }
+                preload(populateCount);
+            }
+        } catch (Throwable th) {
+            _logger.log(Level.WARNING,
+                        "[Pool-"+poolName+"]: Exception during reSize", th);
+        } finally {
+            inResizing.set(false);
+            Utility.setContextClassLoader(origLoader);
+        }
+
+        if(_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE, "[Pool-{0}]: Resize completed at: {1}; after reSize: {2}",
+                    new Object[]{poolName, new java.util.Date(), getAllAttrValues()});
+        }
+    }
+
+    /**
+     * Removes up to count objects last used before allowedIdleTime from the bottom of the stack.
+     */
+    private List<Object> takeIdle(int count, long allowedIdleTime) {
+        List<Object> victims = new ArrayList<>();
+        while (victims.size() < count) {
+            Object obj = available.pollLast();
+            if (obj == null) {
+                break;
+            }
+            if (((EJBContextImpl) obj).getLastTimeUsed() <= allowedIdleTime) {
+                availableCount.decrementAndGet();
+                victims.add(obj);
+            } else {
+                available.offerLast(obj);
+                break;
+            }
+        }
+        return victims;
+    }
+
+    /* *************** For Monitoring ***********************/
+    /* ******************************************************/
+
+    @Override
+    public int getCreatedCount() {
+        return created.intValue();
+    }
+
+    @Override
+    public int getDestroyedCount() {
+        return destroyed.intValue();
+    }
+
+    @Override
+    public int getPoolSuccess() {
+        return success.intValue();
+    }
+
+    @Override
+    public int getSize() {
+        return availableCount.get();
+    }
+
+    @Override
+    public int getWaitCount() {
+        return waitingCount.get();
+    }
+
+    @Override
+    public void appendStats(StringBuilder sbuf) {
+        sbuf.append("[Pool: ")
+            .append("SZ=").append(getSize()).append("; ")
+            .append("CC=").append(getCreatedCount()).append("; ")
+            .append("DC=").append(getDestroyedCount()).append("; ")
+            .append("WC=").append(getWaitCount()).append("; ")
+            .append("MSG=0");
+        if (configData != null) {
+            sbuf.append(configData);
+        }
+        sbuf.append("]");
+    }
+
+    @Override
+    public int getNumBeansInPool() {
+        return getSize();
+    }
+
+    @Override
+    public int getNumThreadsWaiting() {
+        return getWaitCount();
+    }
+
+    @Override
+    public int getTotalBeansCreated() {
+        return getCreatedCount();
+    }
+
+    @Override
+    public int getTotalBeansDestroyed() {
+        return getDestroyedCount();
+    }
+
+    @Override
+    public String getAllMonitoredAttrbuteValues() {
+        StringBuilder sbuf = new StringBuilder();
+        sbuf.append("createdCount=").append(getCreatedCount()).append(";")
+            .append("destroyedCount=").append(getDestroyedCount()).append(";")
+            .append("waitCount=").append(getWaitCount()).append(";")
+            .append("size=").append(getSize()).append(";")
+            .append("maxPoolSize=").append(maxPoolSize).append(";");
+        return sbuf.toString();
+    }
+
+    @Override
+    public String getAllAttrValues() {
+        StringBuilder sbuf = new StringBuilder("[Pool-"+poolName+"] ");
+        sbuf.append("CC=").append(getCreatedCount()).append("; ")
+            .append("DC=").append(getDestroyedCount()).append("; ")
+            .append("PR=").append(returned.intValue()).append("; ")
+            .append("CS=").append(getSize()).append("; ")
+            .append("SS=").append(steadyPoolSize).append("; ")
+            .append("MS=").append(maxPoolSize).append(";");
+        return sbuf.toString();
+    }
+
+    private class PoolResizeTimerTask
+        extends java.util.TimerTask
+    {
+        PoolResizeTimerTask() {}
+
+        @Override
+        public void run() {
+            if (!addedIdleBeanWork.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                EjbContainerUtilImpl.getInstance().addWork(() -> {
+                    try {
+                        doResize();
+                    } finally {
+                        addedIdleBeanWork.set(false);
+                    }
+                });
+            } catch (Exception ex) {
+                addedIdleBeanWork.set(false);
+                _logger.log(Level.WARNING,
+                            "[Pool-"+poolName+"]: Cannot perform "
+                            + " pool idle bean cleanup", ex);
+            }
+        }
+    }
+}
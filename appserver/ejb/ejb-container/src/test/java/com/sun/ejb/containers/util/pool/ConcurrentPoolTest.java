@@ -0,0 +1,211 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.ejb.containers.util.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.ejb.monitoring.probes.EjbPoolProbeProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ConcurrentPoolTest {
+
+    private final AtomicInteger live = new AtomicInteger();
+    private final ObjectFactory factory = new ObjectFactory() {
+        @Override
+        public Object create(Object param) {
+            live.incrementAndGet();
+            return new Object();
+        }
+
+        @Override
+        public void destroy(Object object) {
+            live.decrementAndGet();
+        }
+    };
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMaxPoolSizeIsNotExceeded() throws Exception {
+        ConcurrentPool pool = createPool(4, 0);
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger maxInUse = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            workers.add(executor.submit(() -> {
+                for (int j = 0; j < 200; j++) {
+                    Object obj = pool.getObject(null);
+                    int current = inUse.incrementAndGet();
+                    maxInUse.accumulateAndGet(current, Math::max);
+                    Thread.yield();
+                    inUse.decrementAndGet();
+                    pool.returnObject(obj);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+        assertTrue("At most 4 objects should be in use, was " + maxInUse, maxInUse.get() <= 4);
+        assertTrue("At most 4 objects should be kept, was " + live, live.get() <= 4);
+        assertEquals(live.get(), pool.getSize());
+        assertEquals(0, pool.getWaitCount());
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception {
+        ConcurrentPool pool = createPool(1, 100);
+        pool.getObject(null);
+        long start = System.nanoTime();
+        try {
+            pool.getObject(null);
+            fail("Pool should be exhausted");
+        } catch (PoolException expected) {
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Waited " + waited + "ms", waited >= 90);
+        }
+        assertEquals(0, pool.getWaitCount());
+    }
+
+    @Test
+    public void testReturnedObjectIsHandedToWaitingThread() throws Exception {
+        ConcurrentPool pool = createPool(1, 0);
+        Object obj = pool.getObject(null);
+        Future<Object> waiter = executor.submit(() -> pool.getObject(null));
+        awaitWaiting(pool, 1);
+
+        pool.returnObject(obj);
+        assertSame(obj, waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, live.get());
+    }
+
+    @Test
+    public void testDestroyedObjectFreesPermit() throws Exception {
+        ConcurrentPool pool = createPool(1, 0);
+        Object obj = pool.getObject(null);
+        Future<Object> waiter = executor.submit(() -> pool.getObject(null));
+        awaitWaiting(pool, 1);
+
+        pool.destroyObject(obj);
+        Object created = waiter.get(5, TimeUnit.SECONDS);
+        assertNotSame(obj, created);
+        assertEquals(1, live.get());
+    }
+
+    @Test
+    public void testWaitingThreadsAreServedInArrivalOrder() throws Exception {
+        ConcurrentPool pool = createPool(1, 0);
+        Object obj = pool.getObject(null);
+        List<Integer> order = new ArrayList<>();
+        List<Future<?>> waiters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int index = i;
+            CountDownLatch started = new CountDownLatch(1);
+            waiters.add(executor.submit(() -> {
+                started.countDown();
+                Object taken = pool.getObject(null);
+                synchronized (order) {
+                    order.add(index);
+                }
+                pool.returnObject(taken);
+                return null;
+            }));
+            started.await();
+            awaitWaiting(pool, i + 1);
+        }
+
+        pool.returnObject(obj);
+        for (Future<?> waiter : waiters) {
+            waiter.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(Arrays.asList(0, 1, 2), order);
+    }
+
+    @Test
+    public void testNonBlockingPoolCreatesBeyondMaxPoolSize() throws Exception {
+        ConcurrentPool pool = createPool(1, -1);
+        Object first = pool.getObject(null);
+        Object second = pool.getObject(null);
+        assertEquals(2, live.get());
+
+        pool.returnObject(first);
+        pool.returnObject(second);
+        assertEquals("Only maxPoolSize objects should be kept", 1, pool.getSize());
+        assertEquals(1, live.get());
+    }
+
+    private ConcurrentPool createPool(int maxPoolSize, int maxWaitTimeInMillis) {
+        ConcurrentPool pool = new ConcurrentPool(1L, "test", factory, 0, 0, maxPoolSize, 0,
+            getClass().getClassLoader(), maxWaitTimeInMillis);
+        pool.poolProbeNotifier = new EjbPoolProbeProvider();
+        return pool;
+    }
+
+    private static void awaitWaiting(ConcurrentPool pool, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getWaitCount() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Thread did not start waiting");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
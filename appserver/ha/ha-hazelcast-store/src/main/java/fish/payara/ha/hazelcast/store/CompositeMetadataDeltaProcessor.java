@@ -0,0 +1,79 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.ha.hazelcast.store;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import org.glassfish.web.ha.session.management.CompositeMetadata;
+
+/**
+ * Applies the dirty state written by {@link CompositeMetadata#_storeable_writeState} onto the
+ * value held by the member owning the session, so only the changed attributes cross the wire.
+ * The same delta is applied to the backup copies.
+ */
+class CompositeMetadataDeltaProcessor<K> extends AbstractEntryProcessor<K, CompositeMetadata> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] delta;
+
+    CompositeMetadataDeltaProcessor(byte[] delta) {
+        super(true);
+        this.delta = delta;
+    }
+
+    @Override
+    public Object process(Map.Entry<K, CompositeMetadata> entry) {
+        CompositeMetadata metadata = entry.getValue();
+        if (metadata == null) {
+            metadata = new CompositeMetadata();
+        }
+        try {
+            metadata._storeable_readState(new ByteArrayInputStream(delta));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        entry.setValue(metadata);
+        return null;
+    }
+}
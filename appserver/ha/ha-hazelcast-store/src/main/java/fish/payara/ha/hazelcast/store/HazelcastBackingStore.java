@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -39,30 +39,64 @@
  */
 package fish.payara.ha.hazelcast.store;
 
+import com.hazelcast.core.EntryEvent;
 import com.hazelcast.core.IMap;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
 import fish.payara.nucleus.hazelcast.HazelcastCore;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.glassfish.ha.store.api.BackingStore;
 import org.glassfish.ha.store.api.BackingStoreException;
 import org.glassfish.ha.store.api.BackingStoreFactory;
+import org.glassfish.ha.store.api.Storeable;
+import org.glassfish.web.ha.session.management.CompositeMetadata;
 
 /**
+ * Backing store for replicated sessions held in a Hazelcast map.
+ * <p>
+ * Modified attribute sessions ({@link CompositeMetadata}) are saved as a delta which is merged on
+ * the owning member. Full session values can optionally be kept in a local near cache, sized by
+ * the {@value #NEAR_CACHE_SIZE_PROPERTY} system property, which is only worthwhile with sticky
+ * sessions. The near cache keeps the most recently used sessions, drops a session when another
+ * member changes or removes it, and is only used when the caller asks for a version which the
+ * cached value is at least as new as.
  *
  * @author steve
  */
 public class HazelcastBackingStore<K extends Serializable, V extends Serializable>
         extends BackingStore<K, V> {
 
+    public static final String NEAR_CACHE_SIZE_PROPERTY = "fish.payara.ha.hazelcast.nearCacheSize";
+
     private final BackingStoreFactory factory;
     private final HazelcastCore core;
     private final String storeName;
-    private IMap<K, V> imap;
+    private final Map<K, V> nearCache;
+    private volatile IMap<K, V> imap;
     private String instanceName;
+    private String listenerRegistration;
 
     public HazelcastBackingStore(BackingStoreFactory factory, String storeName, HazelcastCore core) {
+        this(factory, storeName, core, Integer.getInteger(NEAR_CACHE_SIZE_PROPERTY, 0));
+    }
+
+    public HazelcastBackingStore(BackingStoreFactory factory, String storeName, HazelcastCore core, int nearCacheSize) {
         this.factory = factory;
         this.storeName = storeName;
         this.core = core;
+        this.nearCache = nearCacheSize > 0 ? Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > nearCacheSize;
+            }
+        }) : null;
     }
 
     @Override
@@ -73,20 +107,40 @@ public class HazelcastBackingStore<K extends Serializable, V extends Serializabl
     @Override
     public V load(K k, String string) throws BackingStoreException {
         init();
-        return imap.get(k);
+        if (nearCache != null) {
+            V cached = nearCache.get(k);
+            if (cached != null && isCurrent(cached, string)) {
+                return cached;
+            }
+        }
+        V value = imap.get(k);
+        cache(k, value);
+        return value;
     }
 
     @Override
     public String save(K k, V v, boolean bln) throws BackingStoreException {
         init();
-        imap.set(k, v);
-        
+        if (v instanceof CompositeMetadata) {
+            // only the dirty attributes are sent, the owning member merges them into its copy
+            imap.executeOnKey(k, new CompositeMetadataDeltaProcessor<K>(writeState((CompositeMetadata) v)));
+            if (nearCache != null) {
+                nearCache.remove(k);
+            }
+        } else {
+            imap.set(k, v);
+            cache(k, v);
+        }
+
         return instanceName;
     }
 
     @Override
     public void remove(K k) throws BackingStoreException {
         init();
+        if (nearCache != null) {
+            nearCache.remove(k);
+        }
         imap.delete(k);
     }
 
@@ -96,17 +150,107 @@ public class HazelcastBackingStore<K extends Serializable, V extends Serializabl
         return imap.size();
     }
 
+    @Override
+    public void destroy() throws BackingStoreException {
+        if (imap != null && listenerRegistration != null) {
+            imap.removeEntryListener(listenerRegistration);
+            listenerRegistration = null;
+        }
+        if (nearCache != null) {
+            nearCache.clear();
+        }
+    }
+
     private void init() throws BackingStoreException {
         if(imap != null) {
             return;
         }
+        synchronized (this) {
+            if (imap == null) {
+                connect();
+            }
+        }
+    }
+
+    private void connect() throws BackingStoreException {
         if (!core.isEnabled()) {
             throw new BackingStoreException("Hazelcast is NOT Enabled please enable Hazelcast");
         }
         if(core.getInstance() == null) {
             throw new BackingStoreException("Hazelcast not yet initialized, cannot use sessions yet", new IllegalStateException("Initializing"));
         }
-        imap = core.getInstance().getMap(storeName);
+        IMap<K, V> map = core.getInstance().getMap(storeName);
         instanceName = core.getInstance().getLocalEndpoint().getUuid();
+        if (nearCache != null) {
+            listenerRegistration = map.addEntryListener(new NearCacheInvalidator(), false);
+        }
+        imap = map;
+    }
+
+    private void cache(K k, V v) {
+        if (nearCache == null) {
+            return;
+        }
+        if (!(v instanceof Storeable)) {
+            nearCache.remove(k);
+            return;
+        }
+        nearCache.put(k, v);
+    }
+
+    private static boolean isCurrent(Object cached, String version) {
+        if (version == null) {
+            // no version to check the cached value against
+            return false;
+        }
+        try {
+            return ((Storeable) cached)._storeable_getVersion() >= Long.parseLong(version);
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Drops near cached sessions which were changed by another member, removed or expired.
+     */
+    private class NearCacheInvalidator implements EntryUpdatedListener<K, V>, EntryRemovedListener<K, V>,
+            EntryEvictedListener<K, V>, EntryExpiredListener<K, V> {
+
+        @Override
+        public void entryUpdated(EntryEvent<K, V> event) {
+            // saves on this member already updated the near cache
+            if (!event.getMember().localMember()) {
+                invalidate(event);
+            }
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<K, V> event) {
+            invalidate(event);
+        }
+
+        @Override
+        public void entryEvicted(EntryEvent<K, V> event) {
+            invalidate(event);
+        }
+
+        @Override
+        public void entryExpired(EntryEvent<K, V> event) {
+            invalidate(event);
+        }
+
+        private void invalidate(EntryEvent<K, V> event) {
+            nearCache.remove(event.getKey());
+        }
+    }
+
+    private static byte[] writeState(CompositeMetadata metadata) throws BackingStoreException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            metadata._storeable_writeState(out);
+        } catch (IOException ex) {
+            throw new BackingStoreException("Unable to write session state", ex);
+        }
+        return out.toByteArray();
     }
 }
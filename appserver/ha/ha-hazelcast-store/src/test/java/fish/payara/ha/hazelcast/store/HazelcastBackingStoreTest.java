@@ -0,0 +1,235 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.ha.hazelcast.store;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import fish.payara.nucleus.hazelcast.HazelcastCore;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.ha.store.api.BackingStoreException;
+import org.glassfish.ha.store.api.BackingStoreFactory;
+import org.glassfish.ha.store.api.Storeable;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HazelcastBackingStoreTest {
+
+    private static final String STORE = "sessions";
+
+    private static HazelcastInstance local;
+    private static HazelcastInstance remote;
+
+    @BeforeClass
+    public static void startCluster() {
+        String group = UUID.randomUUID().toString();
+        local = Hazelcast.newHazelcastInstance(config(group));
+        remote = Hazelcast.newHazelcastInstance(config(group));
+    }
+
+    private static Config config(String group) {
+        Config config = new Config();
+        config.getGroupConfig().setName(group);
+        config.setProperty("hazelcast.logging.type", "jdk");
+        config.getNetworkConfig().setPort(5901);
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        return config;
+    }
+
+    @After
+    public void tearDown() {
+        local.getMap(STORE).clear();
+    }
+
+    @AfterClass
+    public static void stopCluster() {
+        if (remote != null) {
+            remote.shutdown();
+        }
+        if (local != null) {
+            local.shutdown();
+        }
+    }
+
+    private static HazelcastBackingStore<String, Session> store(int nearCacheSize) {
+        HazelcastCore core = mock(HazelcastCore.class);
+        when(core.isEnabled()).thenReturn(true);
+        when(core.getInstance()).thenReturn(local);
+        return new HazelcastBackingStore<>(mock(BackingStoreFactory.class), STORE, core, nearCacheSize);
+    }
+
+    @Test
+    public void loadWithVersionUsesNearCache() throws BackingStoreException {
+        HazelcastBackingStore<String, Session> store = store(10);
+        Session saved = new Session("a", 5);
+        store.save("s1", saved, true);
+
+        assertSame(saved, store.load("s1", "5"));
+        assertSame(saved, store.load("s1", "4"));
+    }
+
+    @Test
+    public void loadWithoutVersionReadsMap() throws BackingStoreException {
+        HazelcastBackingStore<String, Session> store = store(10);
+        store.save("s1", new Session("a", 5), true);
+        // a local write does not invalidate the near cache, only a check of the version does
+        local.<String, Session>getMap(STORE).set("s1", new Session("b", 5));
+
+        assertEquals("b", store.load("s1", null).value);
+    }
+
+    @Test
+    public void loadWithNewerVersionReadsMap() throws BackingStoreException {
+        HazelcastBackingStore<String, Session> store = store(10);
+        store.save("s1", new Session("a", 5), true);
+        local.<String, Session>getMap(STORE).set("s1", new Session("b", 6));
+
+        assertEquals("b", store.load("s1", "6").value);
+    }
+
+    @Test
+    public void remoteUpdateInvalidatesNearCache() throws Exception {
+        HazelcastBackingStore<String, Session> store = store(10);
+        store.save("s1", new Session("a", 5), true);
+        store.save("s2", new Session("a", 5), true);
+        remote.<String, Session>getMap(STORE).set("s1", new Session("b", 5));
+        remote.<String, Session>getMap(STORE).delete("s2");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!"b".equals(store.load("s1", "5").value) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("b", store.load("s1", "5").value);
+        while (store.load("s2", "5") != null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(null, store.load("s2", "5"));
+        store.destroy();
+    }
+
+    @Test
+    public void leastRecentlyUsedSessionIsEvicted() throws BackingStoreException {
+        HazelcastBackingStore<String, Session> store = store(2);
+        Session first = new Session("a", 1);
+        Session second = new Session("a", 1);
+        store.save("s1", first, true);
+        store.save("s2", second, true);
+        // s1 becomes the most recently used so s2 is dropped for s3
+        store.load("s1", "1");
+        store.save("s3", new Session("a", 1), true);
+
+        assertSame(first, store.load("s1", "1"));
+        assertNotSame(second, store.load("s2", "1"));
+    }
+
+    private static class Session implements Storeable {
+
+        private static final long serialVersionUID = 1L;
+
+        final String value;
+        private long version;
+
+        Session(String value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+
+        @Override
+        public long _storeable_getVersion() {
+            return version;
+        }
+
+        @Override
+        public void _storeable_setVersion(long version) {
+            this.version = version;
+        }
+
+        @Override
+        public long _storeable_getLastAccessTime() {
+            return 0;
+        }
+
+        @Override
+        public void _storeable_setLastAccessTime(long time) {
+        }
+
+        @Override
+        public long _storeable_getMaxIdleTime() {
+            return 0;
+        }
+
+        @Override
+        public void _storeable_setMaxIdleTime(long time) {
+        }
+
+        @Override
+        public String[] _storeable_getAttributeNames() {
+            return new String[0];
+        }
+
+        @Override
+        public boolean[] _storeable_getDirtyStatus() {
+            return new boolean[0];
+        }
+
+        @Override
+        public void _storeable_writeState(OutputStream out) throws IOException {
+        }
+
+        @Override
+        public void _storeable_readState(InputStream in) throws IOException {
+        }
+    }
+}
@@ -38,7 +38,7 @@
  * holder.
  */
 
-// Portions Copyright [2016-2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
 
 package com.sun.gjc.monitoring;
 
@@ -142,6 +142,42 @@ public class JdbcStatsProvider {
         }
     }
 
+    /**
+     * Whenever a batch of statement cache hits is reported, increment numStatementCacheHit count.
+     * @param poolName JdbcConnectionPool that has got the statement cache hit events.
+     * @param count number of statement cache hits
+     */
+    @ProbeListener(JdbcRAConstants.STATEMENT_CACHE_DOTTED_NAME + JdbcRAConstants.STATEMENT_CACHE_HITS)
+    public void statementCacheHitsEvent(@ProbeParam("poolName") String poolName,
+                                        @ProbeParam("appName") String appName,
+                                        @ProbeParam("moduleName") String moduleName,
+                                        @ProbeParam("count") int count
+                                        ) {
+
+        PoolInfo poolInfo = new PoolInfo(poolName, appName, moduleName);
+        if(this.poolInfo.equals(poolInfo)){
+            numStatementCacheHit.increment(count);
+        }
+    }
+
+    /**
+     * Whenever a batch of statement cache misses is reported, increment numStatementCacheMiss count.
+     * @param poolName JdbcConnectionPool that has got the statement cache miss events.
+     * @param count number of statement cache misses
+     */
+    @ProbeListener(JdbcRAConstants.STATEMENT_CACHE_DOTTED_NAME + JdbcRAConstants.STATEMENT_CACHE_MISSES)
+    public void statementCacheMissesEvent(@ProbeParam("poolName") String poolName,
+                                          @ProbeParam("appName") String appName,
+                                          @ProbeParam("moduleName") String moduleName,
+                                          @ProbeParam("count") int count
+                                          ) {
+
+        PoolInfo poolInfo = new PoolInfo(poolName, appName, moduleName);
+        if(this.poolInfo.equals(poolInfo)){
+            numStatementCacheMiss.increment(count);
+        }
+    }
+
     /**
      * Whenever a sql statement that is traced is to be cache for monitoring
      * purpose, the SQLTrace object is created for the specified sql and
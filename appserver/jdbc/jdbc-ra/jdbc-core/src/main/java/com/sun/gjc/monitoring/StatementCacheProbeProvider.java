@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2019] Payara Foundation and/or affiliates
 
 package com.sun.gjc.monitoring;
 
@@ -83,4 +84,36 @@ public class StatementCacheProbeProvider {
 
     }
 
+    /**
+     * Emits probe event/notification that the given connection pool
+     * <code>poolName</code>has got a number of statement cache hit events
+     *
+     * @param poolName for which statement cache hits occurred
+     * @param count number of times the statement cache was hit
+     */
+    @Probe(name=JdbcRAConstants.STATEMENT_CACHE_HITS)
+    public void statementCacheHitsEvent(@ProbeParam("poolName") String poolName,
+                                        @ProbeParam("appName") String appName,
+                                        @ProbeParam("moduleName") String moduleName,
+                                        @ProbeParam("count") int count
+                                        ) {
+
+    }
+
+    /**
+     * Emits probe event/notification that the given connection pool
+     * <code>poolName</code>has got a number of statement cache miss events
+     *
+     * @param poolName for which statement cache misses occurred
+     * @param count number of times the statement cache was missed
+     */
+    @Probe(name=JdbcRAConstants.STATEMENT_CACHE_MISSES)
+    public void statementCacheMissesEvent(@ProbeParam("poolName") String poolName,
+                                          @ProbeParam("appName") String appName,
+                                          @ProbeParam("moduleName") String moduleName,
+                                          @ProbeParam("count") int count
+                                          ) {
+
+    }
+
 }
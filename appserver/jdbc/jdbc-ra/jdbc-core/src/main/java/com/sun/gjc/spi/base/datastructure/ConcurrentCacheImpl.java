@@ -0,0 +1,334 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.gjc.spi.base.datastructure;
+
+import com.sun.gjc.monitoring.StatementCacheProbeProvider;
+import com.sun.gjc.spi.base.CacheObjectKey;
+import com.sun.gjc.spi.base.PreparedStatementWrapper;
+import com.sun.logging.LogDomains;
+import org.glassfish.resourcebase.resources.api.PoolInfo;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Statement cache that does not need to be wrapped in a {@link SynchronizedCache}.
+ * <p>
+ * Lookups go straight to a {@link ConcurrentHashMap}. When the cache is full a victim is chosen
+ * by a second chance scan over the insertion order: statements that are busy or have been hit
+ * since they were last looked at are moved to the back of the queue, so eviction is amortised
+ * constant time and never closes a statement that is in use. If no statement can be evicted the
+ * new statement is not cached, as in {@link FIXEDCacheImpl}.
+ * <p>
+ * Entries removed from the cache by a purge or replaced are marked dead rather than searched for
+ * in the eviction queue, and are skipped when polled. Once more dead entries than the cache can
+ * hold have built up they are swept from the queue in one pass.
+ * <p>
+ * Cache hits and misses are counted locally and reported to the monitoring probes in batches,
+ * at most {@value #REPORT_INTERVAL_MILLIS} milliseconds later and when the cache is cleared.
+ */
+public class ConcurrentCacheImpl implements Cache {
+
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+
+    protected static final Logger _logger = LogDomains.getLogger(ConcurrentCacheImpl.class, LogDomains.RSR_LOGGER);
+
+    // Caches with hits or misses that have not been reported yet
+    private static final ConcurrentLinkedQueue<ConcurrentCacheImpl> unreported = new ConcurrentLinkedQueue<ConcurrentCacheImpl>();
+
+    static {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statement-cache-stats-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleWithFixedDelay(ConcurrentCacheImpl::reportUnreported,
+                REPORT_INTERVAL_MILLIS, REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private final Map<CacheObjectKey, CacheEntry> cache = new ConcurrentHashMap<CacheObjectKey, CacheEntry>();
+    private final ConcurrentLinkedQueue<CacheEntry> evictionQueue = new ConcurrentLinkedQueue<CacheEntry>();
+    private final AtomicInteger deadEntries = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicBoolean reportScheduled = new AtomicBoolean();
+    private long reportedHits;
+    private long reportedMisses;
+    private final int maxSize;
+    private final PoolInfo poolInfo;
+    private StatementCacheProbeProvider probeProvider = null;
+
+    public ConcurrentCacheImpl(PoolInfo poolInfo, int maxSize) {
+        this.maxSize = maxSize;
+        this.poolInfo = poolInfo;
+        try {
+            probeProvider = new StatementCacheProbeProvider();
+        } catch (Exception ex) {
+            _logger.log(Level.FINE, "Unable to create statement cache probe provider", ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object checkAndUpdateCache(CacheObjectKey key) {
+        CacheEntry entry = cache.get(key);
+        if (entry != null) {
+            entry.referenced = true;
+            hits.increment();
+            scheduleReport();
+            return entry.entryObj;
+        }
+        misses.increment();
+        scheduleReport();
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToCache(CacheObjectKey key, Object o, boolean force) {
+        if (!force && cache.containsKey(key)) {
+            return;
+        }
+        if (cache.size() >= maxSize && !evict()) {
+            if (o instanceof PreparedStatementWrapper) {
+                ((PreparedStatementWrapper) o).setCached(false);
+            }
+            return;
+        }
+        CacheEntry entry = new CacheEntry(key, o);
+        if (force) {
+            CacheEntry replaced = cache.put(key, entry);
+            if (replaced != null) {
+                markDead(replaced);
+            }
+            evictionQueue.offer(entry);
+        } else if (cache.putIfAbsent(key, entry) == null) {
+            evictionQueue.offer(entry);
+        }
+    }
+
+    /**
+     * Removes the first statement found that is neither busy nor recently used and closes it.
+     *
+     * @return true if a statement was removed
+     */
+    private boolean evict() {
+        for (int attempts = 2 * maxSize + 1; attempts > 0; attempts--) {
+            CacheEntry entry = evictionQueue.poll();
+            if (entry == null) {
+                return false;
+            }
+            if (entry.dead) {
+                deadEntries.decrementAndGet();
+                continue;
+            }
+            if (entry.referenced || isBusy(entry)) {
+                entry.referenced = false;
+                evictionQueue.offer(entry);
+                continue;
+            }
+            if (cache.remove(entry.key, entry)) {
+                // polled already, so not counted as dead
+                entry.dead = true;
+                close(entry);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clears the statement cache
+     */
+    @Override
+    public void clearCache() {
+        if (_logger.isLoggable(Level.FINE)) {
+            _logger.fine("clearing objects in cache");
+        }
+        cache.clear();
+        evictionQueue.clear();
+        deadEntries.set(0);
+        reportCounts();
+    }
+
+    @Override
+    public void flushCache() {
+        Iterator<CacheEntry> entries = cache.values().iterator();
+        while (entries.hasNext()) {
+            CacheEntry entry = entries.next();
+            entries.remove();
+            close(entry);
+        }
+        evictionQueue.clear();
+        deadEntries.set(0);
+        reportCounts();
+    }
+
+    @Override
+    public void purge() {
+        evict();
+    }
+
+    // Used only for purging the bad statements.
+    @Override
+    public void purge(Object obj) {
+        Iterator<CacheEntry> entries = cache.values().iterator();
+        while (entries.hasNext()) {
+            CacheEntry entry = entries.next();
+            if (entry.entryObj == obj) {
+                if (_logger.isLoggable(Level.FINEST)) {
+                    _logger.log(Level.FINEST, "Purging an entry from cache");
+                }
+                entries.remove();
+                markDead(entry);
+                close(entry);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries in the statement cache
+     * @return has integer value
+     */
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public boolean isSynchronized() {
+        return true;
+    }
+
+    private void markDead(CacheEntry entry) {
+        entry.dead = true;
+        if (deadEntries.incrementAndGet() > maxSize) {
+            // amortised over the entries that died since the last sweep
+            for (Iterator<CacheEntry> queued = evictionQueue.iterator(); queued.hasNext();) {
+                if (queued.next().dead) {
+                    queued.remove();
+                    deadEntries.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void scheduleReport() {
+        if (!reportScheduled.get() && reportScheduled.compareAndSet(false, true)) {
+            unreported.offer(this);
+        }
+    }
+
+    /**
+     * Reports the hits and misses counted since the last report to the monitoring probes.
+     */
+    private synchronized void reportCounts() {
+        // counts made from here on schedule another report
+        reportScheduled.set(false);
+        long totalHits = hits.sum();
+        long totalMisses = misses.sum();
+        int newHits = (int) (totalHits - reportedHits);
+        int newMisses = (int) (totalMisses - reportedMisses);
+        reportedHits = totalHits;
+        reportedMisses = totalMisses;
+        if (probeProvider == null) {
+            return;
+        }
+        if (newHits > 0) {
+            probeProvider.statementCacheHitsEvent(poolInfo.getName(), poolInfo.getApplicationName(), poolInfo.getModuleName(), newHits);
+        }
+        if (newMisses > 0) {
+            probeProvider.statementCacheMissesEvent(poolInfo.getName(), poolInfo.getApplicationName(), poolInfo.getModuleName(), newMisses);
+        }
+    }
+
+    private static void reportUnreported() {
+        for (ConcurrentCacheImpl cache = unreported.poll(); cache != null; cache = unreported.poll()) {
+            cache.reportCounts();
+        }
+    }
+
+    private static boolean isBusy(CacheEntry entry) {
+        return entry.entryObj instanceof PreparedStatementWrapper
+                && ((PreparedStatementWrapper) entry.entryObj).isBusy();
+    }
+
+    private static void close(CacheEntry entry) {
+        try {
+            PreparedStatementWrapper ps = (PreparedStatementWrapper) entry.entryObj;
+            ps.setCached(false);
+            ps.close();
+        } catch (SQLException e) {
+            //ignore
+        }
+    }
+
+    private static class CacheEntry {
+        private final CacheObjectKey key;
+        private final Object entryObj;
+        private volatile boolean referenced;
+        private volatile boolean dead;
+
+        CacheEntry(CacheObjectKey key, Object o) {
+            this.key = key;
+            this.entryObj = o;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.persistence.eclipselink.cache.coordination;
+
+import org.eclipse.persistence.internal.helper.CustomObjectInputStream;
+import org.eclipse.persistence.internal.identitymaps.CacheId;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.internal.sessions.IdentityMapAccessor;
+import org.eclipse.persistence.sessions.coordination.Command;
+import org.eclipse.persistence.sessions.coordination.CommandManager;
+import org.eclipse.persistence.sessions.coordination.RemoteCommandManager;
+import org.eclipse.persistence.sessions.serializers.JavaSerializer;
+import org.eclipse.persistence.sessions.serializers.Serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Coordination command carrying the commands coalesced by a {@link CommandCoalescer}.
+ * <p>
+ * The commands are kept in a compact binary form: the commands which could not be merged
+ * as serialized by the sending {@link RemoteCommandManager}, followed by the ids of the
+ * objects to invalidate grouped by entity class.
+ */
+public class CoalescedCommand extends Command {
+
+    private static final long serialVersionUID = 1;
+
+    private static final byte NULL_ID = 0;
+    private static final byte LONG_ID = 1;
+    private static final byte INTEGER_ID = 2;
+    private static final byte STRING_ID = 3;
+    private static final byte CACHE_ID = 4;
+    private static final byte SERIALIZED_ID = 5;
+
+    /**
+     * The encoded commands and invalidations.
+     */
+    private final byte[] data;
+
+    CoalescedCommand(List<byte[]> commands, Map<String, Set<Object>> invalidations) {
+        this.data = encode(commands, invalidations);
+    }
+
+    /**
+     * Executes the coalesced commands in the order they were committed, then invalidates
+     * the merged objects and the query caches of their classes.
+     * @param session The session to execute the commands with.
+     */
+    @Override
+    public void executeWithSession(AbstractSession session) {
+        Contents contents = decode(session);
+        Serializer serializer = getSerializer(session);
+        for (byte[] command : contents.commands) {
+            session.processCommand(serializer.deserialize(command, session));
+        }
+        IdentityMapAccessor identityMapAccessor = session.getIdentityMapAccessorInstance();
+        for (Map.Entry<String, Set<Object>> invalidation : contents.invalidations.entrySet()) {
+            Class type = session.getDatasourcePlatform().getConversionManager()
+                .convertClassNameToClass(invalidation.getKey());
+            for (Object id : invalidation.getValue()) {
+                identityMapAccessor.invalidateObject(id, type);
+            }
+            identityMapAccessor.invalidateQueryCache(type);
+        }
+    }
+
+    /**
+     * Decodes the coalesced commands.
+     * @param session The session to resolve id classes with, may be null.
+     * @return The serialized commands and the ids to invalidate by class name.
+     */
+    Contents decode(AbstractSession session) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int commandCount = in.readInt();
+            List<byte[]> commands = new ArrayList<>(commandCount);
+            for (int i = 0; i < commandCount; i++) {
+                commands.add(readBytes(in));
+            }
+            int classCount = in.readInt();
+            Map<String, Set<Object>> invalidations = new LinkedHashMap<>();
+            for (int i = 0; i < classCount; i++) {
+                String className = in.readUTF();
+                int idCount = in.readInt();
+                Set<Object> ids = new LinkedHashSet<>();
+                for (int j = 0; j < idCount; j++) {
+                    ids.add(readId(in, session));
+                }
+                invalidations.put(className, ids);
+            }
+            return new Contents(commands, invalidations);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Unable to decode coalesced cache coordination commands", e);
+        }
+    }
+
+    /**
+     * @return The size of the encoded commands in bytes.
+     */
+    int getEncodedSize() {
+        return data.length;
+    }
+
+    private static Serializer getSerializer(AbstractSession session) {
+        CommandManager commandManager = session.getCommandManager();
+        if (commandManager instanceof RemoteCommandManager) {
+            Serializer serializer = ((RemoteCommandManager) commandManager).getSerializer();
+            if (serializer != null) {
+                return serializer;
+            }
+        }
+        return JavaSerializer.instance;
+    }
+
+    private static byte[] encode(List<byte[]> commands, Map<String, Set<Object>> invalidations) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(commands.size());
+            for (byte[] command : commands) {
+                writeBytes(out, command);
+            }
+            out.writeInt(invalidations.size());
+            for (Map.Entry<String, Set<Object>> invalidation : invalidations.entrySet()) {
+                out.writeUTF(invalidation.getKey());
+                out.writeInt(invalidation.getValue().size());
+                for (Object id : invalidation.getValue()) {
+                    writeId(out, id);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the common primary key types with a one byte tag instead of Java serialization.
+     */
+    private static void writeId(DataOutputStream out, Object id) throws IOException {
+        if (id == null) {
+            out.writeByte(NULL_ID);
+        } else if (id instanceof Long) {
+            out.writeByte(LONG_ID);
+            out.writeLong((Long) id);
+        } else if (id instanceof Integer) {
+            out.writeByte(INTEGER_ID);
+            out.writeInt((Integer) id);
+        } else if (id instanceof String) {
+            out.writeByte(STRING_ID);
+            writeBytes(out, ((String) id).getBytes(StandardCharsets.UTF_8));
+        } else if (id.getClass() == CacheId.class) {
+            Object[] primaryKey = ((CacheId) id).getPrimaryKey();
+            out.writeByte(CACHE_ID);
+            out.writeInt(primaryKey.length);
+            for (Object value : primaryKey) {
+                writeId(out, value);
+            }
+        } else {
+            ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(serialized)) {
+                objectOut.writeObject(id);
+            }
+            out.writeByte(SERIALIZED_ID);
+            writeBytes(out, serialized.toByteArray());
+        }
+    }
+
+    private static Object readId(DataInputStream in, AbstractSession session) throws IOException, ClassNotFoundException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL_ID:
+                return null;
+            case LONG_ID:
+                return in.readLong();
+            case INTEGER_ID:
+                return in.readInt();
+            case STRING_ID:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case CACHE_ID:
+                Object[] primaryKey = new Object[in.readInt()];
+                for (int i = 0; i < primaryKey.length; i++) {
+                    primaryKey[i] = readId(in, session);
+                }
+                return new CacheId(primaryKey);
+            case SERIALIZED_ID:
+                ByteArrayInputStream serialized = new ByteArrayInputStream(readBytes(in));
+                try (ObjectInputStream objectIn = session == null
+                        ? new ObjectInputStream(serialized)
+                        : new CustomObjectInputStream(serialized, session)) {
+                    return objectIn.readObject();
+                }
+            default:
+                throw new IOException("Unknown id tag " + tag);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * The decoded content of a {@link CoalescedCommand}.
+     */
+    static final class Contents {
+
+        private final List<byte[]> commands;
+        private final Map<String, Set<Object>> invalidations;
+
+        Contents(List<byte[]> commands, Map<String, Set<Object>> invalidations) {
+            this.commands = commands;
+            this.invalidations = invalidations;
+        }
+
+        List<byte[]> getCommands() {
+            return commands;
+        }
+
+        Map<String, Set<Object>> getInvalidations() {
+            return invalidations;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.persistence.eclipselink.cache.coordination;
+
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.internal.sessions.ObjectChangeSet;
+import org.eclipse.persistence.internal.sessions.UnitOfWorkChangeSet;
+import org.eclipse.persistence.sessions.coordination.Command;
+import org.eclipse.persistence.sessions.coordination.MergeChangeSetCommand;
+import org.eclipse.persistence.sessions.coordination.ServiceId;
+import org.eclipse.persistence.sessions.serializers.Serializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the coordination commands of a short window into one {@link CoalescedCommand}.
+ * <p>
+ * Change sets which only invalidate objects are merged by entity class and id, so an
+ * object changed by many transactions in the window is invalidated once. Any other
+ * command is kept in commit order. The window starts with the first command after a
+ * publish and is cut short once it holds the maximum number of commands.
+ */
+final class CommandCoalescer {
+
+    private static final Logger LOG = Logger.getLogger(CommandCoalescer.class.getName());
+
+    private final Serializer serializer;
+    private final AbstractSession session;
+    private final long window;
+    private final int maxCommands;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<CoalescedCommand> publisher;
+
+    /**
+     * Guards the pending commands, publishing is guarded by this coalescer.
+     */
+    private final Object lock = new Object();
+    private List<byte[]> commands = new ArrayList<>();
+    private Map<String, Set<Object>> invalidations = new LinkedHashMap<>();
+    private int pending;
+    private ScheduledFuture<?> scheduledPublish;
+    private ServiceId serviceId;
+
+    /**
+     * @param serializer The serializer of the command manager.
+     * @param session The session of the command manager.
+     * @param window The maximum time in milliseconds a command waits to be published.
+     * @param maxCommands The number of commands to publish at once at most.
+     * @param scheduler Executor to publish the commands of a window with.
+     * @param publisher Receives the coalesced commands to publish.
+     */
+    CommandCoalescer(Serializer serializer, AbstractSession session, long window, int maxCommands,
+            ScheduledExecutorService scheduler, Consumer<CoalescedCommand> publisher) {
+        this.serializer = serializer;
+        this.session = session;
+        this.window = window;
+        this.maxCommands = maxCommands;
+        this.scheduler = scheduler;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Adds the command to the current window.
+     * @param command The {@link Command} or its serialized bytes.
+     * @return False if the command is internal to the command manager and has to be published on its own,
+     * after the commands of the current window have been published.
+     */
+    boolean add(Object command) {
+        byte[] bytes = null;
+        Command coordinationCommand;
+        if (command instanceof byte[]) {
+            bytes = (byte[]) command;
+            coordinationCommand = (Command) serializer.deserialize(bytes, session);
+        } else {
+            coordinationCommand = (Command) command;
+        }
+        if (coordinationCommand.isInternalCommand()) {
+            publish();
+            return false;
+        }
+
+        List<ObjectChangeSet> invalidated = getInvalidatedObjects(coordinationCommand);
+        if (invalidated == null && bytes == null) {
+            bytes = (byte[]) serializer.serialize(coordinationCommand, session);
+        }
+
+        boolean full;
+        synchronized (lock) {
+            if (invalidated != null) {
+                for (ObjectChangeSet changeSet : invalidated) {
+                    invalidations.computeIfAbsent(changeSet.getClassName(), className -> new LinkedHashSet<>())
+                        .add(changeSet.getId());
+                }
+            } else {
+                commands.add(bytes);
+            }
+            serviceId = coordinationCommand.getServiceId();
+            full = ++pending >= maxCommands;
+            if (!full && scheduledPublish == null) {
+                scheduledPublish = scheduler.schedule(this::publishWindow, window, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full) {
+            publish();
+        }
+        return true;
+    }
+
+    /**
+     * Publishes the commands of the current window, if any.
+     */
+    synchronized void publish() {
+        CoalescedCommand coalesced;
+        synchronized (lock) {
+            if (scheduledPublish != null) {
+                scheduledPublish.cancel(false);
+                scheduledPublish = null;
+            }
+            if (pending == 0) {
+                return;
+            }
+            coalesced = new CoalescedCommand(commands, invalidations);
+            coalesced.setServiceId(serviceId);
+            commands = new ArrayList<>();
+            invalidations = new LinkedHashMap<>();
+            pending = 0;
+        }
+        publisher.accept(coalesced);
+    }
+
+    private void publishWindow() {
+        try {
+            publish();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Failed to publish coalesced cache coordination commands", e);
+        }
+    }
+
+    /**
+     * Returns the changed objects, if the command only invalidates existing objects.
+     * @param command The command to check.
+     * @return The change sets of the invalidated objects or null.
+     */
+    private static List<ObjectChangeSet> getInvalidatedObjects(Command command) {
+        if (!(command instanceof MergeChangeSetCommand)) {
+            return null;
+        }
+        UnitOfWorkChangeSet changeSet = ((MergeChangeSetCommand) command).getChangeSet(null);
+        if (changeSet == null || changeSet.hasDeletedObjects()) {
+            return null;
+        }
+        List<ObjectChangeSet> invalidated = new ArrayList<>(changeSet.getAllChangeSets().size());
+        for (ObjectChangeSet objectChangeSet : changeSet.getAllChangeSets().keySet()) {
+            if (objectChangeSet.getSynchronizationType() != ClassDescriptor.INVALIDATE_CHANGED_OBJECTS
+                    || objectChangeSet.isNew() || objectChangeSet.isAggregate()
+                    || objectChangeSet.getId() == null) {
+                return null;
+            }
+            invalidated.add(objectChangeSet);
+        }
+        return invalidated;
+    }
+}
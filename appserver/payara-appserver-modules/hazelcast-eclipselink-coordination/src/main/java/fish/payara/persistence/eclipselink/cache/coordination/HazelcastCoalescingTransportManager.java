@@ -0,0 +1,67 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.persistence.eclipselink.cache.coordination;
+
+/**
+ * Hazelcast based transport manager publishing the coordination commands of a short window
+ * as one {@link CoalescedCommand} instead of one message per command.
+ * <p>
+ * The window in milliseconds is set with the {@value #WINDOW_PROPERTY} system property
+ * and the number of commands published at once at most with {@value #MAX_COMMANDS_PROPERTY}.
+ */
+public class HazelcastCoalescingTransportManager extends HazelcastPublishingTransportManager {
+
+    public static final String WINDOW_PROPERTY = "fish.payara.eclipselink.cache.coordination.window";
+    public static final String MAX_COMMANDS_PROPERTY = "fish.payara.eclipselink.cache.coordination.maxcommands";
+
+    private static final long DEFAULT_WINDOW = 10;
+    private static final int DEFAULT_MAX_COMMANDS = 1000;
+
+    /**
+     * Creates the hz connection coalescing the commands.
+     */
+    @Override
+    public void createLocalConnection() {
+        this.connection = new HazelcastTopicRemoteConnection(this.getRemoteCommandManager(),
+            Long.getLong(WINDOW_PROPERTY, DEFAULT_WINDOW),
+            Integer.getInteger(MAX_COMMANDS_PROPERTY, DEFAULT_MAX_COMMANDS));
+    }
+
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -57,7 +57,7 @@ public class HazelcastPublishingTransportManager extends BroadcastTransportManag
     /**
      * The connection with the hz topic.
      */
-    private HazelcastTopicRemoteConnection connection;
+    protected HazelcastTopicRemoteConnection connection;
 
     public HazelcastPublishingTransportManager() {
         super();
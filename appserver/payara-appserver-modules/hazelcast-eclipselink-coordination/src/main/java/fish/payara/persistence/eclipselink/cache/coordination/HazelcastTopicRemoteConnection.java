@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -42,9 +42,12 @@ package fish.payara.persistence.eclipselink.cache.coordination;
 import com.hazelcast.core.MessageListener;
 import fish.payara.nucleus.eventbus.ClusterMessage;
 import fish.payara.nucleus.eventbus.MessageReceiver;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
 import org.eclipse.persistence.internal.sessions.coordination.broadcast.BroadcastRemoteConnection;
 import org.eclipse.persistence.sessions.coordination.Command;
 import org.eclipse.persistence.sessions.coordination.RemoteCommandManager;
+import org.eclipse.persistence.sessions.serializers.JavaSerializer;
+import org.eclipse.persistence.sessions.serializers.Serializer;
 
 /**
  * Hazelcast {@link BroadcastRemoteConnection} implementing the HZ {@link MessageListener} interface.
@@ -57,10 +60,33 @@ public class HazelcastTopicRemoteConnection extends BroadcastRemoteConnection im
      * The topic to publish commands to and receive messages from.
      */
     private final HazelcastTopic topic;
+    /**
+     * Coalesces the commands to publish, null if each command is published on its own.
+     */
+    private final CommandCoalescer coalescer;
 
     HazelcastTopicRemoteConnection(RemoteCommandManager rcm) {
         super(rcm);
         this.topic = new HazelcastTopic(rcm.getChannel(), this);
+        this.coalescer = null;
+    }
+
+    /**
+     * Creates a connection publishing the commands of each window as one {@link CoalescedCommand}.
+     * @param rcm The {@link RemoteCommandManager} to propagate commands for.
+     * @param window The maximum time in milliseconds a command waits to be published.
+     * @param maxCommands The number of commands to publish at once at most.
+     */
+    HazelcastTopicRemoteConnection(RemoteCommandManager rcm, long window, int maxCommands) {
+        super(rcm);
+        this.topic = new HazelcastTopic(rcm.getChannel(), this);
+        Serializer serializer = rcm.getSerializer();
+        if (serializer == null) {
+            serializer = JavaSerializer.instance;
+        }
+        this.coalescer = new CommandCoalescer(serializer, (AbstractSession) rcm.getCommandProcessor(),
+            window, maxCommands, HazelcastTopicStorage.getInstance().getScheduledExecutorService(),
+            command -> this.topic.publish(new HazelcastPayload.Command(command)));
     }
 
     /**
@@ -76,10 +102,12 @@ public class HazelcastTopicRemoteConnection extends BroadcastRemoteConnection im
             if (this.rcm.shouldLogDebugMessage()) {
                 debugInfo = this.logDebugBeforePublish(null);
             }
-            if(Command.class.isAssignableFrom(o.getClass())) {
-                this.topic.publish(new HazelcastPayload.Command((Command) o));
-            } else if (o.getClass().isArray()) {
-                this.topic.publish(new HazelcastPayload.Bytes((byte[]) o));
+            if (this.coalescer == null || !this.coalescer.add(o)) {
+                if(Command.class.isAssignableFrom(o.getClass())) {
+                    this.topic.publish(new HazelcastPayload.Command((Command) o));
+                } else if (o.getClass().isArray()) {
+                    this.topic.publish(new HazelcastPayload.Bytes((byte[]) o));
+                }
             }
             if (debugInfo != null) {
                 this.logDebugAfterPublish(debugInfo, "");
@@ -90,6 +118,9 @@ public class HazelcastTopicRemoteConnection extends BroadcastRemoteConnection im
 
     @Override
     protected void closeInternal() throws Exception {
+        if (this.coalescer != null) {
+            this.coalescer.publish();
+        }
         this.topic.destroy();
     }
 
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -57,6 +57,7 @@ import javax.inject.Inject;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Represents a possibility to delay {@link MessageReceiver} registration.
@@ -162,6 +163,13 @@ public class HazelcastTopicStorage implements EventListener {
         return executorService.submit(work);
     }
 
+    /**
+     * @return The executor to schedule delayed work with.
+     */
+    ScheduledExecutorService getScheduledExecutorService() {
+        return executorService.getUnderlyingScheduledExecutorService();
+    }
+
     /**
      * Tries to register the message listener with the provided topic by its name.
      * @param topic The name of the topic to register the listener with.
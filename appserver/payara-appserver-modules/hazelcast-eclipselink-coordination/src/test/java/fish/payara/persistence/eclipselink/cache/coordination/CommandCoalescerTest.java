@@ -0,0 +1,256 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.persistence.eclipselink.cache.coordination;
+
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.internal.identitymaps.CacheId;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.internal.sessions.ObjectChangeSet;
+import org.eclipse.persistence.internal.sessions.UnitOfWorkChangeSet;
+import org.eclipse.persistence.sessions.coordination.Command;
+import org.eclipse.persistence.sessions.coordination.MergeChangeSetCommand;
+import org.eclipse.persistence.sessions.serializers.JavaSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandCoalescerTest {
+
+    private static final String ORDER = "com.example.Order";
+    private static final String CUSTOMER = "com.example.Customer";
+
+    private ScheduledExecutorService scheduler;
+    private final List<CoalescedCommand> published = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void invalidationsAreMergedPerEntityClass() {
+        CommandCoalescer coalescer = coalescer(10_000, 100);
+        coalescer.add(invalidate(ORDER, 1L, 2L));
+        coalescer.add(serialize(invalidate(ORDER, 2L, 3L)));
+        coalescer.add(invalidate(CUSTOMER, "alice"));
+        coalescer.add(invalidate(CUSTOMER, new CacheId(new Object[] {1, "bob"})));
+        coalescer.publish();
+
+        assertEquals(1, published.size());
+        Map<String, Set<Object>> invalidations = remote(published.get(0)).getInvalidations();
+        assertEquals(Arrays.asList(ORDER, CUSTOMER), new ArrayList<>(invalidations.keySet()));
+        assertEquals(Arrays.asList(1L, 2L, 3L), new ArrayList<>(invalidations.get(ORDER)));
+        assertEquals(Arrays.asList("alice", new CacheId(new Object[] {1, "bob"})),
+            new ArrayList<>(invalidations.get(CUSTOMER)));
+    }
+
+    @Test
+    public void otherCommandsAreKeptInOrder() {
+        CommandCoalescer coalescer = coalescer(10_000, 100);
+        coalescer.add(new TestCommand(1));
+        coalescer.add(invalidate(ORDER, 1L));
+        coalescer.add(serialize(new TestCommand(2)));
+        MergeChangeSetCommand changes = invalidate(ORDER, 2L);
+        changes.getChangeSet(null).getAllChangeSets().keySet().iterator().next()
+            .setSynchronizationType(ClassDescriptor.SEND_OBJECT_CHANGES);
+        coalescer.add(changes);
+        coalescer.publish();
+
+        assertEquals(1, published.size());
+        CoalescedCommand.Contents contents = remote(published.get(0));
+        assertEquals(3, contents.getCommands().size());
+        assertEquals(1, ((TestCommand) deserialize(contents.getCommands().get(0))).sequence);
+        assertEquals(2, ((TestCommand) deserialize(contents.getCommands().get(1))).sequence);
+        assertTrue(deserialize(contents.getCommands().get(2)) instanceof MergeChangeSetCommand);
+        assertEquals(Collections.singleton(1L), contents.getInvalidations().get(ORDER));
+    }
+
+    @Test
+    public void fullWindowIsPublishedImmediately() {
+        CommandCoalescer coalescer = coalescer(10_000, 3);
+        coalescer.add(invalidate(ORDER, 1L));
+        coalescer.add(invalidate(ORDER, 1L));
+        assertTrue(published.isEmpty());
+        coalescer.add(invalidate(ORDER, 1L));
+        assertEquals(1, published.size());
+    }
+
+    @Test
+    public void internalCommandsAreNotCoalesced() {
+        CommandCoalescer coalescer = coalescer(10_000, 100);
+        coalescer.add(invalidate(ORDER, 1L));
+        assertFalse(coalescer.add(new InternalCommand()));
+        assertEquals(1, published.size());
+    }
+
+    /**
+     * Commits from several threads invalidating a small set of hot objects, as a bulk update would,
+     * and reports the messages sent and the time until the remote cache is invalidated.
+     */
+    @Test
+    public void bulkInvalidationThroughput() throws Exception {
+        int threads = 8;
+        int commitsPerThread = 20_000;
+        long window = 5;
+        Map<Object, Long> committed = new ConcurrentHashMap<>();
+        AtomicLong maxLatency = new AtomicLong();
+        CommandCoalescer coalescer = new CommandCoalescer(JavaSerializer.instance, null, window, 1000, scheduler,
+            command -> {
+                published.add(command);
+                long received = System.nanoTime();
+                for (Set<Object> ids : remote(command).getInvalidations().values()) {
+                    for (Object id : ids) {
+                        Long commit = committed.remove(id);
+                        if (commit != null) {
+                            maxLatency.accumulateAndGet(received - commit, Math::max);
+                        }
+                    }
+                }
+            });
+
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                for (int i = 0; i < commitsPerThread; i++) {
+                    long id = (thread * 31L + i) % 500;
+                    committed.putIfAbsent(id, System.nanoTime());
+                    coalescer.add(invalidate(ORDER, id));
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        coalescer.publish();
+
+        int commits = threads * commitsPerThread;
+        double seconds = elapsed / 1e9;
+        System.out.printf("%d commits in %.0f ms: %.0f commits/s sent as %d messages (%.0f messages/s), "
+                + "max time to remote invalidation %.1f ms%n",
+            commits, seconds * 1000, commits / seconds, published.size(), published.size() / seconds,
+            maxLatency.get() / 1e6);
+
+        assertTrue(committed.isEmpty());
+        assertTrue(published.size() < commits / 10);
+        assertTrue(maxLatency.get() < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    private CommandCoalescer coalescer(long window, int maxCommands) {
+        return new CommandCoalescer(JavaSerializer.instance, null, window, maxCommands, scheduler, published::add);
+    }
+
+    /**
+     * Decodes the command after sending it the way the topic does.
+     */
+    private static CoalescedCommand.Contents remote(CoalescedCommand command) {
+        return ((CoalescedCommand) deserialize(serialize(command))).decode(null);
+    }
+
+    private static MergeChangeSetCommand invalidate(String className, Object... ids) {
+        UnitOfWorkChangeSet changeSet = new UnitOfWorkChangeSet();
+        for (Object id : ids) {
+            ObjectChangeSet objectChangeSet = new ObjectChangeSet();
+            objectChangeSet.setClassName(className);
+            objectChangeSet.setId(id);
+            objectChangeSet.setSynchronizationType(ClassDescriptor.INVALIDATE_CHANGED_OBJECTS);
+            changeSet.getAllChangeSets().put(objectChangeSet, objectChangeSet);
+        }
+        MergeChangeSetCommand command = new MergeChangeSetCommand();
+        command.setChangeSet(changeSet);
+        return command;
+    }
+
+    private static byte[] serialize(Object object) {
+        return (byte[]) JavaSerializer.instance.serialize(object, null);
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        return JavaSerializer.instance.deserialize(bytes, null);
+    }
+
+    private static class TestCommand extends Command {
+
+        private final int sequence;
+
+        TestCommand(int sequence) {
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void executeWithSession(AbstractSession session) {
+        }
+    }
+
+    private static class InternalCommand extends Command {
+
+        @Override
+        public void executeWithSession(AbstractSession session) {
+        }
+
+        @Override
+        public boolean isInternalCommand() {
+            return true;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -39,7 +39,10 @@
  */
 package fish.payara.ejb.timer.hazelcast;
 
+import com.hazelcast.aggregation.Aggregators;
 import com.hazelcast.core.IMap;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
 import com.sun.ejb.containers.BaseContainer;
 import com.sun.ejb.containers.EJBTimerSchedule;
 import com.sun.ejb.containers.EJBTimerService;
@@ -76,12 +79,13 @@ import org.glassfish.ejb.deployment.descriptor.ScheduledTimerDescriptor;
 public class HazelcastTimerStore extends NonPersistentEJBTimerService {
 
     private static final String EJB_TIMER_CACHE_NAME = "HZEjbTmerCache";
-    private static final String EJB_TIMER_CONTAINER_CACHE_NAME = "HZEjbTmerContainerCache";
-    private static final String EJB_TIMER_APPLICAION_CACHE_NAME = "HZEjbTmerApplicationCache";
 
-    private final IMap pkCache;
-    private final IMap containerCache;
-    private final IMap applicationCache;
+    private static final String MEMBER_NAME_ATTRIBUTE = "memberName";
+    private static final String OWNER_ID_ATTRIBUTE = "ownerId";
+    private static final String CONTAINER_ID_ATTRIBUTE = "containerId";
+    private static final String APPLICATION_ID_ATTRIBUTE = "applicationId";
+
+    private final IMap<String, HZTimer> pkCache;
     private final String serverName;
 
     private static final Logger logger
@@ -101,16 +105,57 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
             throw new Exception("Hazelcast MUST be enabled when using the HazelcastTimerStore");
         }
         pkCache = core.getInstance().getMap(EJB_TIMER_CACHE_NAME);
-        containerCache = core.getInstance().getMap(EJB_TIMER_CONTAINER_CACHE_NAME);
-        applicationCache = core.getInstance().getMap(EJB_TIMER_APPLICAION_CACHE_NAME);
+        addIndexes(pkCache);
         serverName = core.getInstance().getCluster().getLocalMember().getStringAttribute(HazelcastCore.INSTANCE_ATTRIBUTE);
         this.ownerIdOfThisServer_ = serverName;
         this.domainName_ = core.getInstance().getConfig().getGroupConfig().getName();
     }
 
+    /**
+     * Adds the indexes used to find the timers of one member, owner, container or application
+     * without deserializing every timer in the cluster.
+     */
+    static void addIndexes(IMap<String, HZTimer> timers) {
+        timers.addIndex(MEMBER_NAME_ATTRIBUTE, false);
+        timers.addIndex(OWNER_ID_ATTRIBUTE, false);
+        timers.addIndex(CONTAINER_ID_ATTRIBUTE, false);
+        timers.addIndex(APPLICATION_ID_ATTRIBUTE, false);
+    }
+
+    static Predicate<String, HZTimer> ofContainer(long containerId) {
+        return Predicates.equal(CONTAINER_ID_ATTRIBUTE, containerId);
+    }
+
+    static Predicate<String, HZTimer> ofApplication(long applicationId) {
+        return Predicates.equal(APPLICATION_ID_ATTRIBUTE, applicationId);
+    }
+
+    static Predicate<String, HZTimer> ofMember(String memberName) {
+        return Predicates.equal(MEMBER_NAME_ATTRIBUTE, memberName);
+    }
+
+    /**
+     * Finds the ids of the timers matching the predicate through the indexes.
+     */
+    static Set<TimerPrimaryKey> findTimerIds(IMap<String, HZTimer> timers, Predicate<String, HZTimer> predicate) {
+        Set<TimerPrimaryKey> result = new HashSet<>();
+        for (String timerId : timers.keySet(predicate)) {
+            result.add(new TimerPrimaryKey(timerId));
+        }
+        return result;
+    }
+
+    /**
+     * Counts the timers of a member on the members holding them.
+     */
+    static long countTimers(IMap<String, HZTimer> timers, String memberName) {
+        Long count = timers.aggregate(Aggregators.<Map.Entry<String, HZTimer>>count(), ofMember(memberName));
+        return count == null ? 0 : count;
+    }
+
     private void removeTimers(Set<TimerPrimaryKey> timerIdsToRemove) {
         for (TimerPrimaryKey timerPrimaryKey : timerIdsToRemove) {
-            removeTimer((HZTimer) pkCache.get(timerPrimaryKey.timerId));
+            pkCache.remove(timerPrimaryKey.timerId);
         }
     }
 
@@ -120,22 +165,6 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
             
             pkCache.put(timerId.timerId, new HZTimer(timerId, containerId, applicationId, timedObjectPrimaryKey, server_name, server_name, initialExpiration, intervalDuration, schedule, timerConfig));
 
-            // add to container cache
-            HashSet<TimerPrimaryKey> keysForContainer = (HashSet<TimerPrimaryKey>) containerCache.get(containerId);
-            if (keysForContainer == null) {
-                keysForContainer = new HashSet<>();
-            }
-            keysForContainer.add(timerId);
-            containerCache.put(containerId, keysForContainer);
-
-            // add to application cache
-            HashSet<TimerPrimaryKey> keysForApp = (HashSet<TimerPrimaryKey>) applicationCache.get(applicationId);
-            if (keysForApp == null) {
-                keysForApp = new HashSet<>();
-            }
-            keysForApp.add(timerId);
-            applicationCache.put(applicationId, keysForApp);
-
             TransactionManager tm = ejbContainerUtil.getTransactionManager();
             boolean localTx = tm.getTransaction() == null;
 
@@ -161,38 +190,33 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     public void destroyAllTimers(long applicationId) {
 
         // remove all timers
-        Set<TimerPrimaryKey> timerIds = (Set<TimerPrimaryKey>) applicationCache.get(applicationId);
+        Set<TimerPrimaryKey> timerIds = findTimerIds(pkCache, ofApplication(applicationId));
 
-        if (timerIds == null || timerIds.isEmpty()) {
+        if (timerIds.isEmpty()) {
             if (logger.isLoggable(Level.INFO)) {
                 logger.log(Level.INFO, "No timers to be deleted for id: " + applicationId);
             }
             return;
         }
 
-        for (TimerPrimaryKey timerId : timerIds) {
-            pkCache.remove(timerId.timerId);
-        }
+        removeTimers(timerIds);
         logger.log(Level.INFO, "Destroyed {0} timers for application {1}", new Object[]{timerIds.size(), applicationId});
-        timerIds.clear();
-        applicationCache.remove(applicationId);
 
     }
 
     @Override
     public void destroyTimers(long containerId) {
-        Set<TimerPrimaryKey> timerIds = (Set<TimerPrimaryKey>) containerCache.get(containerId);
+        Set<TimerPrimaryKey> timerIds = findTimerIds(pkCache, ofContainer(containerId));
 
-        if (timerIds == null || timerIds.isEmpty()) {
+        if (timerIds.isEmpty()) {
             if (logger.isLoggable(Level.INFO)) {
                 logger.log(Level.INFO, "No timers to be deleted for id: " + containerId);
             }
             return;
         }
 
+        removeTimers(timerIds);
         logger.log(Level.INFO, "Destroyed {0} timers for container {1}", new Object[]{timerIds.size(), containerId});
-        timerIds.clear();
-        applicationCache.put(containerId, timerIds);
     }
 
     @Override
@@ -200,7 +224,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         // Check non-persistent timers first
         if (!cancelNonPersistentTimer(timerId)) {
 
-            HZTimer timer = (HZTimer) pkCache.get(timerId.timerId);
+            HZTimer timer = pkCache.get(timerId.timerId);
             if (timer != null) {
 
                 TransactionManager tm = ejbContainerUtil.getTransactionManager();
@@ -225,7 +249,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
             return super.getInfo(timerId);
         }
 
-        HZTimer timer = (HZTimer) pkCache.get(timerId.timerId);
+        HZTimer timer = pkCache.get(timerId.timerId);
 
         if (timer == null) {
             throw new FinderException("Unable to find timer " + timerId);
@@ -269,19 +293,9 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         // Get *all* timers for this entity bean identity.  This includes
         // even timers *not* owned by this server instance, but that 
         // are associated with the same entity bean and primary key.
-        Collection<TimerPrimaryKey> timers = (Collection<TimerPrimaryKey>) containerCache.get(containerId);
-
-        if (timers != null) {
-            HashSet<HZTimer> timersToCancel = new HashSet<>();
-            for (TimerPrimaryKey timer : timers) {
-                HZTimer hzTimer = (HZTimer) pkCache.get(((TimerPrimaryKey)primaryKey).timerId);
-                if (hzTimer != null && hzTimer.getTimedObjectPk().equals(primaryKey)) {
-                    timersToCancel.add(hzTimer);
-                }
-            }
-
-            for (HZTimer hZTimer : timersToCancel) {
-                removeTimer(hZTimer);
+        for (HZTimer hzTimer : pkCache.values(ofContainer(containerId))) {
+            if (primaryKey.equals(hzTimer.getTimedObjectPk())) {
+                removeTimer(hzTimer);
             }
         }
     }
@@ -291,9 +305,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         TransactionManager tm = ejbContainerUtil.getTransactionManager();
         try {
             tm.begin();
-            Collection<TimerPrimaryKey> keys = (Collection<TimerPrimaryKey>) containerCache.get(containerId);
-
-            if (keys == null || keys.isEmpty()) {
+            if (pkCache.keySet(ofContainer(containerId)).isEmpty()) {
                 // No timers owned by this EJB
                 createSchedules(containerId, applicationId, methodDescriptorSchedules, null, server_name, false, true);
             }
@@ -338,7 +350,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     @Override
     protected void expungeTimer(TimerPrimaryKey timerId, boolean removeTimerBean) {
 
-        HZTimer timer = (HZTimer) pkCache.get(timerId.timerId);
+        HZTimer timer = pkCache.get(timerId.timerId);
         if (timer != null) {
             removeTimer(timer);
         }
@@ -350,11 +362,8 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     @Override
     protected Collection<TimerPrimaryKey> getTimerIds(Collection<Long> containerIds) {
         Collection<TimerPrimaryKey> result = super.getTimerIds(containerIds);
-        for (Long containerId : containerIds) {
-            Collection<TimerPrimaryKey> colKeys = (Collection<TimerPrimaryKey>) containerCache.get(containerId);
-            if (colKeys != null) {
-                result.addAll(colKeys);
-            }
+        if (!containerIds.isEmpty()) {
+            result.addAll(findTimerIds(pkCache, Predicates.in(CONTAINER_ID_ATTRIBUTE, containerIds.toArray(new Long[containerIds.size()]))));
         }
         return result;
     }
@@ -371,20 +380,11 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
                 = new HashSet<TimerPrimaryKey>();
 
         if (timedObjectPrimaryKey == null) {
-            Collection<TimerPrimaryKey> contKeys = (Collection<TimerPrimaryKey>) containerCache.get(containerId);
-            if (contKeys != null) {
-                timerIdsForTimedObject.addAll(contKeys);
-            }
+            timerIdsForTimedObject.addAll(findTimerIds(pkCache, ofContainer(containerId)));
         } else {
-
-            Collection<TimerPrimaryKey> timersForTimedObject = (Collection<TimerPrimaryKey>) containerCache.get(containerId);
-            if (timersForTimedObject != null) {
-                for (TimerPrimaryKey timer : timersForTimedObject) {
-                    HZTimer hzTimer = (HZTimer) pkCache.get(timer.timerId);
-                    if (hzTimer != null && hzTimer.getTimedObjectPk().equals(timedObjectPrimaryKey)) {
-                        timerIdsForTimedObject.add(timer);
-                    }
-
+            for (HZTimer hzTimer : pkCache.values(ofContainer(containerId))) {
+                if (timedObjectPrimaryKey.equals(hzTimer.getTimedObjectPk())) {
+                    timerIdsForTimedObject.add(hzTimer.getKey());
                 }
             }
         }
@@ -462,7 +462,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     protected boolean isValidTimerForThisServer(TimerPrimaryKey timerId, RuntimeTimerState timerState) {
         boolean result = true;
         if (timerState.isPersistent()) {
-            HZTimer timer = (HZTimer) pkCache.get(timerId.timerId);
+            HZTimer timer = pkCache.get(timerId.timerId);
             if (timer == null || !timer.getMemberName().equals(serverName)) {
                 result = false;
             }
@@ -474,26 +474,9 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     public String[] listTimers(String[] serverIds) {
         String result[] = new String[serverIds.length];
 
-        // count all server ids
-        HashMap<String, Long> counts = new HashMap<>();
-        for (Object timer : pkCache.values()) {
-            HZTimer hzTimer = (HZTimer) timer;
-            String serverName = hzTimer.getMemberName();
-            Long val = counts.get(serverName);
-            if (val == null) {
-                val = new Long(0);
-            }
-            counts.put(serverName, new Long(val.intValue() + 1));
-        }
-
-        // copy counts into the strings
+        // count the timers of each server on the members holding them
         for (int i = 0; i < serverIds.length; i++) {
-            Long count = counts.get(serverIds[i]);
-            if (count != null) {
-                result[i] = counts.get(serverIds[i]).toString();
-            } else {
-                result[i] = "0";
-            }
+            result[i] = Long.toString(countTimers(pkCache, serverIds[i]));
         }
         return result;
     }
@@ -521,20 +504,17 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         HashMap<String, HZTimer> toRestore = new HashMap<>();
         int totalTimersMigrated = 0;
 
-        for (String pk : (Collection<String>) pkCache.keySet()) {
-            HZTimer hZTimer = (HZTimer) pkCache.get(pk);
-            if (hZTimer.getOwnerId().equals(fromOwnerId)) {
-                toRestore.put(pk, hZTimer);
-                hZTimer.setOwnerId(ownerIdOfThisServer);
-                hZTimer.setMemberName(serverName);
+        // change the owner in place on the members holding the timers of the old owner
+        Map<String, Object> migrated = pkCache.executeOnEntries(
+                new MigrateTimerEntryProcessor(fromOwnerId, ownerIdOfThisServer, serverName),
+                Predicates.equal(OWNER_ID_ATTRIBUTE, fromOwnerId));
+        for (Map.Entry<String, Object> entry : migrated.entrySet()) {
+            if (entry.getValue() != null) {
+                toRestore.put(entry.getKey(), (HZTimer) entry.getValue());
+                totalTimersMigrated++;
             }
         }
 
-        for (String pk : toRestore.keySet()) {
-            pkCache.put(pk, toRestore.get(pk));
-            totalTimersMigrated++;
-        }
-
 // XXX if( totalTimersMigrated  == toRestore.size() ) { XXX ???
         if (totalTimersMigrated > 0) {
 
@@ -589,27 +569,9 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         boolean lostCluster = false;
         Set<HZTimer> activeTimers = new HashSet<>();
 
-        // get all timers for this container
-        Collection<TimerPrimaryKey> containerKeys = (Collection<TimerPrimaryKey>) containerCache.get(containerId);
-        Collection<TimerPrimaryKey> deadKeys = new HashSet<>();
-        if (containerKeys != null) {
-            for (TimerPrimaryKey containerKey : containerKeys) {
-                HZTimer timer = (HZTimer) pkCache.get(containerKey.timerId);
-                if (timer != null && timer.getMemberName().equals(this.serverName)) {
-                    activeTimers.add(timer);
-                } else if (timer == null) {
-                    deadKeys.add(containerKey);
-                }
-            }
-            if (!deadKeys.isEmpty()) {
-                // clean out dead keys
-                logger.info("Cleaning out " + deadKeys.size() + " dead timer ids from Container Cache ");
-                for (TimerPrimaryKey deadKey : deadKeys) {
-                    containerKeys.remove(deadKey);
-                }
-                containerCache.put(containerId, containerKeys);
-            }
-        } else if (containerKeys == null && deploy == false) {
+        // get the timers of this container run by this member
+        activeTimers.addAll(pkCache.values(Predicates.and(ofContainer(containerId), ofMember(this.serverName))));
+        if (activeTimers.isEmpty() && !deploy && pkCache.keySet(ofContainer(containerId)).isEmpty()) {
             // we are in trouble as we are not deploying but our keys are null
             // looks like we lost the whole cluster storage
             // recreate timers
@@ -669,7 +631,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     protected void resetLastExpiration(TimerPrimaryKey timerId, RuntimeTimerState timerState
     ) {
         if (timerState.isPersistent()) {
-            HZTimer timer = (HZTimer) pkCache.get(timerId.timerId);
+            HZTimer timer = pkCache.get(timerId.timerId);
             if (null == timer) {
                 return;
             }
@@ -717,7 +679,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
             // @@@ We can't assume this server instance owns the persistent timer
             // so always ask the database.  Investigate possible use of
             // timer cache for optimization.
-            HZTimer timer = (HZTimer) pkCache.get(timerId.timerId);
+            HZTimer timer = pkCache.get(timerId.timerId);
             if (timer != null) {
                 // Make sure timer hasn't been cancelled within the current tx.
                 exists = true;
@@ -731,11 +693,11 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     protected void stopTimers(long containerId
     ) {
         super.stopTimers(containerId);
-        stopTimers((Set<TimerPrimaryKey>) containerCache.get(containerId));
+        stopTimers(findTimerIds(pkCache, ofContainer(containerId)));
     }
 
     private HZTimer getPersistentTimer(TimerPrimaryKey timerId) throws FinderException {
-        HZTimer result = (HZTimer) pkCache.get(timerId.timerId);
+        HZTimer result = pkCache.get(timerId.timerId);
         if (result == null) {
             throw new FinderException("Unable to find timer " + timerId);
         }
@@ -744,18 +706,6 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
 
     private void removeTimer(HZTimer timer) {
         pkCache.remove(timer.getKey().timerId);
-
-        Collection<TimerPrimaryKey> keys = (Collection<TimerPrimaryKey>) applicationCache.get(timer.getApplicationId());
-        if (keys != null) {
-            keys.remove(timer.getKey());
-            applicationCache.put(timer.getApplicationId(), keys);
-        }
-
-        keys = (Collection<TimerPrimaryKey>) containerCache.get(timer.getContainerId());
-        if (keys != null) {
-            keys.remove(timer.getKey());
-            containerCache.put(timer.getContainerId(), keys);
-        }
     }
 
     /**
@@ -782,7 +732,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
 
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader(HazelcastTimerStore.class.getClassLoader());
-        HZTimer timer = (HZTimer) pkCache.get(timerId.timerId);
+        HZTimer timer = pkCache.get(timerId.timerId);
         if (timer != null && timer.getMemberName().equals(this.serverName)) {
             result = true;
         }
@@ -1162,13 +1112,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     }
 
     private Collection<HZTimer> findActiveTimersOwnedByThisServer() {
-        HashSet<HZTimer> result = new HashSet<>();
-        for (HZTimer timer : (Collection<HZTimer>) pkCache.values()) {
-            if (timer.getMemberName().equals(this.serverName)) {
-                result.add(timer);
-            }
-        }
-        return result;
+        return new HashSet<>(pkCache.values(ofMember(this.serverName)));
     }
 
     private boolean restoreEJBTimers() {
@@ -0,0 +1,154 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.ejb.timer.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.query.Predicates;
+import com.sun.ejb.containers.TimerPrimaryKey;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import javax.ejb.TimerConfig;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the indexed timer queries against a two member cluster holding 100,000 timers.
+ */
+public class HazelcastTimerStoreTest {
+
+    private static final int TIMERS = 100_000;
+    private static final int MEMBERS = 4;
+    private static final int APPLICATIONS = 10;
+    private static final int CONTAINERS = 100;
+
+    private static HazelcastInstance local;
+    private static HazelcastInstance remote;
+    private static IMap<String, HZTimer> timers;
+
+    @BeforeClass
+    public static void startCluster() {
+        String group = UUID.randomUUID().toString();
+        local = Hazelcast.newHazelcastInstance(config(group));
+        remote = Hazelcast.newHazelcastInstance(config(group));
+        timers = local.getMap("timers");
+        HazelcastTimerStore.addIndexes(timers);
+
+        TimerConfig timerConfig = new TimerConfig(null, true);
+        Date expiration = new Date();
+        Map<String, HZTimer> batch = new HashMap<>();
+        for (int i = 0; i < TIMERS; i++) {
+            String id = "timer-" + i;
+            String member = "member-" + (i % MEMBERS);
+            batch.put(id, new HZTimer(new TimerPrimaryKey(id), i % CONTAINERS, i % APPLICATIONS, null,
+                    member, member, expiration, 0, null, timerConfig));
+            if (batch.size() == 10_000) {
+                timers.putAll(batch);
+                batch.clear();
+            }
+        }
+        timers.putAll(batch);
+    }
+
+    private static Config config(String group) {
+        Config config = new Config();
+        config.getGroupConfig().setName(group);
+        config.setProperty("hazelcast.logging.type", "jdk");
+        config.getNetworkConfig().setPort(5911);
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        return config;
+    }
+
+    @AfterClass
+    public static void stopCluster() {
+        if (remote != null) {
+            remote.shutdown();
+        }
+        if (local != null) {
+            local.shutdown();
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void findTimersOfContainer() {
+        for (int container = 0; container < CONTAINERS; container++) {
+            Set<TimerPrimaryKey> ids = HazelcastTimerStore.findTimerIds(timers,
+                    HazelcastTimerStore.ofContainer(container));
+            assertEquals(TIMERS / CONTAINERS, ids.size());
+        }
+        assertTrue(HazelcastTimerStore.findTimerIds(timers, HazelcastTimerStore.ofContainer(CONTAINERS)).isEmpty());
+    }
+
+    @Test(timeout = 60_000)
+    public void findTimersOfApplication() {
+        Set<TimerPrimaryKey> ids = HazelcastTimerStore.findTimerIds(timers, HazelcastTimerStore.ofApplication(3));
+        assertEquals(TIMERS / APPLICATIONS, ids.size());
+        assertTrue(ids.contains(new TimerPrimaryKey("timer-3")));
+    }
+
+    @Test(timeout = 60_000)
+    public void countTimersOfMember() {
+        for (int member = 0; member < MEMBERS; member++) {
+            assertEquals(TIMERS / MEMBERS, HazelcastTimerStore.countTimers(timers, "member-" + member));
+        }
+        assertEquals(0, HazelcastTimerStore.countTimers(timers, "unknown"));
+    }
+
+    @Test(timeout = 60_000)
+    public void findTimersOfContainerOnMember() {
+        // Containers and members line up, as both counts divide the timer number
+        assertEquals(TIMERS / CONTAINERS, timers.values(Predicates.and(HazelcastTimerStore.ofContainer(1),
+                HazelcastTimerStore.ofMember("member-1"))).size());
+        assertTrue(timers.values(Predicates.and(HazelcastTimerStore.ofContainer(1),
+                HazelcastTimerStore.ofMember("member-2"))).isEmpty());
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -39,10 +39,11 @@
  */
 package fish.payara.microprofile.faulttolerance;
 
-import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState;
+import fish.payara.microprofile.faulttolerance.state.ClusteredStateSynchronizer;
+import fish.payara.microprofile.faulttolerance.state.FaultToleranceMethodState;
+import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
 
 /**
  *
@@ -52,16 +53,29 @@ public class FaultToleranceObject {
     
     private final boolean enabled;
     private final boolean metricsEnabled;
-    private final Map<Object, Map<String, CircuitBreakerState>> circuitBreakerStates;
-    private final Map<Object, Map<String, Semaphore>> bulkheadExecutionSemaphores;
-    private final Map<Object, Map<String, Semaphore>> bulkheadExecutionQueueSemaphores;
+    private final String applicationName;
+    private final ClusteredStateSynchronizer synchronizer;
+    private final Map<Object, Map<Method, FaultToleranceMethodState>> methodStates;
     
     public FaultToleranceObject(Boolean enabled, Boolean metricsEnabled) {
+        this(enabled, metricsEnabled, null, null);
+    }
+    
+    /**
+     * Creates the fault tolerance object of an application, sharing its state across the cluster if a synchronizer
+     * is given.
+     * @param enabled Whether fault tolerance is enabled for the application
+     * @param metricsEnabled Whether fault tolerance metrics are enabled for the application
+     * @param applicationName The name of the application
+     * @param synchronizer The synchronizer to share state with the cluster, or null to keep state local
+     */
+    public FaultToleranceObject(Boolean enabled, Boolean metricsEnabled, String applicationName,
+            ClusteredStateSynchronizer synchronizer) {
         this.enabled = enabled;
         this.metricsEnabled = metricsEnabled;
-        circuitBreakerStates = new ConcurrentHashMap<>();
-        bulkheadExecutionSemaphores = new ConcurrentHashMap<>();
-        bulkheadExecutionQueueSemaphores = new ConcurrentHashMap<>();
+        this.applicationName = applicationName;
+        this.synchronizer = synchronizer;
+        methodStates = new ConcurrentHashMap<>();
     }
 
     public boolean isEnabled() {
@@ -72,16 +86,37 @@ public class FaultToleranceObject {
         return metricsEnabled;
     }
 
-    public Map<Object, Map<String, CircuitBreakerState>> getCircuitBreakerStates() {
-        return circuitBreakerStates;
+    public boolean isClustered() {
+        return synchronizer != null;
     }
 
-    public Map<Object, Map<String, Semaphore>> getBulkheadExecutionSemaphores() {
-        return bulkheadExecutionSemaphores;
+    /**
+     * Gets the state of an annotated method of the given bean instance, registering it if it hasn't been already.
+     * @param invocationTarget The target object obtained from InvocationContext.getTarget()
+     * @param annotatedMethod The annotated method
+     * @return The state of the annotated method
+     */
+    public FaultToleranceMethodState getMethodState(Object invocationTarget, Method annotatedMethod) {
+        // Clustered state is shared by every instance of the bean, as it is shared with the other members anyway
+        Object stateOwner = synchronizer == null ? invocationTarget : FaultToleranceObject.class;
+        // Plain gets first, as computeIfAbsent locks the bin even when the key is present
+        Map<Method, FaultToleranceMethodState> targetStates = methodStates.get(stateOwner);
+        if (targetStates == null) {
+            targetStates = methodStates.computeIfAbsent(stateOwner, target -> new ConcurrentHashMap<>());
+        }
+        FaultToleranceMethodState methodState = targetStates.get(annotatedMethod);
+        if (methodState == null) {
+            methodState = targetStates.computeIfAbsent(annotatedMethod, this::createMethodState);
+        }
+        return methodState;
     }
 
-    public Map<Object, Map<String, Semaphore>> getBulkheadExecutionQueueSemaphores() {
-        return bulkheadExecutionQueueSemaphores;
+    private FaultToleranceMethodState createMethodState(Method annotatedMethod) {
+        if (synchronizer == null) {
+            return new FaultToleranceMethodState();
+        }
+        return new FaultToleranceMethodState(applicationName, applicationName + "#"
+                + FaultToleranceService.getFullMethodSignature(annotatedMethod), synchronizer);
     }
     
 }
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2017-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2017-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -40,9 +40,14 @@
 package fish.payara.microprofile.faulttolerance;
 
 import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState;
+import fish.payara.microprofile.faulttolerance.state.ClusteredStateSynchronizer;
+import fish.payara.microprofile.faulttolerance.state.FaultToleranceMethodState;
 import fish.payara.notification.requesttracing.RequestTraceSpan;
+import fish.payara.nucleus.executorservice.PayaraExecutorService;
+import fish.payara.nucleus.hazelcast.HazelcastCore;
 import fish.payara.nucleus.requesttracing.RequestTracingService;
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -63,6 +68,7 @@ import org.eclipse.microprofile.metrics.MetricRegistry;
 import org.glassfish.api.StartupRunLevel;
 import org.glassfish.api.admin.ServerEnvironment;
 import org.glassfish.api.event.EventListener;
+import org.glassfish.api.event.EventTypes;
 import org.glassfish.api.event.Events;
 import org.glassfish.api.invocation.InvocationManager;
 import org.glassfish.hk2.api.ServiceLocator;
@@ -84,6 +90,7 @@ public class FaultToleranceService implements EventListener {
     
     public static final String FAULT_TOLERANCE_ENABLED_PROPERTY = "MP_Fault_Tolerance_NonFallback_Enabled";
     public static final String METRICS_ENABLED_PROPERTY = "MP_Fault_Tolerance_Metrics_Enabled";
+    public static final String CLUSTERED_PROPERTY = "payara.faulttolerance.clustered";
     public static final String FALLBACK_HANDLER_METHOD_NAME = "handle";
     
     private static final Logger logger = Logger.getLogger(FaultToleranceService.class.getName());
@@ -104,6 +111,8 @@ public class FaultToleranceService implements EventListener {
     
     private final Map<String, FaultToleranceObject> faultToleranceObjects;
     
+    private ClusteredStateSynchronizer clusteredStateSynchronizer;
+    
     public FaultToleranceService() {
         faultToleranceObjects = new ConcurrentHashMap<>();
     }
@@ -120,6 +129,8 @@ public class FaultToleranceService implements EventListener {
         if (event.is(Deployment.APPLICATION_UNLOADED)) {
             ApplicationInfo info = (ApplicationInfo) event.hook();
             deregisterApplication(info.getName());
+        } else if (event.is(EventTypes.SERVER_SHUTDOWN)) {
+            shutdownClusteredStateSynchronizer();
         }
     }
     
@@ -170,12 +181,17 @@ public class FaultToleranceService implements EventListener {
         logger.log(Level.FINER, "Checking double lock to see if something else has added the application");
         if (!faultToleranceObjects.containsKey(applicationName)) {
             if (config != null) {
+                // Only share state across the cluster if the application asks for it
+                boolean clustered = config.getOptionalValue(CLUSTERED_PROPERTY, Boolean.class)
+                        .orElse(Boolean.FALSE);
                 // Set the enabled value to the override value from the config, or true if it isn't configured
                 faultToleranceObjects.put(applicationName, new FaultToleranceObject(
                         config.getOptionalValue(FAULT_TOLERANCE_ENABLED_PROPERTY, Boolean.class)
                                 .orElse(Boolean.TRUE), 
                         config.getOptionalValue(METRICS_ENABLED_PROPERTY, Boolean.class)
-                                .orElse(Boolean.TRUE)));
+                                .orElse(Boolean.TRUE),
+                        applicationName,
+                        clustered ? getClusteredStateSynchronizer() : null));
             } else {
                 logger.log(Level.FINE, "No config found, so enabling fault tolerance for application: {0}",
                         applicationName);
@@ -184,6 +200,19 @@ public class FaultToleranceService implements EventListener {
         }
     }
     
+    /**
+     * Gets the synchronizer used to share state across the cluster, creating it the first time an application asks
+     * for clustered state. Must be called while holding the lock of this service.
+     * @return The ClusteredStateSynchronizer
+     */
+    private ClusteredStateSynchronizer getClusteredStateSynchronizer() {
+        if (clusteredStateSynchronizer == null) {
+            clusteredStateSynchronizer = new ClusteredStateSynchronizer(habitat.getService(HazelcastCore.class),
+                    habitat.getService(PayaraExecutorService.class));
+        }
+        return clusteredStateSynchronizer;
+    }
+    
     /**
      * Gets the configured ManagedExecutorService.
      * @return The configured ManagedExecutorService, or the default ManagedExecutorService if the configured one 
@@ -255,75 +284,8 @@ public class FaultToleranceService implements EventListener {
      */
     public Semaphore getBulkheadExecutionSemaphore(String applicationName, Object invocationTarget, 
             Method annotatedMethod, int bulkheadValue) {
-        Semaphore bulkheadExecutionSemaphore;
-        String fullMethodSignature = getFullMethodSignature(annotatedMethod);
-        
-        Map<String, Semaphore> annotatedMethodSemaphores = null;
-        
-        try {
-            annotatedMethodSemaphores = faultToleranceObjects.get(applicationName).getBulkheadExecutionSemaphores()
-                    .get(invocationTarget);
-        } catch (NullPointerException npe) {
-            logger.log(Level.FINE, "NPE caught trying to get semaphores for annotated method", npe);
-        }
-        
-        // If there isn't a semaphore registered for this bean, register one, otherwise just return
-        // the one already registered
-        if (annotatedMethodSemaphores == null) {
-            logger.log(Level.FINER, "No matching application or bean in bulkhead execution semaphore map, registering...");
-            bulkheadExecutionSemaphore = createBulkheadExecutionSemaphore(applicationName, invocationTarget, 
-                    fullMethodSignature, bulkheadValue);
-        } else {
-            bulkheadExecutionSemaphore = annotatedMethodSemaphores.get(fullMethodSignature);
-        
-            // If there isn't a semaphore registered for this method signature, register one, otherwise just return
-            // the one already registered
-            if (bulkheadExecutionSemaphore == null) {
-                logger.log(Level.FINER, "No matching method signature in the bulkhead execution semaphore map, "
-                        + "registering...");
-                bulkheadExecutionSemaphore = createBulkheadExecutionSemaphore(applicationName, invocationTarget, 
-                        fullMethodSignature, bulkheadValue);
-            }
-        }
-        
-        return bulkheadExecutionSemaphore;
-    }
-    
-    /**
-     * Helper method to create and register a Bulkhead Execution Semaphore for an annotated method
-     * @param applicationName The name of the application
-     * @param invocationTarget The target object obtained from InvocationContext.getTarget()
-     * @param fullMethodSignature The method signature to register the semaphore against
-     * @param bulkheadValue The size of the bulkhead
-     * @return The Bulkhead Execution Semaphore for the given method signature and application
-     */
-    private synchronized Semaphore createBulkheadExecutionSemaphore(String applicationName, Object invocationTarget, 
-            String fullMethodSignature, int bulkheadValue) {
-        
-        // Double lock as multiple methods can get inside the calling if at the same time
-        logger.log(Level.FINER, "Checking double lock to see if something else has already added the application to "
-                + "the bulkhead execution semaphore map");
-        if (faultToleranceObjects.get(applicationName).getBulkheadExecutionSemaphores().get(invocationTarget) == null) {
-            logger.log(Level.FINER, "Registering bean to bulkhead execution semaphore map: {0}", 
-                    invocationTarget);
-            
-            faultToleranceObjects.get(applicationName).getBulkheadExecutionSemaphores().put(
-                    invocationTarget, 
-                    new ConcurrentHashMap<>());
-        }
-        
-        // Double lock as multiple methods can get inside the calling if at the same time
-        logger.log(Level.FINER, "Checking double lock to see if something else has already added the annotated method "
-                + "to the bulkhead execution semaphore map");
-        if (faultToleranceObjects.get(applicationName).getBulkheadExecutionSemaphores().get(invocationTarget)
-                .get(fullMethodSignature) == null) {
-            logger.log(Level.FINER, "Registering semaphore for method {0} to the bulkhead execution semaphore map", fullMethodSignature);
-            faultToleranceObjects.get(applicationName).getBulkheadExecutionSemaphores().get(invocationTarget)
-                    .put(fullMethodSignature, new Semaphore(bulkheadValue, true));
-        }
-
-        return faultToleranceObjects.get(applicationName).getBulkheadExecutionSemaphores().get(invocationTarget)
-                .get(fullMethodSignature);
+        return getMethodState(applicationName, invocationTarget, annotatedMethod)
+                .getBulkheadExecutionSemaphore(bulkheadValue);
     }
     
     /**
@@ -337,147 +299,79 @@ public class FaultToleranceService implements EventListener {
      */
     public Semaphore getBulkheadExecutionQueueSemaphore(String applicationName, Object invocationTarget, 
             Method annotatedMethod, int bulkheadWaitingTaskQueue) {
-        Semaphore bulkheadExecutionQueueSemaphore;
-        String fullMethodSignature = getFullMethodSignature(annotatedMethod);
-        
-        Map<String, Semaphore> annotatedMethodExecutionQueueSemaphores = 
-                faultToleranceObjects.get(applicationName).getBulkheadExecutionQueueSemaphores().get(invocationTarget);
-        
-        // If there isn't a semaphore registered for this application name, register one, otherwise just return
-        // the one already registered
-        if (annotatedMethodExecutionQueueSemaphores == null) {
-            logger.log(Level.FINER, "No matching application in the bulkhead execution semaphore map, registering...");
-            bulkheadExecutionQueueSemaphore = createBulkheadExecutionQueueSemaphore(applicationName, invocationTarget, 
-                    fullMethodSignature, bulkheadWaitingTaskQueue);
-        } else {
-            bulkheadExecutionQueueSemaphore = annotatedMethodExecutionQueueSemaphores.get(fullMethodSignature);
-        
-            // If there isn't a semaphore registered for this method signature, register one, otherwise just return
-            // the one already registered
-            if (bulkheadExecutionQueueSemaphore == null) {
-                logger.log(Level.FINER, "No matching method signature in the bulkhead execution queue semaphore map, "
-                        + "registering...");
-                bulkheadExecutionQueueSemaphore = createBulkheadExecutionQueueSemaphore(applicationName, invocationTarget, 
-                        fullMethodSignature, bulkheadWaitingTaskQueue);
-            }
-        }
-        
-        return bulkheadExecutionQueueSemaphore;
+        return getMethodState(applicationName, invocationTarget, annotatedMethod)
+                .getBulkheadExecutionQueueSemaphore(bulkheadWaitingTaskQueue);
     }
     
     /**
-     * Helper method to create and register a Bulkhead Execution Queue Semaphore for an annotated method
+     * Gets the CircuitBreakerState object for a given application name and method.If a CircuitBreakerState hasn't been 
+     * registered for the given application name and method, it will register the given CircuitBreaker.
      * @param applicationName The name of the application
      * @param invocationTarget The target object obtained from InvocationContext.getTarget()
-     * @param fullMethodSignature The method signature to register the semaphore against
-     * @param bulkheadWaitingTaskQueue The size of the waiting task queue of the bulkhead
-     * @return The Bulkhead Execution Queue Semaphore for the given method signature and application
+     * @param annotatedMethod The method annotated with @CircuitBreaker
+     * @param circuitBreaker The @CircuitBreaker annotation from the annotated method
+     * @return The CircuitBreakerState for the given application and method
      */
-    private synchronized Semaphore createBulkheadExecutionQueueSemaphore(String applicationName, Object invocationTarget, 
-            String fullMethodSignature, int bulkheadWaitingTaskQueue) {
-        // Double lock as multiple methods can get inside the calling if at the same time
-        logger.log(Level.FINER, "Checking double lock to see if something else has already added the object to "
-                + "the bulkhead execution queue semaphore map");
-        if (faultToleranceObjects.get(applicationName).getBulkheadExecutionQueueSemaphores().get(invocationTarget) 
-                == null) {
-            logger.log(Level.FINER, "Registering object to the bulkhead execution queue semaphore map: {0}", 
-                    invocationTarget);
-            faultToleranceObjects.get(applicationName).getBulkheadExecutionQueueSemaphores()
-                    .put(invocationTarget, new ConcurrentHashMap<>());
-        }
-        
-        // Double lock as multiple methods can get inside the calling if at the same time
-        logger.log(Level.FINER, "Checking double lock to see if something else has already added the annotated method "
-                + "to the bulkhead execution queue semaphore map");
-        if (faultToleranceObjects.get(applicationName).getBulkheadExecutionQueueSemaphores().get(invocationTarget).
-                get(fullMethodSignature) == null) {
-            logger.log(Level.FINER, "Registering semaphore for method {0} to the bulkhead execution semaphore map", 
-                    fullMethodSignature);
-            faultToleranceObjects.get(applicationName).getBulkheadExecutionQueueSemaphores().get(invocationTarget)
-                    .put(fullMethodSignature, new Semaphore(bulkheadWaitingTaskQueue, true));
-        }
-
-        return faultToleranceObjects.get(applicationName).getBulkheadExecutionQueueSemaphores().get(invocationTarget)
-                .get(fullMethodSignature);
+    public CircuitBreakerState getCircuitBreakerState(String applicationName, Object invocationTarget, 
+            Method annotatedMethod, CircuitBreaker circuitBreaker) {
+        return getCircuitBreakerState(applicationName, invocationTarget, annotatedMethod,
+                circuitBreaker.requestVolumeThreshold(),
+                Math.round(circuitBreaker.requestVolumeThreshold() * circuitBreaker.failureRatio()),
+                Duration.of(circuitBreaker.delay(), circuitBreaker.delayUnit()).toMillis());
     }
     
     /**
-     * Gets the CircuitBreakerState object for a given application name and method.If a CircuitBreakerState hasn't been 
-     * registered for the given application name and method, it will register the given CircuitBreaker.
+     * Gets the CircuitBreakerState object for a given application name and method. If a CircuitBreakerState hasn't 
+     * been registered for the given application name and method, it will register one with the given values.
      * @param applicationName The name of the application
      * @param invocationTarget The target object obtained from InvocationContext.getTarget()
      * @param annotatedMethod The method annotated with @CircuitBreaker
-     * @param circuitBreaker The @CircuitBreaker annotation from the annotated method
+     * @param requestVolumeThreshold The size of the rolling window of results
+     * @param failureThreshold The number of failures in the window that opens the circuit
+     * @param delayMillis The number of milliseconds the circuit stays open for
      * @return The CircuitBreakerState for the given application and method
      */
     public CircuitBreakerState getCircuitBreakerState(String applicationName, Object invocationTarget, 
-            Method annotatedMethod, CircuitBreaker circuitBreaker) {
-        CircuitBreakerState circuitBreakerState;
-        String fullMethodSignature = getFullMethodSignature(annotatedMethod);
-        
-        Map<String, CircuitBreakerState> annotatedMethodCircuitBreakerStates = 
-                faultToleranceObjects.get(applicationName).getCircuitBreakerStates().get(invocationTarget);
-
-        // If there isn't a CircuitBreakerState registered for this application name, register one, otherwise just 
-        // return the one already registered
-        if (annotatedMethodCircuitBreakerStates == null) {
-            logger.log(Level.FINER, "No matching object in the circuit breaker states map, registering...");
-            circuitBreakerState = registerCircuitBreaker(applicationName, invocationTarget, fullMethodSignature, 
-                    circuitBreaker);
-        } else {
-            circuitBreakerState = annotatedMethodCircuitBreakerStates.get(fullMethodSignature);
-        
-            // If there isn't a CircuitBreakerState registered for this method, register one, otherwise just 
-            // return the one already registered
-            if (circuitBreakerState == null) {
-                logger.log(Level.FINER, "No matching method in the circuit breaker states map, registering...");
-                circuitBreakerState = registerCircuitBreaker(applicationName, invocationTarget, fullMethodSignature, 
-                        circuitBreaker);
-            }
-        }
-        
-        return circuitBreakerState;
+            Method annotatedMethod, int requestVolumeThreshold, long failureThreshold, long delayMillis) {
+        return getMethodState(applicationName, invocationTarget, annotatedMethod)
+                .getCircuitBreakerState(requestVolumeThreshold, failureThreshold, delayMillis);
     }
     
     /**
-     * Helper method to create and register a CircuitBreakerState object for an annotated method
-     * @param applicationName The application name to register the CircuitBreakerState against
-     * @param fullMethodSignature The method signature to register the CircuitBreakerState against
-     * @param bulkheadWaitingTaskQueue The CircuitBreaker annotation of the annotated method
-     * @return The CircuitBreakerState object for the given method signature and application
+     * Gets the runtime state of an annotated method. The state is keyed on the bean instance and the Method itself,
+     * so no method signature needs to be built to look it up.
+     * @param applicationName The name of the application
+     * @param invocationTarget The target object obtained from InvocationContext.getTarget()
+     * @param annotatedMethod The annotated method
+     * @return The state of the annotated method
      */
-    private synchronized CircuitBreakerState registerCircuitBreaker(String applicationName, Object invocationTarget, 
-            String fullMethodSignature, CircuitBreaker circuitBreaker) {
-        // Double lock as multiple methods can get inside the calling if at the same time
-        logger.log(Level.FINER, "Checking double lock to see if something else has already added the object "
-                + "to the circuit breaker states map");
-        if (faultToleranceObjects.get(applicationName).getCircuitBreakerStates().get(invocationTarget) == null) {
-            logger.log(Level.FINER, "Registering application to the circuit breaker states map: {0}", 
-                    invocationTarget);
-            faultToleranceObjects.get(applicationName).getCircuitBreakerStates().put(invocationTarget, 
-                    new ConcurrentHashMap<>());
-        }
-        
-        // Double lock as multiple methods can get inside the calling if at the same time
-        logger.log(Level.FINER, "Checking double lock to see if something else has already added the annotated method "
-                + "to the circuit breaker states map");
-        if (faultToleranceObjects.get(applicationName).getCircuitBreakerStates().get(invocationTarget)
-                .get(fullMethodSignature) == null) {
-            logger.log(Level.FINER, "Registering CircuitBreakerState for method {0} to the circuit breaker states map", 
-                    fullMethodSignature);
-            faultToleranceObjects.get(applicationName).getCircuitBreakerStates().get(invocationTarget)
-                    .put(fullMethodSignature, new CircuitBreakerState(circuitBreaker.requestVolumeThreshold()));
-        }
-
-        return faultToleranceObjects.get(applicationName).getCircuitBreakerStates().get(invocationTarget).get(fullMethodSignature);
+    private FaultToleranceMethodState getMethodState(String applicationName, Object invocationTarget, 
+            Method annotatedMethod) {
+        return faultToleranceObjects.get(applicationName).getMethodState(invocationTarget, annotatedMethod);
     }
 
     /**
      * Removes an application from the enabled map, CircuitBreaker map, and bulkhead maps
      * @param applicationName The name of the application to remove
      */
-    private void deregisterApplication(String applicationName) {
-        faultToleranceObjects.remove(applicationName);
+    private synchronized void deregisterApplication(String applicationName) {
+        FaultToleranceObject faultToleranceObject = faultToleranceObjects.remove(applicationName);
+        if (faultToleranceObject != null && faultToleranceObject.isClustered()) {
+            clusteredStateSynchronizer.deregister(applicationName);
+            if (clusteredStateSynchronizer.isEmpty()) {
+                shutdownClusteredStateSynchronizer();
+            }
+        }
+    }
+
+    /**
+     * Stops sharing state across the cluster, a new synchronizer is created if an application asks for it again.
+     */
+    private synchronized void shutdownClusteredStateSynchronizer() {
+        if (clusteredStateSynchronizer != null) {
+            clusteredStateSynchronizer.shutdown();
+            clusteredStateSynchronizer = null;
+        }
     }
     
     /**
@@ -524,7 +418,7 @@ public class FaultToleranceService implements EventListener {
      * @param annotatedMethod The annotated Method to generate the signature for
      * @return A String in the format of CanonicalClassName#MethodName({ParameterTypes})>ReturnType
      */
-    private static String getFullMethodSignature(Method annotatedMethod) {
+    static String getFullMethodSignature(Method annotatedMethod) {
         return annotatedMethod.getDeclaringClass().getCanonicalName() 
                 + "#" + annotatedMethod.getName() 
                 + "(" + Arrays.toString(annotatedMethod.getParameterTypes()) + ")"
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2017-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2017-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -42,6 +42,7 @@ package fish.payara.microprofile.faulttolerance.interceptors;
 import fish.payara.microprofile.faulttolerance.interceptors.fallback.FallbackPolicy;
 import fish.payara.microprofile.faulttolerance.FaultToleranceService;
 import fish.payara.microprofile.faulttolerance.cdi.FaultToleranceCdiUtils;
+import fish.payara.microprofile.faulttolerance.state.ClusteredSemaphore;
 import java.io.Serializable;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -366,8 +367,9 @@ public class BulkheadInterceptor implements Serializable {
                 bulkheadExecutionSemaphore.release();
             }
         } else {
-            // Try to get an execution permit
-            if (bulkheadExecutionSemaphore.tryAcquire(0, TimeUnit.SECONDS)) {
+            // Try to get an execution permit. Nothing ever waits on the semaphore in this style, so the barging
+            // tryAcquire is used, which is a single CAS rather than the fair queue check of the timed variant
+            if (bulkheadExecutionSemaphore.tryAcquire()) {
                 // Incremement the MP Metrics callsAccepted counter
                 faultToleranceService.incrementCounterMetric(metricRegistry, 
                         "ft." + fullMethodSignature + ".bulkhead.callsAccepted.total", appName, config);
@@ -416,10 +418,18 @@ public class BulkheadInterceptor implements Serializable {
     }
     
     private static Long getConcurrentExecutionsCount(int bulkheadValue, Semaphore bulkheadExecutionSemaphore) {
-        return ((Number) (bulkheadValue - bulkheadExecutionSemaphore.availablePermits())).longValue();
+        return ((Number) getAcquiredPermits(bulkheadValue, bulkheadExecutionSemaphore)).longValue();
     }
     
     private static Long getWaitingQueueCount(int waitingTaskQueue, Semaphore bulkheadExecutionQueueSemaphore) {
-        return ((Number) (waitingTaskQueue - bulkheadExecutionQueueSemaphore.availablePermits())).longValue();
+        return ((Number) getAcquiredPermits(waitingTaskQueue, bulkheadExecutionQueueSemaphore)).longValue();
+    }
+    
+    private static int getAcquiredPermits(int permits, Semaphore semaphore) {
+        // A clustered semaphore only has this member's share of the permits
+        if (semaphore instanceof ClusteredSemaphore) {
+            return ((ClusteredSemaphore) semaphore).getAcquiredPermits();
+        }
+        return permits - semaphore.availablePermits();
     }
 }
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2017-2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -229,8 +229,8 @@ public class CircuitBreakerInterceptor implements Serializable {
         long delayMillis = Duration.of(delay, delayUnit).toMillis();
 
         CircuitBreakerState circuitBreakerState = faultToleranceService.getCircuitBreakerState(appName,
-                invocationContext.getTarget(),
-                invocationContext.getMethod(), circuitBreaker);
+                invocationContext.getTarget(), invocationContext.getMethod(), requestVolumeThreshold,
+                Math.round(requestVolumeThreshold * failureRatio), delayMillis);
 
         if (faultToleranceService.areFaultToleranceMetricsEnabled(appName, config)) {
             Gauge<?> openTimeGauge = metricRegistry.getGauges()
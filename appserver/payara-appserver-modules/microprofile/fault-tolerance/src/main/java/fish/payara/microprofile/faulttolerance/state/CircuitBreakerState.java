@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2017-2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -41,9 +41,9 @@ package fish.payara.microprofile.faulttolerance.state;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,7 +59,14 @@ public class CircuitBreakerState {
         OPEN, CLOSED, HALF_OPEN
     }
 
-    private final BlockingQueue<Boolean> closedResultsQueue;
+    /**
+     * Rolling window of the last results as a ring of bits, a set bit being a failure. The ring is allocated once,
+     * so recording a result only flips a bit and updates two counters.
+     */
+    private final AtomicLongArray closedResults;
+    private final int closedResultsSize;
+    private final AtomicLong closedResultsRecorded = new AtomicLong(0);
+    private final AtomicInteger closedResultsFailures = new AtomicInteger(0);
 
     private final AtomicInteger halfOpenSuccessfulResultsCounter = new AtomicInteger(0);
 
@@ -67,7 +74,8 @@ public class CircuitBreakerState {
     private volatile StateTime currentStateTime;
 
     public CircuitBreakerState(int requestVolumeThreshold) {
-        this.closedResultsQueue = new LinkedBlockingQueue<>(requestVolumeThreshold);
+        this.closedResultsSize = requestVolumeThreshold;
+        this.closedResults = new AtomicLongArray((requestVolumeThreshold + Long.SIZE - 1) / Long.SIZE);
         for(CircuitState state : CircuitState.values()) {
             this.allStateTimes.put(state, new StateTime(state));
         }
@@ -100,10 +108,26 @@ public class CircuitBreakerState {
      * @param result True for a success, false for a failure
      */
     public void recordClosedResult(Boolean result) {
-        // If the queue is full, remove the oldest result and add
-        if (!this.closedResultsQueue.offer(result)) {
-            this.closedResultsQueue.poll();
-            this.closedResultsQueue.offer(result);
+        if (closedResultsSize <= 0) {
+            return;
+        }
+        // Once the ring is full the oldest result is overwritten
+        int position = (int) (closedResultsRecorded.getAndIncrement() % closedResultsSize);
+        int word = position / Long.SIZE;
+        long mask = 1L << (position % Long.SIZE);
+        boolean failure = !result;
+        long current;
+        long next;
+        do {
+            current = closedResults.get(word);
+            next = failure ? current | mask : current & ~mask;
+        } while (current != next && !closedResults.compareAndSet(word, current, next));
+
+        boolean previousFailure = (current & mask) != 0;
+        if (failure && !previousFailure) {
+            closedResultsFailures.incrementAndGet();
+        } else if (!failure && previousFailure) {
+            closedResultsFailures.decrementAndGet();
         }
     }
 
@@ -111,7 +135,11 @@ public class CircuitBreakerState {
      * Clears the results queue.
      */
     public void resetResults() {
-        this.closedResultsQueue.clear();
+        for (int i = 0; i < closedResults.length(); i++) {
+            closedResults.set(i, 0);
+        }
+        closedResultsFailures.set(0);
+        closedResultsRecorded.set(0);
     }
 
     /**
@@ -142,26 +170,12 @@ public class CircuitBreakerState {
      * @return True if the CircuitBreaker is over the failure threshold
      */
     public boolean isOverFailureThreshold(long failureThreshold) {
-        boolean over = false;
-        int failures = 0;
-
         // Only check if the queue is full
-        if (this.closedResultsQueue.remainingCapacity() == 0) {
-            for (Boolean success : this.closedResultsQueue) {
-                if (!success) {
-                    failures++;
-
-                    if (failures == failureThreshold) {
-                        over = true;
-                        break;
-                    }
-                }
-            }
-        } else {
+        if (closedResultsSize <= 0 || closedResultsRecorded.get() < closedResultsSize) {
             LOGGER.log(Level.FINE, "CircuitBreaker results queue isn't full yet.");
+            return false;
         }
-
-        return over;
+        return failureThreshold > 0 && closedResultsFailures.get() >= failureThreshold;
     }
 
     /**
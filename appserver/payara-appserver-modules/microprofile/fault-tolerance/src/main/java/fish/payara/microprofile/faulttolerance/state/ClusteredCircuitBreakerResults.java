@@ -0,0 +1,110 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.faulttolerance.state;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * The results of a circuit breaker merged from all the members of the cluster, as stored in the data grid.
+ * The counts form a tumbling window of at least requestVolumeThreshold results; the open version is incremented
+ * every time a member opens the circuit, or the merged results go over the failure threshold.
+ */
+public class ClusteredCircuitBreakerResults implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long successes;
+    private long failures;
+    private long openVersion;
+
+    public long getOpenVersion() {
+        return openVersion;
+    }
+
+    /**
+     * Merges the results counted by one member since its last synchronisation into the stored results.
+     */
+    static class MergeProcessor extends AbstractEntryProcessor<String, ClusteredCircuitBreakerResults> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int successes;
+        private final int failures;
+        private final boolean opened;
+        private final int requestVolumeThreshold;
+        private final long failureThreshold;
+
+        MergeProcessor(int successes, int failures, boolean opened, int requestVolumeThreshold,
+                long failureThreshold) {
+            this.successes = successes;
+            this.failures = failures;
+            this.opened = opened;
+            this.requestVolumeThreshold = requestVolumeThreshold;
+            this.failureThreshold = failureThreshold;
+        }
+
+        @Override
+        public Object process(Map.Entry<String, ClusteredCircuitBreakerResults> entry) {
+            ClusteredCircuitBreakerResults results = entry.getValue();
+            if (results == null) {
+                results = new ClusteredCircuitBreakerResults();
+            }
+            results.successes += successes;
+            results.failures += failures;
+            long total = results.successes + results.failures;
+            if (opened) {
+                results.openVersion++;
+                results.successes = 0;
+                results.failures = 0;
+            } else if (total >= requestVolumeThreshold && total > 0) {
+                // Same ratio as failureThreshold out of requestVolumeThreshold, as a batch may overshoot the window
+                if (failureThreshold > 0 && results.failures * requestVolumeThreshold >= failureThreshold * total) {
+                    results.openVersion++;
+                }
+                results.successes = 0;
+                results.failures = 0;
+            }
+            entry.setValue(results);
+            return results;
+        }
+    }
+}
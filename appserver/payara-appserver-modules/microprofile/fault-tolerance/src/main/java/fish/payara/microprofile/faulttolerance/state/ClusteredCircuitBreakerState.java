@@ -0,0 +1,133 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.faulttolerance.state;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A CircuitBreakerState whose results and openings are shared with the other members of the cluster. Results are
+ * only counted locally here, the {@link ClusteredStateSynchronizer} merges them into the data grid on an interval so
+ * that guarded calls never wait for the grid.
+ */
+public class ClusteredCircuitBreakerState extends CircuitBreakerState {
+
+    private final String clusterKey;
+    private final int requestVolumeThreshold;
+    private final long failureThreshold;
+    private final long delayMillis;
+
+    private final AtomicInteger pendingSuccesses = new AtomicInteger(0);
+    private final AtomicInteger pendingFailures = new AtomicInteger(0);
+    private final AtomicBoolean pendingOpen = new AtomicBoolean(false);
+    private volatile long openVersion = -1;
+
+    public ClusteredCircuitBreakerState(String clusterKey, int requestVolumeThreshold, long failureThreshold,
+            long delayMillis) {
+        super(requestVolumeThreshold);
+        this.clusterKey = clusterKey;
+        this.requestVolumeThreshold = requestVolumeThreshold;
+        this.failureThreshold = failureThreshold;
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public void setCircuitState(CircuitState circuitState) {
+        if (circuitState == CircuitState.OPEN && getCircuitState() != CircuitState.OPEN) {
+            // Opened by this member, let the others know on the next synchronisation
+            pendingOpen.set(true);
+        }
+        super.setCircuitState(circuitState);
+    }
+
+    @Override
+    public void recordClosedResult(Boolean result) {
+        super.recordClosedResult(result);
+        if (result) {
+            pendingSuccesses.incrementAndGet();
+        } else {
+            pendingFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Opens the circuit because another member of the cluster opened it.
+     */
+    void openFromCluster() {
+        super.setCircuitState(CircuitState.OPEN);
+        resetHalfOpenSuccessfulResultCounter();
+    }
+
+    String getClusterKey() {
+        return clusterKey;
+    }
+
+    int getRequestVolumeThreshold() {
+        return requestVolumeThreshold;
+    }
+
+    long getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    long getDelayMillis() {
+        return delayMillis;
+    }
+
+    int drainPendingSuccesses() {
+        return pendingSuccesses.getAndSet(0);
+    }
+
+    int drainPendingFailures() {
+        return pendingFailures.getAndSet(0);
+    }
+
+    boolean drainPendingOpen() {
+        return pendingOpen.getAndSet(false);
+    }
+
+    long getOpenVersion() {
+        return openVersion;
+    }
+
+    void setOpenVersion(long openVersion) {
+        this.openVersion = openVersion;
+    }
+}
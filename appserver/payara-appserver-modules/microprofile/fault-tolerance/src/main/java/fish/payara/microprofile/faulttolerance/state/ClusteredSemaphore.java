@@ -0,0 +1,90 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.faulttolerance.state;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bulkhead Semaphore whose permits are shared out between the members of the cluster, so that the cluster as a
+ * whole allows the configured number of concurrent executions. Each member gets an equal share, and at least one
+ * permit, which is adjusted by the {@link ClusteredStateSynchronizer} when members join or leave.
+ */
+public class ClusteredSemaphore extends Semaphore {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int clusterPermits;
+    private int localPermits;
+
+    public ClusteredSemaphore(int clusterPermits, int memberCount) {
+        super(share(clusterPermits, memberCount), true);
+        this.clusterPermits = clusterPermits;
+        this.localPermits = share(clusterPermits, memberCount);
+    }
+
+    /**
+     * Adjusts the local share of permits to the given number of cluster members. Permits in use are not revoked, the
+     * available permits may go negative until they are released.
+     * @param memberCount The number of members in the cluster
+     */
+    synchronized void resize(int memberCount) {
+        int permits = share(clusterPermits, memberCount);
+        if (permits > localPermits) {
+            release(permits - localPermits);
+        } else if (permits < localPermits) {
+            reducePermits(localPermits - permits);
+        }
+        localPermits = permits;
+    }
+
+    /**
+     * Gets the number of permits acquired on this member. Unlike the configured number of permits minus the available
+     * ones, this doesn't count permits that belong to the shares of other members.
+     * @return The number of permits in use locally
+     */
+    public synchronized int getAcquiredPermits() {
+        return localPermits - availablePermits();
+    }
+
+    private static int share(int clusterPermits, int memberCount) {
+        int members = Math.max(1, memberCount);
+        return Math.max(1, (clusterPermits + members - 1) / members);
+    }
+}
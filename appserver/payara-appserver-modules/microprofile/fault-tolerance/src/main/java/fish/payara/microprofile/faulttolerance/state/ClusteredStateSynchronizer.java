@@ -0,0 +1,201 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.faulttolerance.state;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import fish.payara.nucleus.executorservice.PayaraExecutorService;
+import fish.payara.nucleus.hazelcast.HazelcastCore;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares the state of clustered circuit breakers and bulkheads between the members of the cluster via the Hazelcast
+ * data grid. Rather than calling the grid on every invocation, the results counted locally are merged into the grid
+ * on a short interval, and any openings made by other members are picked up at the same time.
+ */
+public class ClusteredStateSynchronizer {
+
+    public static final String SYNC_INTERVAL_PROPERTY = "fish.payara.microprofile.faulttolerance.clusterSyncInterval";
+    public static final String CIRCUIT_BREAKER_MAP_NAME = "payara-fault-tolerance-circuit-breakers";
+
+    private static final Logger logger = Logger.getLogger(ClusteredStateSynchronizer.class.getName());
+
+    private final HazelcastCore hazelcastCore;
+    private final PayaraExecutorService executorService;
+    private final Map<String, Set<ClusteredCircuitBreakerState>> circuitBreakerStates;
+    private final Map<String, Set<ClusteredSemaphore>> semaphores;
+    private final ScheduledFuture<?> synchronization;
+
+    public ClusteredStateSynchronizer(HazelcastCore hazelcastCore, PayaraExecutorService executorService) {
+        this.hazelcastCore = hazelcastCore;
+        this.executorService = executorService;
+        circuitBreakerStates = new ConcurrentHashMap<>();
+        semaphores = new ConcurrentHashMap<>();
+        long interval = Long.getLong(SYNC_INTERVAL_PROPERTY, 1000L);
+        synchronization = executorService.scheduleWithFixedDelay(this::synchronize, interval, interval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the number of members in the cluster, or 1 if clustering is disabled.
+     * @return The number of members in the cluster
+     */
+    public int getMemberCount() {
+        if (!hazelcastCore.isEnabled()) {
+            return 1;
+        }
+        return hazelcastCore.getInstance().getCluster().getMembers().size();
+    }
+
+    public void register(String applicationName, ClusteredCircuitBreakerState circuitBreakerState) {
+        circuitBreakerStates.computeIfAbsent(applicationName, name -> ConcurrentHashMap.newKeySet())
+                .add(circuitBreakerState);
+    }
+
+    public void register(String applicationName, ClusteredSemaphore semaphore) {
+        semaphores.computeIfAbsent(applicationName, name -> ConcurrentHashMap.newKeySet()).add(semaphore);
+    }
+
+    /**
+     * Stops synchronising the state of an application. The merged results are left in the grid, as the application
+     * may still be running on other members.
+     * @param applicationName The name of the application
+     */
+    public void deregister(String applicationName) {
+        circuitBreakerStates.remove(applicationName);
+        semaphores.remove(applicationName);
+    }
+
+    /**
+     * Checks whether any application still has clustered state.
+     * @return True if no application is registered
+     */
+    public boolean isEmpty() {
+        return circuitBreakerStates.isEmpty() && semaphores.isEmpty();
+    }
+
+    /**
+     * Stops synchronising with the cluster. The synchronizer can't be used afterwards.
+     */
+    public void shutdown() {
+        synchronization.cancel(false);
+        circuitBreakerStates.clear();
+        semaphores.clear();
+    }
+
+    private void synchronize() {
+        if (!hazelcastCore.isEnabled()) {
+            return;
+        }
+        try {
+            HazelcastInstance instance = hazelcastCore.getInstance();
+            int memberCount = instance.getCluster().getMembers().size();
+            for (Set<ClusteredSemaphore> applicationSemaphores : semaphores.values()) {
+                for (ClusteredSemaphore semaphore : applicationSemaphores) {
+                    semaphore.resize(memberCount);
+                }
+            }
+
+            IMap<String, ClusteredCircuitBreakerResults> results = instance.getMap(CIRCUIT_BREAKER_MAP_NAME);
+            Map<String, ClusteredCircuitBreakerState> idleStates = new HashMap<>();
+            for (Set<ClusteredCircuitBreakerState> applicationStates : circuitBreakerStates.values()) {
+                for (ClusteredCircuitBreakerState state : applicationStates) {
+                    int successes = state.drainPendingSuccesses();
+                    int failures = state.drainPendingFailures();
+                    boolean opened = state.drainPendingOpen();
+                    if (successes == 0 && failures == 0 && !opened) {
+                        idleStates.put(state.getClusterKey(), state);
+                        continue;
+                    }
+                    ClusteredCircuitBreakerResults merged = (ClusteredCircuitBreakerResults) results.executeOnKey(
+                            state.getClusterKey(), new ClusteredCircuitBreakerResults.MergeProcessor(successes,
+                                    failures, opened, state.getRequestVolumeThreshold(),
+                                    state.getFailureThreshold()));
+                    if (opened) {
+                        // This member opened the circuit itself, so the new version is already in effect here
+                        state.setOpenVersion(merged.getOpenVersion());
+                    } else {
+                        apply(state, merged);
+                    }
+                }
+            }
+
+            // Breakers without local activity only need to check for openings by other members
+            if (!idleStates.isEmpty()) {
+                Map<String, ClusteredCircuitBreakerResults> current = results.getAll(new HashSet<>(idleStates.keySet()));
+                for (Map.Entry<String, ClusteredCircuitBreakerResults> entry : current.entrySet()) {
+                    apply(idleStates.get(entry.getKey()), entry.getValue());
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Could not synchronise fault tolerance state with the cluster", ex);
+        }
+    }
+
+    private void apply(ClusteredCircuitBreakerState state, ClusteredCircuitBreakerResults merged) {
+        if (state == null || merged == null) {
+            return;
+        }
+        long knownVersion = state.getOpenVersion();
+        long openVersion = merged.getOpenVersion();
+        if (openVersion <= knownVersion) {
+            return;
+        }
+        state.setOpenVersion(openVersion);
+        // The first version seen only records where this member joined, older openings are long gone
+        if (knownVersion >= 0 && state.getCircuitState() == CircuitBreakerState.CircuitState.CLOSED) {
+            state.openFromCluster();
+            logger.log(Level.FINE, "CircuitBreaker {0} opened by another member of the cluster",
+                    state.getClusterKey());
+            executorService.schedule(() -> {
+                state.setCircuitState(CircuitBreakerState.CircuitState.HALF_OPEN);
+                logger.log(Level.FINE, "Setting CircuitBreaker state to half open");
+            }, state.getDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+}
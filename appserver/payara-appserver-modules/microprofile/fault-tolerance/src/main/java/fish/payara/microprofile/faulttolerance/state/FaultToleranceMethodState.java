@@ -0,0 +1,153 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.faulttolerance.state;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Holds the runtime state of a single fault tolerance annotated method of a bean instance. Each piece of state is
+ * created the first time it is asked for, after which looking it up is a plain volatile read.
+ * <p>
+ * If created with a {@link ClusteredStateSynchronizer}, the state is shared by all instances of the bean and with the
+ * other members of the cluster.
+ */
+public class FaultToleranceMethodState {
+
+    private final String applicationName;
+    private final String clusterKey;
+    private final ClusteredStateSynchronizer synchronizer;
+
+    private volatile CircuitBreakerState circuitBreakerState;
+    private volatile Semaphore bulkheadExecutionSemaphore;
+    private volatile Semaphore bulkheadExecutionQueueSemaphore;
+
+    public FaultToleranceMethodState() {
+        this(null, null, null);
+    }
+
+    /**
+     * Creates the state of a method which is shared with the other members of the cluster.
+     * @param applicationName The name of the application
+     * @param clusterKey The key identifying the method across the cluster
+     * @param synchronizer The synchronizer to register the state with
+     */
+    public FaultToleranceMethodState(String applicationName, String clusterKey,
+            ClusteredStateSynchronizer synchronizer) {
+        this.applicationName = applicationName;
+        this.clusterKey = clusterKey;
+        this.synchronizer = synchronizer;
+    }
+
+    /**
+     * Gets the CircuitBreakerState of the method, creating it if it doesn't exist yet.
+     * @param requestVolumeThreshold The size of the rolling window if the state needs to be created
+     * @param failureThreshold The number of failures in the window that opens the circuit
+     * @param delayMillis The number of milliseconds the circuit stays open for
+     * @return The CircuitBreakerState of the method
+     */
+    public CircuitBreakerState getCircuitBreakerState(int requestVolumeThreshold, long failureThreshold,
+            long delayMillis) {
+        CircuitBreakerState state = circuitBreakerState;
+        if (state == null) {
+            synchronized (this) {
+                state = circuitBreakerState;
+                if (state == null) {
+                    if (synchronizer == null) {
+                        state = new CircuitBreakerState(requestVolumeThreshold);
+                    } else {
+                        ClusteredCircuitBreakerState clusteredState = new ClusteredCircuitBreakerState(clusterKey,
+                                requestVolumeThreshold, failureThreshold, delayMillis);
+                        synchronizer.register(applicationName, clusteredState);
+                        state = clusteredState;
+                    }
+                    circuitBreakerState = state;
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Gets the Bulkhead Execution Semaphore of the method, creating it if it doesn't exist yet.
+     * @param bulkheadValue The number of permits if the semaphore needs to be created
+     * @return The Bulkhead Execution Semaphore of the method
+     */
+    public Semaphore getBulkheadExecutionSemaphore(int bulkheadValue) {
+        Semaphore semaphore = bulkheadExecutionSemaphore;
+        if (semaphore == null) {
+            synchronized (this) {
+                semaphore = bulkheadExecutionSemaphore;
+                if (semaphore == null) {
+                    semaphore = createSemaphore(bulkheadValue);
+                    bulkheadExecutionSemaphore = semaphore;
+                }
+            }
+        }
+        return semaphore;
+    }
+
+    /**
+     * Gets the Bulkhead Execution Queue Semaphore of the method, creating it if it doesn't exist yet.
+     * @param bulkheadWaitingTaskQueue The number of permits if the semaphore needs to be created
+     * @return The Bulkhead Execution Queue Semaphore of the method
+     */
+    public Semaphore getBulkheadExecutionQueueSemaphore(int bulkheadWaitingTaskQueue) {
+        Semaphore semaphore = bulkheadExecutionQueueSemaphore;
+        if (semaphore == null) {
+            synchronized (this) {
+                semaphore = bulkheadExecutionQueueSemaphore;
+                if (semaphore == null) {
+                    semaphore = createSemaphore(bulkheadWaitingTaskQueue);
+                    bulkheadExecutionQueueSemaphore = semaphore;
+                }
+            }
+        }
+        return semaphore;
+    }
+
+    private Semaphore createSemaphore(int permits) {
+        if (synchronizer == null) {
+            return new Semaphore(permits, true);
+        }
+        ClusteredSemaphore semaphore = new ClusteredSemaphore(permits, synchronizer.getMemberCount());
+        synchronizer.register(applicationName, semaphore);
+        return semaphore;
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -74,4 +74,44 @@ public class CircuitBreakerStateTest {
         assertEquals("Unexpected nanos for unused state.", 0, state.updateAndGet(CircuitBreakerState.CircuitState.HALF_OPEN));
     }
 
+    @Test
+    public void testFailureThresholdOnlyCheckedWhenWindowIsFull() {
+        CircuitBreakerState state = new CircuitBreakerState(4);
+        state.recordClosedResult(Boolean.FALSE);
+        state.recordClosedResult(Boolean.FALSE);
+        state.recordClosedResult(Boolean.FALSE);
+        assertFalse("Threshold reached before the window was full.", state.isOverFailureThreshold(2));
+        state.recordClosedResult(Boolean.TRUE);
+        assertTrue("Threshold not reached with a full window.", state.isOverFailureThreshold(3));
+        assertFalse("Threshold reached with too few failures.", state.isOverFailureThreshold(4));
+    }
+
+    @Test
+    public void testOldestResultsAreOverwritten() {
+        CircuitBreakerState state = new CircuitBreakerState(70);
+        for (int i = 0; i < 70; i++) {
+            state.recordClosedResult(Boolean.FALSE);
+        }
+        assertTrue("Threshold not reached with only failures.", state.isOverFailureThreshold(70));
+        for (int i = 0; i < 65; i++) {
+            state.recordClosedResult(Boolean.TRUE);
+        }
+        assertTrue("Threshold not reached with the remaining failures.", state.isOverFailureThreshold(5));
+        assertFalse("Overwritten failures still counted.", state.isOverFailureThreshold(6));
+    }
+
+    @Test
+    public void testResetResultsEmptiesWindow() {
+        CircuitBreakerState state = new CircuitBreakerState(2);
+        state.recordClosedResult(Boolean.FALSE);
+        state.recordClosedResult(Boolean.FALSE);
+        assertTrue("Threshold not reached with only failures.", state.isOverFailureThreshold(2));
+        state.resetResults();
+        state.recordClosedResult(Boolean.FALSE);
+        assertFalse("Threshold reached after reset with a window that isn't full.", state.isOverFailureThreshold(1));
+        state.recordClosedResult(Boolean.TRUE);
+        assertTrue("Threshold not reached after reset.", state.isOverFailureThreshold(1));
+        assertFalse("Results from before the reset still counted.", state.isOverFailureThreshold(2));
+    }
+
 }
\ No newline at end of file
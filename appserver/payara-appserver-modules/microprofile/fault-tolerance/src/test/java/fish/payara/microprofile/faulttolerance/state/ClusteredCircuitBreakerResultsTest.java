@@ -0,0 +1,74 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.faulttolerance.state;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClusteredCircuitBreakerResultsTest {
+
+    @Test
+    public void testMergedFailuresOpenCircuitOnceWindowIsFull() {
+        Map.Entry<String, ClusteredCircuitBreakerResults> entry = new AbstractMap.SimpleEntry<>("app#method", null);
+        merge(entry, 1, 2, false);
+        assertEquals("Window isn't full yet", 0, entry.getValue().getOpenVersion());
+        merge(entry, 0, 1, false);
+        assertEquals(1, entry.getValue().getOpenVersion());
+        merge(entry, 4, 0, false);
+        assertEquals("Window should have been reset", 1, entry.getValue().getOpenVersion());
+    }
+
+    @Test
+    public void testOpeningByMemberIsShared() {
+        Map.Entry<String, ClusteredCircuitBreakerResults> entry = new AbstractMap.SimpleEntry<>("app#method", null);
+        merge(entry, 0, 0, true);
+        merge(entry, 0, 0, true);
+        assertEquals(2, entry.getValue().getOpenVersion());
+    }
+
+    private static void merge(Map.Entry<String, ClusteredCircuitBreakerResults> entry, int successes, int failures,
+            boolean opened) {
+        // Window of 4 results which opens at 2 failures
+        new ClusteredCircuitBreakerResults.MergeProcessor(successes, failures, opened, 4, 2).process(entry);
+    }
+}
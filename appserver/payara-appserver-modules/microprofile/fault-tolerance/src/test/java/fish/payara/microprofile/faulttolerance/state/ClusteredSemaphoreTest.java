@@ -0,0 +1,78 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.faulttolerance.state;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClusteredSemaphoreTest {
+
+    @Test
+    public void testPermitsAreSharedBetweenMembers() {
+        assertEquals(10, new ClusteredSemaphore(10, 1).availablePermits());
+        assertEquals(4, new ClusteredSemaphore(10, 3).availablePermits());
+        assertEquals("Every member needs at least one permit", 1, new ClusteredSemaphore(2, 5).availablePermits());
+    }
+
+    @Test
+    public void testResizeKeepsPermitsInUse() throws Exception {
+        ClusteredSemaphore semaphore = new ClusteredSemaphore(10, 1);
+        semaphore.acquire(8);
+        semaphore.resize(2);
+        assertEquals("Permits in use should not be revoked", -3, semaphore.availablePermits());
+        semaphore.release(8);
+        assertEquals(5, semaphore.availablePermits());
+        semaphore.resize(1);
+        assertEquals(10, semaphore.availablePermits());
+    }
+
+    @Test
+    public void testAcquiredPermitsOnlyCountLocalExecutions() throws Exception {
+        ClusteredSemaphore semaphore = new ClusteredSemaphore(10, 2);
+        assertEquals("Other members' shares are not in use here", 0, semaphore.getAcquiredPermits());
+        semaphore.acquire(3);
+        assertEquals(3, semaphore.getAcquiredPermits());
+        semaphore.resize(5);
+        assertEquals("Shrinking the share doesn't change the permits in use", 3, semaphore.getAcquiredPermits());
+        semaphore.release(3);
+        assertEquals(0, semaphore.getAcquiredPermits());
+    }
+}
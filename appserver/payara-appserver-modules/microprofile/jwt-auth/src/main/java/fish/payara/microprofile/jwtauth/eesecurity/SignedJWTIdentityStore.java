@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2017-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2017-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -59,20 +59,28 @@ import java.math.BigInteger;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.KeyFactory;
+import java.security.MessageDigest;
 import java.security.PublicKey;
 import java.security.spec.RSAPublicKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import static java.lang.Thread.currentThread;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.logging.Level.FINEST;
+import static java.util.logging.Level.WARNING;
 import static javax.security.enterprise.identitystore.CredentialValidationResult.INVALID_RESULT;
 import static org.eclipse.microprofile.jwt.config.Names.*;
 
 /**
  * Identity store capable of asserting that a signed JWT token is valid according to
  * the MP-JWT 1.0 spec.
+ * <p>
+ * The public key is resolved once and kept, only keys read from a remote location (such as a JWKS endpoint) are
+ * refreshed after <code>publicKey.cache.ttl</code> milliseconds. Tokens which passed validation are kept until they
+ * expire, keyed by their hash, so that a token presented again is not parsed and verified again.
  *
  * @author Arjan Tijms
  */
@@ -82,12 +90,25 @@ public class SignedJWTIdentityStore implements IdentityStore {
 
     private static final String RSA_ALGORITHM = "RSA";
 
+    private static final long DEFAULT_PUBLIC_KEY_CACHE_TTL = 300_000L;
+    private static final int DEFAULT_TOKEN_CACHE_SIZE = 1000;
+
     private final JwtTokenParser jwtTokenParser;
 
     private final String acceptedIssuer;
 
     private final Config config;
 
+    private final long publicKeyCacheTTL;
+
+    private final int tokenCacheSize;
+
+    private final Map<String, JsonWebTokenImpl> verifiedTokens = new ConcurrentHashMap<>();
+
+    private volatile PublicKey publicKey;
+
+    private volatile long publicKeyExpiry;
+
     public SignedJWTIdentityStore() {
         config = ConfigProvider.getConfig();
         
@@ -97,28 +118,29 @@ public class SignedJWTIdentityStore implements IdentityStore {
                 .orElseThrow(() -> new IllegalStateException("No issuer found")));
         
         jwtTokenParser = new JwtTokenParser(readEnabledNamespace(properties), readCustomNamespace(properties));
+        publicKeyCacheTTL = readLongProperty(properties, "publicKey.cache.ttl", DEFAULT_PUBLIC_KEY_CACHE_TTL);
+        tokenCacheSize = (int) readLongProperty(properties, "token.cache.size", DEFAULT_TOKEN_CACHE_SIZE);
     }
 
     public CredentialValidationResult validate(SignedJWTCredential signedJWTCredential) {
         try {
 
-            Optional<PublicKey> publicKey = readPublicKeyFromLocation("/publicKey.pem");
-            if (!publicKey.isPresent()) {
-                publicKey = readMPEmbeddedPublicKey();
-            }
-            if (!publicKey.isPresent()) {
-                publicKey = readMPPublicKeyFromLocation();
-            }
-            if (!publicKey.isPresent()) {
-                throw new IllegalStateException("No PublicKey found");
+            PublicKey currentPublicKey = getPublicKey();
+
+            String signedJWT = signedJWTCredential.getSignedJWT();
+            String tokenHash = tokenCacheSize > 0 ? hash(signedJWT) : null;
+            JsonWebTokenImpl jsonWebToken = tokenHash != null ? verifiedTokens.get(tokenHash) : null;
+            if (jsonWebToken != null && jsonWebToken.getExpirationTime() <= System.currentTimeMillis() / 1000) {
+                verifiedTokens.remove(tokenHash);
+                jsonWebToken = null;
             }
 
-            JsonWebTokenImpl jsonWebToken
-                    = jwtTokenParser.parse(
-                            signedJWTCredential.getSignedJWT(),
-                            acceptedIssuer,
-                            publicKey.get()
-                    );
+            if (jsonWebToken == null) {
+                jsonWebToken = jwtTokenParser.parse(signedJWT, acceptedIssuer, currentPublicKey);
+                if (tokenHash != null) {
+                    cacheVerifiedToken(tokenHash, jsonWebToken);
+                }
+            }
 
             List<String> groups = new ArrayList<>(
                     jsonWebToken.getClaim("groups"));
@@ -134,6 +156,85 @@ public class SignedJWTIdentityStore implements IdentityStore {
         return INVALID_RESULT;
     }
     
+    /**
+     * Gets the public key to verify tokens with, resolving it the first time and again once a key from a remote
+     * location has expired. If refreshing fails, the previous key is kept.
+     */
+    private PublicKey getPublicKey() throws Exception {
+        PublicKey currentPublicKey = publicKey;
+        if (currentPublicKey != null && System.currentTimeMillis() < publicKeyExpiry) {
+            return currentPublicKey;
+        }
+        synchronized (this) {
+            if (publicKey != null && System.currentTimeMillis() < publicKeyExpiry) {
+                return publicKey;
+            }
+            try {
+                Optional<PublicKey> resolvedKey = readPublicKeyFromLocation("/publicKey.pem");
+                boolean remote = false;
+                if (!resolvedKey.isPresent()) {
+                    resolvedKey = readMPEmbeddedPublicKey();
+                }
+                if (!resolvedKey.isPresent()) {
+                    resolvedKey = readMPPublicKeyFromLocation();
+                    remote = resolvedKey.isPresent() && isRemoteLocation(
+                            config.getValue(VERIFIER_PUBLIC_KEY_LOCATION, String.class));
+                }
+                if (!resolvedKey.isPresent()) {
+                    throw new IllegalStateException("No PublicKey found");
+                }
+                if (!resolvedKey.get().equals(publicKey)) {
+                    // Tokens verified with the previous key need to be verified again
+                    verifiedTokens.clear();
+                }
+                publicKey = resolvedKey.get();
+                publicKeyExpiry = remote && publicKeyCacheTTL > 0
+                        ? System.currentTimeMillis() + publicKeyCacheTTL
+                        : Long.MAX_VALUE;
+            } catch (Exception e) {
+                if (publicKey == null) {
+                    throw e;
+                }
+                LOGGER.log(WARNING, "Failed to refresh the public key, keeping the previous one", e);
+                publicKeyExpiry = System.currentTimeMillis() + publicKeyCacheTTL;
+            }
+            return publicKey;
+        }
+    }
+
+    private boolean isRemoteLocation(String publicKeyLocation) {
+        return currentThread().getContextClassLoader().getResource(publicKeyLocation) == null;
+    }
+
+    private void cacheVerifiedToken(String tokenHash, JsonWebTokenImpl jsonWebToken) {
+        if (verifiedTokens.size() >= tokenCacheSize) {
+            long now = System.currentTimeMillis() / 1000;
+            verifiedTokens.values().removeIf(token -> token.getExpirationTime() <= now);
+            if (verifiedTokens.size() >= tokenCacheSize) {
+                // Still full of live tokens, start over rather than tracking the least recently used
+                verifiedTokens.clear();
+            }
+        }
+        verifiedTokens.put(tokenHash, jsonWebToken);
+    }
+
+    private static String hash(String signedJWT) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(signedJWT.getBytes(UTF_8));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    private long readLongProperty(Optional<Properties> properties, String name, long defaultValue) {
+        if (!properties.isPresent() || properties.get().getProperty(name) == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(properties.get().getProperty(name).trim());
+        } catch (NumberFormatException e) {
+            LOGGER.log(WARNING, "Invalid value for " + name + ", using " + defaultValue, e);
+            return defaultValue;
+        }
+    }
+
     private Optional<Properties> readVendorProperties() {
         URL mpJwtResource = currentThread().getContextClassLoader().getResource("/payara-mp-jwt.properties");
         Properties properties = null;
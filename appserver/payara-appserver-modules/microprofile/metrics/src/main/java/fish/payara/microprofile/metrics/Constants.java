@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -55,4 +55,8 @@ public class Constants {
             BASE.getName(), VENDOR.getName(), APPLICATION.getName()
     );
 
+    // Reservoir Types
+    public static final String EXPONENTIALLY_DECAYING_RESERVOIR = "exponentially-decaying";
+    public static final String HDR_HISTOGRAM_RESERVOIR = "hdr-histogram";
+
 }
@@ -0,0 +1,95 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *    Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ * 
+ *     The contents of this file are subject to the terms of either the GNU
+ *     General Public License Version 2 only ("GPL") or the Common Development
+ *     and Distribution License("CDDL") (collectively, the "License").  You
+ *     may not use this file except in compliance with the License.  You can
+ *     obtain a copy of the License at
+ *     https://github.com/payara/Payara/blob/master/LICENSE.txt
+ *     See the License for the specific
+ *     language governing permissions and limitations under the License.
+ * 
+ *     When distributing the software, include this License Header Notice in each
+ *     file and include the License file at glassfish/legal/LICENSE.txt.
+ * 
+ *     GPL Classpath Exception:
+ *     The Payara Foundation designates this particular file as subject to the "Classpath"
+ *     exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ *     file that accompanied this code.
+ * 
+ *     Modifications:
+ *     If applicable, add the following below the License Header, with the fields
+ *     enclosed by brackets [] replaced by your own identifying information:
+ *     "Portions Copyright [year] [name of copyright owner]"
+ * 
+ *     Contributor(s):
+ *     If you wish your version of this file to be governed by only the CDDL or
+ *     only the GPL Version 2, indicate your decision by adding "[Contributor]
+ *     elects to include this software in this distribution under the [CDDL or GPL
+ *     Version 2] license."  If you don't indicate a single choice of license, a
+ *     recipient has the option to distribute your version of this file under
+ *     either the CDDL, the GPL Version 2 or to extend the choice of license to
+ *     its licensees as provided above.  However, if you add GPL Version 2 code
+ *     and therefore, elected the GPL Version 2 license, then the option applies
+ *     only if the new code is made subject to such option by the copyright
+ *     holder.
+ */
+
+package fish.payara.microprofile.metrics;
+
+import java.util.regex.Pattern;
+
+/**
+ * Translates metric names to the Prometheus format. Shared by the registries,
+ * which sanitize a name once when a metric is registered, and the Prometheus
+ * writer.
+ */
+public final class MetricNames {
+
+    private static final String UNDERSCORE = "_";
+    private static final String COLON = ":";
+
+    private static final Pattern CAMEL_CASE = Pattern.compile("(.)(\\p{Upper})");
+    private static final Pattern SEPARATORS = Pattern.compile("[-_./\\s]+");
+
+    private MetricNames() {
+        // utility class
+    }
+
+    /**
+     * Translates a metric name to the Prometheus format. This is relatively
+     * expensive, so registries compute it once when a metric is registered.
+     *
+     * @param name the metric name
+     * @return the sanitized name
+     */
+    public static String sanitizeMetricName(String name) {
+        //Translation rules :
+        //camelCase is translated to camel_case
+        String out = CAMEL_CASE.matcher(name).replaceAll("$1_$2").toLowerCase();
+        //Dot (.), Space ( ), Dash (-), Slash (/) are translated to underscore (_)
+        //Double underscore is translated to single underscore
+        out = SEPARATORS.matcher(out).replaceAll(UNDERSCORE);
+        //Colon-underscore (:_) is translated to single colon
+        out = out.replace(COLON + UNDERSCORE, COLON);
+        return out;
+    }
+
+    /**
+     * Prefixes a sanitized metric name with its scope, giving the same result
+     * as sanitizing the scoped name.
+     *
+     * @param scope the scope, i.e. base, vendor or application
+     * @param sanitizedName the sanitized metric name
+     * @return the sanitized scoped name
+     */
+    public static String scopedMetricName(String scope, String sanitizedName) {
+        if (sanitizedName.startsWith(UNDERSCORE)) {
+            return scope + COLON + sanitizedName.substring(1);
+        }
+        return scope + COLON + sanitizedName;
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -43,7 +43,10 @@ import fish.payara.microprofile.metrics.admin.MetricsServiceConfiguration;
 import fish.payara.microprofile.metrics.cdi.MetricsHelper;
 import fish.payara.microprofile.metrics.exception.NoSuchMetricException;
 import fish.payara.microprofile.metrics.exception.NoSuchRegistryException;
+import fish.payara.microprofile.metrics.impl.ExponentiallyDecayingReservoir;
+import fish.payara.microprofile.metrics.impl.HdrHistogramReservoir;
 import fish.payara.microprofile.metrics.impl.MetricRegistryImpl;
+import fish.payara.microprofile.metrics.impl.Reservoir;
 import fish.payara.microprofile.metrics.jmx.MBeanMetadata;
 import fish.payara.microprofile.metrics.jmx.MBeanMetadataConfig;
 import fish.payara.microprofile.metrics.jmx.MBeanMetadataHelper;
@@ -73,8 +76,10 @@ import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
+import static fish.payara.microprofile.metrics.Constants.HDR_HISTOGRAM_RESERVOIR;
 import static org.eclipse.microprofile.metrics.MetricRegistry.Type.BASE;
 import static org.eclipse.microprofile.metrics.MetricRegistry.Type.VENDOR;
 
@@ -297,7 +302,7 @@ public class MetricsService implements EventListener {
     public MetricRegistry getOrAddRegistry(String registryName) {
         MetricRegistry registry = REGISTRIES.get(registryName.toLowerCase());
         if (registry == null) {
-            registry = new MetricRegistryImpl();
+            registry = new MetricRegistryImpl(getReservoirFactory());
             final MetricRegistry raced = REGISTRIES.putIfAbsent(registryName.toLowerCase(), registry);
             if (raced != null) {
                 registry = raced;
@@ -306,6 +311,14 @@ public class MetricsService implements EventListener {
         return registry;
     }
     
+    private Supplier<Reservoir> getReservoirFactory() {
+        if (metricsServiceConfiguration != null
+                && HDR_HISTOGRAM_RESERVOIR.equalsIgnoreCase(metricsServiceConfiguration.getReservoirType())) {
+            return HdrHistogramReservoir::new;
+        }
+        return ExponentiallyDecayingReservoir::new;
+    }
+
     /**
      * Remove the Metrics registry
      * 
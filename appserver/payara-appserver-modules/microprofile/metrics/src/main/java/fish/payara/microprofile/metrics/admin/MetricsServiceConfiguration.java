@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -40,6 +40,7 @@
 package fish.payara.microprofile.metrics.admin;
 
 import java.beans.PropertyVetoException;
+import javax.validation.constraints.Pattern;
 import org.glassfish.api.admin.config.ConfigExtension;
 import org.jvnet.hk2.config.Attribute;
 import org.jvnet.hk2.config.ConfigBeanProxy;
@@ -98,4 +99,15 @@ public interface MetricsServiceConfiguration extends ConfigBeanProxy, ConfigExte
     String getVirtualServers();
     void setVirtualServers(String value) throws PropertyVetoException;
 
+    /**
+     * String value defines the reservoir used by histograms and timers,
+     * either exponentially-decaying or hdr-histogram.
+     *
+     * @return
+     */
+    @Attribute(defaultValue = "exponentially-decaying")
+    @Pattern(regexp = "exponentially-decaying|hdr-histogram", message = "Value must be one of: exponentially-decaying, hdr-histogram.")
+    String getReservoirType();
+    void setReservoirType(String value) throws PropertyVetoException;
+
 }
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -103,6 +103,9 @@ public class SetMetricsConfigurationCommand implements AdminCommand {
     @Param(name = "virtualServers", optional = true)
     private String virtualServers;
 
+    @Param(name = "reservoirType", optional = true, acceptableValues = "exponentially-decaying,hdr-histogram")
+    private String reservoirType;
+
     @Param(optional = true, defaultValue = "server-config")
     private String target;
     
@@ -145,6 +148,10 @@ public class SetMetricsConfigurationCommand implements AdminCommand {
                     configProxy.setVirtualServers(virtualServers);
                     restart = true;
                 }
+                if (reservoirType != null) {
+                    configProxy.setReservoirType(reservoirType);
+                    restart = true;
+                }
 
                 if (restart) {
                     actionReport.setMessage("Restart server for change to take effect");
@@ -0,0 +1,249 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.metrics.impl;
+
+import fish.payara.microprofile.metrics.impl.WeightedSnapshot.WeightedSample;
+import static java.lang.Integer.highestOneBit;
+import static java.lang.Math.min;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.eclipse.microprofile.metrics.Snapshot;
+
+/**
+ * A fixed-memory reservoir which counts values in log-linear buckets, in the
+ * style of HdrHistogram. Values below 64 are counted exactly, larger values
+ * fall into a bucket whose width is at most 1/32 of its lower bound, so
+ * reported quantiles are within about 3% of the recorded value.
+ * <p>
+ * Recording a value neither allocates nor takes a lock. Each thread
+ * increments the bucket counter of one of several stripes, picked by thread
+ * id, which keeps concurrent {@code @Timed} invocations from contending on a
+ * single counter. Like the {@link ExponentiallyDecayingReservoir} the
+ * reservoir is biased towards recent values: counts are kept in two
+ * alternating windows and a snapshot covers the current and the previous
+ * window. Negative values are recorded as zero.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_BITS = SUB_BUCKET_BITS - 1;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_BITS;
+
+    /**
+     * Exact buckets for values below {@link #SUB_BUCKET_COUNT} followed by
+     * {@link #SUB_BUCKET_HALF_COUNT} buckets for each remaining power of two.
+     */
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT
+            + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+
+    private static final int MAX_STRIPES = 4;
+    private static final long DEFAULT_WINDOW = TimeUnit.SECONDS.toNanos(150);
+
+    private final Window[] windows;
+    private volatile int current;
+    private final AtomicLong nextRotation;
+    private final long window;
+    private final Clock clock;
+
+    /**
+     * Creates a new {@link HdrHistogramReservoir} with a window of 150
+     * seconds, so that snapshots cover between the last two and a half and
+     * the last five minutes of measurements, and one stripe per processor
+     * up to a maximum of 4.
+     */
+    public HdrHistogramReservoir() {
+        this(defaultStripes(), DEFAULT_WINDOW, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new {@link HdrHistogramReservoir}.
+     *
+     * @param stripes the number of counter stripes, rounded down to a power
+     * of two
+     * @param window the time after which the older of the two windows is
+     * discarded
+     * @param windowUnit the unit of {@code window}
+     */
+    public HdrHistogramReservoir(int stripes, long window, TimeUnit windowUnit) {
+        this(stripes, window, windowUnit, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new {@link HdrHistogramReservoir}.
+     *
+     * @param stripes the number of counter stripes, rounded down to a power
+     * of two
+     * @param window the time after which the older of the two windows is
+     * discarded
+     * @param windowUnit the unit of {@code window}
+     * @param clock the clock used to track window rotation
+     */
+    public HdrHistogramReservoir(int stripes, long window, TimeUnit windowUnit, Clock clock) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        int stripeCount = highestOneBit(stripes);
+        this.windows = new Window[]{new Window(stripeCount), new Window(stripeCount)};
+        this.window = windowUnit.toNanos(window);
+        this.clock = clock;
+        this.nextRotation = new AtomicLong(clock.getTick() + this.window);
+    }
+
+    private static int defaultStripes() {
+        return min(MAX_STRIPES, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public int size() {
+        rotateIfNeeded();
+        return (int) min(Integer.MAX_VALUE, windows[0].total() + windows[1].total());
+    }
+
+    @Override
+    public void update(long value) {
+        rotateIfNeeded();
+        windows[current].record(bucketIndex(value));
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        rotateIfNeeded();
+        final Window first = windows[0];
+        final Window second = windows[1];
+        final List<WeightedSample> samples = new ArrayList<>();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            final long count = first.count(i) + second.count(i);
+            if (count > 0) {
+                samples.add(new WeightedSample(bucketValue(i), count));
+            }
+        }
+        return new WeightedSnapshot(samples);
+    }
+
+    /**
+     * Clears the older window and makes it the current one. A recording
+     * thread that raced with the rotation may still add its value to the
+     * window being cleared, which only affects that single value.
+     */
+    private void rotateIfNeeded() {
+        final long now = clock.getTick();
+        final long next = nextRotation.get();
+        if (now >= next && nextRotation.compareAndSet(next, now + window)) {
+            final int older = current ^ 1;
+            windows[older].clear();
+            if (now - next >= window) {
+                // nothing was rotated for a whole window, so both are stale
+                windows[current].clear();
+            }
+            current = older;
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_HALF_BITS;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+                + (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+    }
+
+    /**
+     * Returns the value reported for the given bucket, which is the middle of
+     * the range of values counted in it.
+     */
+    static long bucketValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int offset = index - SUB_BUCKET_COUNT;
+        final int shift = (offset >> SUB_BUCKET_HALF_BITS) + 1;
+        final long lowest = (long) ((offset & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT) << shift;
+        return lowest + ((1L << shift) - 1) / 2;
+    }
+
+    /**
+     * Counts for one window, split into stripes. The last slot of each stripe
+     * holds the number of values recorded in it.
+     */
+    private static final class Window {
+
+        private final AtomicLongArray[] stripes;
+        private final int mask;
+
+        Window(int stripeCount) {
+            this.stripes = new AtomicLongArray[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new AtomicLongArray(BUCKET_COUNT + 1);
+            }
+            this.mask = stripeCount - 1;
+        }
+
+        void record(int index) {
+            final AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & mask];
+            stripe.incrementAndGet(index);
+            stripe.incrementAndGet(BUCKET_COUNT);
+        }
+
+        long count(int index) {
+            long count = 0;
+            for (AtomicLongArray stripe : stripes) {
+                count += stripe.get(index);
+            }
+            return count;
+        }
+
+        long total() {
+            return count(BUCKET_COUNT);
+        }
+
+        void clear() {
+            for (AtomicLongArray stripe : stripes) {
+                for (int i = 0; i <= BUCKET_COUNT; i++) {
+                    stripe.lazySet(i, 0);
+                }
+            }
+        }
+    }
+}
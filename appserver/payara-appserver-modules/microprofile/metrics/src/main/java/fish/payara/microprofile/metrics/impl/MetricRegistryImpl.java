@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -39,6 +39,7 @@
  */
 package fish.payara.microprofile.metrics.impl;
 
+import fish.payara.microprofile.metrics.MetricNames;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -49,6 +50,7 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import static java.util.stream.Collectors.toMap;
 import javax.enterprise.inject.Vetoed;
 import org.eclipse.microprofile.metrics.Counter;
@@ -76,10 +78,25 @@ public class MetricRegistryImpl extends MetricRegistry {
 
     private final Map<String, Metric> metricMap;
     private final Map<String, Metadata> metadataMap;
+    private final Map<String, String> sanitizedNames;
+    private final Supplier<Reservoir> reservoirFactory;
 
     public MetricRegistryImpl() {
+        this(ExponentiallyDecayingReservoir::new);
+    }
+
+    /**
+     * Creates a registry whose histograms and timers use reservoirs created
+     * by the given factory.
+     *
+     * @param reservoirFactory creates the {@link Reservoir} of each new
+     * histogram and timer
+     */
+    public MetricRegistryImpl(Supplier<Reservoir> reservoirFactory) {
         this.metricMap = new ConcurrentHashMap<>();
         this.metadataMap = new ConcurrentHashMap<>();
+        this.sanitizedNames = new ConcurrentHashMap<>();
+        this.reservoirFactory = reservoirFactory;
     }
 
     @Override
@@ -195,9 +212,22 @@ public class MetricRegistryImpl extends MetricRegistry {
     public boolean remove(String name) {
         final Metric metric = metricMap.remove(name);
         metadataMap.remove(name);
+        sanitizedNames.remove(name);
         return metric != null;
     }
 
+    /**
+     * Returns the name of a metric translated to the Prometheus format,
+     * which is computed once when the metric is registered.
+     *
+     * @param name the metric name
+     * @return the sanitized metric name
+     */
+    public String getSanitizedName(String name) {
+        String sanitizedName = sanitizedNames.get(name);
+        return sanitizedName == null ? MetricNames.sanitizeMetricName(name) : sanitizedName;
+    }
+
     @Override
     public void removeMatching(MetricFilter metricFilter) {
         Iterator<Entry<String, Metric>> iterator = metricMap.entrySet().iterator();
@@ -234,6 +264,7 @@ public class MetricRegistryImpl extends MetricRegistry {
         if (existingMetadata == null) {
             metricMap.put(name, metric == null ? createMetricInstance(newMetadata) : metric);
             metadataMap.put(name, metadataClone(newMetadata));
+            sanitizedNames.put(name, MetricNames.sanitizeMetricName(name));
         } else if (existingMetadata.isReusable() || newMetadata.isReusable()) {
 
             //if existing metric declared not reusable
@@ -298,10 +329,10 @@ public class MetricRegistryImpl extends MetricRegistry {
                 metric = new MeterImpl();
                 break;
             case HISTOGRAM:
-                metric = new HistogramImpl();
+                metric = new HistogramImpl(reservoirFactory.get());
                 break;
             case TIMER:
-                metric = new TimerImpl();
+                metric = new TimerImpl(reservoirFactory.get());
                 break;
             case INVALID:
             default:
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -48,6 +48,8 @@ import static java.util.Collections.emptyList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import static java.util.logging.Level.WARNING;
 import java.util.logging.Logger;
@@ -77,6 +79,24 @@ public class MBeanExpression {
 
     private static final Logger LOGGER = Logger.getLogger(MBeanExpression.class.getName());
 
+    /**
+     * How long an attribute value read from the MBean server may be reused,
+     * so that the metrics sharing an attribute (e.g. the sub attributes of
+     * HeapMemoryUsage) read it once per scrape. Zero disables the cache.
+     */
+    private static final long ATTRIBUTE_CACHE_DURATION = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("fish.payara.microprofile.metrics.jmx.cacheDuration", 1000));
+
+    /**
+     * Attributes not yet cached are read straight from the MBean server while
+     * the cache holds this many fresh values.
+     */
+    private static final int ATTRIBUTE_CACHE_MAX_SIZE = 4096;
+
+    private static final Map<String, CachedAttribute> ATTRIBUTE_CACHE = new ConcurrentHashMap<>();
+
+    private String cacheKey;
+
     public MBeanExpression(String expression) {
         if (expression == null || expression.trim().isEmpty()) {
             throw new IllegalArgumentException("MBean Expression is null");
@@ -116,7 +136,37 @@ public class MBeanExpression {
     }
 
     public Object getAttribute() throws Exception {
-        return mBeanServer.getAttribute(objectName, getAttributeName());
+        if (ATTRIBUTE_CACHE_DURATION <= 0) {
+            return mBeanServer.getAttribute(objectName, getAttributeName());
+        }
+        if (cacheKey == null) {
+            cacheKey = objectName.getCanonicalName() + ATTRIBUTE_SEPARATOR + attributeName;
+        }
+        long now = System.nanoTime();
+        CachedAttribute cached = ATTRIBUTE_CACHE.get(cacheKey);
+        if (cached != null && now - cached.readTime < ATTRIBUTE_CACHE_DURATION) {
+            return cached.value;
+        }
+        Object value = mBeanServer.getAttribute(objectName, getAttributeName());
+        if (cached != null) {
+            ATTRIBUTE_CACHE.replace(cacheKey, new CachedAttribute(value, now));
+        } else {
+            cacheAttribute(cacheKey, new CachedAttribute(value, now));
+        }
+        return value;
+    }
+
+    /**
+     * Adds an attribute to the cache, evicting the expired values once the
+     * cache is full. The attribute isn't cached if all values are fresh.
+     */
+    private static synchronized void cacheAttribute(String key, CachedAttribute attribute) {
+        if (ATTRIBUTE_CACHE.size() >= ATTRIBUTE_CACHE_MAX_SIZE) {
+            ATTRIBUTE_CACHE.values().removeIf(entry -> attribute.readTime - entry.readTime >= ATTRIBUTE_CACHE_DURATION);
+        }
+        if (ATTRIBUTE_CACHE.size() < ATTRIBUTE_CACHE_MAX_SIZE) {
+            ATTRIBUTE_CACHE.put(key, attribute);
+        }
     }
 
     public String findDynamicKey() {
@@ -179,4 +229,15 @@ public class MBeanExpression {
         return subAttributes;
     }
 
+    private static final class CachedAttribute {
+
+        private final Object value;
+        private final long readTime;
+
+        CachedAttribute(Object value, long readTime) {
+            this.value = value;
+            this.readTime = readTime;
+        }
+    }
+
 }
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -50,7 +50,9 @@
 
 package fish.payara.microprofile.metrics.writer;
 
+import fish.payara.microprofile.metrics.MetricNames;
 import fish.payara.microprofile.metrics.Tag;
+import java.io.PrintWriter;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.eclipse.microprofile.metrics.Counter;
@@ -83,6 +85,7 @@ import static org.eclipse.microprofile.metrics.MetricUnits.NONE;
 import static org.eclipse.microprofile.metrics.MetricUnits.PERCENT;
 import static org.eclipse.microprofile.metrics.MetricUnits.SECONDS;
 import org.eclipse.microprofile.metrics.Sampling;
+import org.eclipse.microprofile.metrics.Snapshot;
 import org.eclipse.microprofile.metrics.Timer;
 
 public class PrometheusExporter {
@@ -93,6 +96,7 @@ public class PrometheusExporter {
     private static final String SPACE = " ";
     private static final String COMMA = ",";
     private static final String UNDERSCORE = "_";
+    private static final String COLON = ":";
 
     private static final String TYPE_TITLE = "# TYPE ";
     private static final String HELP_TITLE = "# HELP ";
@@ -110,6 +114,10 @@ public class PrometheusExporter {
     private static final String ONE_MIN_RATE = "_one_min_rate_";
     private static final String FIVE_MIN_RATE = "_five_min_rate_";
     private static final String FIFTEEN_MIN_RATE = "_fifteen_min_rate_";
+    private static final String RATE_PER_SECOND = RATE + MetricUnits.PER_SECOND;
+    private static final String ONE_MIN_RATE_PER_SECOND = ONE_MIN_RATE + MetricUnits.PER_SECOND;
+    private static final String FIVE_MIN_RATE_PER_SECOND = FIVE_MIN_RATE + MetricUnits.PER_SECOND;
+    private static final String FIFTEEN_MIN_RATE_PER_SECOND = FIFTEEN_MIN_RATE + MetricUnits.PER_SECOND;
 
     private static final String APPENDED_SECONDS = "_seconds";
     private static final String APPENDED_BYTES = "_bytes";
@@ -135,12 +143,27 @@ public class PrometheusExporter {
     private static final double MEGABYTE_CONVERSION = 1024d * 1024d;
     private static final double GIGABYTE_CONVERSION = 1024d * 1024d * 1024d;
 
-    private static final Logger LOGGER = Logger.getLogger(PrometheusExporter.class.getName());
+    private static final String QUANTILE_50 = quantileTag("0.5");
+    private static final String QUANTILE_75 = quantileTag("0.75");
+    private static final String QUANTILE_95 = quantileTag("0.95");
+    private static final String QUANTILE_98 = quantileTag("0.98");
+    private static final String QUANTILE_99 = quantileTag("0.99");
+    private static final String QUANTILE_999 = quantileTag("0.999");
 
-    private final StringBuilder builder;
+    private static final Logger LOGGER = Logger.getLogger(PrometheusExporter.class.getName());
 
-    public PrometheusExporter(StringBuilder builder){
-        this.builder = builder;
+    private final PrintWriter out;
+
+    /**
+     * Creates an exporter which streams the Prometheus text format to the
+     * given writer. The metric names passed to the export methods must
+     * already be sanitized, see {@link MetricNames#sanitizeMetricName(String)}
+     * and {@link MetricNames#scopedMetricName(String, String)}.
+     *
+     * @param out the writer to export to
+     */
+    public PrometheusExporter(PrintWriter out) {
+        this.out = out;
     }
 
     public void exportCounter(Counter counter, String name, String description, String tags) {
@@ -183,29 +206,30 @@ public class PrometheusExporter {
     }
 
     private void exportCounting(Counting counting, String name, String description, String tags) {
-        writeTypeHelpValueLine(name + TOTAL_SUFFIX, COUNTER.toString(), description, counting.getCount(), tags);
+        writeTypeHelpValueLine(name, TOTAL_SUFFIX, COUNTER.toString(), description, counting.getCount(), tags, null);
     }
 
     private void exportMetered(Metered metered, String name, String description, String tags) {
-        writeTypeValueLine(name + RATE + MetricUnits.PER_SECOND, GAUGE.toString(), metered.getMeanRate(), tags);
-        writeTypeValueLine(name + ONE_MIN_RATE + MetricUnits.PER_SECOND, GAUGE.toString(), metered.getOneMinuteRate(), tags);
-        writeTypeValueLine(name + FIVE_MIN_RATE + MetricUnits.PER_SECOND, GAUGE.toString(), metered.getFiveMinuteRate(), tags);
-        writeTypeValueLine(name + FIFTEEN_MIN_RATE + MetricUnits.PER_SECOND, GAUGE.toString(), metered.getFifteenMinuteRate(), tags);
+        writeTypeValueLine(name, RATE_PER_SECOND, GAUGE.toString(), metered.getMeanRate(), tags, null);
+        writeTypeValueLine(name, ONE_MIN_RATE_PER_SECOND, GAUGE.toString(), metered.getOneMinuteRate(), tags, null);
+        writeTypeValueLine(name, FIVE_MIN_RATE_PER_SECOND, GAUGE.toString(), metered.getFiveMinuteRate(), tags, null);
+        writeTypeValueLine(name, FIFTEEN_MIN_RATE_PER_SECOND, GAUGE.toString(), metered.getFifteenMinuteRate(), tags, null);
     }
 
     private void exportSampling(Sampling sampling, String name, String description, String tags, String unit) {
 
-        double mean = sampling.getSnapshot().getMean();
-        double max = sampling.getSnapshot().getMax();
-        double min = sampling.getSnapshot().getMin();
-        double stdDev = sampling.getSnapshot().getStdDev();
-        double median = sampling.getSnapshot().getMedian();
+        Snapshot snapshot = sampling.getSnapshot();
+        double mean = snapshot.getMean();
+        double max = snapshot.getMax();
+        double min = snapshot.getMin();
+        double stdDev = snapshot.getStdDev();
+        double median = snapshot.getMedian();
 
-        double percentile75th = sampling.getSnapshot().get75thPercentile();
-        double percentile95th = sampling.getSnapshot().get95thPercentile();
-        double percentile98th = sampling.getSnapshot().get98thPercentile();
-        double percentile99th = sampling.getSnapshot().get99thPercentile();
-        double percentile999th = sampling.getSnapshot().get999thPercentile();
+        double percentile75th = snapshot.get75thPercentile();
+        double percentile95th = snapshot.get95thPercentile();
+        double percentile98th = snapshot.get98thPercentile();
+        double percentile99th = snapshot.get99thPercentile();
+        double percentile999th = snapshot.get999thPercentile();
 
         Double conversionFactor = getConversionFactor(unit);
         if (!Double.isNaN(conversionFactor)) {
@@ -223,97 +247,105 @@ public class PrometheusExporter {
         }
 
         String appendUnit = getAppendUnit(unit);
-        writeTypeValueLine(name + MEAN_SUFFIX, GAUGE.toString(), mean, tags, appendUnit);
-        writeTypeValueLine(name + MAX_SUFFIX, GAUGE.toString(), max, tags, appendUnit);
-        writeTypeValueLine(name + MIN_SUFFIX, GAUGE.toString(), min, tags, appendUnit);
-        writeTypeValueLine(name + STDDEV_SUFFIX, GAUGE.toString(), stdDev, tags, appendUnit);
+        writeTypeValueLine(name, MEAN_SUFFIX, GAUGE.toString(), mean, tags, appendUnit);
+        writeTypeValueLine(name, MAX_SUFFIX, GAUGE.toString(), max, tags, appendUnit);
+        writeTypeValueLine(name, MIN_SUFFIX, GAUGE.toString(), min, tags, appendUnit);
+        writeTypeValueLine(name, STDDEV_SUFFIX, GAUGE.toString(), stdDev, tags, appendUnit);
 
-        writeTypeLine(name, SUMMARY, appendUnit);
-        writeHelpLine(name, description, appendUnit);
+        writeTypeLine(name, null, SUMMARY, appendUnit);
+        writeHelpLine(name, null, description, appendUnit);
         if (Counting.class.isInstance(sampling)) {
-            writeValueLine(name, ((Counting) sampling).getCount(), tags, appendUnit == null ? COUNT_SUFFIX : appendUnit + COUNT_SUFFIX);
+            writeValueLine(name, null, ((Counting) sampling).getCount(), tags, null, appendUnit == null ? COUNT_SUFFIX : appendUnit + COUNT_SUFFIX);
         }
 
-        writeValueLine(name, median, tags, new Tag(QUANTILE, "0.5"), appendUnit);
-        writeValueLine(name, percentile75th, tags, new Tag(QUANTILE, "0.75"), appendUnit);
-        writeValueLine(name, percentile95th, tags, new Tag(QUANTILE, "0.95"), appendUnit);
-        writeValueLine(name, percentile98th, tags, new Tag(QUANTILE, "0.98"), appendUnit);
-        writeValueLine(name, percentile99th, tags, new Tag(QUANTILE, "0.99"), appendUnit);
-        writeValueLine(name, percentile999th, tags, new Tag(QUANTILE, "0.999"), appendUnit);
+        writeValueLine(name, null, median, tags, QUANTILE_50, appendUnit);
+        writeValueLine(name, null, percentile75th, tags, QUANTILE_75, appendUnit);
+        writeValueLine(name, null, percentile95th, tags, QUANTILE_95, appendUnit);
+        writeValueLine(name, null, percentile98th, tags, QUANTILE_98, appendUnit);
+        writeValueLine(name, null, percentile99th, tags, QUANTILE_99, appendUnit);
+        writeValueLine(name, null, percentile999th, tags, QUANTILE_999, appendUnit);
     }
 
     private void writeTypeHelpValueLine(String name, String type, String description, Number value, String tags) {
-        writeTypeHelpValueLine(name, type, description, value, tags, null);
+        writeTypeHelpValueLine(name, null, type, description, value, tags, null);
     }
 
     private void writeTypeHelpValueLine(String name, String type, String description, Number value, String tags, String appendUnit) {
-        writeTypeLine(name, type, appendUnit);
-        writeHelpLine(name, description, appendUnit);
-        writeValueLine(name, value, tags, appendUnit);
-    }
-
-    private void writeTypeValueLine(String name, String type, Number value, String tags) {
-        writeTypeValueLine(name, type, value, tags, null);
+        writeTypeHelpValueLine(name, null, type, description, value, tags, appendUnit);
     }
 
-    private void writeTypeValueLine(String name, String type, Number value, String tags, String appendUnit) {
-        writeTypeLine(name, type, appendUnit);
-        writeValueLine(name, value, tags, appendUnit);
+    private void writeTypeHelpValueLine(String name, String suffix, String type, String description, Number value, String tags, String appendUnit) {
+        writeTypeLine(name, suffix, type, appendUnit);
+        writeHelpLine(name, suffix, description, appendUnit);
+        writeValueLine(name, suffix, value, tags, null, appendUnit);
     }
 
-    private void writeValueLine(String name, Number value, String tags, Tag quantile, String appendUnit) {
-        String qunatileKeyValue = quantile.getKey() + "=\"" + quantile.getValue() + "\"";
-        tags = tags == null || tags.isEmpty() ? qunatileKeyValue : tags + COMMA + qunatileKeyValue;
-        writeValueLine(name, value, tags, appendUnit);
+    private void writeTypeValueLine(String name, String suffix, String type, Number value, String tags, String appendUnit) {
+        writeTypeLine(name, suffix, type, appendUnit);
+        writeValueLine(name, suffix, value, tags, null, appendUnit);
     }
 
-    private void writeValueLine(String name, Number value, String tags, String appendUnit) {
-        builder.append(sanitizeMetricName(name));
-        if (appendUnit != null) {
-            builder.append(appendUnit);
-        }
-        if (tags != null && tags.length() > 0) {
-            builder.append(LEFT_BRACES).append(tags).append(RIGHT_BRACES);
+    private void writeValueLine(String name, String suffix, Number value, String tags, String quantile, String appendUnit) {
+        writeName(name, suffix, appendUnit);
+        boolean hasTags = tags != null && !tags.isEmpty();
+        if (hasTags || quantile != null) {
+            out.write(LEFT_BRACES);
+            if (hasTags) {
+                out.write(tags);
+            }
+            if (quantile != null) {
+                if (hasTags) {
+                    out.write(COMMA);
+                }
+                out.write(quantile);
+            }
+            out.write(RIGHT_BRACES);
         }
-        builder.append(SPACE);
-        builder.append(value);
-        builder.append(LF);
+        out.write(SPACE);
+        out.print(value);
+        out.write(LF);
     }
 
-    private void writeHelpLine(String name, String description, String appendUnit) {
+    private void writeHelpLine(String name, String suffix, String description, String appendUnit) {
         if (description != null && !description.isEmpty()) {
-            builder.append(HELP_TITLE);
-            builder.append(sanitizeMetricName(name));
-            if (appendUnit != null) {
-                builder.append(appendUnit);
-            }
-            builder.append(SPACE);
-            builder.append(description);
-            builder.append(LF);
+            out.write(HELP_TITLE);
+            writeName(name, suffix, appendUnit);
+            out.write(SPACE);
+            out.write(description);
+            out.write(LF);
         }
     }
 
-    private void writeTypeLine(String name, String type, String appendUnit) {
-        builder.append(TYPE_TITLE);
-        builder.append(sanitizeMetricName(name));
+    private void writeTypeLine(String name, String suffix, String type, String appendUnit) {
+        out.write(TYPE_TITLE);
+        writeName(name, suffix, appendUnit);
+        out.write(SPACE);
+        out.write(type);
+        out.write(LF);
+    }
+
+    /**
+     * Writes an already sanitized name followed by a suffix, applying the
+     * same underscore rules {@link MetricNames#sanitizeMetricName(String)} would have
+     * applied to the concatenation.
+     */
+    private void writeName(String name, String suffix, String appendUnit) {
+        out.write(name);
+        if (suffix != null) {
+            if (suffix.startsWith(UNDERSCORE) && (name.endsWith(UNDERSCORE) || name.endsWith(COLON))) {
+                out.write(suffix, 1, suffix.length() - 1);
+            } else {
+                out.write(suffix);
+            }
+        }
         if (appendUnit != null) {
-            builder.append(appendUnit);
+            out.write(appendUnit);
         }
-        builder.append(SPACE);
-        builder.append(type);
-        builder.append(LF);
     }
 
-    private String sanitizeMetricName(String name) {
-        //Translation rules :
-        //camelCase is translated to camel_case
-        String out = name.replaceAll("(.)(\\p{Upper})", "$1_$2").toLowerCase();
-        //Dot (.), Space ( ), Dash (-), Slash (/) are translated to underscore (_)
-        //Double underscore is translated to single underscore
-        out = out.replaceAll("[-_./\\s]+", "_");
-        //Colon-underscore (:_) is translated to single colon
-        out = out.replaceAll(":_", ":");
-        return out;
+    private static String quantileTag(String quantile) {
+        Tag tag = new Tag(QUANTILE, quantile);
+        return tag.getKey() + "=\"" + tag.getValue() + "\"";
     }
 
     private double getConversionFactor(String unit) {
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -51,10 +51,13 @@
 package fish.payara.microprofile.metrics.writer;
 
 import static fish.payara.microprofile.metrics.Constants.EMPTY_STRING;
+import fish.payara.microprofile.metrics.MetricNames;
 import fish.payara.microprofile.metrics.MetricsService;
 import fish.payara.microprofile.metrics.exception.NoSuchMetricException;
 import fish.payara.microprofile.metrics.exception.NoSuchRegistryException;
+import fish.payara.microprofile.metrics.impl.MetricRegistryImpl;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -66,6 +69,7 @@ import org.eclipse.microprofile.metrics.Histogram;
 import org.eclipse.microprofile.metrics.Metadata;
 import org.eclipse.microprofile.metrics.Meter;
 import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 import static org.eclipse.microprofile.metrics.MetricRegistry.Type.APPLICATION;
 import static org.eclipse.microprofile.metrics.MetricRegistry.Type.BASE;
 import static org.eclipse.microprofile.metrics.MetricRegistry.Type.VENDOR;
@@ -74,92 +78,113 @@ import org.glassfish.internal.api.Globals;
 
 public class PrometheusWriter implements MetricsWriter {
 
-    private final Writer writer;
+    private final PrintWriter writer;
     
     private final MetricsService service;
     
     private static final Logger LOGGER = Logger.getLogger(PrometheusWriter.class.getName());
 
     public PrometheusWriter(Writer writer) {
-        this.writer = writer;
+        this.writer = writer instanceof PrintWriter ? (PrintWriter) writer : new PrintWriter(writer);
         this.service = Globals.getDefaultBaseServiceLocator().getService(MetricsService.class);
     }
 
     @Override
     public void write(String registryName, String metricName) throws NoSuchMetricException, NoSuchRegistryException, IOException {
-        StringBuilder builder = new StringBuilder();
-        if (APPLICATION.getName().equals(registryName)) {
-            for (String appRegistryName : service.getApplicationRegistryNames()) {
-                try {
-                    writeMetrics(builder, appRegistryName, metricName);
-                } catch (NoSuchMetricException e) {
-                    //ignore
+        try {
+            if (APPLICATION.getName().equals(registryName)) {
+                boolean found = false;
+                for (String appRegistryName : service.getApplicationRegistryNames()) {
+                    try {
+                        writeMetrics(appRegistryName, metricName);
+                        found = true;
+                    } catch (NoSuchMetricException e) {
+                        //ignore
+                    }
                 }
+                if (!found) {
+                    throw new NoSuchMetricException(metricName);
+                }
+            } else {
+                writeMetrics(registryName, metricName);
             }
-            if(builder.length() == 0){
-                throw new NoSuchMetricException(metricName);
-            }
-        } else {
-            writeMetrics(builder, registryName, metricName);
+            checkError();
+        } finally {
+            writer.close();
         }
-        serialize(builder);
     }
 
     @Override
     public void write(String registryName) throws NoSuchRegistryException, IOException {
-        StringBuilder builder = new StringBuilder();
-        if (APPLICATION.getName().equals(registryName)) {
-            for (String appRegistryName : service.getApplicationRegistryNames()) {
-                writeMetrics(builder, appRegistryName);
+        try {
+            if (APPLICATION.getName().equals(registryName)) {
+                for (String appRegistryName : service.getApplicationRegistryNames()) {
+                    writeMetrics(appRegistryName);
+                }
+            } else {
+                writeMetrics(registryName);
             }
-        } else {
-            writeMetrics(builder, registryName);
+            checkError();
+        } finally {
+            writer.close();
         }
-        serialize(builder);
     }
 
     @Override
     public void write() throws IOException {
-        StringBuilder builder = new StringBuilder();
-        for (String registryName : service.getAllRegistryNames()) {
-            try {
-                writeMetrics(builder, registryName);
-            } catch (NoSuchRegistryException e) { // Ignore
+        try {
+            for (String registryName : service.getAllRegistryNames()) {
+                try {
+                    writeMetrics(registryName);
+                } catch (NoSuchRegistryException e) { // Ignore
+                }
             }
+            checkError();
+        } finally {
+            writer.close();
         }
-        serialize(builder);
     }
 
-    private void writeMetrics(StringBuilder builder, String registryName) throws NoSuchRegistryException {
+    /**
+     * PrintWriter swallows the IOExceptions of the underlying writer, so
+     * report them once the metrics are written.
+     */
+    private void checkError() throws IOException {
+        if (writer.checkError()) {
+            throw new IOException("Failed to write the Prometheus metrics");
+        }
+    }
+
+    private void writeMetrics(String registryName) throws NoSuchRegistryException {
         writeMetricMap(
-                builder,
                 registryName,
                 service.getMetricsAsMap(registryName),
                 service.getMetadataAsMap(registryName)
         );
     }
 
-    private void writeMetrics(StringBuilder builder, String registryName, String metricName) throws NoSuchRegistryException, NoSuchMetricException {
+    private void writeMetrics(String registryName, String metricName) throws NoSuchRegistryException, NoSuchMetricException {
         writeMetricMap(
-                builder,
                 registryName,
                 service.getMetricsAsMap(registryName, metricName),
                 service.getMetadataAsMap(registryName, metricName)
         );
     }
 
-    private void writeMetricMap(StringBuilder builder, String registryName, Map<String, Metric> metricMap, Map<String, Metadata> metricMetadataMap) {
+    private void writeMetricMap(String registryName, Map<String, Metric> metricMap, Map<String, Metadata> metricMetadataMap) throws NoSuchRegistryException {
+        MetricRegistry registry = service.getRegistry(registryName);
+        PrometheusExporter exporter = new PrometheusExporter(writer);
+        //Translation rules :
+        //Scope is always specified at the start of the metric name
+        //Scope and name are separated by colon (:)
+        String scope = BASE.getName().equals(registryName) || VENDOR.getName().equals(registryName)
+                ? registryName : APPLICATION.getName();
         for (Entry<String, Metric> entry : metricMap.entrySet()) {
             String metricName = entry.getKey();
-            //Translation rules :
-            //Scope is always specified at the start of the metric name
-            //Scope and name are separated by colon (:)
-            if(!BASE.getName().equals(registryName) 
-                    && !VENDOR.getName().equals(registryName)){
-                registryName = APPLICATION.getName();
-            }
-                
-            String name = registryName + ":" + metricName;
+            String sanitizedName = registry instanceof MetricRegistryImpl
+                    ? ((MetricRegistryImpl) registry).getSanitizedName(metricName)
+                    : MetricNames.sanitizeMetricName(metricName);
+            String name = MetricNames.scopedMetricName(scope, sanitizedName);
             Metric metric = entry.getValue();
             Metadata metricMetadata = metricMetadataMap.get(metricName);
 
@@ -168,8 +193,6 @@ public class PrometheusWriter implements MetricsWriter {
             String tags = metricMetadata.getTagsAsString();
             String unit = metricMetadata.getUnit();
 
-            PrometheusExporter exporter = new PrometheusExporter(builder);
-
             if (Counter.class.isInstance(metric)) {
                 exporter.exportCounter((Counter) metric, name, description, tags);
             } else if (Gauge.class.isInstance(metric)) {
@@ -185,12 +208,4 @@ public class PrometheusWriter implements MetricsWriter {
             }
         }
     }
-
-    private void serialize(StringBuilder builder) throws IOException {
-        try {
-            writer.write(builder.toString());
-        } finally {
-            writer.close();
-        }
-    }
 }
@@ -0,0 +1,163 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.metrics.impl;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HdrHistogramReservoirTest {
+
+    private static final long WINDOW = 1000;
+
+    private final ManualClock clock = new ManualClock();
+    private final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(1, WINDOW, TimeUnit.NANOSECONDS, clock);
+
+    @Test
+    public void smallValuesHaveExactBuckets() {
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, HdrHistogramReservoir.bucketValue(HdrHistogramReservoir.bucketIndex(value)));
+        }
+        assertEquals(0, HdrHistogramReservoir.bucketIndex(-5));
+    }
+
+    @Test
+    public void bucketValueIsWithinTheErrorBoundOfTheValue() {
+        for (int bits = 6; bits < Long.SIZE - 1; bits++) {
+            long lowest = 1L << bits;
+            for (long value : new long[] {lowest, lowest + 1, lowest + lowest / 3, lowest * 2 - 1}) {
+                long bucketValue = HdrHistogramReservoir.bucketValue(HdrHistogramReservoir.bucketIndex(value));
+                assertTrue(value + " reported as " + bucketValue, Math.abs(bucketValue - value) <= value / 32);
+            }
+        }
+    }
+
+    @Test
+    public void bucketValueMapsBackToItsBucket() {
+        int lastIndex = HdrHistogramReservoir.bucketIndex(Long.MAX_VALUE);
+        long previous = -1;
+        for (int index = 0; index <= lastIndex; index++) {
+            long value = HdrHistogramReservoir.bucketValue(index);
+            assertEquals(index, HdrHistogramReservoir.bucketIndex(value));
+            assertTrue("bucket values must increase", value > previous);
+            previous = value;
+        }
+    }
+
+    @Test
+    public void snapshotCoversTheCurrentAndPreviousWindow() {
+        reservoir.update(5);
+        clock.advance(WINDOW);
+        reservoir.update(7);
+
+        assertEquals(2, reservoir.size());
+        assertArrayEquals(new long[] {5, 7}, reservoir.getSnapshot().getValues());
+
+        clock.advance(WINDOW);
+        assertEquals(1, reservoir.size());
+        assertArrayEquals(new long[] {7}, reservoir.getSnapshot().getValues());
+    }
+
+    @Test
+    public void valuesExpireWhenNothingRotatedForAWholeWindow() {
+        reservoir.update(5);
+        clock.advance(WINDOW / 2);
+        reservoir.update(7);
+        assertEquals(2, reservoir.size());
+
+        clock.advance(2 * WINDOW);
+        assertEquals(0, reservoir.size());
+        assertEquals(0, reservoir.getSnapshot().size());
+    }
+
+    @Test
+    public void snapshotQuantilesOfAUniformDistribution() {
+        for (long value = 1; value <= 10000; value++) {
+            reservoir.update(value);
+        }
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(10000, reservoir.size());
+        assertEquals(1, snapshot.getMin());
+        assertWithinBound(10000, snapshot.getMax());
+        assertWithinBound(5000, snapshot.getMedian());
+        assertWithinBound(7500, snapshot.get75thPercentile());
+        assertWithinBound(9500, snapshot.get95thPercentile());
+        assertWithinBound(9900, snapshot.get99thPercentile());
+        assertWithinBound(5000.5, snapshot.getMean());
+    }
+
+    @Test
+    public void snapshotQuantilesOfASkewedDistribution() {
+        for (int i = 0; i < 990; i++) {
+            reservoir.update(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            reservoir.update(1000000);
+        }
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(10, snapshot.getMedian(), 0);
+        assertEquals(10, snapshot.get98thPercentile(), 0);
+        assertWithinBound(1000000, snapshot.get999thPercentile());
+    }
+
+    private static void assertWithinBound(double expected, double actual) {
+        assertTrue("expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 32);
+    }
+
+    private static class ManualClock extends Clock {
+
+        private long tick;
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+
+        void advance(long nanos) {
+            tick += nanos;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2017 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2017-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -55,6 +55,7 @@ import java.util.logging.Logger;
 public class DatadogNotificationRunnable extends NotificationRunnable<DatadogMessageQueue, DatadogNotifierConfigurationExecutionOptions> {
 
     private static Logger logger = Logger.getLogger(DatadogNotificationRunnable.class.getCanonicalName());
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     public DatadogNotificationRunnable(DatadogMessageQueue queue, DatadogNotifierConfigurationExecutionOptions executionOptions) {
         this.queue = queue;
@@ -73,8 +74,7 @@ public class DatadogNotificationRunnable extends NotificationRunnable<DatadogMes
 
                 DatadogMessage message = queue.getMessage();
                 try(OutputStream outputStream = connection.getOutputStream()) {
-                    ObjectMapper objectMapper = new ObjectMapper();
-                    objectMapper.writeValue(outputStream, message);
+                    OBJECT_MAPPER.writeValue(outputStream, message);
 
                     if (connection.getResponseCode() < 200 || connection.getResponseCode() >= 300) {
                         logger.log(Level.SEVERE, "Error occurred while connecting Datadog. " +
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) [2016-2017] Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) [2016-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -63,18 +63,22 @@ public class JmsNotificationRunnable extends NotificationRunnable<JmsMessageQueu
 
     @Override
     public void run() {
-        while (queue.size() > 0) {
-            try (Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE)) {
-                Queue jmsQueue = session.createQueue(executionOptions.getQueueName());
-                MessageProducer producer = session.createProducer(jmsQueue);
+        if (queue.size() == 0) {
+            return;
+        }
+        // Send everything that is waiting through one session rather than a session per message
+        try (Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE)) {
+            Queue jmsQueue = session.createQueue(executionOptions.getQueueName());
+            MessageProducer producer = session.createProducer(jmsQueue);
+            while (queue.size() > 0) {
                 TextMessage message = session.createTextMessage();
                 JmsMessage jmsMessage = queue.getMessage();
                 message.setText(jmsMessage.getSubject() + "\n" + jmsMessage.getMessage());
                 producer.send(message);
                 logger.log(Level.FINE, "Message successfully sent");
-            } catch (JMSException e) {
-                logger.log(Level.SEVERE, "Error occurred while creating session", e);
             }
+        } catch (JMSException e) {
+            logger.log(Level.SEVERE, "Error occurred while creating session", e);
         }
     }
 
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2017 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2017-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -46,6 +46,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.*;
 import java.text.MessageFormat;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +57,9 @@ public class NewRelicNotificationRunnable extends NotificationRunnable<NewRelicE
 
     private static Logger logger = Logger.getLogger(NewRelicNotificationRunnable.class.getCanonicalName());
     private static final String HEADER_XINSERTKEY = "X-Insert-Key";
+    // The Insights insert API takes an array of events, so queued messages are sent together
+    private static final int MAX_EVENTS_PER_REQUEST = 100;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     public NewRelicNotificationRunnable(NewRelicEventMessageQueue queue, NewRelicNotifierConfigurationExecutionOptions executionOptions) {
         this.queue = queue;
@@ -73,16 +77,14 @@ public class NewRelicNotificationRunnable extends NotificationRunnable<NewRelicE
                         new NotificationRunnable.Header(HEADER_CONTENTTYPE, ACCEPT_TYPE_JSON),
                         new NotificationRunnable.Header(HEADER_XINSERTKEY, executionOptions.getKey()));
 
-                NewRelicEventMessage message = queue.getMessage();
+                List<NewRelicEventMessage> messages = queue.getMessages(MAX_EVENTS_PER_REQUEST);
                 try(OutputStream outputStream = connection.getOutputStream()) {
-                    ObjectMapper objectMapper = new ObjectMapper();
-                    objectMapper.writeValue(System.out, message);
-                    objectMapper.writeValue(outputStream, message);
+                    OBJECT_MAPPER.writeValue(outputStream, messages);
                     if (connection.getResponseCode() != 200) {
                         logger.log(Level.SEVERE, "Error occurred while connecting New Relic. " +
                                 "Check your Account ID and Key. HTTP response code: " + connection.getResponseCode() + connection.getResponseMessage());
                     } else {
-                        logger.log(Level.FINE, "Message sent successfully");
+                        logger.log(Level.FINE, "{0} messages sent successfully", messages.size());
                     }
                 }
             }
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2017-2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2017-2019] [Payara Foundation and/or its affiliates]
 package com.sun.enterprise.security.auth.realm.jdbc;
 
 import static java.lang.Character.toLowerCase;
@@ -56,12 +56,12 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import javax.security.auth.login.LoginException;
@@ -78,6 +78,7 @@ import com.sun.enterprise.security.auth.realm.BadRealmException;
 import com.sun.enterprise.security.auth.realm.InvalidOperationException;
 import com.sun.enterprise.security.auth.realm.NoSuchRealmException;
 import com.sun.enterprise.security.auth.realm.NoSuchUserException;
+import com.sun.enterprise.security.auth.realm.RealmAuthenticationCache;
 import com.sun.enterprise.security.common.Util;
 import com.sun.enterprise.security.ee.auth.realm.DigestRealmBase;
 import com.sun.enterprise.util.Utility;
@@ -101,6 +102,10 @@ import com.sun.enterprise.util.Utility;
  * <li>group-name-column : column corresponding to group in group-table
  * </ul>
  *
+ * <P>
+ * Authentication results and groups are kept in a {@link RealmAuthenticationCache}, configured with the
+ * auth-cache-* properties.
+ *
  * @see com.sun.enterprise.security.auth.login.SolarisLoginModule
  *
  */
@@ -132,11 +137,11 @@ public final class JDBCRealm extends DigestRealmBase {
 
     private static final char[] HEXADECIMAL = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
 
-    private Map<String, Vector<String>> groupCache;
-    private Vector<String> emptyVector;
+    private Map<String, List<String>> groupCache;
+    private RealmAuthenticationCache authenticationCache;
     private String passwordQuery;
     private String groupQuery;
-    private MessageDigest messageDigest;
+    private ThreadLocal<MessageDigest> messageDigest;
 
     private ActiveDescriptor<ConnectorRuntime> cr;
 
@@ -204,10 +209,18 @@ public final class JDBCRealm extends DigestRealmBase {
 
         if (!NONE.equalsIgnoreCase(digestAlgorithm)) {
             try {
-                messageDigest = MessageDigest.getInstance(digestAlgorithm);
+                MessageDigest.getInstance(digestAlgorithm);
             } catch (NoSuchAlgorithmException e) {
                 throw new BadRealmException(sm.getString("jdbcrealm.notsupportdigestalg", digestAlgorithm));
             }
+            // MessageDigest isn't thread safe, so give each thread its own rather than locking a shared one
+            messageDigest = ThreadLocal.withInitial(() -> {
+                try {
+                    return MessageDigest.getInstance(digestAlgorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
         }
         if (messageDigest != null && encoding == null) {
             encoding = DEFAULT_ENCODING;
@@ -233,8 +246,8 @@ public final class JDBCRealm extends DigestRealmBase {
                     + " = " + encoding + ", " + PARAM_CHARSET + " = " + charset);
         }
 
-        groupCache = new HashMap<String, Vector<String>>();
-        emptyVector = new Vector<String>();
+        groupCache = new ConcurrentHashMap<>();
+        authenticationCache = new RealmAuthenticationCache(getName(), props);
     }
 
     /**
@@ -259,35 +272,29 @@ public final class JDBCRealm extends DigestRealmBase {
      */
     @Override
     public Enumeration<String> getGroupNames(String username) throws InvalidOperationException, NoSuchUserException {
-        Vector<String> vector = groupCache.get(username);
-        if (vector == null) {
-            String[] grps = findGroups(username);
-            setGroupNames(username, grps);
-            vector = groupCache.get(username);
-        }
-        return vector.elements();
-    }
-
-    private void setGroupNames(String username, String[] groups) {
-        Vector<String> v = null;
-
+        List<String> groups = groupCache.get(username);
         if (groups == null) {
-            v = emptyVector;
-
-        } else {
-            v = new Vector<String>(groups.length + 1);
-            for (int i = 0; i < groups.length; i++) {
-                v.add(groups[i]);
+            String[] foundGroups = findGroups(username);
+            if (foundGroups == null) {
+                return Collections.emptyEnumeration();
             }
+            setGroupNames(username, foundGroups);
+            groups = groupCache.get(username);
         }
+        return Collections.enumeration(groups);
+    }
 
-        synchronized (this) {
-            groupCache.put(username, v);
-        }
+    /**
+     * Keeps the group membership of a user for {@link #getGroupNames(String)}, whether or not the authentication
+     * cache is enabled.
+     */
+    private void setGroupNames(String username, String[] groups) {
+        groupCache.put(username, groups == null ? Collections.emptyList() : Arrays.asList(groups));
     }
 
     /**
-     * Invoke the native authentication call.
+     * Invoke the native authentication call. The password check and the group lookup share a single connection, and
+     * the result is cached so that the database is only queried again once it expires.
      *
      * @param username User to authenticate.
      * @param password Given password.
@@ -295,11 +302,37 @@ public final class JDBCRealm extends DigestRealmBase {
      *
      */
     public String[] authenticate(String username, char[] password) {
+        RealmAuthenticationCache.Result cachedResult = authenticationCache.get(username, password);
+        if (cachedResult != null) {
+            if (cachedResult.isAuthenticated()) {
+                setGroupNames(username, cachedResult.getGroups());
+            }
+            return cachedResult.getGroups();
+        }
+
         String[] groups = null;
-        if (isUserValid(username, password)) {
-            groups = findGroups(username);
-            groups = addAssignGroups(groups);
-            setGroupNames(username, groups);
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            if (isUserValid(connection, username, password)) {
+                String[] foundGroups = findGroups(connection, username);
+                groups = addAssignGroups(foundGroups);
+                setGroupNames(username, groups);
+                // Don't keep the result if the groups couldn't be loaded
+                if (foundGroups != null) {
+                    authenticationCache.put(username, password, groups);
+                }
+            } else {
+                authenticationCache.put(username, password, null);
+            }
+        } catch (SQLException ex) {
+            _logger.log(Level.SEVERE, "jdbcrealm.invaliduserreason", new String[] { username, ex.toString() });
+            _logger.log(FINE, "Cannot validate user", ex);
+        } catch (Exception ex) {
+            _logger.log(Level.SEVERE, "jdbcrealm.invaliduser", username);
+            _logger.log(FINE, "Cannot validate user", ex);
+        } finally {
+            close(connection, null, null);
         }
         return groups;
     }
@@ -370,19 +403,19 @@ public final class JDBCRealm extends DigestRealmBase {
     /**
      * Test if a user is valid
      *
+     * @param connection connection to query the user with
      * @param user user's identifier
      * @param userPassword user's password
      * @return true if valid
+     * @throws SQLException if the user could not be queried
      */
-    private boolean isUserValid(String user, char[] userPassword) {
-        Connection connection = null;
+    private boolean isUserValid(Connection connection, String user, char[] userPassword) throws Exception {
         PreparedStatement statement = null;
         ResultSet resultSet = null;
         boolean valid = false;
 
         try {
             char[] hashedUserPassword = hashPassword(userPassword);
-            connection = getConnection();
             statement = connection.prepareStatement(passwordQuery);
             statement.setString(1, user);
             resultSet = statement.executeQuery();
@@ -417,14 +450,8 @@ public final class JDBCRealm extends DigestRealmBase {
                     }
                 }
             }
-        } catch (SQLException ex) {
-            _logger.log(Level.SEVERE, "jdbcrealm.invaliduserreason", new String[] { user, ex.toString() });
-            _logger.log(FINE, "Cannot validate user", ex);
-        } catch (Exception ex) {
-            _logger.log(Level.SEVERE, "jdbcrealm.invaliduser", user);
-            _logger.log(FINE, "Cannot validate user", ex);
         } finally {
-            close(connection, statement, resultSet);
+            close(null, statement, resultSet);
         }
 
         return valid;
@@ -437,10 +464,9 @@ public final class JDBCRealm extends DigestRealmBase {
         bytes = Utility.convertCharArrayToByteArray(password, charSet);
 
         if (messageDigest != null) {
-            synchronized (messageDigest) {
-                messageDigest.reset();
-                bytes = messageDigest.digest(bytes);
-            }
+            MessageDigest digest = messageDigest.get();
+            digest.reset();
+            bytes = digest.digest(bytes);
         }
 
         String encoding = getProperty(PARAM_ENCODING);
@@ -479,10 +505,31 @@ public final class JDBCRealm extends DigestRealmBase {
      */
     private String[] findGroups(String user) {
         Connection connection = null;
+        try {
+            connection = getConnection();
+            return findGroups(connection, user);
+        } catch (Exception ex) {
+            _logger.log(Level.SEVERE, "jdbcrealm.grouperror", user);
+            if (_logger.isLoggable(Level.FINE)) {
+                _logger.log(Level.FINE, "Cannot load group", ex);
+            }
+            return null;
+        } finally {
+            close(connection, null, null);
+        }
+    }
+
+    /**
+     * Retrieves the groups of a user with the given connection
+     *
+     * @param connection connection to query the groups with
+     * @param user user's identifier
+     * @return array of group key, or null if the groups could not be loaded
+     */
+    private String[] findGroups(Connection connection, String user) {
         PreparedStatement statement = null;
         ResultSet rs = null;
         try {
-            connection = getConnection();
             statement = connection.prepareStatement(groupQuery);
             statement.setString(1, user);
             rs = statement.executeQuery();
@@ -499,7 +546,7 @@ public final class JDBCRealm extends DigestRealmBase {
             }
             return null;
         } finally {
-            close(connection, statement, rs);
+            close(null, statement, rs);
         }
     }
 
@@ -37,11 +37,12 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
 package com.sun.enterprise.transaction;
 
 import java.util.*;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.*;
 
 import javax.transaction.*;
@@ -84,7 +85,7 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
 
     // Local Tx ids are just numbers: they dont need to be unique across
     // processes or across multiple activations of this server process.
-    private static long txIdCounter = 1;
+    private static final AtomicLong txIdCounter = new AtomicLong(1);
 
     // Fall back to the old (wrong) behavior for the case when setRollbackOnly
     // was called before XA transaction started
@@ -203,9 +204,8 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
     }
     // END: local transaction timeout
 
-    private static synchronized long getNewTxId() {
-        long newTxId = txIdCounter++;
-        return newTxId;
+    private static long getNewTxId() {
+        return txIdCounter.getAndIncrement();
     }
 
     public boolean equals(Object other) {
@@ -38,7 +38,7 @@
  * holder.
  */
 
-// Portions Copyright [2016-2018] [Payara Foundation and/or its affiliates.]
+// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates.]
 
 package com.sun.enterprise.transaction;
 
@@ -140,7 +140,9 @@ public class JavaEETransactionManagerSimplified
 
     // admin and monitoring related parameters
     private  static final Map<Integer, String> statusMap = new HashMap<>();
-    private List<Transaction> activeTransactions = Collections.synchronizedList(new ArrayList<>());
+    // Concurrent set, so that begin and completion don't serialize on a
+    // single lock and removal doesn't scan every active transaction
+    private final Set<Transaction> activeTransactions = ConcurrentHashMap.newKeySet();
     private boolean monitoringEnabled = false;
     private ScheduledFuture<?> statisticsMonitoringFuture;
 
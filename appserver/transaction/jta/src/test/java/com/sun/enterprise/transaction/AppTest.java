@@ -38,12 +38,17 @@
  * holder.
  */
 
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
 package com.sun.enterprise.transaction;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.*;
 import javax.transaction.*;
 import javax.transaction.xa.*;
@@ -845,6 +850,50 @@ public class AppTest extends TestCase {
         return utx;
     }
 
+    public void testConcurrentBeginCommit() {
+        System.out.println("**Testing concurrent TM begin/commit ===>");
+        final int threads = 8;
+        final int transactions = 10000;
+        final Set<String> txIds = ConcurrentHashMap.newKeySet();
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < transactions; j++) {
+                            t.begin();
+                            txIds.add(((JavaEETransactionImpl) t.getTransaction()).getTransactionId());
+                            t.commit();
+                        }
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+        }
+
+        long start = System.nanoTime();
+        try {
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException ex) {
+            ex.printStackTrace();
+            assert (false);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("**" + (threads * transactions) + " transactions in "
+                + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms <===");
+        assertEquals(0, failures.get());
+        assertEquals(threads * transactions, txIds.size());
+    }
+
     static class TestSync implements Synchronization {
 
         // Used to validate the calls
@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
 
 //----------------------------------------------------------------------------
 //
@@ -208,6 +209,28 @@ public class Configuration extends Object {
      */
     public final static String KEYPOINT_COUNT = "com.sun.jts.keypointCount"/*#Frozen*/;
 
+    /**The property key used to enable group commit of forced log writes.
+     * Concurrent forced writes are then buffered and made durable together by
+     * a single sync of the log, instead of one sync per write.
+     * <p>
+     * The value is <em><b>com.sun.jts.logGroupCommit</b></em>.
+     * <p>
+     * The default value for this property is true.
+     */
+    public final static String LOG_GROUP_COMMIT = "com.sun.jts.logGroupCommit";
+
+    /**The property key used to specify the maximum time in microseconds a group
+     * commit waits for more forced writes before syncing the log. A higher value
+     * results in fewer syncs, and hence better throughput, at the cost of a
+     * longer commit latency.
+     * <p>
+     * The value is <em><b>com.sun.jts.logGroupCommitDelay</b></em>.
+     * <p>
+     * The default value for this property is 0, meaning the log is synced as
+     * soon as no other sync is in progress.
+     */
+    public final static String LOG_GROUP_COMMIT_DELAY = "com.sun.jts.logGroupCommitDelay";
+
     // Property to specify the instance name
     public final static String INSTANCE_NAME = "com.sun.jts.instancename"/*#Frozen*/;
 
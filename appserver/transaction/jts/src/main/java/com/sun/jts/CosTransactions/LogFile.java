@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
 
 //----------------------------------------------------------------------------
 //
@@ -139,6 +140,11 @@ class LogFile {
      * <p>
      * Returns true if the write completed successfully and false if the write
      * did not complete.
+     * <p>
+     * Forced writes are group committed when the log has a group commit stage:
+     * the record is buffered under the lock of this LogFile, and the caller
+     * then waits outside it until a single force has made the record durable,
+     * so concurrent forced writes share one sync.
      *
      * @param writeType   Forced/non-forced write indicator.
      * @param record      Log record data.
@@ -149,10 +155,10 @@ class LogFile {
      *
      * @see
      */
-    synchronized boolean write( int    writeType,
-                                byte[] record,
-                                int    recordType,
-                                LogLSN recordLSN ) {
+    boolean write( int    writeType,
+                   byte[] record,
+                   int    recordType,
+                   LogLSN recordLSN ) {
 
         boolean result = true;
 
@@ -160,10 +166,29 @@ class LogFile {
         // Set the result based on return code from log write.
 
         try {
-            LogLSN resultLSN = handle.writeRecord(record,recordType,
-                                                  (writeType==LogFile.FORCED ? LogHandle.FORCE : LogHandle.BUFFER));
-            if( recordLSN != null )
-                recordLSN.copy(resultLSN);
+            LogGroupCommit groupCommit = null;
+            long sequence = 0;
+
+            synchronized( this ) {
+                if( writeType == LogFile.FORCED && handle.groupCommit != null ) {
+                    groupCommit = handle.groupCommit;
+                    LogLSN resultLSN = handle.writeRecord(record,recordType,LogHandle.BUFFER);
+                    sequence = groupCommit.recordWritten();
+                    if( recordLSN != null )
+                        recordLSN.copy(resultLSN);
+                } else {
+                    LogLSN resultLSN = handle.writeRecord(record,recordType,
+                                                          (writeType==LogFile.FORCED ? LogHandle.FORCE : LogHandle.BUFFER));
+                    if( recordLSN != null )
+                        recordLSN.copy(resultLSN);
+                }
+            }
+
+            // Wait for the record to be durable without holding the LogFile
+            // lock, so other records can join the same force.
+
+            if( groupCommit != null )
+                groupCommit.awaitForced(sequence);
         } catch( LogException le ) {
 			_logger.log(Level.SEVERE,"jts.log_error",le.toString());
 			 String msg = LogFormatter.getLocalizedMessage(_logger,"jts.log_error",
@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
 
 //----------------------------------------------------------------------------
 //
@@ -66,6 +67,10 @@ package com.sun.jts.CosTransactions;
 
 import com.sun.enterprise.util.i18n.StringManager;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**This class encapsulates file I/O operations and the file handle.
  *
@@ -144,6 +149,11 @@ class LogFileHandle {
     int bufferUpdateEnd   = -1;
     int buffPos = 0;
 
+    /**Held while updated bytes are written to the file, so syncs prepared
+     * in order are also written in order.
+     */
+    private final ReentrantLock syncLock = new ReentrantLock();
+
     static {
         dsyncProp = System.getProperty(DSYNC_PROPERTY);
         if (dsyncProp != null) {
@@ -397,6 +407,9 @@ class LogFileHandle {
     void fileClose()
         throws LogException {
 
+        // Wait for a sync running outside the log lock before closing.
+
+        syncLock.lock();
         try {
 
             // If buffered, then ensure that the buffer is stored and synced with the
@@ -411,6 +424,8 @@ class LogFileHandle {
         } catch( Throwable e ) {
             throw new LogException(LogException.LOG_CLOSE_FAILURE,1,
                     sm.getString("jts.log_close_failed"), e);
+        } finally {
+            syncLock.unlock();
         }
 
         // Reset the file handle and descriptor values.
@@ -479,20 +494,98 @@ class LogFileHandle {
         // Synchronization is only done for buffered files which have been updated.
         // Non-buffered files have every write synchronized with the file system.
 
-        if( bufferUpdateStart != -1 )
+        if( bufferUpdateStart != -1 ) {
+            PendingSync sync = prepareSync();
             try {
-                fhandle.seek(bufferUpdateStart);
-                fhandle.write(bufferData,bufferUpdateStart,bufferUpdateEnd-bufferUpdateStart);
-                if (dsyncProp == null)
-                    fd.sync();
+                sync.complete();
+            } catch( LogException le ) {
+                sync.restore();
+                throw le;
+            }
+        }
+
+    }
+
+    /**Takes a copy of the updated bytes of the buffer, so they can be written
+     * and synced with the file system without holding the log lock.
+     * <p>
+     * Must be called under the log lock, and the result must be completed by
+     * the calling thread: until then other syncs of this file wait, so the
+     * file is written in the order the syncs were prepared.
+     *
+     * @return  The sync to complete.
+     */
+    PendingSync prepareSync() {
+        syncLock.lock();
+
+        PendingSync sync;
+        if( bufferUpdateStart != -1 )
+            sync = new PendingSync(Arrays.copyOfRange(bufferData,bufferUpdateStart,bufferUpdateEnd),
+                                   bufferUpdateStart);
+        else
+            sync = new PendingSync(null,0);
 
-                bufferUpdateStart = -1;
-                bufferUpdateEnd   = -1;
+        bufferUpdateStart = -1;
+        bufferUpdateEnd   = -1;
+
+        return sync;
+    }
+
+    /**The updated bytes of the buffer taken by {@link #prepareSync()}.
+     */
+    final class PendingSync {
+
+        private final byte[] data;
+        private final int    position;
+
+        private PendingSync( byte[] data,
+                             int    position ) {
+            this.data = data;
+            this.position = position;
+        }
+
+        /**Writes the bytes to the file and forces them to the file system.
+         *
+         * @exception LogException The sync failed, {@link #restore()} must
+         *                         then be called under the log lock.
+         */
+        void complete() throws LogException {
+            try {
+                if( data != null ) {
+
+                    // Write all the updated bytes with one positional channel
+                    // write and force them with a single sync. Buffered files do
+                    // not use the file pointer, so it doesn't need to be moved.
+                    // The file size is flushed by force(false) as it is needed
+                    // to read the data back.
+
+                    FileChannel channel = fhandle.getChannel();
+                    ByteBuffer updated = ByteBuffer.wrap(data);
+                    long filePosition = position;
+                    while( updated.hasRemaining() )
+                        filePosition += channel.write(updated,filePosition);
+                    if (dsyncProp == null)
+                        channel.force(false);
+                }
             } catch (Throwable e) {
                 throw new LogException(LogException.LOG_READ_FAILURE,1,
                         sm.getString("jts.log_file_sync_failed"), e);
+            } finally {
+                syncLock.unlock();
             }
+        }
 
+        /**Marks the bytes as updated again after the sync failed, so the next
+         * sync writes them, with any later update.
+         */
+        void restore() {
+            if( data == null )
+                return;
+            if( bufferUpdateStart == -1 || position < bufferUpdateStart )
+                bufferUpdateStart = position;
+            if( position + data.length > bufferUpdateEnd )
+                bufferUpdateEnd = position + data.length;
+        }
     }
 
     /**Reads a vector of records from the file.
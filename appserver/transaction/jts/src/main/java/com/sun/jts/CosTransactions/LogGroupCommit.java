@@ -0,0 +1,182 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.jts.CosTransactions;
+
+import com.sun.logging.LogDomains;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**Group commit stage for the forced writes of a log.
+ * <p>
+ * Forced records are written into the log buffer like unforced ones, and
+ * the writer then waits in {@link #awaitForced(long)} until its record is
+ * durable. The first waiter becomes the leader: it writes everything that
+ * is buffered as one sequential write and forces it with a single sync,
+ * then releases every waiter whose record was covered. Writers arriving
+ * while the leader is syncing are batched by the next leader.
+ * <p>
+ * The leader may wait up to {@link Configuration#LOG_GROUP_COMMIT_DELAY}
+ * microseconds before forcing to let more records join the batch, trading
+ * commit latency for fewer syncs.
+ */
+class LogGroupCommit {
+
+    /**Logger to log transaction messages
+     */
+    static Logger _logger = LogDomains.getLogger(LogGroupCommit.class, LogDomains.TRANSACTION_LOGGER);
+
+    /**The log whose extents are forced.
+     */
+    private final LogHandle handle;
+
+    /**Time the leader waits for more records before forcing.
+     */
+    private final long maxDelayNanos;
+
+    /**Sequence of the last record written, incremented after each write.
+     */
+    private final AtomicLong written = new AtomicLong();
+
+    /**Sequence of the last record known to be durable.
+     */
+    private long forced = 0;
+
+    /**Whether a leader is currently forcing the log.
+     */
+    private boolean forcing = false;
+
+    LogGroupCommit( LogHandle handle,
+                    long      maxDelayMicros ) {
+        this.handle = handle;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxDelayMicros));
+    }
+
+    /**Creates the group commit stage for the given log, unless it has been
+     * disabled with {@link Configuration#LOG_GROUP_COMMIT}.
+     *
+     * @param handle  The log.
+     *
+     * @return  The group commit stage, or null if forced writes sync inline.
+     */
+    static LogGroupCommit create( LogHandle handle ) {
+        if( "false".equalsIgnoreCase(Configuration.getPropertyValue(Configuration.LOG_GROUP_COMMIT)) )
+            return null;
+
+        long maxDelayMicros = 0;
+        String delay = Configuration.getPropertyValue(Configuration.LOG_GROUP_COMMIT_DELAY);
+        if( delay != null )
+            try {
+                maxDelayMicros = Long.parseLong(delay.trim());
+            } catch( NumberFormatException e ) {
+                _logger.log(Level.WARNING,"jts.invalid_log_group_commit_delay",delay);
+            }
+
+        return new LogGroupCommit(handle, maxDelayMicros);
+    }
+
+    /**Records that a record has been written to the log buffer.
+     * <p>
+     * Must be called after the record is written and before the write lock
+     * of the log is released, so sequences follow the order of the records.
+     *
+     * @return  The sequence to pass to {@link #awaitForced(long)}.
+     */
+    long recordWritten() {
+        return written.incrementAndGet();
+    }
+
+    /**Returns the sequence of the last record written.
+     * <p>
+     * Called by the log while it holds its own lock, so every record up to
+     * the returned sequence is in the buffers about to be forced.
+     */
+    long lastWritten() {
+        return written.get();
+    }
+
+    /**Waits until the record with the given sequence is durable, forcing the
+     * log if no other thread is doing so.
+     *
+     * @param sequence  The sequence returned by {@link #recordWritten()}.
+     *
+     * @exception LogException The log could not be forced.
+     */
+    void awaitForced( long sequence ) throws LogException {
+        boolean interrupted = false;
+        try {
+            while( true ) {
+                synchronized( this ) {
+                    while( forced < sequence && forcing ) {
+                        try {
+                            wait();
+                        } catch( InterruptedException e ) {
+                            // The record is already written, so it has to be
+                            // made durable before returning.
+                            interrupted = true;
+                        }
+                    }
+                    if( forced >= sequence )
+                        return;
+                    forcing = true;
+                }
+
+                long durable = -1;
+                try {
+                    if( maxDelayNanos > 0 )
+                        LockSupport.parkNanos(maxDelayNanos);
+                    durable = handle.forceLog();
+                } finally {
+                    synchronized( this ) {
+                        forcing = false;
+                        if( durable > forced )
+                            forced = durable;
+                        notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if( interrupted )
+                Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2018] [Payara Foundation]
+// Portions Copyright [2018-2019] [Payara Foundation]
 
 //----------------------------------------------------------------------------
 //
@@ -238,6 +238,7 @@ class LogHandle {
     LogFileHandle        logFileHandle = null;
     LogControlDescriptor logControlDescriptor = null;
     LogControl           logControl = null;
+    LogGroupCommit       groupCommit = null;
 
 
     /**Creates a LogHandle object for the given log instance.
@@ -269,6 +270,7 @@ class LogHandle {
         logControlDescriptor = new LogControlDescriptor();
         cursors = new ArrayList();
         extentTable = new Hashtable(EXTENT_TABLE_SIZE);
+        groupCommit = LogGroupCommit.create(this);
 
     }
 
@@ -565,20 +567,8 @@ class LogHandle {
         //       Set 'extent written' flag to FALSE
         //   ENDLOOP
 
-        if( writeMode == FORCE ) {
-            Enumeration extents = extentTable.elements();
-            while( extents.hasMoreElements() ) {
-                LogExtent nextEDP = (LogExtent)extents.nextElement();
-                if( nextEDP.writtenSinceLastForce )
-                    try {
-                        nextEDP.fileHandle.fileSync();
-                        nextEDP.writtenSinceLastForce = false;
-                    } catch (LogException le) {
-                        throw new LogException(LogException.LOG_ERROR_FORCING_LOG, 14,
-                                sm.getString("jts.log_file_sync_failed"), le);
-                    }
-            }
-        }
+        if( writeMode == FORCE )
+            forceExtents();
 
         // Update the head LSN and 'next free' LSN in the Log_FileDescriptor
         // block
@@ -614,6 +604,94 @@ class LogHandle {
         return result;
     }
 
+    /**Forces every record written so far to permanent storage.
+     * <p>
+     * Used by the group commit stage to make a batch of forced writes durable
+     * with a single sync of each extent written since the last force. The
+     * updated bytes are taken under the log lock, and written and synced
+     * after releasing it, so records can be written during the sync.
+     *
+     * @return  The group commit sequence of the last record forced.
+     *
+     * @exception LogException The force failed.
+     *
+     * @see LogGroupCommit
+     */
+    long forceLog() throws LogException {
+
+        long lastWritten;
+        ArrayList<LogExtent> forcedExtents = new ArrayList<>();
+        ArrayList<LogFileHandle.PendingSync> syncs = new ArrayList<>();
+
+        synchronized( this ) {
+            if( blockValid != this )
+                throw new LogException(null,LogException.LOG_INVALID_FILE_DESCRIPTOR,1);
+
+            lastWritten = groupCommit.lastWritten();
+            Enumeration extents = extentTable.elements();
+            while( extents.hasMoreElements() ) {
+                LogExtent nextEDP = (LogExtent)extents.nextElement();
+                if( nextEDP.writtenSinceLastForce ) {
+                    syncs.add(nextEDP.fileHandle.prepareSync());
+                    forcedExtents.add(nextEDP);
+                    nextEDP.writtenSinceLastForce = false;
+                }
+            }
+        }
+
+        // Every prepared sync must be completed to let later syncs of its
+        // extent proceed, even when an earlier one failed.
+
+        LogException failure = null;
+        ArrayList<LogExtent> failedExtents = new ArrayList<>();
+        ArrayList<LogFileHandle.PendingSync> failedSyncs = new ArrayList<>();
+        for( int i = 0; i < syncs.size(); i++ )
+            try {
+                syncs.get(i).complete();
+            } catch( LogException le ) {
+                if( failure == null )
+                    failure = le;
+                failedExtents.add(forcedExtents.get(i));
+                failedSyncs.add(syncs.get(i));
+            }
+
+        if( failure != null ) {
+
+            // Leave the failed extents to be forced again by the next attempt.
+
+            synchronized( this ) {
+                for( int i = 0; i < failedSyncs.size(); i++ ) {
+                    failedSyncs.get(i).restore();
+                    failedExtents.get(i).writtenSinceLastForce = true;
+                }
+            }
+            throw new LogException(LogException.LOG_ERROR_FORCING_LOG, 14,
+                    sm.getString("jts.log_file_sync_failed"), failure);
+        }
+
+        return lastWritten;
+    }
+
+    /**Issues a sync for each extent which has been written since it was last
+     * forced.
+     *
+     * @exception LogException The sync failed.
+     */
+    private void forceExtents() throws LogException {
+        Enumeration extents = extentTable.elements();
+        while( extents.hasMoreElements() ) {
+            LogExtent nextEDP = (LogExtent)extents.nextElement();
+            if( nextEDP.writtenSinceLastForce )
+                try {
+                    nextEDP.fileHandle.fileSync();
+                    nextEDP.writtenSinceLastForce = false;
+                } catch (LogException le) {
+                    throw new LogException(LogException.LOG_ERROR_FORCING_LOG, 14,
+                            sm.getString("jts.log_file_sync_failed"), le);
+                }
+        }
+    }
+
     /**Reads a record from the log.
      *
      * @param readLSN  The LSN of the record to be read.
@@ -0,0 +1,169 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.jts.CosTransactions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LogGroupCommitTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 60000)
+    public void awaitForcedReturnsOnlyAfterACoveringForce() throws Exception {
+        FakeLog log = new FakeLog(0);
+        LogGroupCommit groupCommit = new LogGroupCommit(log, 0);
+        log.groupCommit = groupCommit;
+
+        int threads = 16;
+        int writesPerThread = 50;
+        List<Future<Void>> writers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            writers.add(executor.submit(() -> {
+                for (int j = 0; j < writesPerThread; j++) {
+                    long sequence = groupCommit.recordWritten();
+                    groupCommit.awaitForced(sequence);
+                    assertTrue("record " + sequence + " returned before it was forced",
+                            log.durable.get() >= sequence);
+                }
+                return null;
+            }));
+        }
+        for (Future<Void> writer : writers) {
+            writer.get();
+        }
+
+        assertEquals(threads * writesPerThread, log.durable.get());
+        assertTrue("forces were not shared, " + log.forces.get() + " forces",
+                log.forces.get() < threads * writesPerThread);
+    }
+
+    @Test(timeout = 60000)
+    public void failingForceIsRetriedByTheRemainingWaiters() throws Exception {
+        FakeLog log = new FakeLog(2);
+        LogGroupCommit groupCommit = new LogGroupCommit(log, 0);
+        log.groupCommit = groupCommit;
+
+        int threads = 8;
+        CyclicBarrier allWritten = new CyclicBarrier(threads);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<Boolean>> writers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            writers.add(executor.submit((Callable<Boolean>) () -> {
+                long sequence = groupCommit.recordWritten();
+                allWritten.await();
+                try {
+                    groupCommit.awaitForced(sequence);
+                } catch (LogException e) {
+                    failures.incrementAndGet();
+                    return false;
+                }
+                assertTrue(log.durable.get() >= sequence);
+                return true;
+            }));
+        }
+        int succeeded = 0;
+        for (Future<Boolean> writer : writers) {
+            if (writer.get()) {
+                succeeded++;
+            }
+        }
+
+        // Each failed force is reported to the writer that ran it, the next
+        // waiter forces again and the third force covers every record.
+        assertEquals(2, failures.get());
+        assertEquals(threads - 2, succeeded);
+        assertEquals(3, log.forces.get());
+    }
+
+    /**
+     * A log which takes a while to force and fails a number of forces.
+     */
+    private static class FakeLog extends LogHandle {
+
+        final AtomicLong durable = new AtomicLong();
+        final AtomicInteger forces = new AtomicInteger();
+        private final AtomicInteger failuresLeft;
+
+        FakeLog(int failures) throws LogException {
+            super(null, null, null, null);
+            failuresLeft = new AtomicInteger(failures);
+        }
+
+        @Override
+        long forceLog() throws LogException {
+            long lastWritten = groupCommit.lastWritten();
+            forces.incrementAndGet();
+            try {
+                TimeUnit.MILLISECONDS.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new LogException(LogException.LOG_ERROR_FORCING_LOG, 14, "sync failed", null);
+            }
+            durable.accumulateAndGet(lastWritten, Math::max);
+            return lastWritten;
+        }
+    }
+}
@@ -55,7 +55,7 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-// Portions Copyright [2016-2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
 
 package org.glassfish.web.loader;
 
@@ -181,6 +181,13 @@ public class WebappClassLoader
     private static final Permission ALL_PERMISSION = new AllPermission();
 
 
+    static {
+        // Classes are loaded under a lock per class name rather than under
+        // the loader lock, so that unrelated classes load in parallel
+        ClassLoader.registerAsParallelCapable();
+    }
+
+
     // ----------------------------------------------------- Instance Variables
 
     // START PE 4989455
@@ -255,6 +262,21 @@ public class WebappClassLoader
      */
     protected JarFile[] jarFiles = new JarFile[0];
 
+    /**
+     * Index of the JARs by directory: for each directory holding entries,
+     * the positions in <code>jarFiles</code> of the JARs containing it, in
+     * search order. A lookup in a directory which isn't indexed misses all
+     * the JARs without searching any of them.
+     */
+    protected final ConcurrentHashMap<String, int[]> jarIndex =
+        new ConcurrentHashMap<String, int[]>();
+
+    /**
+     * Whether all the JARs have been indexed. If one of them couldn't be,
+     * lookups search every JAR.
+     */
+    protected volatile boolean jarIndexComplete = true;
+
     /**
      * Lock to synchronize closing and opening of jar
      */
@@ -888,7 +910,6 @@ public class WebappClassLoader
             result2[i] = jarFiles[i];
         }
         result2[jarFiles.length] = jarFile;
-        jarFiles = result2;
 
         // Add the file to the list
         File[] result4 = new File[jarRealFiles.length + 1];
@@ -897,6 +918,59 @@ public class WebappClassLoader
         }
         result4[jarRealFiles.length] = file;
         jarRealFiles = result4;
+        jarFiles = result2;
+
+        indexJar(jarFile, jarFiles.length - 1);
+    }
+
+
+    /**
+     * Add the directories of a JAR to the JAR index.
+     *
+     * @param jarFile the JAR
+     * @param position the position of the JAR in <code>jarFiles</code>
+     */
+    private void indexJar(JarFile jarFile, int position) {
+        Set<String> directories = new HashSet<String>();
+        try {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                directories.add(getDirectory(entries.nextElement().getName()));
+            }
+        } catch (RuntimeException e) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "Failed to index JAR " + jarFile.getName(), e);
+            }
+            jarIndexComplete = false;
+            return;
+        }
+        int[] positions = new int[] { position };
+        for (String directory : directories) {
+            jarIndex.merge(directory, positions, WebappClassLoader::appendPositions);
+        }
+    }
+
+
+    private static int[] appendPositions(int[] positions, int[] added) {
+        int[] result = Arrays.copyOf(positions, positions.length + added.length);
+        System.arraycopy(added, 0, result, positions.length, added.length);
+        return result;
+    }
+
+
+    /**
+     * Return the directory of a JAR entry or resource path, without the
+     * trailing slash. The directory of an entry which is itself a directory
+     * is its parent, so that <code>a/b</code> and <code>a/b/</code> are
+     * looked up in the same JARs.
+     */
+    private static String getDirectory(String path) {
+        int end = path.length();
+        if ((end > 0) && (path.charAt(end - 1) == '/')) {
+            end--;
+        }
+        int slash = path.lastIndexOf('/', end - 1);
+        return (slash == -1) ? "" : path.substring(0, slash);
     }
 
 
@@ -1068,7 +1142,7 @@ public class WebappClassLoader
                 // Create the code source object
                 CodeSource codeSource =
                     new CodeSource(entry.codeBase, entry.certificates);
-                synchronized (this) {
+                synchronized (getClassLoadingLock(name)) {
                     if (entry.loadedClass == null) {
                         /* START GlassFish [680]
                         clazz = defineClass(name, entry.binaryContent, 0,
@@ -1533,78 +1607,99 @@ public class WebappClassLoader
      * @exception ClassNotFoundException if the class was not found
      */
     @Override
-    protected synchronized Class<?> loadClass(String name, boolean resolve)
+    protected Class<?> loadClass(String name, boolean resolve)
         throws ClassNotFoundException {
 
-        if (logger.isLoggable(Level.FINER)) {
-            logger.log(Level.FINER, "loadClass({0})", name);
-        }
+        synchronized (getClassLoadingLock(name)) {
+            if (logger.isLoggable(Level.FINER)) {
+                logger.log(Level.FINER, "loadClass({0})", name);
+            }
 
-        Class<?> clazz = null;
+            Class<?> clazz = null;
 
-        // Don't load classes if class loader is stopped
-        if (!started) {
-            throw new IllegalStateException(
-                getString(LogFacade.NOT_STARTED, name));
-        }
+            // Don't load classes if class loader is stopped
+            if (!started) {
+                throw new IllegalStateException(
+                    getString(LogFacade.NOT_STARTED, name));
+            }
 
-        // (0) Check our previously loaded local class cache
-        clazz = findLoadedClass0(name);
-        if (clazz != null) {
-            if (logger.isLoggable(Level.FINER)) {
-                logger.log(Level.FINER, "  Returning class from cache");
+            // (0) Check our previously loaded local class cache
+            clazz = findLoadedClass0(name);
+            if (clazz != null) {
+                if (logger.isLoggable(Level.FINER)) {
+                    logger.log(Level.FINER, "  Returning class from cache");
+                }
+                if (resolve)
+                    resolveClass(clazz);
+                return (clazz);
             }
-            if (resolve)
-                resolveClass(clazz);
-            return (clazz);
-        }
 
-        // (0.1) Check our previously loaded class cache
-        clazz = findLoadedClass(name);
-        if (clazz != null) {
-            if (logger.isLoggable(Level.FINER)) {
-                logger.log(Level.FINER, "  Returning class from cache");
+            // (0.1) Check our previously loaded class cache
+            clazz = findLoadedClass(name);
+            if (clazz != null) {
+                if (logger.isLoggable(Level.FINER)) {
+                    logger.log(Level.FINER, "  Returning class from cache");
+                }
+                if (resolve)
+                    resolveClass(clazz);
+                return (clazz);
             }
-            if (resolve)
-                resolveClass(clazz);
-            return (clazz);
-        }
 
-        // (0.5) Permission to access this class when using a SecurityManager
-        if ( securityManager != null && packageDefinitionEnabled){
-            int i = name.lastIndexOf('.');
-            if (i >= 0) {
-                try {
-                    securityManager.checkPackageAccess(name.substring(0,i));
-                } catch (SecurityException se) {
-                    String error = getString(LogFacade.SECURITY_EXCEPTION, name);
-                    if (logger.isLoggable(Level.INFO)) {
-                        logger.log(Level.INFO, error, se);
+            // (0.5) Permission to access this class when using a SecurityManager
+            if ( securityManager != null && packageDefinitionEnabled){
+                int i = name.lastIndexOf('.');
+                if (i >= 0) {
+                    try {
+                        securityManager.checkPackageAccess(name.substring(0,i));
+                    } catch (SecurityException se) {
+                        String error = getString(LogFacade.SECURITY_EXCEPTION, name);
+                        if (logger.isLoggable(Level.INFO)) {
+                            logger.log(Level.INFO, error, se);
+                        }
+                        throw new ClassNotFoundException(error, se);
                     }
-                    throw new ClassNotFoundException(error, se);
                 }
             }
-        }
 
-        ClassLoader delegateLoader = parent;
-        if (delegateLoader == null) {
-            delegateLoader = system;
-        }
+            ClassLoader delegateLoader = parent;
+            if (delegateLoader == null) {
+                delegateLoader = system;
+            }
+
+            boolean isWhitelisted = application.isWhitelistEnabled() && DOLUtils.isWhiteListed(application, name);
+            boolean delegateLoad = (delegate && (application.isWhitelistEnabled()? isWhitelisted : true)) || filter(name);
+
+            // (1) Delegate to our parent if requested
+            if (delegateLoad) {
+                // Check delegate first
+                if (logger.isLoggable(Level.FINER)) {
+                    logger.log(Level.FINER, "  Delegating to classloader1 " + delegateLoader);
+                }
+                try {
+                    clazz = delegateLoader.loadClass(name);
+                    if (clazz != null) {
+                        if (logger.isLoggable(Level.FINER)) {
+                            logger.log(Level.FINER, "  Loading class from delegate");
+                        }
+                        if (resolve)
+                            resolveClass(clazz);
+                        return clazz;
+                    }
+                } catch (ClassNotFoundException e) {
+                    // Ignore
+                }
+            }
 
-        boolean isWhitelisted = application.isWhitelistEnabled() && DOLUtils.isWhiteListed(application, name);
-        boolean delegateLoad = (delegate && (application.isWhitelistEnabled()? isWhitelisted : true)) || filter(name);
 
-        // (1) Delegate to our parent if requested
-        if (delegateLoad) {
-            // Check delegate first
+            // (2) Search local repositories
             if (logger.isLoggable(Level.FINER)) {
-                logger.log(Level.FINER, "  Delegating to classloader1 " + delegateLoader);
+                logger.log(Level.FINER, "  Searching local repositories");
             }
             try {
-                clazz = delegateLoader.loadClass(name);
+                clazz = findClass(name);
                 if (clazz != null) {
                     if (logger.isLoggable(Level.FINER)) {
-                        logger.log(Level.FINER, "  Loading class from delegate");
+                        logger.log(Level.FINER, "  Loading class from local repository");
                     }
                     if (resolve)
                         resolveClass(clazz);
@@ -1613,50 +1708,31 @@ public class WebappClassLoader
             } catch (ClassNotFoundException e) {
                 // Ignore
             }
-        }
-
 
-        // (2) Search local repositories
-        if (logger.isLoggable(Level.FINER)) {
-            logger.log(Level.FINER, "  Searching local repositories");
-        }
-        try {
-            clazz = findClass(name);
-            if (clazz != null) {
+            // (3) Delegate if class was not found locally
+            if ((application.isWhitelistEnabled()? isWhitelisted : true) && !delegateLoad) {
                 if (logger.isLoggable(Level.FINER)) {
-                    logger.log(Level.FINER, "  Loading class from local repository");
+                    logger.log(Level.FINER, "  Delegating to classloader " + delegateLoader);
                 }
-                if (resolve)
-                    resolveClass(clazz);
-                return clazz;
-            }
-        } catch (ClassNotFoundException e) {
-            // Ignore
-        }
-
-        // (3) Delegate if class was not found locally
-        if ((application.isWhitelistEnabled()? isWhitelisted : true) && !delegateLoad) {
-            if (logger.isLoggable(Level.FINER)) {
-                logger.log(Level.FINER, "  Delegating to classloader " + delegateLoader);
-            }
-            try {
-                clazz = delegateLoader.loadClass(name);
-                if (clazz != null) {
-                    if (logger.isLoggable(Level.FINER)) {
-                        logger.log(Level.FINER, "  Loading class from delegate");
+                try {
+                    clazz = delegateLoader.loadClass(name);
+                    if (clazz != null) {
+                        if (logger.isLoggable(Level.FINER)) {
+                            logger.log(Level.FINER, "  Loading class from delegate");
+                        }
+                        if (resolve)
+                            resolveClass(clazz);
+                        return clazz;
                     }
-                    if (resolve)
-                        resolveClass(clazz);
-                    return clazz;
+                } catch (ClassNotFoundException e) {
+                    // Ignore
                 }
-            } catch (ClassNotFoundException e) {
-                // Ignore
             }
+            else if(application.isWhitelistEnabled() && !isWhitelisted) {
+                throw new ClassNotFoundException(String.format("Whitelist enabled, but class [%s] is not whitelisted", name));
+            }
+            throw new ClassNotFoundException(name);
         }
-        else if(application.isWhitelistEnabled() && !isWhitelisted) {
-            throw new ClassNotFoundException(String.format("Whitelist enabled, but class [%s] is not whitelisted", name));
-        }
-        throw new ClassNotFoundException(name);
     }
 
 
@@ -1871,6 +1947,7 @@ public class WebappClassLoader
 
         notFoundResources.clear();
         resourceEntries.clear();
+        jarIndex.clear();
         resources = null;
         repositories = null;
         repositoryURLs = null;
@@ -2653,7 +2730,7 @@ public class WebappClassLoader
         if (entry == null)
                throw new ClassNotFoundException(name);
 
-        synchronized (this) {
+        synchronized (getClassLoadingLock(name)) {
             Class<?> clazz = entry.loadedClass;
             if (clazz != null)
                 return entry;
@@ -2757,9 +2834,7 @@ public class WebappClassLoader
         entry = findResourceInternalFromRepositories(name, path);
 
         if (entry == null) {
-            synchronized (jarFiles) {
-                entry = findResourceInternalFromJars(name, path);
-            }
+            entry = findResourceInternalFromJars(name, path);
         }
 
         if (entry == null) {
@@ -2881,13 +2956,24 @@ public class WebappClassLoader
         int contentLength = -1;
         InputStream binaryStream = null;
 
+        // Only search the JARs holding the directory of the resource
+        int[] positions = null;
+        if (jarIndexComplete) {
+            positions = jarIndex.get(getDirectory(path));
+            if (positions == null) {
+                return null;
+            }
+        }
+
         if (!openJARs()){
             return null;
         }
 
-        int jarFilesLength = jarFiles.length;
+        int jarFilesLength =
+            (positions == null) ? jarFiles.length : positions.length;
 
-        for (int i=0; (entry == null) && (i < jarFilesLength); i++) {
+        for (int j=0; (entry == null) && (j < jarFilesLength); j++) {
+            int i = (positions == null) ? j : positions[j];
             jarEntry = jarFiles[i].getJarEntry(path);
 
             if (jarEntry != null) {
@@ -3111,9 +3197,7 @@ public class WebappClassLoader
 
         ResourceEntry entry = resourceEntries.get(name);
         if (entry != null) {
-            synchronized(this) {
-                return entry.loadedClass;
-            }
+            return entry.loadedClass;
         }
         return (null);  // FIXME - findLoadedResource()
 
@@ -56,6 +56,7 @@
  * limitations under the License.
  */
 
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
 package org.apache.catalina.connector;
 
 import org.apache.catalina.LogFacade;
@@ -63,6 +64,7 @@ import org.apache.catalina.LogFacade;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ResourceBundle;
 
 /**
@@ -155,6 +157,21 @@ public class CoyoteOutputStream
     }
 
 
+    /**
+     * Writes the remaining content of the buffer, without copying it to an
+     * intermediate byte array first.
+     */
+    public void write(ByteBuffer buffer)
+        throws IOException {
+        // Disallow operation if the object has gone out of scope
+        if (ob == null) {
+            throw new IllegalStateException(rb.getString(LogFacade.OBJECT_INVALID_SCOPE_EXCEPTION));
+        }
+
+        ob.write(buffer);
+    }
+
+
     /**
      * Will send the buffer to the client.
      */
@@ -56,10 +56,12 @@
  * limitations under the License.
  */
 
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
 package org.apache.catalina.connector;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.channels.InterruptedByTimeoutException;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -110,7 +112,7 @@ public class OutputBuffer extends Writer
     /**
      * Number of bytes written.
      */
-    private int bytesWritten = 0;
+    private long bytesWritten = 0;
 
 
     /**
@@ -325,6 +327,27 @@ public class OutputBuffer extends Writer
     }
 
 
+    /**
+     * Writes the remaining content of the buffer. The buffer must not be
+     * modified afterwards, as it may be sent without being copied.
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+
+        if (suspended)
+            return;
+
+        if (grizzlyOutputBuffer.isClosed())
+            return;
+        if (log.isLoggable(Level.FINE))
+            log.log(Level.FINE, "write(ByteBuffer)");
+
+        int len = buffer.remaining();
+        grizzlyOutputBuffer.writeByteBuffer(buffer);
+        bytesWritten += len;
+
+    }
+
+
     private void writeBytes(byte b[], int off, int len) 
         throws IOException {
 
@@ -438,7 +461,7 @@ public class OutputBuffer extends Writer
     }
 
 
-    public int getBytesWritten() {
+    public long getBytesWritten() {
         return bytesWritten;
     }
 
@@ -449,7 +472,8 @@ public class OutputBuffer extends Writer
 
 
     public int getContentWritten() {
-        return bytesWritten + charsWritten;
+        // Files larger than 2GB can be written, saturate rather than wrap
+        return (int) Math.min(bytesWritten + charsWritten, Integer.MAX_VALUE);
     }
 
 
@@ -56,7 +56,7 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
 package org.apache.catalina.servlets;
 
 import java.io.BufferedInputStream;
@@ -65,18 +65,26 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.AccessController;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
 import javax.naming.InitialContext;
 import javax.naming.NameClassPair;
 import javax.naming.NamingException;
@@ -102,6 +110,7 @@ import javax.xml.transform.stream.StreamSource;
 
 import org.apache.catalina.Globals;
 import org.apache.catalina.LogFacade;
+import org.apache.catalina.connector.CoyoteOutputStream;
 import org.apache.catalina.core.ContextsAdapterUtility;
 import org.apache.catalina.util.ServerInfo;
 import org.apache.catalina.util.URLEncoder;
@@ -271,6 +280,47 @@ public class DefaultServlet
     protected boolean useAcceptRanges = true;
 
 
+    /**
+     * Should pre-compressed variants of resources (<code>.br</code> and
+     * <code>.gz</code> siblings) be served to the clients accepting them?
+     */
+    protected boolean precompressed = false;
+
+
+    /**
+     * Should gzip variants missing from the web application be generated on
+     * first use and kept in the context temporary directory? Only used when
+     * pre-compressed variants are served.
+     */
+    protected boolean gzipOnDemand = false;
+
+
+    /**
+     * Minimum size in bytes of the resources compressed on demand.
+     */
+    protected int gzipOnDemandMinSize = 1024;
+
+
+    /**
+     * Directory holding the gzip variants generated on demand.
+     */
+    private File gzipOnDemandDir = null;
+
+
+    /**
+     * Gzip variants generated on demand, by resource path.
+     */
+    private final ConcurrentMap<String, GeneratedVariant> gzipVariants =
+        new ConcurrentHashMap<String, GeneratedVariant>();
+
+
+    /**
+     * Paths of the resources being compressed on demand.
+     */
+    private final Set<String> gzipInProgress =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+
     /**
      * Full range marker.
      */
@@ -327,6 +377,15 @@ public class DefaultServlet
     protected static final int BUFFER_SIZE = 4096;
 
 
+    /**
+     * Pre-compressed variant formats, in order of preference.
+     */
+    protected static final CompressionFormat[] COMPRESSION_FORMATS = {
+        new CompressionFormat(".br", "br"),
+        new CompressionFormat(".gz", "gzip")
+    };
+
+
     // --------------------------------------------------------- Public Methods
 
 
@@ -381,6 +440,13 @@ public class DefaultServlet
         if (sc.getInitParameter("useAcceptRanges") != null)
             useAcceptRanges = Boolean.parseBoolean(sc.getInitParameter("useAcceptRanges"));
 
+        precompressed = Boolean.parseBoolean(sc.getInitParameter("precompressed"));
+        gzipOnDemand = Boolean.parseBoolean(sc.getInitParameter("gzipOnDemand"));
+
+        if (sc.getInitParameter("gzipOnDemandMinSize") != null)
+            gzipOnDemandMinSize =
+                Integer.parseInt(sc.getInitParameter("gzipOnDemandMinSize"));
+
         // Sanity check on the specified buffer sizes
         if (input < 256)
             input = 256;
@@ -417,6 +483,19 @@ public class DefaultServlet
             // Failed : Not the right type
         }
 
+        if (precompressed && gzipOnDemand) {
+            File tempDir = (File) getServletContext().getAttribute(
+                ServletContext.TEMPDIR);
+            if (tempDir != null) {
+                try {
+                    gzipOnDemandDir =
+                        new File(tempDir, "precompressed").getCanonicalFile();
+                } catch (IOException e) {
+                    log("DefaultServlet.init:  gzip on demand disabled", e);
+                }
+            }
+        }
+
     }
 
 
@@ -820,6 +899,7 @@ public class DefaultServlet
 
         CacheEntry cacheEntry = null;
         ProxyDirContext proxyDirContext = resources;
+        ProxyDirContext lookupContext = proxyDirContext;
         if (alternateDocBases == null
                 || alternateDocBases.size() == 0) {
             cacheEntry = proxyDirContext.lookupCache(path);
@@ -827,7 +907,8 @@ public class DefaultServlet
             AlternateDocBase match = AlternateDocBase.findMatch(
                                             path, alternateDocBases);
             if (match != null) {
-                cacheEntry = ((ProxyDirContext) ContextsAdapterUtility.unwrap(match.getResources())).lookupCache(path);
+                lookupContext = (ProxyDirContext) ContextsAdapterUtility.unwrap(match.getResources());
+                cacheEntry = lookupContext.lookupCache(path);
             } else {
                 // None of the url patterns for alternate docbases matched
                 cacheEntry = proxyDirContext.lookupCache(path);
@@ -888,27 +969,42 @@ public class DefaultServlet
             }
         }
 
+        // Find content type.
+        String contentType = cacheEntry.attributes.getMimeType();
+        if (contentType == null && !cacheEntry.attributes.isMimeTypeInitialized()) {
+            contentType = getServletContext().getMimeType(cacheEntry.name);
+            cacheEntry.attributes.setMimeType(contentType);
+        }
+
+        // The entry whose content is sent, which is either the resource
+        // itself or a pre-compressed variant of it
+        CacheEntry contentEntry = cacheEntry;
+        CompressionFormat contentEncoding = null;
+
         // Check if the conditions specified in the optional If headers are
         // satisfied.
         if (cacheEntry.context == null) {
 
-            // Checking If headers
             boolean included =
                 (request.getAttribute(RequestDispatcher.INCLUDE_CONTEXT_PATH) != null);
+            if (!included && precompressed) {
+                PrecompressedResource variant = getPrecompressedResource(
+                    request, response, path, cacheEntry, lookupContext,
+                    contentType);
+                if (variant != null) {
+                    contentEntry = variant.entry;
+                    contentEncoding = variant.format;
+                }
+            }
+
+            // Checking If headers
             if (!included
-                && !checkIfHeaders(request, response, cacheEntry.attributes)) {
+                && !checkIfHeaders(request, response, contentEntry.attributes)) {
                 return;
             }
 
         }
 
-        // Find content type.
-        String contentType = cacheEntry.attributes.getMimeType();
-        if (contentType == null && !cacheEntry.attributes.isMimeTypeInitialized()) {
-            contentType = getServletContext().getMimeType(cacheEntry.name);
-            cacheEntry.attributes.setMimeType(contentType);
-        }
-
         ArrayList<Range> ranges = null;
         long contentLength = -1L;
 
@@ -935,17 +1031,17 @@ public class DefaultServlet
             }
 
             // Parse range specifier
-            ranges = parseRange(request, response, cacheEntry.attributes);
+            ranges = parseRange(request, response, contentEntry.attributes);
 
             // ETag header
-            response.setHeader("ETag", cacheEntry.attributes.getETag());
+            response.setHeader("ETag", contentEntry.attributes.getETag());
 
             // Last-Modified header
             response.setHeader("Last-Modified",
-                    cacheEntry.attributes.getLastModifiedHttp());
+                    contentEntry.attributes.getLastModifiedHttp());
 
             // Get content length
-            contentLength = cacheEntry.attributes.getContentLength();
+            contentLength = contentEntry.attributes.getContentLength();
             // Special case for zero length files, which would cause a
             // (silent) ISE when setting the output buffer size
             if (contentLength == 0L) {
@@ -977,6 +1073,22 @@ public class DefaultServlet
 
         }
 
+        if ((writer != null) && (contentEncoding != null)) {
+            // Compressed content can't be sent through a writer, fall back
+            // to the resource itself
+            contentEntry = cacheEntry;
+            contentEncoding = null;
+            ranges = parseRange(request, response, cacheEntry.attributes);
+            response.setHeader("ETag", cacheEntry.attributes.getETag());
+            response.setHeader("Last-Modified",
+                    cacheEntry.attributes.getLastModifiedHttp());
+            contentLength = cacheEntry.attributes.getContentLength();
+        }
+
+        if (contentEncoding != null) {
+            response.setHeader("Content-Encoding", contentEncoding.encoding);
+        }
+
         if ( (cacheEntry.context != null) 
                 || ( ((ranges == null) || (ranges.isEmpty()))
                         && (request.getHeader("Range") == null) )
@@ -989,7 +1101,7 @@ public class DefaultServlet
                         contentType + "'");
                 response.setContentType(contentType);
             }
-            if ((cacheEntry.resource != null) && (contentLength >= 0)) {
+            if ((contentEntry.resource != null) && (contentLength >= 0)) {
                 if (debug > 0)
                     log("DefaultServlet.serveFile:  contentLength=" +
                         contentLength);
@@ -1020,10 +1132,10 @@ public class DefaultServlet
                     // Silent catch
                 }
                 if (ostream != null) {
-                    if (!checkSendfile(request, response, cacheEntry, contentLength, null))
-                        copy(cacheEntry, renderResult, ostream);
+                    if (!checkSendfile(request, response, contentEntry, contentLength, null))
+                        copy(contentEntry, renderResult, ostream);
                 } else {
-                    copy(cacheEntry, renderResult, writer);
+                    copy(contentEntry, renderResult, writer);
                 }
             }
 
@@ -1070,10 +1182,10 @@ public class DefaultServlet
                         // Silent catch
                     }
                     if (ostream != null) {
-                        if (!checkSendfile(request, response, cacheEntry, range.end - range.start + 1, range))
-                            copy(cacheEntry, ostream, range);
+                        if (!checkSendfile(request, response, contentEntry, range.end - range.start + 1, range))
+                            copy(contentEntry, ostream, range);
                     } else {
-                        copy(cacheEntry, writer, range);
+                        copy(contentEntry, writer, range);
                     }
                 }
 
@@ -1089,10 +1201,10 @@ public class DefaultServlet
                         // Silent catch
                     }
                     if (ostream != null) {
-                        copy(cacheEntry, ostream, ranges.iterator(),
+                        copy(contentEntry, ostream, ranges.iterator(),
                              contentType);
                     } else {
-                        copy(cacheEntry, writer, ranges.iterator(),
+                        copy(contentEntry, writer, ranges.iterator(),
                              contentType);
                     }
                 }
@@ -1916,7 +2028,7 @@ public class DefaultServlet
                                   long length, Range range) {
         if ((sendfileSize > 0)
             && (entry.resource != null)
-            && ((length > sendfileSize) || (entry.resource.getContent() == null))
+            && ((length > sendfileSize) || (!entry.resource.isContentLoaded()))
             && (entry.attributes.getCanonicalPath() != null)
             && (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support")))
             && (request.getClass().getName().equals("org.apache.catalina.connector.RequestFacade"))
@@ -1937,6 +2049,264 @@ public class DefaultServlet
     }
 
 
+    /**
+     * Write a range of a resource without streaming it, from the content
+     * held by the resource cache.
+     *
+     * @param entry The cache entry of the resource
+     * @param ostream The output stream to write to
+     * @param start Start of the range
+     * @param end End of the range
+     * @return true if the range has been written, false if it has to be
+     * copied
+     * @exception IOException if an input/output error occurs
+     */
+    protected boolean writeRange(CacheEntry entry, ServletOutputStream ostream,
+                                 long start, long end)
+        throws IOException {
+        if (entry.resource == null) {
+            return false;
+        }
+        long length = end - start + 1;
+        byte[] content = entry.resource.getContent();
+        if (content != null) {
+            ostream.write(content, (int) start, (int) length);
+            return true;
+        }
+        ByteBuffer contentBuffer = entry.resource.getContentBuffer();
+        if ((contentBuffer != null)
+            && (ostream instanceof CoyoteOutputStream)) {
+            contentBuffer.position(contentBuffer.position() + (int) start);
+            contentBuffer.limit(contentBuffer.position() + (int) length);
+            ((CoyoteOutputStream) ostream).write(contentBuffer);
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Select the pre-compressed variant of a resource to serve. The Vary
+     * header is added whenever a variant exists, whether the client accepts
+     * it or not, so that caches key the response on Accept-Encoding.
+     *
+     * @param request The servlet request we are processing
+     * @param response The servlet response we are creating
+     * @param path The path of the resource
+     * @param cacheEntry The cache entry of the resource
+     * @param context The directory context holding the resource
+     * @param contentType The content type of the resource
+     * @return the variant to serve, or null to serve the resource itself
+     */
+    protected PrecompressedResource getPrecompressedResource(
+            HttpServletRequest request, HttpServletResponse response,
+            String path, CacheEntry cacheEntry, ProxyDirContext context,
+            String contentType) {
+
+        PrecompressedResource result = null;
+        boolean varied = false;
+        for (CompressionFormat format : COMPRESSION_FORMATS) {
+            CacheEntry variant = context.lookupCache(path + format.extension);
+            if ((variant != null) && variant.exists
+                    && (variant.context == null)) {
+                varied = true;
+                if ((result == null)
+                        && isEncodingAccepted(request, format.encoding)) {
+                    result = new PrecompressedResource(variant, format);
+                }
+            } else if ((format.extension.equals(".gz"))
+                    && isGzipOnDemandCandidate(cacheEntry, contentType)) {
+                varied = true;
+                if ((result == null)
+                        && isEncodingAccepted(request, format.encoding)) {
+                    variant = getGzipOnDemand(path, cacheEntry);
+                    if (variant != null) {
+                        result = new PrecompressedResource(variant, format);
+                    }
+                }
+            }
+        }
+        if (varied) {
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+        return result;
+
+    }
+
+
+    /**
+     * Return true if the Accept-Encoding headers of the request accept the
+     * given content coding, either explicitly or through a wildcard, with a
+     * non zero quality value.
+     */
+    protected boolean isEncodingAccepted(HttpServletRequest request,
+                                         String encoding) {
+        boolean wildcard = false;
+        Enumeration<String> headers = request.getHeaders("Accept-Encoding");
+        while ((headers != null) && headers.hasMoreElements()) {
+            StringTokenizer commaTokenizer =
+                new StringTokenizer(headers.nextElement(), ",");
+            while (commaTokenizer.hasMoreTokens()) {
+                String token = commaTokenizer.nextToken();
+                int semicolon = token.indexOf(';');
+                String coding = (semicolon == -1)
+                    ? token.trim() : token.substring(0, semicolon).trim();
+                boolean accepted = (semicolon == -1)
+                    || (getQuality(token.substring(semicolon + 1)) > 0);
+                if (coding.equalsIgnoreCase(encoding)) {
+                    return accepted;
+                }
+                if (coding.equals("*")) {
+                    wildcard = accepted;
+                }
+            }
+        }
+        return wildcard;
+    }
+
+
+    /**
+     * Parse the quality value out of the parameters of an Accept-Encoding
+     * element, defaulting to 1 when absent and to 0 when malformed.
+     */
+    private static double getQuality(String parameters) {
+        StringTokenizer semicolonTokenizer =
+            new StringTokenizer(parameters, ";");
+        while (semicolonTokenizer.hasMoreTokens()) {
+            String parameter = semicolonTokenizer.nextToken().trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+
+    /**
+     * Return true if a gzip variant of the resource may be generated on
+     * demand: the resource is file backed, textual and large enough for
+     * compression to pay off.
+     */
+    private boolean isGzipOnDemandCandidate(CacheEntry cacheEntry,
+                                            String contentType) {
+        return (gzipOnDemandDir != null)
+            && (contentType != null)
+            && (contentType.startsWith("text/")
+                || contentType.contains("javascript")
+                || contentType.contains("json")
+                || contentType.contains("xml"))
+            && (cacheEntry.attributes.getContentLength() >= gzipOnDemandMinSize)
+            && (cacheEntry.attributes.getCanonicalPath() != null);
+    }
+
+
+    /**
+     * Return the gzip variant of a file backed resource, compressing the
+     * resource into the gzip on demand directory on first use, or when it
+     * has been modified since. Only one request compresses a resource at a
+     * time; the requests arriving meanwhile are served the resource itself
+     * rather than waiting or compressing it again.
+     *
+     * @return the cache entry of the variant, or null if it can't be used
+     */
+    CacheEntry getGzipOnDemand(String path, CacheEntry cacheEntry) {
+
+        ResourceAttributes attributes = cacheEntry.attributes;
+        GeneratedVariant variant = gzipVariants.get(path);
+        if ((variant == null) || !variant.isCurrent(attributes)) {
+            if (!gzipInProgress.add(path)) {
+                return null;
+            }
+            try {
+                variant = gzipVariants.get(path);
+                if ((variant == null) || !variant.isCurrent(attributes)) {
+                    variant = compress(path, attributes);
+                    gzipVariants.put(path, variant);
+                }
+            } catch (IOException e) {
+                if (debug > 0) {
+                    log("DefaultServlet.getGzipOnDemand:  unable to compress '"
+                        + path + "'", e);
+                }
+                return null;
+            } finally {
+                gzipInProgress.remove(path);
+            }
+        }
+
+        if ((variant.length == 0L)
+                || (variant.length >= attributes.getContentLength())) {
+            return null;
+        }
+        CacheEntry entry = new CacheEntry();
+        entry.name = cacheEntry.name + ".gz";
+        entry.attributes = new GeneratedFileAttributes(variant.file,
+            variant.length, variant.sourceLastModified);
+        entry.resource = new GeneratedFileResource(variant.file);
+        return entry;
+
+    }
+
+
+    /**
+     * Compress a resource into the gzip on demand directory.
+     */
+    private GeneratedVariant compress(String path,
+                                      ResourceAttributes attributes)
+        throws IOException {
+
+        File target = new File(gzipOnDemandDir, path + ".gz");
+        if (!target.getCanonicalPath().startsWith(
+                gzipOnDemandDir.getPath() + File.separator)) {
+            throw new IOException("Invalid path " + path);
+        }
+        // The state of the source is recorded before reading it, so that a
+        // change made while compressing is picked up by the next request
+        long sourceLastModified = attributes.getLastModified();
+        long sourceLength = attributes.getContentLength();
+        compress(new File(attributes.getCanonicalPath()), target);
+        return new GeneratedVariant(target, target.length(),
+                                    sourceLastModified, sourceLength);
+
+    }
+
+
+    /**
+     * Compress a file, writing to a temporary file first so that concurrent
+     * requests never see a partially written variant.
+     */
+    private static void compress(File source, File target)
+        throws IOException {
+
+        File dir = target.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+        File temp = File.createTempFile(target.getName(), ".tmp", dir);
+        try {
+            try (InputStream in = new FileInputStream(source);
+                 OutputStream out = new GZIPOutputStream(
+                     new FileOutputStream(temp), BUFFER_SIZE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int len;
+                while ((len = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, len);
+                }
+            }
+            Files.move(temp.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+
+    }
+
+
     /**
      * Check if the if-match condition is satisfied.
      *
@@ -2138,6 +2508,14 @@ public class DefaultServlet
                 ostream.write(buffer, 0, buffer.length);
                 return;
             }
+            // Content held off-heap by the resource cache is handed to the
+            // connector as is, rather than copied through a heap buffer
+            ByteBuffer contentBuffer = cacheEntry.resource.getContentBuffer();
+            if ((contentBuffer != null)
+                && (ostream instanceof CoyoteOutputStream)) {
+                ((CoyoteOutputStream) ostream).write(contentBuffer);
+                return;
+            }
             resourceInputStream = cacheEntry.resource.streamContent();
         } else {
             resourceInputStream = is;
@@ -2222,6 +2600,10 @@ public class DefaultServlet
 
         IOException exception = null;
 
+        if (writeRange(cacheEntry, ostream, range.start, range.end)) {
+            return;
+        }
+
         InputStream resourceInputStream = cacheEntry.resource.streamContent();
         InputStream istream =
             new BufferedInputStream(resourceInputStream, input);
@@ -2296,25 +2678,30 @@ public class DefaultServlet
 
         while ( (exception == null) && (ranges.hasNext()) ) {
 
+            Range currentRange = ranges.next();
+
+            // Writing MIME header.
+            ostream.println();
+            ostream.println("--" + mimeSeparation);
+            if (contentType != null)
+                ostream.println("Content-Type: " + contentType);
+            ostream.println("Content-Range: bytes " + currentRange.start
+                           + "-" + currentRange.end + "/"
+                           + currentRange.length);
+            ostream.println();
+
+            // Printing content
+            if (writeRange(cacheEntry, ostream, currentRange.start,
+                           currentRange.end)) {
+                continue;
+            }
+
             InputStream resourceInputStream = cacheEntry.resource.streamContent();
             InputStream istream = null;
             try {
                 istream = 
                     new BufferedInputStream(resourceInputStream, input);
 
-                Range currentRange = ranges.next();
-
-                // Writing MIME header.
-                ostream.println();
-                ostream.println("--" + mimeSeparation);
-                if (contentType != null)
-                    ostream.println("Content-Type: " + contentType);
-                ostream.println("Content-Range: bytes " + currentRange.start
-                               + "-" + currentRange.end + "/"
-                               + currentRange.length);
-                ostream.println();
-
-                // Printing content
                 exception = copyRange(istream, ostream, currentRange.start,
                                       currentRange.end);
 
@@ -2586,6 +2973,109 @@ public class DefaultServlet
         }
     }
 
+
+    /**
+     * Pre-compressed variant format: the file extension of the variant and
+     * the content coding it is served with.
+     */
+    protected static class CompressionFormat {
+
+        public final String extension;
+        public final String encoding;
+
+        public CompressionFormat(String extension, String encoding) {
+            this.extension = extension;
+            this.encoding = encoding;
+        }
+    }
+
+
+    /**
+     * Pre-compressed variant of a resource.
+     */
+    protected static class PrecompressedResource {
+
+        public final CacheEntry entry;
+        public final CompressionFormat format;
+
+        public PrecompressedResource(CacheEntry entry,
+                                     CompressionFormat format) {
+            this.entry = entry;
+            this.format = format;
+        }
+    }
+
+
+    /**
+     * Gzip variant generated on demand, along with the state of the resource
+     * it was compressed from. The source state is compared rather than the
+     * modification time of the variant file, which file systems with a
+     * coarse timestamp granularity would not store exactly.
+     */
+    private static class GeneratedVariant {
+
+        final File file;
+        final long length;
+        final long sourceLastModified;
+        final long sourceLength;
+
+        GeneratedVariant(File file, long length, long sourceLastModified,
+                         long sourceLength) {
+            this.file = file;
+            this.length = length;
+            this.sourceLastModified = sourceLastModified;
+            this.sourceLength = sourceLength;
+        }
+
+        boolean isCurrent(ResourceAttributes source) {
+            return (source.getLastModified() == sourceLastModified)
+                && (source.getContentLength() == sourceLength)
+                && file.isFile();
+        }
+    }
+
+
+    /**
+     * Resource of a gzip variant generated on demand, opening its file only
+     * when the content is streamed.
+     */
+    private static class GeneratedFileResource extends Resource {
+
+        private final File file;
+
+        public GeneratedFileResource(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public InputStream streamContent() throws IOException {
+            return new FileInputStream(file);
+        }
+    }
+
+
+    /**
+     * Attributes of a gzip variant generated on demand. The ETag derives
+     * from the compressed length, so it differs from the one of the
+     * resource.
+     */
+    private static class GeneratedFileAttributes extends ResourceAttributes {
+
+        private final File file;
+
+        public GeneratedFileAttributes(File file, long contentLength,
+                                       long lastModified) {
+            this.file = file;
+            setContentLength(contentLength);
+            setLastModified(lastModified);
+        }
+
+        @Override
+        public String getCanonicalPath() {
+            return file.getPath();
+        }
+    }
+
     /**
      * Enumeration of sorting mechanisms for directory listings.
      */
@@ -0,0 +1,356 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.apache.catalina.servlets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.catalina.Globals;
+import org.apache.naming.resources.FileDirContext;
+import org.apache.naming.resources.ProxyDirContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultServletTest {
+
+    private static final long LAST_MODIFIED = 1546300800000L;
+
+    private File docBase;
+    private File tempDir;
+    private ServletContext servletContext;
+    private DefaultServlet servlet;
+
+    private byte[] script;
+    private byte[] scriptBrotli;
+    private byte[] scriptGzip;
+
+    @Before
+    public void setUp() throws Exception {
+        docBase = Files.createTempDirectory("docbase").toFile();
+        tempDir = Files.createTempDirectory("work").toFile();
+
+        script = text("var answer = 42;\n", 10);
+        // the content of the variants does not matter, only which one is sent
+        scriptBrotli = "brotli".getBytes(StandardCharsets.US_ASCII);
+        scriptGzip = "gzip!".getBytes(StandardCharsets.US_ASCII);
+        write("app.js", script);
+        write("app.js.br", scriptBrotli);
+        write("app.js.gz", scriptGzip);
+        write("plain.js", script);
+        write("style.css", text("body { color: black; }\n", 100));
+
+        FileDirContext fileContext = new FileDirContext();
+        fileContext.setDocBase(docBase.getPath());
+        fileContext.setCached(false);
+        ProxyDirContext resources = new ProxyDirContext(new Hashtable<String, String>(), fileContext);
+
+        servletContext = mock(ServletContext.class);
+        when(servletContext.getAttribute(Globals.RESOURCES_ATTR)).thenReturn(resources);
+        when(servletContext.getAttribute(ServletContext.TEMPDIR)).thenReturn(tempDir);
+        when(servletContext.getMimeType(endsWith(".js"))).thenReturn("application/javascript");
+        when(servletContext.getMimeType(endsWith(".css"))).thenReturn("text/css");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        delete(docBase);
+        delete(tempDir);
+    }
+
+    private void init(String... parameters) throws Exception {
+        ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(servletContext);
+        when(config.getInitParameterNames()).thenReturn(Collections.<String>emptyEnumeration());
+        for (int i = 0; i < parameters.length; i += 2) {
+            when(config.getInitParameter(parameters[i])).thenReturn(parameters[i + 1]);
+        }
+        servlet = new DefaultServlet();
+        servlet.init(config);
+    }
+
+    @Test
+    public void variantIsChosenByAcceptEncoding() throws Exception {
+        init("precompressed", "true");
+
+        Exchange brotli = get("/app.js", "gzip, deflate, br");
+        assertArrayEquals(scriptBrotli, brotli.body());
+        verify(brotli.response).setHeader("Content-Encoding", "br");
+
+        Exchange gzip = get("/app.js", "gzip;q=0.8, br;q=0");
+        assertArrayEquals(scriptGzip, gzip.body());
+        verify(gzip.response).setHeader("Content-Encoding", "gzip");
+
+        Exchange wildcard = get("/app.js", "*");
+        assertArrayEquals(scriptBrotli, wildcard.body());
+
+        Exchange identity = get("/app.js", "identity");
+        assertArrayEquals(script, identity.body());
+        verify(identity.response, never()).setHeader(eq("Content-Encoding"), anyString());
+    }
+
+    @Test
+    public void varyAndETagFollowTheVariant() throws Exception {
+        init("precompressed", "true");
+
+        Exchange identity = get("/app.js", null);
+        Exchange gzip = get("/app.js", "gzip");
+        verify(identity.response).addHeader("Vary", "Accept-Encoding");
+        verify(gzip.response).addHeader("Vary", "Accept-Encoding");
+        assertEquals(etag("app.js"), identity.etag());
+        assertEquals(etag("app.js.gz"), gzip.etag());
+        assertNotEquals(identity.etag(), gzip.etag());
+        verify(gzip.response).setContentLength(scriptGzip.length);
+
+        // no variant exists, so the response does not depend on Accept-Encoding
+        Exchange plain = get("/plain.js", "gzip");
+        assertArrayEquals(script, plain.body());
+        verify(plain.response, never()).addHeader(eq("Vary"), anyString());
+    }
+
+    @Test
+    public void variantsAreIgnoredWhenNotEnabled() throws Exception {
+        init();
+
+        Exchange exchange = get("/app.js", "br, gzip");
+        assertArrayEquals(script, exchange.body());
+        verify(exchange.response, never()).addHeader(eq("Vary"), anyString());
+    }
+
+    @Test
+    public void rangeAppliesToTheVariant() throws Exception {
+        init("precompressed", "true");
+
+        Exchange exchange = get("/app.js", "gzip", "bytes=1-3");
+        verify(exchange.response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(exchange.response).addHeader("Content-Range", "bytes 1-3/" + scriptGzip.length);
+        verify(exchange.response).setHeader("Content-Encoding", "gzip");
+        assertArrayEquals(Arrays.copyOfRange(scriptGzip, 1, 4), exchange.body());
+
+        Exchange identity = get("/app.js", null, "bytes=1-3");
+        verify(identity.response).addHeader("Content-Range", "bytes 1-3/" + script.length);
+        assertArrayEquals(Arrays.copyOfRange(script, 1, 4), identity.body());
+    }
+
+    @Test
+    public void gzipOnDemandCompressesOnce() throws Exception {
+        init("precompressed", "true", "gzipOnDemand", "true");
+        byte[] style = Files.readAllBytes(new File(docBase, "style.css").toPath());
+
+        Exchange first = get("/style.css", "gzip");
+        verify(first.response).setHeader("Content-Encoding", "gzip");
+        verify(first.response).addHeader("Vary", "Accept-Encoding");
+        assertArrayEquals(style, gunzip(first.body()));
+
+        File generated = new File(new File(tempDir, "precompressed"), "style.css.gz");
+        generated.setLastModified(1000L);
+        Exchange second = get("/style.css", "gzip");
+        assertArrayEquals(style, gunzip(second.body()));
+        assertEquals(1000L, generated.lastModified());
+
+        Exchange identity = get("/style.css", null);
+        assertArrayEquals(style, identity.body());
+    }
+
+    @Test
+    public void gzipOnDemandRegeneratesChangedResource() throws Exception {
+        init("precompressed", "true", "gzipOnDemand", "true");
+        get("/style.css", "gzip").body();
+
+        // same modification time, as a file system with a coarse timestamp
+        // granularity would report, but a different length
+        byte[] changed = text("body { color: white; margin: 0; }\n", 100);
+        write("style.css", changed);
+
+        assertArrayEquals(changed, gunzip(get("/style.css", "gzip").body()));
+    }
+
+    @Test
+    public void gzipOnDemandSkipsSmallResources() throws Exception {
+        init("precompressed", "true", "gzipOnDemand", "true", "gzipOnDemandMinSize", "100000");
+
+        Exchange exchange = get("/style.css", "gzip");
+        verify(exchange.response, never()).setHeader(eq("Content-Encoding"), anyString());
+        verify(exchange.response, never()).addHeader(eq("Vary"), anyString());
+    }
+
+    private Exchange get(String path, String acceptEncoding) throws Exception {
+        return get(path, acceptEncoding, null);
+    }
+
+    private Exchange get(String path, String acceptEncoding, String range) throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getServletPath()).thenReturn(path);
+        when(request.getDateHeader(anyString())).thenReturn(-1L);
+        final List<String> acceptEncodings = acceptEncoding == null
+                ? Collections.<String>emptyList() : Collections.singletonList(acceptEncoding);
+        when(request.getHeaders("Accept-Encoding")).thenAnswer(new Answer<Enumeration<String>>() {
+            @Override
+            public Enumeration<String> answer(InvocationOnMock invocation) {
+                return Collections.enumeration(acceptEncodings);
+            }
+        });
+        when(request.getHeader("Range")).thenReturn(range);
+
+        Exchange exchange = new Exchange(mock(HttpServletResponse.class));
+        when(exchange.response.getOutputStream()).thenReturn(exchange.output);
+        servlet.service(request, exchange.response);
+        return exchange;
+    }
+
+    private String etag(String name) throws Exception {
+        File file = new File(docBase, name);
+        return "W/\"" + file.length() + "-" + file.lastModified() + "\"";
+    }
+
+    private void write(String name, byte[] content) throws IOException {
+        File file = new File(docBase, name);
+        Files.write(file.toPath(), content);
+        file.setLastModified(LAST_MODIFIED);
+    }
+
+    private static byte[] text(String line, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(line);
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[1024];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static class Exchange {
+
+        final HttpServletResponse response;
+        final CapturingOutputStream output = new CapturingOutputStream();
+        final Map<String, String> headers = new HashMap<>();
+
+        Exchange(HttpServletResponse response) {
+            this.response = response;
+            doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(InvocationOnMock invocation) {
+                    headers.put(invocation.<String>getArgument(0), invocation.<String>getArgument(1));
+                    return null;
+                }
+            }).when(response).setHeader(anyString(), anyString());
+        }
+
+        byte[] body() {
+            return output.content.toByteArray();
+        }
+
+        String etag() {
+            return headers.get("ETag");
+        }
+    }
+
+    private static class CapturingOutputStream extends ServletOutputStream {
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) {
+            content.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.apache.naming.resources;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent replacement for {@link ResourceCache}.
+ * <p>
+ * Lookups are a single {@link ConcurrentHashMap} read. Entries are spread over segments, each with its own lock and
+ * share of the cache size, so loads into different segments don't contend. When a segment is full, a new entry is
+ * only admitted if it has been requested more often than the entries it would replace, as estimated by a
+ * TinyLFU-style frequency sketch, which keeps popular resources cached while one-off requests pass through. Entries
+ * are weighed by their size in KB, like {@link ResourceCache}.
+ * <p>
+ * If the <code>org.apache.naming.resources.ConcurrentResourceCache.offHeap</code> system property is true, the
+ * content of cached resources is held in direct buffers rather than on the heap.
+ */
+public class ConcurrentResourceCache extends ResourceCache {
+
+
+    // -------------------------------------------------------------- Constants
+
+
+    public static final String OFF_HEAP_PROPERTY =
+        "org.apache.naming.resources.ConcurrentResourceCache.offHeap";
+
+    /**
+     * Number of segments. Each holds a quarter of the cache, which is room for
+     * at least five of the largest resources {@link ProxyDirContext} caches
+     * the content of (a twentieth of the cache size).
+     */
+    private static final int SEGMENTS = 4;
+
+
+    // ----------------------------------------------------- Instance Variables
+
+
+    private final ConcurrentHashMap<String, CacheEntry> entries =
+        new ConcurrentHashMap<String, CacheEntry>();
+
+    private final ConcurrentHashMap<String, CacheEntry> notFoundEntries =
+        new ConcurrentHashMap<String, CacheEntry>();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final LongAdder accesses = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final boolean offHeap = Boolean.getBoolean(OFF_HEAP_PROPERTY);
+
+    private volatile FrequencySketch sketch;
+
+
+    // ----------------------------------------------------------- Constructors
+
+
+    public ConcurrentResourceCache() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        setCacheMaxSize(cacheMaxSize);
+    }
+
+
+    // ------------------------------------------------------------- Properties
+
+
+    /**
+     * Set the maximum size of the cache in KB, shared equally between the
+     * segments.
+     */
+    @Override
+    public void setCacheMaxSize(int cacheMaxSize) {
+        super.setCacheMaxSize(cacheMaxSize);
+        // Room for about one counter per KB of cache, which is enough for
+        // the number of resources that can fit in it
+        sketch = new FrequencySketch(Math.max(64, cacheMaxSize));
+    }
+
+
+    @Override
+    public long getAccessCount() {
+        return accesses.sum();
+    }
+
+
+    @Override
+    public long getHitsCount() {
+        return hits.sum();
+    }
+
+
+    @Override
+    public int getCacheSize() {
+        return (int) weight.get();
+    }
+
+
+    /**
+     * Return the largest entry size in KB which can be cached, which is the
+     * share of the cache size of a segment.
+     */
+    public int getMaxEntrySize() {
+        return Math.max(1, cacheMaxSize / SEGMENTS);
+    }
+
+
+    /**
+     * Return true if the content of cached resources should be held in
+     * direct buffers.
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    /**
+     * Space is made by {@link #load(CacheEntry)} in the segment of the entry,
+     * so there is nothing to do up front.
+     */
+    @Override
+    public boolean allocate(int space) {
+        return true;
+    }
+
+
+    @Override
+    public CacheEntry lookup(String name) {
+        accesses.increment();
+        sketch.increment(name);
+        CacheEntry cacheEntry = entries.get(name);
+        if (cacheEntry == null) {
+            cacheEntry = notFoundEntries.get(name);
+        }
+        if (cacheEntry != null) {
+            hits.increment();
+        }
+        return cacheEntry;
+    }
+
+
+    @Override
+    public void load(CacheEntry entry) {
+        if (!entry.exists) {
+            if (notFoundEntries.size() >= spareNotFoundEntries) {
+                notFoundEntries.clear();
+            }
+            notFoundEntries.put(entry.name, entry);
+            return;
+        }
+
+        Segment segment = segmentFor(entry.name);
+        long capacity = getMaxEntrySize();
+        if (entry.size > capacity) {
+            return;
+        }
+        synchronized (segment) {
+            if (segment.entries.containsKey(entry.name)) {
+                return;
+            }
+            long toFree = segment.weight + entry.size - capacity;
+            if (toFree > 0 && !evict(segment, entry, toFree)) {
+                return;
+            }
+            segment.entries.put(entry.name, entry);
+            segment.weight += entry.size;
+            entries.put(entry.name, entry);
+        }
+        weight.addAndGet(entry.size);
+    }
+
+
+    @Override
+    public boolean unload(String name) {
+        Segment segment = segmentFor(name);
+        CacheEntry removed;
+        synchronized (segment) {
+            removed = segment.entries.remove(name);
+            if (removed != null) {
+                segment.weight -= removed.size;
+                entries.remove(name);
+            }
+        }
+        if (removed != null) {
+            weight.addAndGet(-removed.size);
+            return true;
+        }
+        return notFoundEntries.remove(name) != null;
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private Segment segmentFor(String name) {
+        return segments[segmentIndex(name)];
+    }
+
+
+    static int segmentIndex(String name) {
+        int hash = name.hashCode();
+        return (hash ^ (hash >>> 16)) & (SEGMENTS - 1);
+    }
+
+
+    /**
+     * Evicts entries of the segment, oldest first, which have been used
+     * less than the candidate, until enough space is freed. Nothing is
+     * evicted if more than maxAllocateIterations entries used at least as
+     * often as the candidate are found first, in which case the candidate
+     * is not admitted. Only those count, so that a large resource can
+     * replace many small ones. Must be called while holding the segment
+     * lock.
+     */
+    private boolean evict(Segment segment, CacheEntry candidate, long toFree) {
+        int candidateFrequency = sketch.frequency(candidate.name);
+        List<CacheEntry> victims = new ArrayList<CacheEntry>();
+        long freed = 0;
+        int kept = 0;
+        Iterator<CacheEntry> iterator = segment.entries.values().iterator();
+        while (freed < toFree && iterator.hasNext()
+               && kept < maxAllocateIterations) {
+            CacheEntry victim = iterator.next();
+            if (sketch.frequency(victim.name) < candidateFrequency) {
+                victims.add(victim);
+                freed += victim.size;
+            } else {
+                kept++;
+            }
+        }
+        if (freed < toFree) {
+            return false;
+        }
+        for (CacheEntry victim : victims) {
+            segment.entries.remove(victim.name);
+            segment.weight -= victim.size;
+            entries.remove(victim.name);
+        }
+        weight.addAndGet(-freed);
+        return true;
+    }
+
+
+    // --------------------------------------------------------- Inner Classes
+
+
+    /**
+     * The entries of a segment in insertion order, guarded by the segment
+     * itself.
+     */
+    private static final class Segment {
+        final LinkedHashMap<String, CacheEntry> entries =
+            new LinkedHashMap<String, CacheEntry>();
+        long weight;
+    }
+
+
+    /**
+     * Count-min sketch of 4 bit counters, estimating how often a name has
+     * been looked up. All counters are halved once the number of increments
+     * reaches ten times the number of longs in the table, before most of the
+     * counters saturate, so that the estimates follow recent popularity.
+     * Updates aren't synchronised, a lost increment only makes an estimate
+     * slightly lower.
+     */
+    static final class FrequencySketch {
+
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int counters) {
+            int length = Integer.highestOneBit(Math.max(16, counters / 16) - 1) << 1;
+            table = new long[length];
+            tableMask = length - 1;
+            sampleSize = 10 * length;
+        }
+
+        int frequency(String name) {
+            int hash = spread(name.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                frequency = Math.min(frequency, counter(hash, i));
+            }
+            return frequency;
+        }
+
+        void increment(String name) {
+            int hash = spread(name.hashCode());
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = offsetOf(hash, i);
+                long value = table[index];
+                if (((value >>> offset) & 0xfL) != 0xfL) {
+                    table[index] = value + (1L << offset);
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private void reset() {
+            additions = 0;
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+        }
+
+        private int counter(int hash, int i) {
+            return (int) ((table[indexOf(hash, i)] >>> offsetOf(hash, i)) & 0xfL);
+        }
+
+        private int indexOf(int hash, int i) {
+            int h = hash * (0x9E3779B9 + 2 * i + 1);
+            return (h ^ (h >>> 17)) & tableMask;
+        }
+
+        private int offsetOf(int hash, int i) {
+            // One of the 16 counters in the long, a different one per hash function
+            return (((hash >>> (i * 8)) & 3) + (i << 2) & 0xf) << 2;
+        }
+
+        private static int spread(int hash) {
+            hash = (hash ^ (hash >>> 16)) * 0x45d9f3b;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -56,11 +56,13 @@
  * limitations under the License.
  */
 
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
 package org.apache.naming.resources;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Hashtable;
 
@@ -115,6 +117,11 @@ public class ProxyDirContext implements DirContext {
                 cache.setCacheMaxSize(baseDirContext.getCacheMaxSize());
                 cacheTTL = baseDirContext.getCacheTTL();
                 cacheObjectMaxSize = baseDirContext.getCacheMaxSize() / 20;
+                if (cache instanceof ConcurrentResourceCache) {
+                    // Larger entries wouldn't fit in a segment of the cache
+                    cacheObjectMaxSize = Math.min(cacheObjectMaxSize,
+                        ((ConcurrentResourceCache) cache).getMaxEntrySize());
+                }
             }
         }
         hostName = env.get(HOST);
@@ -147,7 +154,7 @@ public class ProxyDirContext implements DirContext {
      * Cache class.
      */
     protected String cacheClassName = 
-        "org.apache.naming.resources.ResourceCache";
+        "org.apache.naming.resources.ConcurrentResourceCache";
 
 
     /**
@@ -1477,7 +1484,7 @@ public class ProxyDirContext implements DirContext {
         if (((!entry.exists)
              || (entry.context != null)
              || ((entry.resource != null) 
-                 && (entry.resource.getContent() != null)))
+                 && (entry.resource.isContentLoaded())))
             && (System.currentTimeMillis() < entry.timestamp)) {
             return true;
         }
@@ -1563,7 +1570,7 @@ public class ProxyDirContext implements DirContext {
 
         // Load object content
         if ((exists) && (entry.resource != null) 
-            && (entry.resource.getContent() == null) 
+            && (!entry.resource.isContentLoaded()) 
             && (entry.attributes.getContentLength() >= 0)
             && (entry.attributes.getContentLength() < 
                 (cacheObjectMaxSize * 1024L))) {
@@ -1582,7 +1589,15 @@ public class ProxyDirContext implements DirContext {
                         break;
                     pos = pos + n;
                 }
-                entry.resource.setContent(b);
+                if ((cache instanceof ConcurrentResourceCache)
+                    && ((ConcurrentResourceCache) cache).isOffHeap()) {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(pos);
+                    buffer.put(b, 0, pos);
+                    buffer.flip();
+                    entry.resource.setContent(buffer);
+                } else {
+                    entry.resource.setContent(b);
+                }
             } catch (IOException e) {
                 // Ignore
             } finally {
@@ -1602,6 +1617,11 @@ public class ProxyDirContext implements DirContext {
         entry.timestamp = System.currentTimeMillis() + cacheTTL;
 
         // Add new entry to cache
+        if (cache instanceof ConcurrentResourceCache) {
+            // Does its own locking and makes space as needed
+            cache.load(entry);
+            return;
+        }
         synchronized (cache) {
             // Check cache size, and remove elements if too big
             if ((cache.lookup(name) == null) && cache.allocate(entry.size)) {
@@ -1618,6 +1638,9 @@ public class ProxyDirContext implements DirContext {
     protected boolean cacheUnload(String name) {
         if (cache == null)
             return false;
+        if (cache instanceof ConcurrentResourceCache) {
+            return cache.unload(name);
+        }
         synchronized (cache) {
             return cache.unload(name);
         }
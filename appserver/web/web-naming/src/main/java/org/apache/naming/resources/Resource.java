@@ -56,11 +56,13 @@
  * limitations under the License.
  */
 
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
 package org.apache.naming.resources;
 
 import java.io.InputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Encapsultes the contents of a resource.
@@ -95,6 +97,12 @@ public class Resource {
      * Binary content.
      */
     protected byte[] binaryContent = null;
+
+
+    /**
+     * Binary content held in a (possibly direct) buffer.
+     */
+    protected ByteBuffer bufferContent = null;
     
     
     /**
@@ -116,6 +124,9 @@ public class Resource {
         if (binaryContent != null) {
             return new ByteArrayInputStream(binaryContent);
         }
+        if (bufferContent != null) {
+            return new ByteBufferInputStream(bufferContent.duplicate());
+        }
         return inputStream;
     }
     
@@ -148,6 +159,82 @@ public class Resource {
     public void setContent(byte[] binaryContent) {
         this.binaryContent = binaryContent;
     }
+
+
+    /**
+     * Buffer content accessor.
+     *
+     * @return a read-only view of the content buffer, or null if the content
+     * isn't held in a buffer
+     */
+    public ByteBuffer getContentBuffer() {
+        return (bufferContent == null) ? null : bufferContent.asReadOnlyBuffer();
+    }
+
+
+    /**
+     * Buffer content mutator.
+     *
+     * @param bufferContent New content, from its position to its limit
+     */
+    public void setContent(ByteBuffer bufferContent) {
+        this.bufferContent = bufferContent;
+    }
+
+
+    /**
+     * Return true if the content has been loaded, either as binary content
+     * or into a buffer.
+     */
+    public boolean isContentLoaded() {
+        return (binaryContent != null) || (bufferContent != null);
+    }
+
+
+    // ---------------------------------------------------------- Inner Classes
+
+
+    /**
+     * Input stream reading the content of a buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
     
     
 }
@@ -0,0 +1,188 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.apache.naming.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentResourceCacheTest {
+
+    private ConcurrentResourceCache cache;
+
+    @Before
+    public void createCache() {
+        cache = new ConcurrentResourceCache();
+        // 100 KB per segment
+        cache.setCacheMaxSize(400);
+    }
+
+    @Test
+    public void testWeightAccounting() {
+        cache.load(entry("/a", 10));
+        cache.load(entry("/b", 5));
+        assertEquals(15, cache.getCacheSize());
+
+        // Loading the same name again doesn't count it twice
+        cache.load(entry("/a", 10));
+        assertEquals(15, cache.getCacheSize());
+
+        assertTrue(cache.unload("/a"));
+        assertEquals(5, cache.getCacheSize());
+        assertFalse(cache.unload("/a"));
+
+        CacheEntry notFound = entry("/missing", 1);
+        notFound.exists = false;
+        cache.load(notFound);
+        assertNotNull(cache.lookup("/missing"));
+        assertEquals("Not found entries have no weight", 5, cache.getCacheSize());
+    }
+
+    @Test
+    public void testOversizedEntryNotCached() {
+        cache.load(entry("/large", cache.getMaxEntrySize() + 1));
+        assertNull(cache.lookup("/large"));
+        assertEquals(0, cache.getCacheSize());
+
+        cache.load(entry("/fits", cache.getMaxEntrySize()));
+        assertNotNull(cache.lookup("/fits"));
+    }
+
+    @Test
+    public void testSegmentsHoldLargestProxyEntries() {
+        cache.setCacheMaxSize(10240);
+        // ProxyDirContext caches the content of resources up to a twentieth of the cache
+        assertTrue(cache.getMaxEntrySize() >= 5 * (10240 / 20));
+    }
+
+    @Test
+    public void testAdmissionByFrequency() {
+        List<String> names = namesInSameSegment(3);
+        String hot = names.get(0);
+        String cold = names.get(1);
+        String popular = names.get(2);
+
+        lookup(hot, 5);
+        cache.load(entry(hot, 100));
+
+        lookup(cold, 1);
+        cache.load(entry(cold, 10));
+        assertNull("Less popular entry should not replace a full segment", cache.lookup(cold));
+        assertNotNull(cache.lookup(hot));
+
+        lookup(popular, 20);
+        cache.load(entry(popular, 10));
+        assertNotNull("More popular entry should be admitted", cache.lookup(popular));
+        assertNull("Less popular entry should be evicted", cache.lookup(hot));
+        assertEquals(10, cache.getCacheSize());
+    }
+
+    @Test
+    public void testLargeEntryReplacesManySmallOnes() {
+        List<String> names = namesInSameSegment(51);
+        for (String name : names.subList(0, 50)) {
+            lookup(name, 1);
+            cache.load(entry(name, 2));
+        }
+        assertEquals(100, cache.getCacheSize());
+
+        String large = names.get(50);
+        lookup(large, 5);
+        cache.load(entry(large, 100));
+        assertNotNull("Large entry should be admitted", cache.lookup(large));
+        assertEquals(100, cache.getCacheSize());
+    }
+
+    @Test
+    public void testFrequencySketch() {
+        ConcurrentResourceCache.FrequencySketch sketch = new ConcurrentResourceCache.FrequencySketch(64);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("/a");
+        }
+        assertTrue(sketch.frequency("/a") >= 5);
+        assertEquals(0, sketch.frequency("/b"));
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("/a");
+        }
+        assertEquals("Counters saturate at 15", 15, sketch.frequency("/a"));
+
+        // The counters are halved after ten increments per long of the table
+        boolean aged = false;
+        for (int i = 0; i < 10 * 16 && !aged; i++) {
+            sketch.increment("/other" + i);
+            aged = sketch.frequency("/a") < 15;
+        }
+        assertTrue("Counters should be halved", aged);
+    }
+
+    private void lookup(String name, int times) {
+        for (int i = 0; i < times; i++) {
+            cache.lookup(name);
+        }
+    }
+
+    private static List<String> namesInSameSegment(int count) {
+        List<String> names = new ArrayList<>();
+        int segment = ConcurrentResourceCache.segmentIndex("/0");
+        for (int i = 0; names.size() < count; i++) {
+            String name = "/" + i;
+            if (ConcurrentResourceCache.segmentIndex(name) == segment) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static CacheEntry entry(String name, int size) {
+        CacheEntry entry = new CacheEntry();
+        entry.name = name;
+        entry.size = size;
+        return entry;
+    }
+}
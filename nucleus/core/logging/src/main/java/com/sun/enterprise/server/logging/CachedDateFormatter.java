@@ -0,0 +1,193 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.server.logging;
+
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * Formats log record timestamps without creating a date format per record.
+ * <p>
+ * The pattern is compiled once into a {@link DateTimeFormatter}. When it has
+ * a single <code>SSS</code> millisecond field, the text before and after that
+ * field is cached per thread for the current second, so formatting a record
+ * logged within the same second as the previous one only appends its
+ * milliseconds. Patterns using letters {@link DateTimeFormatter} interprets
+ * differently from {@link SimpleDateFormat} (such as <code>S</code> repeated
+ * other than three times, or <code>u</code>) are formatted with a
+ * {@link SimpleDateFormat} per thread.
+ */
+final class CachedDateFormatter {
+
+    // Pattern letters formatted the same way by both APIs
+    private static final String COMPATIBLE_LETTERS = "yMdHmsSahkKEZXz";
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final DateTimeFormatter formatter;
+
+    private final DateTimeFormatter prefixFormatter;
+
+    private final DateTimeFormatter suffixFormatter;
+
+    private final ThreadLocal<SecondCache> secondCache = ThreadLocal.withInitial(SecondCache::new);
+
+    private final ThreadLocal<SimpleDateFormat> legacyFormat;
+
+    CachedDateFormatter(String pattern) {
+        DateTimeFormatter compiled = null;
+        DateTimeFormatter prefix = null;
+        DateTimeFormatter suffix = null;
+        int millis = findMillisecondField(pattern);
+        if (isCompatible(pattern, millis)) {
+            try {
+                compiled = DateTimeFormatter.ofPattern(pattern);
+                if (millis >= 0) {
+                    prefix = DateTimeFormatter.ofPattern(pattern.substring(0, millis));
+                    suffix = DateTimeFormatter.ofPattern(pattern.substring(millis + 3));
+                }
+            } catch (IllegalArgumentException e) {
+                compiled = null;
+                prefix = null;
+                suffix = null;
+            }
+        }
+        formatter = compiled;
+        prefixFormatter = prefix;
+        suffixFormatter = suffix;
+        legacyFormat = (compiled == null) ? ThreadLocal.withInitial(() -> new SimpleDateFormat(pattern)) : null;
+    }
+
+    /**
+     * Appends the formatted timestamp to the given buffer.
+     */
+    void format(long millis, StringBuilder buffer) {
+        if (prefixFormatter != null) {
+            long second = Math.floorDiv(millis, 1000L);
+            SecondCache cache = secondCache.get();
+            if (cache.second != second) {
+                ZonedDateTime time = Instant.ofEpochMilli(millis).atZone(zone);
+                cache.prefix = prefixFormatter.format(time);
+                cache.suffix = suffixFormatter.format(time);
+                cache.second = second;
+            }
+            int milliOfSecond = (int) Math.floorMod(millis, 1000L);
+            buffer.append(cache.prefix);
+            if (milliOfSecond < 100) {
+                buffer.append('0');
+            }
+            if (milliOfSecond < 10) {
+                buffer.append('0');
+            }
+            buffer.append(milliOfSecond).append(cache.suffix);
+        } else if (formatter != null) {
+            formatter.formatTo(Instant.ofEpochMilli(millis).atZone(zone), buffer);
+        } else {
+            buffer.append(legacyFormat.get().format(new Date(millis)));
+        }
+    }
+
+    /**
+     * Returns true if the pattern only uses letters which both APIs format
+     * the same way.
+     */
+    private static boolean isCompatible(String pattern, int millis) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (c == 'S' && (i < millis || i >= millis + 3)) {
+                    return false;
+                }
+                if (((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))
+                        && COMPATIBLE_LETTERS.indexOf(c) == -1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position of the only <code>SSS</code> field of the pattern,
+     * or -1 if there is none, or if other fields depend on the time within the
+     * second.
+     */
+    static int findMillisecondField(String pattern) {
+        int result = -1;
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (c == 'S') {
+                    int end = i;
+                    while (end < pattern.length() && pattern.charAt(end) == 'S') {
+                        end++;
+                    }
+                    if (result >= 0 || end - i != 3) {
+                        return -1;
+                    }
+                    result = i;
+                    i = end - 1;
+                } else if (c == 'n' || c == 'N' || c == 'A' || c == '[' || c == ']') {
+                    return -1;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class SecondCache {
+
+        long second = Long.MIN_VALUE;
+
+        String prefix;
+
+        String suffix;
+    }
+}
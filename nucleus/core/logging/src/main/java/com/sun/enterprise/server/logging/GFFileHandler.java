@@ -54,6 +54,8 @@ import fish.payara.enterprise.server.logging.JSONLogFormatter;
 import fish.payara.enterprise.server.logging.PayaraNotificationLogRotationTimer;
 import fish.payara.nucleus.executorservice.PayaraExecutorService;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.security.PrivilegedAction;
 import java.text.FieldPosition;
 import java.text.ParseException;
@@ -62,7 +64,9 @@ import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.ErrorManager;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
@@ -102,6 +106,23 @@ public class GFFileHandler extends StreamHandler implements
 
     private static final int DEFAULT_ROTATION_LIMIT_BYTES = 2000000;
     public static final int DISABLE_LOG_FILE_ROTATION_VALUE = 0;
+    private static final int DEFAULT_QUEUE_SIZE = 5000;
+    private static final int DEFAULT_WRITE_BUFFER_SIZE = 64 * 1024;
+    /** How often a publisher waiting for room checks if the queue was replaced. */
+    private static final long QUEUE_CHECK_MILLIS = 100;
+
+    /**
+     * What {@link #publish(LogRecord)} does when the queue of pending
+     * records is full.
+     */
+    public enum QueueFullPolicy {
+        /** Wait for the pump to make room. */
+        BLOCK,
+        /** Discard records below WARNING, wait for room for the others. */
+        DROP_LOWER_LEVELS,
+        /** Discard the oldest pending records to make room. */
+        DISCARD_OLDEST
+    }
 
     private final static LocalStringManagerImpl LOCAL_STRINGS =
         new LocalStringManagerImpl(GFFileHandler.class);
@@ -154,7 +175,36 @@ public class GFFileHandler extends StreamHandler implements
     /** Initially the LogRotation will be off until the domain.xml value is read. */
     private int limitForFileRotation = 0;
 
-    private BlockingQueue<LogRecord> pendingRecords = new ArrayBlockingQueue<>(5000);
+    /** Replaced by {@link #setQueueSize(int)}, so read it once per operation. */
+    private volatile BlockingQueue<LogRecord> pendingRecords = new ArrayBlockingQueue<>(DEFAULT_QUEUE_SIZE);
+
+    /** Wakes the pump if it waits for a queue that has been replaced. */
+    private static final LogRecord QUEUE_REPLACED = new LogRecord(Level.OFF, "queue replaced");
+
+    private QueueFullPolicy queueFullPolicy = QueueFullPolicy.BLOCK;
+
+    /** Records discarded by the queue full policy since last reported. */
+    private final AtomicLong discardedRecords = new AtomicLong();
+
+    /**
+     * How long written records may stay unflushed when fewer than
+     * flushFrequency records are pending. 0 flushes after every batch.
+     */
+    private long flushIntervalMillis = 0;
+
+    // Only accessed by the pump
+    private int unflushedRecords = 0;
+    private long lastFlushMillis = 0;
+
+    /**
+     * Writes the records of the built-in formatters straight to the log
+     * file channel when garbage free logging is enabled, null otherwise.
+     */
+    private LogRecordChannelWriter recordWriter;
+    private FileChannel logChannel;
+
+    /** Records published through the stream are waiting in its buffer. */
+    private boolean streamPending = false;
 
     /**Rotation can be done in 3 ways: <ol>
      * <li> Based on the Size: Rotate when some Threshold number of bytes are
@@ -192,6 +242,55 @@ public class GFFileHandler extends StreamHandler implements
         this.payaraExecutorService = payaraExecutorService;
     }
 
+    /**
+     * Replaces the queue of pending records by one holding at most the
+     * given number of records. Pending records move to the new queue; the
+     * oldest are written straight away if they do not fit. Records offered
+     * to the old queue after it was replaced are moved by their publishers.
+     */
+    synchronized void setQueueSize(int queueSize) {
+        BlockingQueue<LogRecord> oldQueue = pendingRecords;
+        if (queueSize > 0 && queueSize != oldQueue.remainingCapacity() + oldQueue.size()) {
+            BlockingQueue<LogRecord> queue = new ArrayBlockingQueue<>(queueSize);
+            List<LogRecord> records = new ArrayList<>(oldQueue.size());
+            oldQueue.drainTo(records);
+            int excess = records.size() - queueSize;
+            for (int i = 0; i < records.size(); i++) {
+                if (i < excess) {
+                    writeRecord(records.get(i));
+                } else {
+                    queue.offer(records.get(i));
+                }
+            }
+            pendingRecords = queue;
+            // records offered to the old queue while it was drained
+            records.clear();
+            oldQueue.drainTo(records);
+            for (LogRecord record : records) {
+                if (!queue.offer(record)) {
+                    writeRecord(record);
+                }
+            }
+            oldQueue.offer(QUEUE_REPLACED);
+        }
+    }
+
+    void setQueueFullPolicy(QueueFullPolicy queueFullPolicy) {
+        this.queueFullPolicy = queueFullPolicy;
+    }
+
+    /**
+     * Writes the records of the built-in formatters straight to the log
+     * file channel, through a direct buffer of the given size.
+     */
+    synchronized void enableGarbageFreeLogging(int writeBufferSize) {
+        flushRecordWriter();
+        String encoding = getEncoding();
+        recordWriter = new LogRecordChannelWriter(
+                encoding == null ? Charset.defaultCharset() : Charset.forName(encoding),
+                writeBufferSize);
+    }
+
     @Override
     public void postConstruct() {
 
@@ -283,6 +382,47 @@ public class GFFileHandler extends StreamHandler implements
             flushFrequency = 1;
         }
 
+        propertyValue = manager.getProperty(className + ".flushIntervalMillis");
+        if (propertyValue != null) {
+            try {
+                flushIntervalMillis = Long.parseLong(propertyValue);
+            } catch (NumberFormatException e) {
+                warnInvalidAttributeValue(propertyValue, "flushIntervalMillis");
+            }
+        }
+
+        propertyValue = manager.getProperty(className + ".queueSize");
+        if (propertyValue != null) {
+            try {
+                setQueueSize(Integer.parseInt(propertyValue));
+            } catch (NumberFormatException e) {
+                warnInvalidAttributeValue(propertyValue, "queueSize");
+            }
+        }
+
+        propertyValue = manager.getProperty(className + ".queueFullPolicy");
+        if (propertyValue != null) {
+            try {
+                setQueueFullPolicy(QueueFullPolicy.valueOf(propertyValue.trim().toUpperCase(Locale.ENGLISH)));
+            } catch (IllegalArgumentException e) {
+                warnInvalidAttributeValue(propertyValue, "queueFullPolicy");
+            }
+        }
+
+        propertyValue = manager.getProperty(className + ".garbageFreeLogging");
+        if (Boolean.parseBoolean(propertyValue)) {
+            int writeBufferSize = DEFAULT_WRITE_BUFFER_SIZE;
+            propertyValue = manager.getProperty(className + ".writeBufferSize");
+            if (propertyValue != null) {
+                try {
+                    writeBufferSize = Math.max(Integer.parseInt(propertyValue), 1024);
+                } catch (NumberFormatException e) {
+                    warnInvalidAttributeValue(propertyValue, "writeBufferSize");
+                }
+            }
+            enableGarbageFreeLogging(writeBufferSize);
+        }
+
         propertyValue = manager.getProperty(className + ".maxHistoryFiles");
         try {
             if (propertyValue != null) {
@@ -333,6 +473,15 @@ public class GFFileHandler extends StreamHandler implements
 
     }
 
+    private void warnInvalidAttributeValue(String propertyValue, String attribute) {
+        LogRecord invalidValueRecord = new LogRecord(Level.WARNING, LogFacade.INVALID_ATTRIBUTE_VALUE);
+        invalidValueRecord.setParameters(new Object[]{propertyValue, attribute});
+        invalidValueRecord.setResourceBundle(ResourceBundle.getBundle(LogFacade.LOGGING_RB_NAME));
+        invalidValueRecord.setThreadID((int) Thread.currentThread().getId());
+        invalidValueRecord.setLoggerName(LogFacade.LOGGING_LOGGER_NAME);
+        EarlyLogHandler.earlyMessages.add(invalidValueRecord);
+    }
+
     private void configureLogFormatter(String formatterName, String excludeFields, boolean multiLineMode) {
         if (UniformLogFormatter.class.getName().equals(formatterName)) {
             configureUniformLogFormatter(excludeFields, multiLineMode);
@@ -649,20 +798,107 @@ public class GFFileHandler extends StreamHandler implements
      * If passed in the amount <= 0 all of the records get drained.
      * @param flushAmount number of records to drain from the queue of pending records.
      */
-    private void drainPendingRecords(int flushAmount) {
-        if (!pendingRecords.isEmpty()) {
+    private int drainPendingRecords(int flushAmount) {
+        int drained = 0;
+        BlockingQueue<LogRecord> queue = pendingRecords;
+        if (!queue.isEmpty()) {
             Collection<LogRecord> records;
             if (flushAmount > 0) {
                 records = new ArrayList<>(flushAmount);
-                pendingRecords.drainTo(records, flushAmount);
+                queue.drainTo(records, flushAmount);
             } else {
-                records = new ArrayList<>(pendingRecords.size());
-                pendingRecords.drainTo(records);
+                records = new ArrayList<>(queue.size());
+                queue.drainTo(records);
             }
             for (LogRecord record : records) {
-                super.publish(record);
+                writeRecord(record);
             }
+            drained = records.size();
         }
+        reportDiscardedRecords();
+        return drained;
+    }
+
+    /**
+     * Writes a record to the log file. With garbage free logging, the
+     * records of the built-in formatters are formatted and encoded into
+     * reused buffers and written to the file channel. Other records go
+     * through the stream of the handler.
+     */
+    private synchronized void writeRecord(LogRecord record) {
+        Formatter formatter = getFormatter();
+        if (recordWriter == null || logChannel == null
+                || !(formatter instanceof UniformLogFormatter
+                    || formatter instanceof ODLLogFormatter
+                    || formatter instanceof JSONLogFormatter)) {
+            flushRecordWriter();
+            super.publish(record);
+            streamPending = true;
+            return;
+        }
+        if (!isLoggable(record)) {
+            return;
+        }
+        if (streamPending) {
+            super.flush();
+            streamPending = false;
+        }
+        try {
+            StringBuilder text = recordWriter.text();
+            if (formatter instanceof UniformLogFormatter) {
+                ((UniformLogFormatter) formatter).formatTo(record, text);
+            } else {
+                text.append(formatter.format(record));
+            }
+            meter.written += recordWriter.write(logChannel);
+        } catch (Exception e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * Writes the records encoded by the garbage free record writer to the
+     * log file.
+     */
+    private synchronized void flushRecordWriter() {
+        if (recordWriter != null && logChannel != null) {
+            try {
+                meter.written += recordWriter.flush(logChannel);
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Logs how many records the queue full policy discarded since the last
+     * report, if any.
+     */
+    private void reportDiscardedRecords() {
+        long discarded = discardedRecords.getAndSet(0);
+        if (discarded > 0) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "GFFileHandler: " + discarded + " log records were discarded because the queue was full");
+            record.setThreadID((int) Thread.currentThread().getId());
+            record.setLoggerName(LogFacade.LOGGING_LOGGER_NAME);
+            GFLogRecord recordWrapper = new GFLogRecord(record);
+            recordWrapper.setThreadName(Thread.currentThread().getName());
+            writeRecord(recordWrapper);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        flushRecordWriter();
+        super.flush();
+        streamPending = false;
+    }
+
+    @Override
+    public synchronized void close() {
+        flushRecordWriter();
+        super.close();
+        logChannel = null;
     }
 
     /**
@@ -676,8 +912,8 @@ public class GFFileHandler extends StreamHandler implements
             return;
         }
         synchronized (rotationLock) {
-            super.flush();
-            super.close();
+            flush();
+            close();
             try {
                 openFile(file);
                 absoluteFile = file;
@@ -798,6 +1034,10 @@ public class GFFileHandler extends StreamHandler implements
         BufferedOutputStream bout = new BufferedOutputStream(fout);
         meter = new MeteredStream(bout, file.length());
         setOutputStream(meter);
+        synchronized (this) {
+            logChannel = fout.getChannel();
+            streamPending = false;
+        }
     }
 
     /**
@@ -959,21 +1199,43 @@ public class GFFileHandler extends StreamHandler implements
 
         if (logToFile) {
             LogRecord record;
+            BlockingQueue<LogRecord> queue = pendingRecords;
 
-            // take is blocking so we take one record off the queue
             try {
-                record = pendingRecords.take();
-                super.publish(record);
+                if (flushIntervalMillis > 0 && unflushedRecords > 0) {
+                    // wait no longer than the flush of the records written
+                    // so far is due
+                    long wait = lastFlushMillis + flushIntervalMillis - System.currentTimeMillis();
+                    record = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+                } else {
+                    // take is blocking so we take one record off the queue
+                    record = queue.take();
+                }
+                if (record == QUEUE_REPLACED) {
+                    record = null;
+                }
+                if (record != null) {
+                    writeRecord(record);
+                    unflushedRecords++;
+                }
             } catch (InterruptedException e) {
                 return;
             }
 
-            if (flushFrequency > 1) {
+            if (record != null && flushFrequency > 1) {
                 // now try to read more.  we end up blocking on the above take call if nothing is in the queue
-                drainPendingRecords(flushFrequency - 1);
+                unflushedRecords += drainPendingRecords(flushFrequency - 1);
+            } else {
+                reportDiscardedRecords();
             }
 
-            flush();
+            long now = System.currentTimeMillis();
+            if (flushIntervalMillis <= 0 || unflushedRecords >= flushFrequency
+                    || now - lastFlushMillis >= flushIntervalMillis) {
+                flush();
+                unflushedRecords = 0;
+                lastFlushMillis = now;
+            }
             if ((rotationRequested.get())
                     || ((limitForFileRotation > 0)
                     && (meter.written >= limitForFileRotation))) {
@@ -1022,18 +1284,7 @@ public class GFFileHandler extends StreamHandler implements
         }
 
         if (logToFile) {
-            try {
-                pendingRecords.add(recordWrapper);
-            } catch (IllegalStateException e) {
-                // queue is full, start waiting.
-                new ErrorManager().error("GFFileHandler: Queue full. Waiting to submit.", e, ErrorManager.GENERIC_FAILURE);
-                try {
-                    pendingRecords.put(recordWrapper);
-                } catch (InterruptedException e1) {
-                    // too bad, record is lost...
-                    new ErrorManager().error("GFFileHandler: Waiting was interrupted. Log record lost.", e1, ErrorManager.GENERIC_FAILURE);
-                }
-            }
+            enqueue(recordWrapper);
         }
 
         Formatter formatter = this.getFormatter();
@@ -1044,6 +1295,73 @@ public class GFFileHandler extends StreamHandler implements
 
     }
 
+    /**
+     * Adds the record to the queue of pending records, applying the queue
+     * full policy if there is no room left.
+     */
+    private void enqueue(LogRecord record) {
+        BlockingQueue<LogRecord> queue = pendingRecords;
+        if (enqueue(queue, record) && queue != pendingRecords) {
+            // the queue was replaced while the record was added
+            moveRecords(queue);
+        }
+    }
+
+    /**
+     * @return true if the record was added to the queue
+     */
+    private boolean enqueue(BlockingQueue<LogRecord> queue, LogRecord record) {
+        if (queue.offer(record)) {
+            return true;
+        }
+        switch (queueFullPolicy) {
+            case DROP_LOWER_LEVELS:
+                if (record.getLevel().intValue() < Level.WARNING.intValue()) {
+                    discardedRecords.incrementAndGet();
+                    return false;
+                }
+                break;
+            case DISCARD_OLDEST:
+                while (!queue.offer(record)) {
+                    if (queue.poll() != null) {
+                        discardedRecords.incrementAndGet();
+                    }
+                }
+                return true;
+            default:
+                break;
+        }
+        // queue is full, start waiting.
+        new ErrorManager().error("GFFileHandler: Queue full. Waiting to submit.", null, ErrorManager.GENERIC_FAILURE);
+        try {
+            while (!queue.offer(record, QUEUE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                // nothing is taken off a replaced queue, wait for room in the new one
+                queue = pendingRecords;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            // too bad, record is lost...
+            new ErrorManager().error("GFFileHandler: Waiting was interrupted. Log record lost.", e, ErrorManager.GENERIC_FAILURE);
+            return false;
+        }
+    }
+
+    /**
+     * Moves the records left in a replaced queue to the current one.
+     */
+    private void moveRecords(BlockingQueue<LogRecord> oldQueue) {
+        List<LogRecord> records = new ArrayList<>();
+        oldQueue.drainTo(records);
+        for (LogRecord record : records) {
+            if (record == QUEUE_REPLACED) {
+                // the pump may still be waiting for it
+                oldQueue.offer(record);
+            } else {
+                enqueue(record);
+            }
+        }
+    }
+
     protected File getLogFileName() {
         return new File(absoluteServerLogName);
 
@@ -0,0 +1,135 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.server.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Encodes formatted log records into a reused direct buffer, which is
+ * written to the log file channel whenever it fills up or is flushed. Once
+ * the buffers have grown to the size of the largest record, writing a record
+ * allocates nothing.
+ * <p>
+ * Not thread safe, {@link GFFileHandler} serializes the calls.
+ */
+final class LogRecordChannelWriter {
+
+    // Text buffers above this capacity aren't kept for the next record
+    private static final int MAX_REUSED_TEXT_CAPACITY = 64 * 1024;
+
+    private final CharsetEncoder encoder;
+
+    private final ByteBuffer bytes;
+
+    private StringBuilder text = new StringBuilder(512);
+
+    private CharBuffer chars = CharBuffer.allocate(512);
+
+    LogRecordChannelWriter(Charset charset, int bufferSize) {
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Returns the empty buffer the next record is formatted into.
+     */
+    StringBuilder text() {
+        if (text.capacity() > MAX_REUSED_TEXT_CAPACITY) {
+            text = new StringBuilder(512);
+        }
+        text.setLength(0);
+        return text;
+    }
+
+    /**
+     * Encodes the formatted record, writing the byte buffer to the channel
+     * each time it fills up.
+     *
+     * @return the number of bytes written to the channel
+     */
+    long write(FileChannel channel) throws IOException {
+        int length = text.length();
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        }
+        chars.clear();
+        text.getChars(0, length, chars.array(), 0);
+        chars.limit(length);
+
+        long written = 0;
+        encoder.reset();
+        while (encoder.encode(chars, bytes, true).isOverflow()) {
+            written += flush(channel);
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            written += flush(channel);
+        }
+        if (chars.capacity() > MAX_REUSED_TEXT_CAPACITY) {
+            chars = CharBuffer.allocate(512);
+        }
+        return written;
+    }
+
+    /**
+     * Writes the encoded records to the channel.
+     *
+     * @return the number of bytes written to the channel
+     */
+    long flush(FileChannel channel) throws IOException {
+        bytes.flip();
+        long written = 0;
+        try {
+            while (bytes.hasRemaining()) {
+                written += channel.write(bytes);
+            }
+        } finally {
+            bytes.clear();
+        }
+        return written;
+    }
+}
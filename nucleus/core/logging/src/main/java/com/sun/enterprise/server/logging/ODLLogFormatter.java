@@ -53,7 +53,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.MessageFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.logging.Formatter;
 import java.util.logging.*;
@@ -114,6 +113,9 @@ public class ODLLogFormatter extends AnsiColorFormatter implements LogEventBroad
     private String recordFieldSeparator;
     private String recordDateFormat;
 
+    // Formats the record timestamps with the current record date format
+    private volatile CachedDateFormatter dateFormatter;
+
     private LogEventBroadcaster logEventBroadcasterDelegate;
 
     private boolean multiLineMode;
@@ -195,16 +197,16 @@ public class ODLLogFormatter extends AnsiColorFormatter implements LogEventBroad
             // Adding record begin marker
             StringBuilder recordBuffer = new StringBuilder();
 
-            // A Dummy Container Date Object is used to format the date
-            Date date = new Date();
-
             // Adding timestamp
-            SimpleDateFormat dateFormatter = new SimpleDateFormat(getRecordDateFormat() != null ? getRecordDateFormat() : RFC_3339_DATE_FORMAT);
-            date.setTime(record.getMillis());
+            CachedDateFormatter formatter = dateFormatter;
+            if (formatter == null) {
+                formatter = new CachedDateFormatter(getRecordDateFormat() != null ? getRecordDateFormat() : RFC_3339_DATE_FORMAT);
+                dateFormatter = formatter;
+            }
             recordBuffer.append(FIELD_BEGIN_MARKER);
-            String timestamp=dateFormatter.format(date);
-            logEvent.setTimestamp(timestamp);
-            recordBuffer.append(timestamp);
+            int timestampStart = recordBuffer.length();
+            formatter.format(record.getMillis(), recordBuffer);
+            logEvent.setTimestamp(recordBuffer.substring(timestampStart));
             recordBuffer.append(FIELD_END_MARKER);
             recordBuffer.append(getRecordFieldSeparator() != null ? getRecordFieldSeparator() : FIELD_SEPARATOR);
 
@@ -455,6 +457,7 @@ public class ODLLogFormatter extends AnsiColorFormatter implements LogEventBroad
 
     public void setRecordDateFormat(String recordDateFormat) {
         this.recordDateFormat = recordDateFormat;
+        this.dateFormatter = null;
     }
 
     public String getMessageWithoutMessageID(String message) {
@@ -53,7 +53,6 @@ import org.jvnet.hk2.annotations.Service;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.MessageFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.logging.Formatter;
 import java.util.logging.*;
@@ -92,8 +91,8 @@ public class UniformLogFormatter extends AnsiColorFormatter implements LogEventB
     // and can be searched using the LoggerName as the key
     private HashMap loggerResourceBundleTable;
     private LogManager logManager;
-    // A Dummy Container Date Object is used to format the date
-    private Date date = new Date();
+    // Formats the record timestamps with the current record date format
+    private volatile CachedDateFormatter dateFormatter;
 
     private static boolean LOG_SOURCE_IN_KEY_VALUE = false;
 
@@ -135,6 +134,19 @@ public class UniformLogFormatter extends AnsiColorFormatter implements LogEventB
     private static final String RFC_3339_DATE_FORMAT =
             "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
 
+    // Record buffers above this capacity aren't kept for reuse
+    private static final int MAX_REUSED_BUFFER_CAPACITY = 64 * 1024;
+
+    private static final int MAX_CACHED_MESSAGE_FORMATS = 256;
+
+    // Per thread record buffer, set to null while the thread is using it so
+    // that a record logged while formatting another gets its own buffer
+    private static final ThreadLocal<StringBuilder> RECORD_BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    private static final ThreadLocal<Map<String, MessageFormat>> MESSAGE_FORMATS =
+            ThreadLocal.withInitial(HashMap::new);
+
     private LogEventBroadcaster logEventBroadcasterDelegate;
 
     private boolean multiLineMode;
@@ -178,14 +190,22 @@ public class UniformLogFormatter extends AnsiColorFormatter implements LogEventB
         return uniformLogFormat(record);
     }
 
+    /**
+     * Appends the formatted record to the given buffer, without creating an
+     * intermediate String for the whole record.
+     */
+    public void formatTo(LogRecord record, StringBuilder recordBuffer) {
+        uniformLogFormat(record, recordBuffer);
+    }
+
 
     /**
      * GlassFish can override to specify their product version
      */
     protected String getProductId() {
-        if (habitat != null) {
+        if (productId.isEmpty() && habitat != null) {
             VersionInfo versionInfo = habitat.getService(VersionInfo.class);
-            if (productId.isEmpty() && versionInfo != null) {
+            if (versionInfo != null) {
                 StringBuilder sb = new StringBuilder();
                 sb.append(versionInfo.getAbbreviatedProductName());
                 sb.append(' ');
@@ -262,22 +282,37 @@ public class UniformLogFormatter extends AnsiColorFormatter implements LogEventB
      * synchronization will happen at the Log Handler.publish( ) method.
      */
     private String uniformLogFormat(LogRecord record) {
+        StringBuilder recordBuffer = RECORD_BUFFER.get();
+        if (recordBuffer == null) {
+            recordBuffer = new StringBuilder(512);
+        }
+        RECORD_BUFFER.set(null);
+        try {
+            uniformLogFormat(record, recordBuffer);
+            return recordBuffer.toString();
+        } finally {
+            if (recordBuffer.capacity() <= MAX_REUSED_BUFFER_CAPACITY) {
+                recordBuffer.setLength(0);
+                RECORD_BUFFER.set(recordBuffer);
+            } else {
+                RECORD_BUFFER.set(new StringBuilder(512));
+            }
+        }
+    }
 
+    private void uniformLogFormat(LogRecord record, StringBuilder recordBuffer) {
+
+        int recordStart = recordBuffer.length();
         try {
 
             LogEventImpl logEvent = new LogEventImpl();
 
-            SimpleDateFormat dateFormatter = new SimpleDateFormat(getRecordDateFormat() != null ? getRecordDateFormat() : RFC_3339_DATE_FORMAT);
-
-            StringBuilder recordBuffer = new StringBuilder(getRecordBeginMarker() != null ? getRecordBeginMarker() : RECORD_BEGIN_MARKER);
+            recordBuffer.append(getRecordBeginMarker() != null ? getRecordBeginMarker() : RECORD_BEGIN_MARKER);
             // The following operations are to format the date and time in a
             // human readable  format.
-            // _REVISIT_: Use HiResolution timer to analyze the number of
-            // Microseconds spent on formatting date object
-            date.setTime(record.getMillis());
-            String timestamp = dateFormatter.format(date);
-            logEvent.setTimestamp(timestamp);
-            recordBuffer.append(timestamp);
+            int timestampStart = recordBuffer.length();
+            getDateFormatter().format(record.getMillis(), recordBuffer);
+            logEvent.setTimestamp(recordBuffer.substring(timestampStart));
             if (color()) {
                 recordBuffer.append(getColor(record.getLevel()));
             }
@@ -426,13 +461,12 @@ public class UniformLogFormatter extends AnsiColorFormatter implements LogEventB
                 if (logMessage.indexOf("{0") >= 0 && logMessage.contains("}") && record.getParameters() != null) {
                     // If we find {0} or {1} etc., in the message, then it's most
                     // likely finer level messages for Method Entry, Exit etc.,
-                    logMessage = java.text.MessageFormat.format(
-                            logMessage, record.getParameters());
+                    logMessage = formatMessage(logMessage, record.getParameters());
                 } else {
                     ResourceBundle rb = getResourceBundle(record.getLoggerName());
                     if (rb != null) {
                         try {
-                            logMessage = MessageFormat.format(
+                            logMessage = formatMessage(
                                     rb.getString(logMessage),
                                     record.getParameters());
                         } catch (java.util.MissingResourceException e) {
@@ -442,35 +476,59 @@ public class UniformLogFormatter extends AnsiColorFormatter implements LogEventB
                     }
                 }
 
-                StringBuilder logMessageBuffer = new StringBuilder();
-                logMessageBuffer.append(logMessage);
+                int messageStart = recordBuffer.length();
+                recordBuffer.append(logMessage);
 
                 Throwable throwable = getThrowable(record);
                 if (throwable != null) {
-                    logMessageBuffer.append(LINE_SEPARATOR);
+                    recordBuffer.append(LINE_SEPARATOR);
                     StringWriter sw = new StringWriter();
                     PrintWriter pw = new PrintWriter(sw);
                     throwable.printStackTrace(pw);
                     pw.close();
-                    logMessageBuffer.append(sw.toString());
+                    recordBuffer.append(sw.getBuffer());
                     sw.close();
+                    logMessage = recordBuffer.substring(messageStart);
                 }
-                logMessage = logMessageBuffer.toString();
                 logEvent.setMessage(logMessage);
-                recordBuffer.append(logMessage);
             }
             recordBuffer.append(getRecordEndMarker() != null ? getRecordEndMarker() : RECORD_END_MARKER).append(LINE_SEPARATOR).append(LINE_SEPARATOR);
             informLogEventListeners(logEvent);
-            return recordBuffer.toString();
 
         } catch (Exception ex) {
             new ErrorManager().error(
                     "Error in formatting Logrecord", ex,
                     ErrorManager.FORMAT_FAILURE);
-            // We've already notified the exception, the following
-            // return is to keep javac happy
-            return "";
+            // We've already notified the exception, drop what was written
+            // of the record
+            recordBuffer.setLength(recordStart);
+        }
+    }
+
+    private CachedDateFormatter getDateFormatter() {
+        CachedDateFormatter formatter = dateFormatter;
+        if (formatter == null) {
+            formatter = new CachedDateFormatter(getRecordDateFormat() != null ? getRecordDateFormat() : RFC_3339_DATE_FORMAT);
+            dateFormatter = formatter;
+        }
+        return formatter;
+    }
+
+    /**
+     * Formats a message pattern with a MessageFormat cached per thread,
+     * rather than parsing the pattern again for every record.
+     */
+    static String formatMessage(String pattern, Object[] parameters) {
+        Map<String, MessageFormat> formats = MESSAGE_FORMATS.get();
+        MessageFormat format = formats.get(pattern);
+        if (format == null) {
+            if (formats.size() >= MAX_CACHED_MESSAGE_FORMATS) {
+                formats.clear();
+            }
+            format = new MessageFormat(pattern);
+            formats.put(pattern, format);
         }
+        return format.format(parameters);
     }
 
     static String getMessageId(LogRecord lr) {
@@ -540,6 +598,7 @@ public class UniformLogFormatter extends AnsiColorFormatter implements LogEventB
 
     public void setRecordDateFormat(String recordDateFormat) {
         this.recordDateFormat = recordDateFormat;
+        this.dateFormatter = null;
     }
 
     /**
@@ -0,0 +1,266 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.server.logging;
+
+import com.sun.enterprise.server.logging.GFFileHandler.QueueFullPolicy;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the queue full policies and the garbage free write path of
+ * {@link GFFileHandler}. The pump isn't started, each call of
+ * {@link GFFileHandler#log()} writes the records it takes off the queue.
+ */
+public class GFFileHandlerWriteTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GFFileHandler handler;
+    private File logFile;
+
+    @Before
+    public void openHandler() throws Exception {
+        logFile = new File(folder.getRoot(), "server.log");
+        handler = new GFFileHandler();
+        handler.setEncoding("UTF-8");
+        handler.setFormatter(new UniformLogFormatter());
+        handler.changeFileName(logFile);
+    }
+
+    @After
+    public void closeHandler() {
+        handler.close();
+    }
+
+    @Test
+    public void channelWritePathWritesRecordsLargerThanTheBuffer() throws Exception {
+        handler.enableGarbageFreeLogging(1024);
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 10000) {
+            large.append("café € ");
+        }
+        handler.publish(record(Level.INFO, "first"));
+        handler.publish(record(Level.INFO, large.toString()));
+        handler.publish(record(Level.INFO, "last"));
+        handler.log();
+        handler.log();
+        handler.log();
+
+        String log = readLog();
+        assertTrue(log.contains(large));
+        assertInOrder(log, "first", large.toString(), "last");
+    }
+
+    @Test
+    public void channelWritePathKeepsOrderWithStreamFormatters() throws Exception {
+        handler.enableGarbageFreeLogging(1024);
+        handler.publish(record(Level.INFO, "uniform-1"));
+        handler.log();
+        handler.setFormatter(new SimpleFormatter());
+        handler.publish(record(Level.INFO, "simple"));
+        handler.log();
+        handler.setFormatter(new UniformLogFormatter());
+        handler.publish(record(Level.INFO, "uniform-2"));
+        handler.log();
+
+        assertInOrder(readLog(), "uniform-1", "simple", "uniform-2");
+    }
+
+    @Test
+    public void channelWritePathSkipsRecordsBelowTheHandlerLevel() throws Exception {
+        handler.enableGarbageFreeLogging(1024);
+        handler.setLevel(Level.WARNING);
+        handler.publish(record(Level.INFO, "ignored"));
+        handler.publish(record(Level.WARNING, "written"));
+        handler.log();
+        handler.log();
+
+        String log = readLog();
+        assertFalse(log.contains("ignored"));
+        assertTrue(log.contains("written"));
+    }
+
+    @Test
+    public void discardOldestKeepsTheNewestRecords() throws Exception {
+        handler.setQueueSize(2);
+        handler.setQueueFullPolicy(QueueFullPolicy.DISCARD_OLDEST);
+        handler.publish(record(Level.INFO, "record-1"));
+        handler.publish(record(Level.INFO, "record-2"));
+        handler.publish(record(Level.INFO, "record-3"));
+        handler.publish(record(Level.INFO, "record-4"));
+        handler.log();
+        handler.log();
+
+        String log = readLog();
+        assertFalse(log.contains("record-1"));
+        assertFalse(log.contains("record-2"));
+        assertInOrder(log, "record-3", "2 log records were discarded", "record-4");
+    }
+
+    @Test
+    public void dropLowerLevelsOnlyDiscardsRecordsBelowWarning() throws Exception {
+        handler.setQueueSize(1);
+        handler.setQueueFullPolicy(QueueFullPolicy.DROP_LOWER_LEVELS);
+        handler.publish(record(Level.INFO, "record-1"));
+        handler.publish(record(Level.INFO, "record-2"));
+        Thread publisher = publishInBackground(record(Level.WARNING, "record-3"));
+        awaitBlocked(publisher);
+
+        handler.log();
+        publisher.join(10000);
+        assertFalse(publisher.isAlive());
+        handler.log();
+
+        String log = readLog();
+        assertFalse(log.contains("record-2"));
+        assertInOrder(log, "record-1", "1 log records were discarded", "record-3");
+    }
+
+    @Test
+    public void blockWaitsForRoomInTheQueue() throws Exception {
+        handler.setQueueSize(1);
+        handler.setQueueFullPolicy(QueueFullPolicy.BLOCK);
+        handler.publish(record(Level.INFO, "record-1"));
+        Thread publisher = publishInBackground(record(Level.INFO, "record-2"));
+        awaitBlocked(publisher);
+
+        handler.log();
+        publisher.join(10000);
+        assertFalse(publisher.isAlive());
+        handler.log();
+
+        String log = readLog();
+        assertInOrder(log, "record-1", "record-2");
+        assertFalse(log.contains("discarded"));
+    }
+
+    @Test
+    public void shrinkingTheQueueWritesTheRecordsThatDoNotFit() throws Exception {
+        handler.setQueueSize(5);
+        handler.publish(record(Level.INFO, "record-1"));
+        handler.publish(record(Level.INFO, "record-2"));
+        handler.publish(record(Level.INFO, "record-3"));
+        handler.setQueueSize(2);
+        handler.log();
+        handler.log();
+
+        assertInOrder(readLog(), "record-1", "record-2", "record-3");
+    }
+
+    @Test
+    public void replacingTheQueueWakesThePump() throws Exception {
+        Thread pump = new Thread(handler::log);
+        pump.setDaemon(true);
+        pump.start();
+        awaitBlocked(pump);
+
+        handler.setQueueSize(3);
+        pump.join(10000);
+        assertFalse(pump.isAlive());
+        handler.publish(record(Level.INFO, "record-1"));
+        handler.log();
+
+        assertTrue(readLog().contains("record-1"));
+    }
+
+    @Test
+    public void publisherWaitingOnAReplacedQueueMovesToTheNewOne() throws Exception {
+        handler.setQueueSize(1);
+        handler.setQueueFullPolicy(QueueFullPolicy.BLOCK);
+        handler.publish(record(Level.INFO, "record-1"));
+        Thread publisher = publishInBackground(record(Level.INFO, "record-2"));
+        awaitBlocked(publisher);
+
+        handler.setQueueSize(3);
+        publisher.join(10000);
+        assertFalse(publisher.isAlive());
+        handler.log();
+        handler.log();
+
+        assertInOrder(readLog(), "record-1", "record-2");
+    }
+
+    private Thread publishInBackground(LogRecord record) {
+        Thread publisher = new Thread(() -> handler.publish(record));
+        publisher.setDaemon(true);
+        publisher.start();
+        return publisher;
+    }
+
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue("thread did not block", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static LogRecord record(Level level, String message) {
+        LogRecord record = new LogRecord(level, message);
+        record.setLoggerName(GFFileHandlerWriteTest.class.getName());
+        return record;
+    }
+
+    private String readLog() throws Exception {
+        handler.flush();
+        return new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void assertInOrder(String log, String... texts) {
+        int from = 0;
+        for (String text : texts) {
+            int index = log.indexOf(text, from);
+            assertTrue("expected " + text + " after position " + from, index >= 0);
+            from = index + text.length();
+        }
+    }
+}
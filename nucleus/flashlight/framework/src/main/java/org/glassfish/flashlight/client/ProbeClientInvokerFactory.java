@@ -38,9 +38,12 @@
  * holder.
  */
 
+// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
+
 package org.glassfish.flashlight.client;
 
 import org.glassfish.flashlight.FlashlightUtils;
+import org.glassfish.flashlight.impl.client.ProbeClientInvokerGenerator;
 import org.glassfish.flashlight.impl.client.ReflectiveClientInvoker;
 import org.glassfish.flashlight.provider.FlashlightProbe;
 import org.jvnet.hk2.annotations.Service;
@@ -66,6 +69,10 @@ public class ProbeClientInvokerFactory {
                                                    FlashlightProbe probe, String[] paramNames) {
         int invokerId = clientMethodIdCounter.incrementAndGet();
 
+        ProbeClientInvoker invoker = ProbeClientInvokerGenerator.createInvoker(invokerId, target, method, paramNames, probe);
+        if (invoker != null) {
+            return invoker;
+        }
         return new ReflectiveClientInvoker(invokerId, target, method, paramNames, probe);
     }
 
@@ -0,0 +1,109 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.flashlight.impl.client;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.flashlight.FlashlightLoggerInfo;
+import org.glassfish.flashlight.FlashlightUtils;
+import org.glassfish.flashlight.client.ProbeClientInvoker;
+
+/**
+ * Base class of the invokers generated by {@link ProbeClientInvokerGenerator}.
+ * Subclasses implement {@link #dispatch(Object[])} with a direct call of the
+ * listener method, so firing a probe does not go through reflection.
+ */
+public abstract class GeneratedClientInvoker implements ProbeClientInvoker {
+
+    private static final Logger logger = FlashlightLoggerInfo.getLogger();
+
+    private final int id;
+    protected final Object target;
+    private final String description;
+    private volatile boolean emittedOneMessage;
+
+    protected GeneratedClientInvoker(int id, Object target, String description) {
+        this.id = id;
+        this.target = target;
+        this.description = description;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public void invoke(Object[] args) {
+        if (!FlashlightUtils.isMonitoringEnabled()) {
+            return;
+        }
+
+        try {
+            dispatch(args);
+        } catch (Exception ex) {
+            if (!emittedOneMessage) {
+                // Only do this one time!
+                emittedOneMessage = true;
+                logger.log(Level.WARNING, "An exception happened when invoking this probe: " + this, ex);
+            }
+        }
+    }
+
+    /**
+     * Calls the listener method with the probe arguments it asked for.
+     *
+     * @param args the arguments the probe was fired with
+     */
+    protected abstract void dispatch(Object[] args) throws Exception;
+
+    /**
+     * Converts a probe argument for a listener parameter of type String, like
+     * the reflective invoker does when the types do not match.
+     */
+    protected static String toString(Object arg) {
+        return arg == null ? null : arg.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "id=" + id + ", target=" + target + ", " + description;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.flashlight.impl.client;
+
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.flashlight.FlashlightLoggerInfo;
+import org.glassfish.flashlight.client.ProbeClientInvoker;
+import org.glassfish.flashlight.provider.FlashlightProbe;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Generates a {@link GeneratedClientInvoker} subclass per probe listener
+ * method which calls the listener directly instead of through
+ * {@link java.lang.reflect.Method#invoke}. Arguments are taken straight from
+ * the array the probe was fired with, and primitive listener parameters are
+ * unboxed once rather than going through the reflective argument conversion.
+ * <p>
+ * Listeners the generated code cannot call directly (non public methods or
+ * classes, varargs or computed parameters, or parameter types that don't
+ * match the probe) are left to the {@link ReflectiveClientInvoker}.
+ */
+public final class ProbeClientInvokerGenerator {
+
+    private static final Logger logger = FlashlightLoggerInfo.getLogger();
+
+    private static final Type INVOKER_TYPE = Type.getType(GeneratedClientInvoker.class);
+    private static final Method CONSTRUCTOR = Method.getMethod("void <init> (int, Object, String)");
+    private static final Method DISPATCH = Method.getMethod("void dispatch (Object[])");
+    private static final Method TO_STRING = Method.getMethod("String toString (Object)");
+
+    private static final Map<Class<?>, Class<?>> BOXED_TYPES = new HashMap<>();
+
+    static {
+        BOXED_TYPES.put(boolean.class, Boolean.class);
+        BOXED_TYPES.put(byte.class, Byte.class);
+        BOXED_TYPES.put(char.class, Character.class);
+        BOXED_TYPES.put(short.class, Short.class);
+        BOXED_TYPES.put(int.class, Integer.class);
+        BOXED_TYPES.put(long.class, Long.class);
+        BOXED_TYPES.put(float.class, Float.class);
+        BOXED_TYPES.put(double.class, Double.class);
+        BOXED_TYPES.put(void.class, Void.class);
+    }
+
+    private ProbeClientInvokerGenerator() {
+        // all static class -- no instances allowed
+    }
+
+    /**
+     * Creates a generated invoker for the listener method.
+     *
+     * @return the invoker, or null if the listener has to be invoked reflectively
+     */
+    public static ProbeClientInvoker createInvoker(int id, Object target, java.lang.reflect.Method method,
+            String[] clientParamNames, FlashlightProbe probe) {
+        int[] probeIndices = getProbeIndices(method, clientParamNames, probe);
+        if (probeIndices == null) {
+            return null;
+        }
+
+        String generatedClassName = GeneratedClientInvoker.class.getName() + "_" + id;
+        try {
+            byte[] classData = generateClassData(generatedClassName, method, probeIndices, probe.getParamTypes());
+            Class<?> targetClass = target == null ? method.getDeclaringClass() : target.getClass();
+            InvokerClassLoader loader = createClassLoader(targetClass.getClassLoader());
+            Class<?> invokerClass = loader.defineClass(generatedClassName, classData, targetClass.getProtectionDomain());
+            return (ProbeClientInvoker) invokerClass.getConstructor(int.class, Object.class, String.class)
+                    .newInstance(id, target, "method=" + method);
+        } catch (Exception | LinkageError ex) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "Could not generate a probe invoker for " + method, ex);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns for each listener parameter the index of the probe argument
+     * passed to it, or null if the listener can't be called by generated code.
+     */
+    static int[] getProbeIndices(java.lang.reflect.Method method, String[] clientParamNames, FlashlightProbe probe) {
+        Class<?>[] listenerTypes = method.getParameterTypes();
+        if (method.isVarArgs() || listenerTypes.length != clientParamNames.length
+                || !Modifier.isPublic(method.getModifiers()) || !isPublic(method.getDeclaringClass())) {
+            return null;
+        }
+
+        String[] probeParamNames = probe.getProbeParamNames();
+        Class<?>[] probeTypes = probe.getParamTypes();
+        Map<String, Integer> probeParamIndexMap = new HashMap<>();
+        for (int index = 0; index < probeParamNames.length; index++) {
+            probeParamIndexMap.put(probeParamNames[index], index);
+        }
+
+        int[] probeIndices = new int[listenerTypes.length];
+        for (int index = 0; index < listenerTypes.length; index++) {
+            // computed parameters are resolved by the reflective invoker
+            Integer probeIndex = probeParamIndexMap.get(clientParamNames[index]);
+            if (probeIndex == null || !isPublic(listenerTypes[index])
+                    || !isConvertible(probeTypes[probeIndex], listenerTypes[index])) {
+                return null;
+            }
+            probeIndices[index] = probeIndex;
+        }
+        return probeIndices;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+    }
+
+    private static boolean isConvertible(Class<?> probeType, Class<?> listenerType) {
+        Class<?> boxedType = box(probeType);
+        if (listenerType == boolean.class) {
+            return boxedType == Boolean.class;
+        }
+        if (listenerType == char.class) {
+            return boxedType == Character.class;
+        }
+        if (listenerType.isPrimitive()) {
+            return Number.class.isAssignableFrom(boxedType);
+        }
+        return listenerType.isAssignableFrom(boxedType) || listenerType == String.class;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        return type.isPrimitive() ? BOXED_TYPES.get(type) : type;
+    }
+
+    private static byte[] generateClassData(String generatedClassName, java.lang.reflect.Method method,
+            int[] probeIndices, Class<?>[] probeTypes) {
+        // no branches are generated, so there are no frames to compute
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_SUPER,
+                generatedClassName.replace('.', '/'), null, INVOKER_TYPE.getInternalName(), null);
+
+        GeneratorAdapter gen = new GeneratorAdapter(Opcodes.ACC_PUBLIC, CONSTRUCTOR, null, null, cw);
+        gen.loadThis();
+        gen.loadArgs();
+        gen.invokeConstructor(INVOKER_TYPE, CONSTRUCTOR);
+        gen.returnValue();
+        gen.endMethod();
+
+        gen = new GeneratorAdapter(Opcodes.ACC_PROTECTED, DISPATCH, null, null, cw);
+        Class<?> declaringClass = method.getDeclaringClass();
+        Type ownerType = Type.getType(declaringClass);
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        if (!isStatic) {
+            gen.loadThis();
+            gen.getField(INVOKER_TYPE, "target", Type.getType(Object.class));
+            gen.checkCast(ownerType);
+        }
+
+        Class<?>[] listenerTypes = method.getParameterTypes();
+        for (int index = 0; index < listenerTypes.length; index++) {
+            gen.loadArg(0);
+            gen.push(probeIndices[index]);
+            gen.arrayLoad(Type.getType(Object.class));
+
+            Class<?> listenerType = listenerTypes[index];
+            Type type = Type.getType(listenerType);
+            if (listenerType.isPrimitive()) {
+                // checkcast to Number, Boolean or Character followed by xxxValue()
+                gen.unbox(type);
+            } else if (listenerType == String.class && !String.class.isAssignableFrom(box(probeTypes[probeIndices[index]]))) {
+                gen.invokeStatic(INVOKER_TYPE, TO_STRING);
+            } else if (listenerType != Object.class) {
+                gen.checkCast(type);
+            }
+        }
+
+        Method target = Method.getMethod(method);
+        if (isStatic) {
+            gen.invokeStatic(ownerType, target);
+        } else if (declaringClass.isInterface()) {
+            gen.invokeInterface(ownerType, target);
+        } else {
+            gen.invokeVirtual(ownerType, target);
+        }
+
+        Type returnType = target.getReturnType();
+        if (returnType.getSize() == 2) {
+            gen.pop2();
+        } else if (returnType.getSize() == 1) {
+            gen.pop();
+        }
+        gen.returnValue();
+        gen.endMethod();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static InvokerClassLoader createClassLoader(final ClassLoader parent) {
+        return AccessController.doPrivileged(new PrivilegedAction<InvokerClassLoader>() {
+            @Override
+            public InvokerClassLoader run() {
+                return new InvokerClassLoader(parent);
+            }
+        });
+    }
+
+    /**
+     * Defines a generated invoker next to the listener class, while resolving
+     * the Flashlight classes the invoker uses from this bundle.
+     */
+    static final class InvokerClassLoader extends ClassLoader {
+
+        InvokerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> defineClass(String className, byte[] data, ProtectionDomain pd) {
+            return defineClass(className, data, 0, data.length, pd);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.equals(GeneratedClientInvoker.class.getName())) {
+                return GeneratedClientInvoker.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
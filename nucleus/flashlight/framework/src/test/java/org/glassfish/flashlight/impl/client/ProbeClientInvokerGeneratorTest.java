@@ -0,0 +1,115 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.flashlight.impl.client;
+
+import java.lang.reflect.Method;
+import org.glassfish.flashlight.client.ProbeClientInvoker;
+import org.glassfish.flashlight.provider.FlashlightProbe;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ProbeClientInvokerGeneratorTest {
+
+    private static final FlashlightProbe PROBE = new FlashlightProbe(1, Object.class, "test", "test", "test",
+            "requestEvent", new String[] {"appName", "count", "size", "status"},
+            new Class[] {String.class, int.class, long.class, Integer.class},
+            false, false, false, false, false, null);
+
+    @Test
+    public void passesArgumentsInListenerOrder() throws Exception {
+        Listener listener = new Listener();
+        GeneratedClientInvoker invoker = create(listener, "requestEvent", "size", "count", "appName");
+
+        invoker.dispatch(new Object[] {"app", 3, 42L, 200});
+        assertEquals("app:3:42", listener.received);
+    }
+
+    @Test
+    public void convertsArgumentsLikeReflectiveInvoker() throws Exception {
+        Listener listener = new Listener();
+        GeneratedClientInvoker invoker = create(listener, "statusEvent", "status", "count");
+
+        invoker.dispatch(new Object[] {"app", 3, 42L, 200});
+        assertEquals("200:3", listener.received);
+    }
+
+    @Test
+    public void leavesUnsupportedListenersToReflection() throws Exception {
+        Listener listener = new Listener();
+        assertNull(ProbeClientInvokerGenerator.createInvoker(1, listener,
+                Listener.class.getMethod("requestEvent", long.class, int.class, String.class),
+                new String[] {"size", "count", "$computed"}, PROBE));
+        assertNull(ProbeClientInvokerGenerator.createInvoker(1, listener,
+                Listener.class.getDeclaredMethod("hiddenEvent", String.class),
+                new String[] {"appName"}, PROBE));
+        assertNull(ProbeClientInvokerGenerator.createInvoker(1, listener,
+                Listener.class.getMethod("requestEvent", long.class, int.class, String.class),
+                new String[] {"appName", "count", "size"}, PROBE));
+    }
+
+    private static GeneratedClientInvoker create(Listener listener, String name, String... paramNames) {
+        for (Method method : Listener.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                ProbeClientInvoker invoker = ProbeClientInvokerGenerator.createInvoker(1, listener, method, paramNames, PROBE);
+                assertTrue(invoker instanceof GeneratedClientInvoker);
+                return (GeneratedClientInvoker) invoker;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    public static class Listener {
+
+        String received;
+
+        public void requestEvent(long size, int count, String appName) {
+            received = appName + ":" + count + ":" + size;
+        }
+
+        public long statusEvent(String status, Number count) {
+            received = status + ":" + count;
+            return 1L;
+        }
+
+        void hiddenEvent(String appName) {
+            received = appName;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2017] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -73,9 +73,13 @@ public class BlockingQueueHandler extends Handler implements BlockingQueue<LogRe
         queue = new ArrayBlockingQueue<LogRecord>(size);
     }
     
+    /**
+     * Stores the record if there is space for it, otherwise the record is discarded
+     * @param record the record to store
+     */
     @Override
     public void publish(LogRecord record) {
-        queue.add(record);
+        queue.offer(record);
     }
 
     /**
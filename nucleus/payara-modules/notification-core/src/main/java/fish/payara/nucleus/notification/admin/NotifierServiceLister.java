@@ -44,6 +44,8 @@ package fish.payara.nucleus.notification.admin;
 import com.sun.enterprise.config.serverbeans.Domain;
 import com.sun.enterprise.util.LocalStringManagerImpl;
 import fish.payara.nucleus.notification.service.BaseNotifierService;
+import fish.payara.nucleus.notification.service.MessageQueue;
+import fish.payara.nucleus.notification.service.QueueBasedNotifierService;
 import org.glassfish.api.ActionReport;
 import org.glassfish.api.I18n;
 import org.glassfish.api.admin.*;
@@ -56,7 +58,9 @@ import org.jvnet.hk2.annotations.Service;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 
@@ -99,11 +103,28 @@ public class NotifierServiceLister implements AdminCommand {
 
             Properties extrasProps = new Properties();
             ArrayList<String> names = new ArrayList<String>();
-            for (ServiceHandle serviceHandle : allServiceHandles) {
-                sb.append("\t" + serviceHandle.getActiveDescriptor().getName() + "\n");
-                names.add(serviceHandle.getActiveDescriptor().getName());
+            Map<String, Map<String, Object>> queueStatistics = new HashMap<>();
+            for (ServiceHandle<BaseNotifierService> serviceHandle : allServiceHandles) {
+                String name = serviceHandle.getActiveDescriptor().getName();
+                sb.append("\t" + name);
+                names.add(name);
+                // Only report on notifiers which are already running, rather than creating them here
+                if (serviceHandle.isActive() && serviceHandle.getService() instanceof QueueBasedNotifierService) {
+                    MessageQueue<?> queue = ((QueueBasedNotifierService<?, ?, ?, ?>) serviceHandle.getService()).getQueue();
+                    Map<String, Object> statistics = new HashMap<>();
+                    statistics.put("queued", queue.size());
+                    statistics.put("merged", queue.getMergedCount());
+                    statistics.put("dropped", queue.getDroppedCount());
+                    statistics.put("saturated", queue.getSaturatedCount());
+                    queueStatistics.put(name, statistics);
+                    sb.append(strings.getLocalString("notifier.list.services.queue.info",
+                            " (queued: {0}, merged: {1}, dropped: {2}, saturated: {3})", queue.size(),
+                            queue.getMergedCount(), queue.getDroppedCount(), queue.getSaturatedCount()));
+                }
+                sb.append("\n");
             }
             extrasProps.put("avaliableServices", names);
+            extrasProps.put("queueStatistics", queueStatistics);
             report.setMessage(sb.toString());
             report.setExtraProperties(extrasProps);
             report.setActionExitCode(ActionReport.ExitCode.SUCCESS);
@@ -1,6 +1,6 @@
 /*
  *
- * Copyright (c) 2016 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -38,37 +38,109 @@
  */
 package fish.payara.nucleus.notification.service;
 
-import com.google.common.collect.EvictingQueue;
 import fish.payara.nucleus.notification.NotificationService;
 import org.jvnet.hk2.annotations.Contract;
 
 import javax.inject.Inject;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
+ * Holds the messages waiting to be sent by a notifier.
+ * <p>
+ * A message with the same subject and content as one that is already waiting is merged into it rather than queued
+ * again, so a burst of identical notifications is only sent once. When the queue is full the oldest message is
+ * dropped to make room. The number of merged and dropped messages, and how often the queue filled up, are counted
+ * so that they can be reported by {@code notifier-list-services}.
+ *
  * @author mertcaliskan
  */
 @Contract
 public abstract class MessageQueue<M extends Message> {
 
+    private static final int MAX_QUEUE_SIZE = 200;
+
     @Inject
     private NotificationService notificationService;
 
-    private Queue<M> messageQueue = EvictingQueue.create(200);
+    private final LinkedHashMap<String, M> messageQueue = new LinkedHashMap<>();
+    private long mergedCount;
+    private long droppedCount;
+    private long saturatedCount;
 
     public synchronized void addMessage(M message) {
-        messageQueue.add(message);
+        String key = message.getSubject() + '\n' + message.getMessage();
+        if (messageQueue.containsKey(key)) {
+            mergedCount++;
+            return;
+        }
+        if (messageQueue.size() >= MAX_QUEUE_SIZE) {
+            Iterator<M> oldest = messageQueue.values().iterator();
+            oldest.next();
+            oldest.remove();
+            droppedCount++;
+        } else if (messageQueue.size() == MAX_QUEUE_SIZE - 1) {
+            saturatedCount++;
+        }
+        messageQueue.put(key, message);
     }
 
     public synchronized M getMessage() {
-        return messageQueue.remove();
+        Iterator<M> oldest = messageQueue.values().iterator();
+        if (!oldest.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        M message = oldest.next();
+        oldest.remove();
+        return message;
+    }
+
+    /**
+     * Removes and returns up to the given number of messages, oldest first, so that they can be sent together.
+     *
+     * @param maxMessages the maximum number of messages to return
+     * @return the messages, which will be empty if there are none waiting
+     */
+    public synchronized List<M> getMessages(int maxMessages) {
+        List<M> messages = new ArrayList<>(Math.min(maxMessages, messageQueue.size()));
+        Iterator<M> oldest = messageQueue.values().iterator();
+        while (oldest.hasNext() && messages.size() < maxMessages) {
+            messages.add(oldest.next());
+            oldest.remove();
+        }
+        return messages;
     }
 
     public synchronized int size() {
         return messageQueue.size();
     }
 
-    public void resetQueue() {
+    /**
+     * @return the number of messages which were merged into an identical message that was already waiting
+     */
+    public synchronized long getMergedCount() {
+        return mergedCount;
+    }
+
+    /**
+     * @return the number of messages which were dropped because the queue was full
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return the number of times the queue filled up, after which further messages push out the oldest ones
+     */
+    public synchronized long getSaturatedCount() {
+        return saturatedCount;
+    }
+
+    public synchronized void resetQueue() {
         messageQueue.clear();
     }
 
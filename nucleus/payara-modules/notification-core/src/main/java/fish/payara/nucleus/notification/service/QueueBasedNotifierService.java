@@ -70,6 +70,13 @@ public abstract class QueueBasedNotifierService<E extends NotificationEvent,
         this.prefix = prefix;
     }
 
+    /**
+     * @return the queue of messages waiting to be sent by this notifier
+     */
+    public MQ getQueue() {
+        return queue;
+    }
+
     protected void initializeExecutor() {
         executor = Executors.newScheduledThreadPool(1, new ThreadFactory() {
             public Thread newThread(Runnable r) {
@@ -0,0 +1,104 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.nucleus.notification.service;
+
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MessageQueueTest {
+
+    private final MessageQueue<TestMessage> queue = new MessageQueue<TestMessage>() {
+    };
+
+    @Test
+    public void identicalMessagesAreMerged() {
+        queue.addMessage(new TestMessage("CPU", "90%"));
+        queue.addMessage(new TestMessage("CPU", "90%"));
+        queue.addMessage(new TestMessage("CPU", "95%"));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getMergedCount());
+        assertEquals(0, queue.getDroppedCount());
+        assertEquals("90%", queue.getMessage().getMessage());
+        assertEquals("95%", queue.getMessage().getMessage());
+    }
+
+    @Test
+    public void oldestMessageIsDroppedWhenFull() {
+        for (int i = 0; i < 250; i++) {
+            queue.addMessage(new TestMessage("Subject", Integer.toString(i)));
+        }
+
+        assertEquals(200, queue.size());
+        assertEquals(50, queue.getDroppedCount());
+        assertEquals(1, queue.getSaturatedCount());
+        assertEquals("50", queue.getMessage().getMessage());
+
+        // Filling the queue again counts as a new saturation
+        queue.addMessage(new TestMessage("Subject", "250"));
+        queue.addMessage(new TestMessage("Subject", "251"));
+        assertEquals(2, queue.getSaturatedCount());
+        assertEquals(51, queue.getDroppedCount());
+    }
+
+    @Test
+    public void messagesAreReturnedInBatches() {
+        for (int i = 0; i < 5; i++) {
+            queue.addMessage(new TestMessage("Subject", Integer.toString(i)));
+        }
+
+        List<TestMessage> batch = queue.getMessages(3);
+        assertEquals(3, batch.size());
+        assertEquals("0", batch.get(0).getMessage());
+        assertEquals("2", batch.get(2).getMessage());
+        assertEquals(2, queue.getMessages(3).size());
+        assertEquals(0, queue.size());
+    }
+
+    private static class TestMessage extends Message {
+
+        TestMessage(String subject, String message) {
+            this.subject = subject;
+            this.message = message;
+        }
+    }
+}
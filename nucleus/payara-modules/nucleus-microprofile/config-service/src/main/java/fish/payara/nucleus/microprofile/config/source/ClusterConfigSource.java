@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) [2017-2018] Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -39,6 +39,7 @@
  */
 package fish.payara.nucleus.microprofile.config.source;
 
+import fish.payara.nucleus.microprofile.config.spi.PayaraConfig;
 import fish.payara.nucleus.store.ClusteredStore;
 import java.io.Serializable;
 import java.util.HashMap;
@@ -86,10 +87,13 @@ public class ClusterConfigSource extends PayaraConfigSource implements ConfigSou
 
     public void setValue(String propertyName, String propertyValue) {
         clusterStore.set(CLUSTERED_CONFIG_STORE, propertyName, propertyValue);
+        // other members are notified by the store listener of ConfigProviderResolverImpl
+        PayaraConfig.invalidateCaches();
     }
 
     public void deleteValue(String propertyName) {
         clusterStore.remove(CLUSTERED_CONFIG_STORE, propertyName);
+        PayaraConfig.invalidateCaches();
     }
     
 }
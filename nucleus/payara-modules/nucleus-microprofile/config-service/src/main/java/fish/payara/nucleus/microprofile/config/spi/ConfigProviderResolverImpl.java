@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) [2017-2018] Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -39,8 +39,16 @@
  */
 package fish.payara.nucleus.microprofile.config.spi;
 
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import fish.payara.nucleus.events.HazelcastEvents;
+import fish.payara.nucleus.hazelcast.HazelcastCore;
+import java.beans.PropertyChangeEvent;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.lang.reflect.Type;
 import java.net.InetAddress;
 import java.net.URL;
@@ -53,6 +61,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,6 +77,8 @@ import org.eclipse.microprofile.config.spi.ConfigSourceProvider;
 import org.eclipse.microprofile.config.spi.Converter;
 import org.glassfish.api.StartupRunLevel;
 import org.glassfish.api.admin.ServerEnvironment;
+import org.glassfish.api.event.EventListener;
+import org.glassfish.api.event.Events;
 import org.glassfish.api.invocation.ComponentInvocation;
 import org.glassfish.api.invocation.InvocationManager;
 import org.glassfish.hk2.runlevel.RunLevel;
@@ -77,6 +88,9 @@ import org.glassfish.internal.data.ApplicationRegistry;
 import org.glassfish.internal.data.ModuleInfo;
 import org.jvnet.hk2.annotations.Optional;
 import org.jvnet.hk2.annotations.Service;
+import org.jvnet.hk2.config.TransactionListener;
+import org.jvnet.hk2.config.Transactions;
+import org.jvnet.hk2.config.UnprocessedChangeEvents;
 
 import fish.payara.nucleus.microprofile.config.converters.BooleanConverter;
 import fish.payara.nucleus.microprofile.config.converters.ClassConverter;
@@ -108,7 +122,7 @@ import fish.payara.nucleus.microprofile.config.source.SystemPropertyConfigSource
  */
 @Service(name = "microprofile-config-provider") // this specifies that the classis an HK2 service
 @RunLevel(StartupRunLevel.VAL)
-public class ConfigProviderResolverImpl extends ConfigProviderResolver {
+public class ConfigProviderResolverImpl extends ConfigProviderResolver implements EventListener {
 
     private static final String METADATA_KEY = "MICROPROFILE_APP_CONFIG";
     private static final String CUSTOM_SOURCES_KEY = "MICROPROFILE_CUSTOM_SOURCES";
@@ -121,6 +135,15 @@ public class ConfigProviderResolverImpl extends ConfigProviderResolver {
     @Inject
     private ServerContext context;
 
+    @Inject
+    private Transactions transactions;
+
+    @Inject
+    private Events events;
+
+    @Inject
+    private HazelcastCore hzCore;
+
     // Gives access to deployed applications
     @Inject
     ApplicationRegistry applicationRegistry;
@@ -141,6 +164,28 @@ public class ConfigProviderResolverImpl extends ConfigProviderResolver {
     @PostConstruct
     public void postConstruct() {
         ConfigProviderResolver.setInstance(this);
+        // config values may come from any part of domain.xml so drop cached values on every change
+        transactions.addTransactionsListener(new TransactionListener() {
+            @Override
+            public void transactionCommited(List<PropertyChangeEvent> changes) {
+                PayaraConfig.invalidateCaches();
+            }
+
+            @Override
+            public void unprocessedTransactedEvents(List<UnprocessedChangeEvents> changes) {
+            }
+        });
+        events.register(this);
+    }
+
+    @Override
+    public void event(Event event) {
+        if (event.is(HazelcastEvents.HAZELCAST_BOOTSTRAP_COMPLETE) && hzCore.isEnabled()) {
+            // values set on other members only reach this one through the clustered store
+            hzCore.getInstance().getMap(ClusterConfigSource.CLUSTERED_CONFIG_STORE)
+                    .addEntryListener(new ClusterStoreListener(), false);
+            PayaraConfig.invalidateCaches();
+        }
     }
 
 
@@ -151,6 +196,14 @@ public class ConfigProviderResolverImpl extends ConfigProviderResolver {
         return configuration;
     }
 
+    long getCacheDurationMillis() {
+        MicroprofileConfigConfiguration mpConfig = getMPConfig();
+        if (mpConfig == null) {
+            return 0;
+        }
+        return TimeUnit.SECONDS.toMillis(Integer.parseInt(mpConfig.getCacheDurationSeconds()));
+    }
+
     @Override
     public Config getConfig() {
         return getConfig(Thread.currentThread().getContextClassLoader());
@@ -218,7 +271,7 @@ public class ConfigProviderResolverImpl extends ConfigProviderResolver {
                 Map<Type, Converter> converters = new HashMap<>();
                 sources.addAll(getDefaultSources());
                 converters.putAll(getDefaultConverters());
-                serverLevelConfig = new PayaraConfig(sources, converters);
+                serverLevelConfig = new PayaraConfig(sources, converters, getCacheDurationMillis());
                 result = serverLevelConfig;
             }
         } else { // look for an application specific one
@@ -232,7 +285,7 @@ public class ConfigProviderResolverImpl extends ConfigProviderResolver {
                 sources.addAll(getDiscoveredSources(appInfo));
                 converters.putAll(getDefaultConverters());
                 converters.putAll(getDiscoveredConverters(appInfo));
-                result = new PayaraConfig(sources, converters);
+                result = new PayaraConfig(sources, converters, getCacheDurationMillis());
                 appInfo.addTransientAppMetaData(METADATA_KEY, result);
             }
         }
@@ -431,4 +484,23 @@ public class ConfigProviderResolverImpl extends ConfigProviderResolver {
         return new Properties();
     }
 
+    private static class ClusterStoreListener implements EntryAddedListener<Serializable, Serializable>,
+            EntryUpdatedListener<Serializable, Serializable>, EntryRemovedListener<Serializable, Serializable> {
+
+        @Override
+        public void entryAdded(EntryEvent<Serializable, Serializable> event) {
+            PayaraConfig.invalidateCaches();
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<Serializable, Serializable> event) {
+            PayaraConfig.invalidateCaches();
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<Serializable, Serializable> event) {
+            PayaraConfig.invalidateCaches();
+        }
+    }
+
 }
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) [2017-2018] Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -90,5 +90,15 @@ public interface MicroprofileConfigConfiguration extends ConfigBeanProxy, Config
     @Attribute(defaultValue = "105", dataType = Integer.class)
     public String getPasswordOrdinality();
     public void setPasswordOrdinality(String message);
+
+    /**
+     * Values from domain.xml, the cluster store, the environment and the application's properties are
+     * cached until they change whatever this is set to.
+     * @return how long in seconds a value of any other config source, such as system properties, JNDI or
+     * the secrets directory, is cached, 0 to always ask the source
+     */
+    @Attribute(defaultValue = "0", dataType = Integer.class)
+    String getCacheDurationSeconds();
+    public void setCacheDurationSeconds(String cacheDurationSeconds);
     
 }
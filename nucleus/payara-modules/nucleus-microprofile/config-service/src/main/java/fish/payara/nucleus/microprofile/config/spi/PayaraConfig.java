@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2017-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2017-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -40,6 +40,14 @@
 package fish.payara.nucleus.microprofile.config.spi;
 
 import fish.payara.nucleus.microprofile.config.converters.CommonSenseConverter;
+import fish.payara.nucleus.microprofile.config.source.ApplicationConfigSource;
+import fish.payara.nucleus.microprofile.config.source.ClusterConfigSource;
+import fish.payara.nucleus.microprofile.config.source.ConfigConfigSource;
+import fish.payara.nucleus.microprofile.config.source.DomainConfigSource;
+import fish.payara.nucleus.microprofile.config.source.EnvironmentConfigSource;
+import fish.payara.nucleus.microprofile.config.source.ModuleConfigSource;
+import fish.payara.nucleus.microprofile.config.source.PropertiesConfigSource;
+import fish.payara.nucleus.microprofile.config.source.ServerConfigSource;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -56,6 +64,8 @@ import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.spi.ConfigSource;
@@ -66,15 +76,77 @@ import org.eclipse.microprofile.config.spi.Converter;
  * @author Steve Millidge (Payara Foundation)
  */
 public class PayaraConfig implements Config {
-    
+
+    // incremented whenever the server configuration or the cluster store changes, which invalidates all cached values
+    private static final AtomicLong CACHE_GENERATION = new AtomicLong();
+
     private final List<ConfigSource> configSources;
     private final Map<Type, Converter> converters;
+    private final long cacheDurationMillis;
+    // one cache per config source, in the same order as configSources
+    private final List<Map<String, CachedValue>> sourceCaches;
+    private final Map<String, Converted> convertedValues = new ConcurrentHashMap<>();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
 
     public PayaraConfig(List<ConfigSource> configSources, Map<Type,Converter> convertersMap) {
+        this(configSources, convertersMap, 0);
+    }
+
+    /**
+     * Values of sources backed by domain.xml, the cluster store, the environment or the application's
+     * properties are cached until {@link #invalidateCaches()} is called. Values of any other source
+     * may change without notice so they are only cached for the given duration.
+     *
+     * @param cacheDurationMillis how long a value of a dynamic source is reused before the source
+     * is asked again, 0 or less to always ask the source
+     */
+    public PayaraConfig(List<ConfigSource> configSources, Map<Type,Converter> convertersMap, long cacheDurationMillis) {
         this.configSources = configSources;
         this.converters = new ConcurrentHashMap<>();
         this.converters.putAll(convertersMap);
+        this.cacheDurationMillis = cacheDurationMillis;
         Collections.sort(configSources, new ConfigSourceComparator());
+        this.sourceCaches = new ArrayList<>(configSources.size());
+        for (int i = 0; i < configSources.size(); i++) {
+            sourceCaches.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Discards the cached values of all configs, called when the server configuration
+     * or the clustered config store changes.
+     */
+    public static void invalidateCaches() {
+        CACHE_GENERATION.incrementAndGet();
+    }
+
+    /**
+     * @return the number of config source lookups answered from the cache
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return the number of cacheable config source lookups that had to ask the source
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * @return true if the values of the source can change without {@link #invalidateCaches()} being called
+     */
+    static boolean isDynamic(ConfigSource source) {
+        return !(source instanceof DomainConfigSource
+                || source instanceof ConfigConfigSource
+                || source instanceof ServerConfigSource
+                || source instanceof ApplicationConfigSource
+                || source instanceof ModuleConfigSource
+                || source instanceof ClusterConfigSource
+                || source instanceof PropertiesConfigSource
+                || source instanceof EnvironmentConfigSource);
     }
 
     @Override
@@ -84,7 +156,7 @@ public class PayaraConfig implements Config {
         if (result == null) {
             throw new NoSuchElementException("Unable to find property with name " + propertyName);
         }
-        return convertString(result, propertyType);
+        return convertString(propertyName, result, propertyType);
     }
 
     @Override
@@ -161,19 +233,39 @@ public class PayaraConfig implements Config {
         if (result == null) {
             throw new NoSuchElementException("Unable to find property with name " + propertyName);
         }
-        return convertString(result, propertyType);
+        return convertString(propertyName, result, propertyType);
     }
 
     private String getValue(String propertyName) {
         String result = null;
-        for (ConfigSource configSource : configSources) {
-            result = configSource.getValue(propertyName);
+        for (int i = 0; i < configSources.size(); i++) {
+            result = getSourceValue(i, propertyName);
             if (result != null) {
                 break;
             }
         }
         return result;
     }
+
+    private String getSourceValue(int index, String propertyName) {
+        ConfigSource configSource = configSources.get(index);
+        boolean dynamic = isDynamic(configSource);
+        if (dynamic && cacheDurationMillis <= 0) {
+            return configSource.getValue(propertyName);
+        }
+        long generation = CACHE_GENERATION.get();
+        long now = dynamic ? System.currentTimeMillis() : 0L;
+        Map<String, CachedValue> cache = sourceCaches.get(index);
+        CachedValue cached = cache.get(propertyName);
+        if (cached != null && cached.generation == generation && (!dynamic || cached.expires > now)) {
+            cacheHits.increment();
+            return cached.value;
+        }
+        cacheMisses.increment();
+        String result = configSource.getValue(propertyName);
+        cache.put(propertyName, new CachedValue(result, generation, now + cacheDurationMillis));
+        return result;
+    }
     
     private <T> Converter<T> getConverter(Class<T> propertyType) {
         Class type = propertyType;
@@ -243,6 +335,24 @@ public class PayaraConfig implements Config {
         return converter;
     }
     
+    /**
+     * Converts the value of a property, reusing the last conversion to the same type while the
+     * value of the property is unchanged. Only immutable results are reused, as every caller gets
+     * the same instance; any other type is converted on every call.
+     */
+    private <T> T convertString(String propertyName, String value, Class<T> propertyType) {
+        if (!isImmutable(propertyType)) {
+            return convertString(value, propertyType);
+        }
+        Converted converted = convertedValues.get(propertyName);
+        if (converted != null && converted.type == propertyType && converted.source.equals(value)) {
+            return (T) converted.value;
+        }
+        T result = convertString(value, propertyType);
+        convertedValues.put(propertyName, new Converted(value, propertyType, result));
+        return result;
+    }
+
     private <T> T convertString(String value, Class<T> propertyType) {
 
         // if it is an array convert arrays
@@ -269,6 +379,19 @@ public class PayaraConfig implements Config {
         }
     }
     
+    private static boolean isImmutable(Class<?> type) {
+        return type.isPrimitive() || type.isEnum()
+                || type == String.class
+                || type == Boolean.class
+                || type == Character.class
+                || type == Byte.class
+                || type == Short.class
+                || type == Integer.class
+                || type == Long.class
+                || type == Float.class
+                || type == Double.class;
+    }
+
     private String[] splitValue(String value) {
         String keys[] = value.split("(?<!\\\\),");
         for (int i=0; i < keys.length; i++) {
@@ -276,5 +399,28 @@ public class PayaraConfig implements Config {
         }
         return keys;
     }
-    
+
+    private static final class CachedValue {
+        final String value;
+        final long generation;
+        final long expires;
+
+        CachedValue(String value, long generation, long expires) {
+            this.value = value;
+            this.generation = generation;
+            this.expires = expires;
+        }
+    }
+
+    private static final class Converted {
+        final String source;
+        final Class<?> type;
+        final Object value;
+
+        Converted(String source, Class<?> type, Object value) {
+            this.source = source;
+            this.type = type;
+            this.value = value;
+        }
+    }
 }
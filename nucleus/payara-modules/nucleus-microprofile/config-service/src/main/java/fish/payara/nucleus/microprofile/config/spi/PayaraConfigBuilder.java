@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2017 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2017-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -114,7 +114,7 @@ public class PayaraConfigBuilder implements ConfigBuilder {
     @Override
     public Config build() {
         this.converters.putAll(resolver.getDefaultConverters());
-        return new PayaraConfig(sources, converters);
+        return new PayaraConfig(sources, converters, resolver.getCacheDurationMillis());
     }
 
     @Override
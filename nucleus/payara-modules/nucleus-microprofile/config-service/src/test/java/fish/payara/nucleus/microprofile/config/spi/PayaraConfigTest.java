@@ -0,0 +1,209 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.nucleus.microprofile.config.spi;
+
+import fish.payara.nucleus.microprofile.config.converters.IntegerConverter;
+import fish.payara.nucleus.microprofile.config.source.PropertiesConfigSource;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.microprofile.config.spi.ConfigSource;
+import org.eclipse.microprofile.config.spi.Converter;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PayaraConfigTest {
+
+    private final Map<String, String> properties = new HashMap<>();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final Properties staticProperties = new Properties();
+    private final AtomicInteger staticLookups = new AtomicInteger();
+    private List<ConfigSource> sources;
+    private Map<Type, Converter> converters;
+
+    @Before
+    public void setUp() {
+        properties.put("answer", "42");
+        sources = new ArrayList<>();
+        // not a Payara source so it is treated as dynamic
+        sources.add(new ConfigSource() {
+            @Override
+            public Map<String, String> getProperties() {
+                return properties;
+            }
+
+            @Override
+            public String getValue(String propertyName) {
+                lookups.incrementAndGet();
+                return properties.get(propertyName);
+            }
+
+            @Override
+            public int getOrdinal() {
+                return 200;
+            }
+
+            @Override
+            public String getName() {
+                return "test";
+            }
+        });
+        staticProperties.setProperty("static", "7");
+        sources.add(new PropertiesConfigSource(staticProperties, "test") {
+            @Override
+            public String getValue(String propertyName) {
+                staticLookups.incrementAndGet();
+                return super.getValue(propertyName);
+            }
+        });
+        converters = new HashMap<>();
+        converters.put(Integer.class, new IntegerConverter());
+    }
+
+    @Test
+    public void testDynamicValuesAreCachedForDuration() {
+        PayaraConfig config = new PayaraConfig(sources, converters, 60000);
+        assertEquals(Integer.valueOf(42), config.getValue("answer", Integer.class));
+        properties.put("answer", "43");
+        assertEquals(Integer.valueOf(42), config.getValue("answer", Integer.class));
+        assertEquals(Optional.empty(), config.getOptionalValue("missing", String.class));
+        assertEquals(Optional.empty(), config.getOptionalValue("missing", String.class));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testDynamicValuesAreNotCachedByDefault() {
+        PayaraConfig config = new PayaraConfig(sources, converters, 0);
+        assertEquals(Integer.valueOf(42), config.getValue("answer", Integer.class));
+        properties.put("answer", "43");
+        assertEquals(Integer.valueOf(43), config.getValue("answer", Integer.class));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testStaticValuesAreCachedUntilInvalidated() {
+        PayaraConfig config = new PayaraConfig(sources, converters, 0);
+        assertEquals(Integer.valueOf(7), config.getValue("static", Integer.class));
+        staticProperties.setProperty("static", "8");
+        assertEquals(Integer.valueOf(7), config.getValue("static", Integer.class));
+        assertEquals(1, staticLookups.get());
+        // the dynamic source with the higher ordinal is still asked every time
+        assertEquals(2, lookups.get());
+
+        PayaraConfig.invalidateCaches();
+        assertEquals(Integer.valueOf(8), config.getValue("static", Integer.class));
+        assertEquals(2, staticLookups.get());
+    }
+
+    @Test
+    public void testDynamicValueOverridesCachedStaticValue() {
+        PayaraConfig config = new PayaraConfig(sources, converters, 0);
+        assertEquals(Integer.valueOf(7), config.getValue("static", Integer.class));
+        properties.put("static", "9");
+        assertEquals(Integer.valueOf(9), config.getValue("static", Integer.class));
+    }
+
+    @Test
+    public void testConvertedValueIsReused() {
+        properties.put("answer", "1000");
+        PayaraConfig config = new PayaraConfig(sources, converters, 0);
+        Integer first = config.getValue("answer", Integer.class);
+        assertSame(first, config.getValue("answer", Integer.class));
+        assertEquals("1000", config.getValue("answer", String.class));
+        properties.put("answer", "2000");
+        assertEquals(Integer.valueOf(2000), config.getValue("answer", Integer.class));
+    }
+
+    @Test
+    public void testMutableConvertedValueIsNotShared() {
+        properties.put("buffer", "value");
+        PayaraConfig config = new PayaraConfig(sources, converters, 0);
+        StringBuilder first = config.getValue("buffer", StringBuilder.class);
+        first.append("-changed");
+        StringBuilder second = config.getValue("buffer", StringBuilder.class);
+        assertNotSame(first, second);
+        assertEquals("value", second.toString());
+    }
+
+    @Test
+    public void testCacheHitsAndMisses() {
+        PayaraConfig config = new PayaraConfig(sources, converters, 60000);
+        config.getValue("answer", Integer.class);
+        config.getValue("answer", Integer.class);
+        config.getValue("static", Integer.class);
+        config.getValue("static", Integer.class);
+        // the dynamic source is asked for both names, then the static source for "static"
+        assertEquals(3, config.getCacheMisses());
+        assertEquals(3, config.getCacheHits());
+    }
+
+    @Test
+    public void testUncachedLookupsAreNotCounted() {
+        PayaraConfig config = new PayaraConfig(sources, converters, 0);
+        config.getValue("answer", Integer.class);
+        config.getValue("answer", Integer.class);
+        assertEquals(0, config.getCacheHits());
+        assertEquals(0, config.getCacheMisses());
+    }
+
+    @Test
+    public void testInvalidateCaches() {
+        PayaraConfig config = new PayaraConfig(sources, converters, 60000);
+        assertEquals(Integer.valueOf(42), config.getValue("answer", Integer.class));
+        properties.put("answer", "43");
+        PayaraConfig.invalidateCaches();
+        assertEquals(Integer.valueOf(43), config.getValue("answer", Integer.class));
+    }
+
+    @Test
+    public void testCacheExpires() throws InterruptedException {
+        PayaraConfig config = new PayaraConfig(sources, converters, 1);
+        assertEquals(Integer.valueOf(42), config.getValue("answer", Integer.class));
+        properties.put("answer", "43");
+        Thread.sleep(5);
+        assertEquals(Integer.valueOf(43), config.getValue("answer", Integer.class));
+    }
+}
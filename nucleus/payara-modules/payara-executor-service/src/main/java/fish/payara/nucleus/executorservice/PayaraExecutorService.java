@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2017-2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -46,8 +46,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -55,6 +60,7 @@ import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
@@ -64,6 +70,8 @@ import org.glassfish.api.admin.ServerEnvironment;
 import org.glassfish.api.event.EventListener;
 import org.glassfish.api.event.EventTypes;
 import org.glassfish.api.event.Events;
+import org.glassfish.external.probe.provider.PluginPoint;
+import org.glassfish.external.probe.provider.StatsProviderManager;
 import org.glassfish.internal.api.Globals;
 import org.jvnet.hk2.annotations.Optional;
 import org.jvnet.hk2.annotations.Service;
@@ -94,8 +102,18 @@ public class PayaraExecutorService implements ConfigListener, EventListener {
     @Inject
     private Events events;
 
+    private static final Logger LOGGER = Logger.getLogger(PayaraExecutorService.class.getName());
+
+    private ExecutorService executorService;
     private ThreadPoolExecutor threadPoolExecutor;
     private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
+    private PayaraExecutorServiceStatsProvider statsProvider;
+
+    private final LongAdder submittedTaskCount = new LongAdder();
+    private final LongAdder startedTaskCount = new LongAdder();
+    private final LongAdder completedTaskCount = new LongAdder();
+    private final LongAdder rejectedTaskCount = new LongAdder();
+    private final LongAdder totalTaskLatency = new LongAdder();
 
     @PostConstruct
     public void postConstruct() {
@@ -114,6 +132,10 @@ public class PayaraExecutorService implements ConfigListener, EventListener {
         }
 
         initialiseThreadPools();
+
+        statsProvider = new PayaraExecutorServiceStatsProvider(this);
+        StatsProviderManager.register(PayaraExecutorServiceStatsProvider.CONFIG_ELEMENT, PluginPoint.SERVER,
+                PayaraExecutorServiceStatsProvider.SUBTREE_PATH, statsProvider);
     }
 
     /**
@@ -123,16 +145,50 @@ public class PayaraExecutorService implements ConfigListener, EventListener {
     @Override
     public void event(Event event) {
         if (event.is(EventTypes.SERVER_SHUTDOWN)) {
-            threadPoolExecutor.shutdown();
+            executorService.shutdown();
             scheduledThreadPoolExecutor.shutdown();
+            StatsProviderManager.unregister(statsProvider);
         }
     }
 
     private void initialiseThreadPools() {
+        String executorType = payaraExecutorServiceConfiguration.getThreadPoolExecutorType();
+        if ("FORK_JOIN".equals(executorType)) {
+            executorService = new ForkJoinPool(
+                    Integer.valueOf(payaraExecutorServiceConfiguration.getThreadPoolExecutorMaxPoolSize()),
+                    (ForkJoinPool pool) -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("payara-executor-service-task");
+                        return thread;
+                    }, null, true);
+        } else if ("VIRTUAL_THREAD".equals(executorType)) {
+            executorService = createVirtualThreadExecutor();
+        }
+        if (executorService == null) {
+            threadPoolExecutor = createThreadPoolExecutor();
+            executorService = threadPoolExecutor;
+        }
+
+        scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(
+                Integer.valueOf(payaraExecutorServiceConfiguration.getScheduledThreadPoolExecutorCorePoolSize()), (Runnable r) -> {
+                    Thread t = new Thread(r, "payara-executor-service-scheduled-task");
+                    t.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
+                        @Override
+                        public void uncaughtException(Thread thread, Throwable thrwbl) {
+                            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Uncaught exception in Payara Scheduled Executor thread ",thrwbl);
+                        }
+                    });
+                    return t;
+        });
+        scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+    }
+
+    private ThreadPoolExecutor createThreadPoolExecutor() {
+        ThreadPoolExecutor executor;
         int threadPoolExecutorQueueSize = Integer.valueOf(
                 payaraExecutorServiceConfiguration.getThreadPoolExecutorQueueSize());
         if (threadPoolExecutorQueueSize > 0) {
-            threadPoolExecutor = new ThreadPoolExecutor(
+            executor = new ThreadPoolExecutor(
                     Integer.valueOf(payaraExecutorServiceConfiguration.getThreadPoolExecutorCorePoolSize()),
                     Integer.valueOf(payaraExecutorServiceConfiguration.getThreadPoolExecutorMaxPoolSize()),
                     Integer.valueOf(payaraExecutorServiceConfiguration.getThreadPoolExecutorKeepAliveTime()),
@@ -140,38 +196,96 @@ public class PayaraExecutorService implements ConfigListener, EventListener {
                     new LinkedBlockingQueue<>(threadPoolExecutorQueueSize),
                     (Runnable r) -> new Thread(r, "payara-executor-service-task"));
         } else {
-            threadPoolExecutor = new ThreadPoolExecutor(
+            executor = new ThreadPoolExecutor(
                     Integer.valueOf(payaraExecutorServiceConfiguration.getThreadPoolExecutorCorePoolSize()),
                     Integer.valueOf(payaraExecutorServiceConfiguration.getThreadPoolExecutorMaxPoolSize()),
                     Integer.valueOf(payaraExecutorServiceConfiguration.getThreadPoolExecutorKeepAliveTime()),
                     TimeUnit.valueOf(payaraExecutorServiceConfiguration.getThreadPoolExecutorKeepAliveTimeUnit()),
                     new SynchronousQueue<>(), (Runnable r) -> new Thread(r, "payara-executor-service-task"));
         }
-        threadPoolExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(
-                Integer.valueOf(payaraExecutorServiceConfiguration.getScheduledThreadPoolExecutorCorePoolSize()), (Runnable r) -> {
-                    Thread t = new Thread(r, "payara-executor-service-scheduled-task");
-                    t.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
-                        @Override
-                        public void uncaughtException(Thread thread, Throwable thrwbl) {
-                            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Uncaught exception in Payara Scheduled Executor thread ",thrwbl);
-                        }
-                    });
-                    return t;
+        RejectedExecutionHandler callerRunsPolicy = new ThreadPoolExecutor.CallerRunsPolicy();
+        executor.setRejectedExecutionHandler((Runnable r, ThreadPoolExecutor e) -> {
+            rejectedTaskCount.increment();
+            callerRunsPolicy.rejectedExecution(r, e);
         });
-        scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for each task, so that tasks blocking on I/O such as
+     * notifiers don't hold on to platform threads.
+     *
+     * @return the executor, or null if this JVM does not support virtual threads
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            LOGGER.log(Level.WARNING, "Virtual threads are not supported by this JVM, "
+                    + "Payara Executor Service will use a thread pool instead");
+            return null;
+        }
     }
 
     public <T> Future<T> submit(Callable<T> task) {
-        return threadPoolExecutor.submit(task);
+        long submitted = beforeSubmit();
+        try {
+            return executorService.submit(() -> {
+                beforeExecute();
+                try {
+                    return task.call();
+                } finally {
+                    afterExecute(submitted);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            onRejected();
+            throw ex;
+        }
     }
 
     public Future<?> submit(Runnable task) {
-        return threadPoolExecutor.submit(task);
+        return submit(task, null);
     }
 
     public <T> Future<T> submit(Runnable task, T result) {
-        return threadPoolExecutor.submit(task, result);
+        long submitted = beforeSubmit();
+        try {
+            return executorService.submit(() -> {
+                beforeExecute();
+                try {
+                    task.run();
+                } finally {
+                    afterExecute(submitted);
+                }
+            }, result);
+        } catch (RejectedExecutionException ex) {
+            onRejected();
+            throw ex;
+        }
+    }
+
+    private long beforeSubmit() {
+        submittedTaskCount.increment();
+        return System.nanoTime();
+    }
+
+    private void beforeExecute() {
+        startedTaskCount.increment();
+    }
+
+    private void afterExecute(long submitted) {
+        totalTaskLatency.add(System.nanoTime() - submitted);
+        completedTaskCount.increment();
+    }
+
+    /**
+     * Counts a task the executor refused outright, for example because it has been shut down. Tasks the thread pool
+     * runs on the submitting thread instead are counted by its rejection handler.
+     */
+    private void onRejected() {
+        submittedTaskCount.decrement();
+        rejectedTaskCount.increment();
     }
 
     public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
@@ -191,7 +305,7 @@ public class PayaraExecutorService implements ConfigListener, EventListener {
     }
 
     public ExecutorService getUnderlyingExecutorService() {
-        return threadPoolExecutor;
+        return executorService;
     }
 
     public ScheduledExecutorService getUnderlyingScheduledExecutorService() {
@@ -206,6 +320,69 @@ public class PayaraExecutorService implements ConfigListener, EventListener {
         return Integer.valueOf(payaraExecutorServiceConfiguration.getScheduledThreadPoolExecutorCorePoolSize());
     }
 
+    /**
+     * Gets the number of tasks submitted through this service that are waiting to be run.
+     *
+     * @return the number of queued tasks
+     */
+    public long getExecutorQueueDepth() {
+        return submittedTaskCount.sum() - startedTaskCount.sum();
+    }
+
+    /**
+     * Gets the number of tasks submitted through this service that are currently running.
+     *
+     * @return the number of running tasks
+     */
+    public long getExecutorActiveCount() {
+        return startedTaskCount.sum() - completedTaskCount.sum();
+    }
+
+    /**
+     * Gets the number of tasks submitted through this service that have completed.
+     *
+     * @return the number of completed tasks
+     */
+    public long getExecutorCompletedCount() {
+        return completedTaskCount.sum();
+    }
+
+    /**
+     * Gets the number of tasks the executor could not accept. With the {@code THREAD_POOL} executor type these are run
+     * by the submitting thread instead, with the other types they are refused.
+     *
+     * @return the number of rejected tasks
+     */
+    public long getExecutorRejectedCount() {
+        return rejectedTaskCount.sum();
+    }
+
+    /**
+     * Gets the average time taken from a task being submitted through this service to it completing, including the
+     * time spent waiting in the queue.
+     *
+     * @return the average task latency in milliseconds, or 0 if no tasks have completed
+     */
+    public double getExecutorAverageTaskLatency() {
+        long completed = completedTaskCount.sum();
+        if (completed == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMicros(totalTaskLatency.sum() / completed) / 1000.0;
+    }
+
+    public int getScheduledExecutorQueueDepth() {
+        return scheduledThreadPoolExecutor.getQueue().size();
+    }
+
+    public int getScheduledExecutorActiveCount() {
+        return scheduledThreadPoolExecutor.getActiveCount();
+    }
+
+    public long getScheduledExecutorCompletedCount() {
+        return scheduledThreadPoolExecutor.getCompletedTaskCount();
+    }
+
 
     @Override
     public UnprocessedChangeEvents changed(PropertyChangeEvent[] propertyChangeEvents) {
@@ -215,19 +392,19 @@ public class PayaraExecutorService implements ConfigListener, EventListener {
         for (PropertyChangeEvent propertyChangeEvent : propertyChangeEvents) {
             switch (propertyChangeEvent.getPropertyName()) {
                 case "thread-pool-executor-core-pool-size":
-                    if (isCurrentInstanceMatchTarget(propertyChangeEvent)
+                    if (threadPoolExecutor != null && isCurrentInstanceMatchTarget(propertyChangeEvent)
                             && !propertyChangeEvent.getOldValue().equals(propertyChangeEvent.getNewValue())) {
                         threadPoolExecutor.setCorePoolSize((Integer) propertyChangeEvent.getNewValue());
                     }
                     break;
                 case "thread-pool-executor-max-pool-size":
-                    if (isCurrentInstanceMatchTarget(propertyChangeEvent)
+                    if (threadPoolExecutor != null && isCurrentInstanceMatchTarget(propertyChangeEvent)
                             && !propertyChangeEvent.getOldValue().equals(propertyChangeEvent.getNewValue())) {
                         threadPoolExecutor.setMaximumPoolSize((Integer) propertyChangeEvent.getNewValue());
                     }
                     break;
                 case "thread-pool-executor-keep-alive-time":
-                    if (isCurrentInstanceMatchTarget(propertyChangeEvent)
+                    if (threadPoolExecutor != null && isCurrentInstanceMatchTarget(propertyChangeEvent)
                             && !propertyChangeEvent.getOldValue().equals(propertyChangeEvent.getNewValue())) {
                         if (!keepAliveChanged) {
                             for (PropertyChangeEvent pce : propertyChangeEvents) {
@@ -256,7 +433,7 @@ public class PayaraExecutorService implements ConfigListener, EventListener {
                     }
                     break;
                 case "thread-pool-executor-keep-alive-time-unit":
-                    if (isCurrentInstanceMatchTarget(propertyChangeEvent)
+                    if (threadPoolExecutor != null && isCurrentInstanceMatchTarget(propertyChangeEvent)
                             && !propertyChangeEvent.getOldValue().equals(propertyChangeEvent.getNewValue())) {
                         if (!keepAliveChanged) {
                             for (PropertyChangeEvent pce : propertyChangeEvents) {
@@ -283,6 +460,7 @@ public class PayaraExecutorService implements ConfigListener, EventListener {
                         }
                     }
                     break;
+                case "thread-pool-executor-type":
                 case "thread-pool-executor-queue-size":
                     if (isCurrentInstanceMatchTarget(propertyChangeEvent)
                             && !propertyChangeEvent.getOldValue().equals(propertyChangeEvent.getNewValue())) {
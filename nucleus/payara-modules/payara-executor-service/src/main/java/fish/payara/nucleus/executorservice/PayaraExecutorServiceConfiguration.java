@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2017-2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -51,6 +51,15 @@ import org.jvnet.hk2.config.Configured;
 @Configured
 public interface PayaraExecutorServiceConfiguration extends ConfigBeanProxy, ConfigExtension {
 
+    /**
+     * The kind of executor used for submitted tasks: {@code THREAD_POOL} for a bounded thread pool,
+     * {@code FORK_JOIN} for a work-stealing pool, or {@code VIRTUAL_THREAD} for a thread per task on runtimes with
+     * virtual threads.
+     */
+    @Attribute(defaultValue = "THREAD_POOL")
+    String getThreadPoolExecutorType();
+    void setThreadPoolExecutorType(String executorType);
+
     @Attribute(defaultValue = "3", dataType = Integer.class)
     String getThreadPoolExecutorCorePoolSize();
     void setThreadPoolExecutorCorePoolSize(int corePoolSize);
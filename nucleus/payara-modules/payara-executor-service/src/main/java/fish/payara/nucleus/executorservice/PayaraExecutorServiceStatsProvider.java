@@ -0,0 +1,150 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.nucleus.executorservice;
+
+import org.glassfish.external.statistics.CountStatistic;
+import org.glassfish.external.statistics.impl.CountStatisticImpl;
+import org.glassfish.external.statistics.impl.StatisticImpl;
+import org.glassfish.gmbal.AMXMetadata;
+import org.glassfish.gmbal.Description;
+import org.glassfish.gmbal.ManagedAttribute;
+import org.glassfish.gmbal.ManagedObject;
+
+/**
+ * Provides the statistics of the {@link PayaraExecutorService} to monitoring.
+ * <p>
+ * The statistics are available under {@code server.thread-pool.payara-executor-service} once the thread pool
+ * monitoring level is set to LOW or HIGH.
+ */
+@AMXMetadata(type = "payara-executor-service-mon", group = "monitoring")
+@ManagedObject
+@Description("Payara Executor Service Statistics")
+public class PayaraExecutorServiceStatsProvider {
+
+    static final String CONFIG_ELEMENT = "thread-pool";
+    static final String SUBTREE_PATH = "payara-executor-service";
+
+    private final PayaraExecutorService executorService;
+
+    private final CountStatisticImpl queueDepth = new CountStatisticImpl(
+            "QueueDepth", StatisticImpl.UNIT_COUNT,
+            "Number of submitted tasks waiting to be run");
+    private final CountStatisticImpl activeCount = new CountStatisticImpl(
+            "ActiveCount", StatisticImpl.UNIT_COUNT,
+            "Number of submitted tasks currently running");
+    private final CountStatisticImpl completedTaskCount = new CountStatisticImpl(
+            "CompletedTaskCount", StatisticImpl.UNIT_COUNT,
+            "Number of submitted tasks completed");
+    private final CountStatisticImpl rejectedTaskCount = new CountStatisticImpl(
+            "RejectedTaskCount", StatisticImpl.UNIT_COUNT,
+            "Number of tasks the executor could not accept");
+    private final CountStatisticImpl averageTaskLatency = new CountStatisticImpl(
+            "AverageTaskLatency", StatisticImpl.UNIT_MILLISECOND,
+            "Average time from a task being submitted to it completing");
+    private final CountStatisticImpl scheduledQueueDepth = new CountStatisticImpl(
+            "ScheduledQueueDepth", StatisticImpl.UNIT_COUNT,
+            "Number of scheduled tasks waiting to be run");
+    private final CountStatisticImpl scheduledActiveCount = new CountStatisticImpl(
+            "ScheduledActiveCount", StatisticImpl.UNIT_COUNT,
+            "Number of scheduled tasks currently running");
+    private final CountStatisticImpl scheduledCompletedTaskCount = new CountStatisticImpl(
+            "ScheduledCompletedTaskCount", StatisticImpl.UNIT_COUNT,
+            "Number of scheduled task runs completed");
+
+    public PayaraExecutorServiceStatsProvider(PayaraExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    @ManagedAttribute(id = "queuedepth")
+    @Description("Number of submitted tasks waiting to be run")
+    public CountStatistic getQueueDepth() {
+        queueDepth.setCount(executorService.getExecutorQueueDepth());
+        return queueDepth;
+    }
+
+    @ManagedAttribute(id = "activecount")
+    @Description("Number of submitted tasks currently running")
+    public CountStatistic getActiveCount() {
+        activeCount.setCount(executorService.getExecutorActiveCount());
+        return activeCount;
+    }
+
+    @ManagedAttribute(id = "completedtaskcount")
+    @Description("Number of submitted tasks completed")
+    public CountStatistic getCompletedTaskCount() {
+        completedTaskCount.setCount(executorService.getExecutorCompletedCount());
+        return completedTaskCount;
+    }
+
+    @ManagedAttribute(id = "rejectedtaskcount")
+    @Description("Number of tasks the executor could not accept")
+    public CountStatistic getRejectedTaskCount() {
+        rejectedTaskCount.setCount(executorService.getExecutorRejectedCount());
+        return rejectedTaskCount;
+    }
+
+    @ManagedAttribute(id = "averagetasklatency")
+    @Description("Average time from a task being submitted to it completing")
+    public CountStatistic getAverageTaskLatency() {
+        averageTaskLatency.setCount(Math.round(executorService.getExecutorAverageTaskLatency()));
+        return averageTaskLatency;
+    }
+
+    @ManagedAttribute(id = "scheduledqueuedepth")
+    @Description("Number of scheduled tasks waiting to be run")
+    public CountStatistic getScheduledQueueDepth() {
+        scheduledQueueDepth.setCount(executorService.getScheduledExecutorQueueDepth());
+        return scheduledQueueDepth;
+    }
+
+    @ManagedAttribute(id = "scheduledactivecount")
+    @Description("Number of scheduled tasks currently running")
+    public CountStatistic getScheduledActiveCount() {
+        scheduledActiveCount.setCount(executorService.getScheduledExecutorActiveCount());
+        return scheduledActiveCount;
+    }
+
+    @ManagedAttribute(id = "scheduledcompletedtaskcount")
+    @Description("Number of scheduled task runs completed")
+    public CountStatistic getScheduledCompletedTaskCount() {
+        scheduledCompletedTaskCount.setCount(executorService.getScheduledExecutorCompletedCount());
+        return scheduledCompletedTaskCount;
+    }
+}
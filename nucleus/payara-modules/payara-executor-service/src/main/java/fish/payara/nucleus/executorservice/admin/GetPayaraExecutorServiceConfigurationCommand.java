@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2017] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -78,7 +78,7 @@ public class GetPayaraExecutorServiceConfigurationCommand implements AdminComman
     @Param(name = "target", optional = true, defaultValue = "server-config")
     String target;
     
-    private static final String[] HEADERS = {"Thread Pool Executor Core Pool Size", 
+    private static final String[] HEADERS = {"Thread Pool Executor Type", "Thread Pool Executor Core Pool Size", 
             "Thread Pool Executor Max Pool Size", "Thread Pool Executor Keep Alive Time", 
             "Thread Pool Executor Keep Alive Time Unit", "Thread Pool Executor Queue Size", 
             "Scheduled Thread Pool Executor Core Pool Size"};
@@ -90,7 +90,8 @@ public class GetPayaraExecutorServiceConfigurationCommand implements AdminComman
                 PayaraExecutorServiceConfiguration.class);
 
         ColumnFormatter columnFormatter = new ColumnFormatter(HEADERS);
-        Object values[] = {payaraExecutorServiceConfiguration.getThreadPoolExecutorCorePoolSize(),
+        Object values[] = {payaraExecutorServiceConfiguration.getThreadPoolExecutorType(),
+                payaraExecutorServiceConfiguration.getThreadPoolExecutorCorePoolSize(),
                 payaraExecutorServiceConfiguration.getThreadPoolExecutorMaxPoolSize(),
                 payaraExecutorServiceConfiguration.getThreadPoolExecutorKeepAliveTime(),
                 payaraExecutorServiceConfiguration.getThreadPoolExecutorKeepAliveTimeUnit(),
@@ -103,12 +104,13 @@ public class GetPayaraExecutorServiceConfigurationCommand implements AdminComman
         Map<String, Object> map = new HashMap<>();
         Properties extraProps = new Properties();
         
-        map.put("threadPoolExecutorCorePoolSize", values[0]);
-        map.put("threadPoolExecutorMaxPoolSize", values[1]);
-        map.put("threadPoolExecutorKeepAliveTime", values[2]);
-        map.put("threadPoolExecutorKeepAliveTimeUnit", values[3]);
-        map.put("threadPoolExecutorQueueSize", values[4]);
-        map.put("scheduledThreadPoolExecutorCorePoolSize", values[5]);
+        map.put("threadPoolExecutorType", values[0]);
+        map.put("threadPoolExecutorCorePoolSize", values[1]);
+        map.put("threadPoolExecutorMaxPoolSize", values[2]);
+        map.put("threadPoolExecutorKeepAliveTime", values[3]);
+        map.put("threadPoolExecutorKeepAliveTimeUnit", values[4]);
+        map.put("threadPoolExecutorQueueSize", values[5]);
+        map.put("scheduledThreadPoolExecutorCorePoolSize", values[6]);
         extraProps.put("payaraExecutorServiceConfiguration", map);
 
         acc.getActionReport().setExtraProperties(extraProps);
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2017] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2017-2019] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -83,6 +83,10 @@ public class SetPayaraExecutorServiceConfigurationCommand implements AdminComman
     @Inject
     PayaraExecutorService payaraExecutorService;
     
+    @Param(name = "threadPoolExecutorType", optional = true, alias = "threadpoolexecutortype",
+            acceptableValues = "thread_pool,THREAD_POOL,fork_join,FORK_JOIN,virtual_thread,VIRTUAL_THREAD")
+    private String threadPoolExecutorType;
+
     @Param(name = "threadPoolExecutorCorePoolSize", optional = true, alias = "threadpoolexecutorcorepoolsize")
     private Integer threadPoolExecutorCorePoolSize;
     
@@ -115,6 +119,10 @@ public class SetPayaraExecutorServiceConfigurationCommand implements AdminComman
         if (payaraExecutorServiceConfiguration != null) {
             try {
                 ConfigSupport.apply((PayaraExecutorServiceConfiguration config) -> {
+                    if (threadPoolExecutorType != null) {
+                        config.setThreadPoolExecutorType(threadPoolExecutorType.toUpperCase());
+                    }
+
                     if (threadPoolExecutorCorePoolSize != null) {
                         config.setThreadPoolExecutorCorePoolSize(threadPoolExecutorCorePoolSize);
                     }
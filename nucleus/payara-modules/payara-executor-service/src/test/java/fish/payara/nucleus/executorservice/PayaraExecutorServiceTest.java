@@ -0,0 +1,205 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.nucleus.executorservice;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.jvnet.hk2.config.Attribute;
+
+public class PayaraExecutorServiceTest {
+
+    private PayaraExecutorService service;
+
+    @After
+    public void shutdown() {
+        if (service != null) {
+            service.getUnderlyingExecutorService().shutdownNow();
+            service.getUnderlyingScheduledExecutorService().shutdownNow();
+        }
+    }
+
+    @Test
+    public void testThreadPoolMetrics() throws Exception {
+        service = createService("THREAD_POOL", 1, 10);
+        assertTaskMetrics(service);
+    }
+
+    @Test
+    public void testForkJoinMetrics() throws Exception {
+        service = createService("FORK_JOIN", 1, 10);
+        assertTaskMetrics(service);
+    }
+
+    @Test
+    public void testThreadPoolCountsTasksRunByCaller() throws Exception {
+        service = createService("THREAD_POOL", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        service.submit(() -> awaitQuietly(release));
+        service.submit(() -> awaitQuietly(release));
+
+        // Neither a thread nor the queue is free, so this one runs on the submitting thread
+        Future<?> callerRun = service.submit(() -> { });
+        assertTrue(callerRun.isDone());
+        assertEquals(1, service.getExecutorRejectedCount());
+
+        release.countDown();
+        waitForCompleted(service, 3);
+        assertEquals(0, service.getExecutorQueueDepth());
+        assertEquals(0, service.getExecutorActiveCount());
+    }
+
+    @Test
+    public void testRefusedTasksCounted() throws Exception {
+        service = createService("FORK_JOIN", 1, 10);
+        service.getUnderlyingExecutorService().shutdown();
+        try {
+            service.submit(() -> { });
+            fail("Task should have been refused");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(1, service.getExecutorRejectedCount());
+        assertEquals(0, service.getExecutorQueueDepth());
+    }
+
+    @Test
+    public void testScheduledMetrics() throws Exception {
+        service = createService("THREAD_POOL", 1, 10);
+        PayaraExecutorServiceStatsProvider stats = new PayaraExecutorServiceStatsProvider(service);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        service.schedule(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        }, 0, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> later = service.schedule(() -> { }, 1, TimeUnit.HOURS);
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(1, stats.getScheduledActiveCount().getCount());
+        assertEquals(1, stats.getScheduledQueueDepth().getCount());
+
+        later.cancel(false);
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (stats.getScheduledCompletedTaskCount().getCount() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, stats.getScheduledCompletedTaskCount().getCount());
+        assertEquals(0, stats.getScheduledQueueDepth().getCount());
+    }
+
+    private static void assertTaskMetrics(PayaraExecutorService service) throws Exception {
+        PayaraExecutorServiceStatsProvider stats = new PayaraExecutorServiceStatsProvider(service);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> running = service.submit(() -> {
+            started.countDown();
+            awaitQuietly(release);
+            return "done";
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // The pool has a single thread, so this one waits for the first
+        service.submit(() -> awaitQuietly(release));
+
+        assertEquals(1, stats.getActiveCount().getCount());
+        assertEquals(1, stats.getQueueDepth().getCount());
+        assertEquals(0, stats.getCompletedTaskCount().getCount());
+
+        Thread.sleep(20);
+        release.countDown();
+        assertEquals("done", running.get(10, TimeUnit.SECONDS));
+        waitForCompleted(service, 2);
+
+        assertEquals(0, stats.getActiveCount().getCount());
+        assertEquals(0, stats.getQueueDepth().getCount());
+        assertEquals(2, stats.getCompletedTaskCount().getCount());
+        assertEquals(0, stats.getRejectedTaskCount().getCount());
+        assertTrue("Latency should include the time spent blocked", service.getExecutorAverageTaskLatency() >= 20);
+    }
+
+    private static void waitForCompleted(PayaraExecutorService service, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (service.getExecutorCompletedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, service.getExecutorCompletedCount());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static PayaraExecutorService createService(String type, int poolSize, int queueSize) {
+        Map<String, String> values = new HashMap<>();
+        values.put("getThreadPoolExecutorType", type);
+        values.put("getThreadPoolExecutorCorePoolSize", String.valueOf(poolSize));
+        values.put("getThreadPoolExecutorMaxPoolSize", String.valueOf(poolSize));
+        values.put("getThreadPoolExecutorQueueSize", String.valueOf(queueSize));
+        values.put("getScheduledThreadPoolExecutorCorePoolSize", "1");
+
+        PayaraExecutorService service = new PayaraExecutorService();
+        service.payaraExecutorServiceConfiguration = (PayaraExecutorServiceConfiguration) Proxy.newProxyInstance(
+                PayaraExecutorServiceTest.class.getClassLoader(),
+                new Class<?>[] { PayaraExecutorServiceConfiguration.class },
+                (proxy, method, args) -> {
+                    if (values.containsKey(method.getName())) {
+                        return values.get(method.getName());
+                    }
+                    Attribute attribute = method.getAnnotation(Attribute.class);
+                    return attribute == null ? null : attribute.defaultValue();
+                });
+        service.postConstruct();
+        return service;
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -100,6 +100,14 @@ public class RequestTraceSpanStore {
         spanStore.set(new RequestTrace());
     }
 
+    /**
+     * Clears the stored request trace, reusing it for the next trace on this thread. Only to be used when the
+     * trace has not been passed on, for example when it did not exceed the threshold.
+     */
+    void clearStore() {
+        spanStore.get().clear();
+    }
+
     /**
      * Returns the full request trace as a string
      * @return A JSON-style representation of the request trace
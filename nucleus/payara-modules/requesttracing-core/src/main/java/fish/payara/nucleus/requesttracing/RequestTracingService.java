@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -341,13 +341,17 @@ public class RequestTracingService implements EventListener, ConfigListener {
      * @return a unique identifier for the request trace
      */
     public RequestTraceSpan startTrace(String traceName) {
-        return startTrace(new RequestTraceSpan(EventType.TRACE_START, traceName));
+        if (shouldStartTrace()) {
+            RequestTraceSpan span = new RequestTraceSpan(EventType.TRACE_START, traceName);
+            requestEventStore.storeEvent(span);
+            return span;
+        } else {
+            return null;
+        }
     }
 
     public RequestTraceSpan startTrace(RequestTraceSpan span) {
         if (shouldStartTrace()) {
-            span.addSpanTag("Server", server.getName());
-            span.addSpanTag("Domain", domain.getName());
             requestEventStore.storeEvent(span);
             return span;
         } else {
@@ -357,8 +361,6 @@ public class RequestTracingService implements EventListener, ConfigListener {
 
     public RequestTraceSpan startTrace(RequestTraceSpan span, long timestampMillis) {
         if (shouldStartTrace()) {
-            span.addSpanTag("Server", server.getName());
-            span.addSpanTag("Domain", domain.getName());
             requestEventStore.storeEvent(span, timestampMillis);
             return span;
         } else {
@@ -373,8 +375,6 @@ public class RequestTracingService implements EventListener, ConfigListener {
         }
         RequestTraceSpan span = new RequestTraceSpan(EventType.PROPAGATED_TRACE, traceName,
                 propagatedTraceId, propagatedParentId, propagatedRelationshipType);
-        span.addSpanTag("Server", server.getName());
-        span.addSpanTag("Domain", domain.getName());
         requestEventStore.storeEvent(span);
         return span;
     }
@@ -430,11 +430,15 @@ public class RequestTracingService implements EventListener, ConfigListener {
             // Determine whether to sample the request, if sampleRateFirstEnabled is false
             if (!executionOptions.getSampleRateFirstEnabled()) {
                 if (!sampleFilter.sample()) {
-                    requestEventStore.flushStore();
+                    requestEventStore.clearStore();
                     return;
                 }
             }
             RequestTrace requestTrace = requestEventStore.getTrace();
+            // Only traces that are kept are tagged, so traces under the threshold don't pay for it
+            RequestTraceSpan rootSpan = requestTrace.getTraceSpans().getFirst();
+            rootSpan.addSpanTag("Server", server.getName());
+            rootSpan.addSpanTag("Domain", domain.getName());
             
             Runnable addTask = () -> {
                 RequestTrace removedTrace = requestTraceStore.addTrace(requestTrace);
@@ -464,8 +468,11 @@ public class RequestTracingService implements EventListener, ConfigListener {
                     notificationService.notify(EventSource.REQUESTTRACING, notificationEvent);
                 }
             }
+            // The trace has been handed off, so the thread needs a new one
+            requestEventStore.flushStore();
+            return;
         }
-        requestEventStore.flushStore();
+        requestEventStore.clearStore();
     }
 
     public void addSpanLog(RequestTraceSpanLog spanLog) {
@@ -0,0 +1,182 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.nucleus.requesttracing.store;
+
+import fish.payara.notification.requesttracing.RequestTrace;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * A store of {@link RequestTrace} objects that keeps the longest traces.
+ * Stores the list locally and is safe to be used from many request threads at once.
+ * <p>
+ * Traces are kept in their natural ordering (longest first), so finding the shortest trace to evict
+ * is a single {@link ConcurrentSkipListSet#pollLast()} rather than a scan of the whole store.
+ */
+public class ConcurrentLongestRequestTraceStore implements RequestTraceStoreInterface {
+
+    private final ConcurrentSkipListSet<RequestTrace> store;
+    private final AtomicInteger size;
+    private volatile int maxStoreSize;
+
+    ConcurrentLongestRequestTraceStore() {
+        this.store = new ConcurrentSkipListSet<>();
+        this.size = new AtomicInteger();
+        this.maxStoreSize = 0;
+    }
+
+    @Override
+    public RequestTrace addTrace(RequestTrace trace) {
+        return addTrace(trace, null);
+    }
+
+    @Override
+    public RequestTrace addTrace(RequestTrace trace, RequestTrace traceToRemove) {
+        if (!store.add(trace)) {
+            return null;
+        }
+        if (size.incrementAndGet() <= maxStoreSize) {
+            return null;
+        }
+
+        if (traceToRemove != null && remove(traceToRemove)) {
+            return traceToRemove;
+        }
+        RequestTrace removedTrace = store.pollLast();
+        if (removedTrace != null) {
+            size.decrementAndGet();
+        }
+        return removedTrace;
+    }
+
+    @Override
+    public Collection<RequestTrace> getTraces() {
+        return new TraceView();
+    }
+
+    @Override
+    public Collection<RequestTrace> getTraces(int limit) {
+        return store.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public void setSize(int maxSize) {
+        store.clear();
+        size.set(0);
+        this.maxStoreSize = maxSize;
+    }
+
+    @Override
+    public int getStoreSize() {
+        return size.get();
+    }
+
+    @Override
+    public Collection<RequestTrace> emptyStore() {
+        List<RequestTrace> traces = new ArrayList<>(size.get());
+        RequestTrace trace;
+        while ((trace = store.pollFirst()) != null) {
+            size.decrementAndGet();
+            traces.add(trace);
+        }
+        return traces;
+    }
+
+    private boolean remove(Object trace) {
+        if (store.remove(trace)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A live view of the store which keeps the size count in step when traces are removed through it.
+     */
+    private final class TraceView extends AbstractCollection<RequestTrace> {
+
+        @Override
+        public Iterator<RequestTrace> iterator() {
+            Iterator<RequestTrace> iterator = store.iterator();
+            return new Iterator<RequestTrace>() {
+
+                private RequestTrace current;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public RequestTrace next() {
+                    current = iterator.next();
+                    return current;
+                }
+
+                @Override
+                public void remove() {
+                    ConcurrentLongestRequestTraceStore.this.remove(current);
+                }
+            };
+        }
+
+        @Override
+        public boolean remove(Object trace) {
+            return ConcurrentLongestRequestTraceStore.this.remove(trace);
+        }
+
+        @Override
+        public boolean contains(Object trace) {
+            return store.contains(trace);
+        }
+
+        @Override
+        public int size() {
+            return size.get();
+        }
+    }
+
+}
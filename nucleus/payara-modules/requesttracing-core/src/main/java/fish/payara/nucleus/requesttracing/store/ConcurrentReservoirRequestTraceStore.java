@@ -0,0 +1,228 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.nucleus.requesttracing.store;
+
+import fish.payara.notification.requesttracing.RequestTrace;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+/**
+ * A store of {@link RequestTrace} objects that keeps a uniform sample of the traces it has seen, according to a
+ * reservoir sampling algorithm. https://en.wikipedia.org/wiki/Reservoir_sampling.
+ * Stores the list locally and is safe to be used from many request threads at once.
+ * <p>
+ * Each trace claims a position from an atomic counter, so adding a trace never locks and never scans the store.
+ */
+public class ConcurrentReservoirRequestTraceStore implements RequestTraceStoreInterface {
+
+    private volatile Reservoir reservoir;
+
+    ConcurrentReservoirRequestTraceStore() {
+        this.reservoir = new Reservoir(0);
+    }
+
+    @Override
+    public RequestTrace addTrace(RequestTrace trace) {
+        Reservoir current = reservoir;
+        int capacity = current.slots.length();
+        long count = current.counter.incrementAndGet();
+        if (count <= capacity) {
+            current.slots.set((int) (count - 1), trace);
+            return null;
+        }
+
+        // Probability of keeping the new item is capacity / count
+        long itemToReplace = ThreadLocalRandom.current().nextLong(count);
+        if (itemToReplace >= capacity) {
+            return null;
+        }
+        return current.slots.getAndSet((int) itemToReplace, trace);
+    }
+
+    /**
+     * Adds a trace, replacing the specified trace if present or a random trace otherwise. This method assumes that
+     * the reservoir style removal probability has already been calculated and come out positive.
+     *
+     * @param trace The trace to add
+     * @param traceToRemove The trace to remove if present
+     * @return The trace that was removed, or null if no trace was removed
+     */
+    @Override
+    public RequestTrace addTrace(RequestTrace trace, RequestTrace traceToRemove) {
+        Reservoir current = reservoir;
+        int capacity = current.slots.length();
+        long count = current.counter.incrementAndGet();
+        if (count <= capacity) {
+            current.slots.set((int) (count - 1), trace);
+            return null;
+        }
+        if (capacity == 0) {
+            return null;
+        }
+
+        if (traceToRemove != null) {
+            for (int i = 0; i < capacity; i++) {
+                if (current.slots.compareAndSet(i, traceToRemove, trace)) {
+                    return traceToRemove;
+                }
+            }
+        }
+        return current.slots.getAndSet(ThreadLocalRandom.current().nextInt(capacity), trace);
+    }
+
+    @Override
+    public Collection<RequestTrace> getTraces() {
+        return new TraceView(reservoir);
+    }
+
+    @Override
+    public Collection<RequestTrace> getTraces(int limit) {
+        return reservoir.traces().stream().limit(limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public void setSize(int maxSize) {
+        this.reservoir = new Reservoir(maxSize);
+    }
+
+    @Override
+    public int getStoreSize() {
+        return reservoir.traces().size();
+    }
+
+    @Override
+    public Collection<RequestTrace> emptyStore() {
+        Reservoir emptied = reservoir;
+        this.reservoir = new Reservoir(emptied.slots.length());
+        return emptied.traces();
+    }
+
+    /**
+     * The slots of the reservoir together with the number of traces offered to it. Replaced as a whole when the
+     * store is resized or emptied so that concurrent writers never see a half reset store.
+     */
+    private static final class Reservoir {
+
+        private final AtomicReferenceArray<RequestTrace> slots;
+        private final AtomicLong counter;
+
+        Reservoir(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.counter = new AtomicLong();
+        }
+
+        List<RequestTrace> traces() {
+            List<RequestTrace> traces = new ArrayList<>(slots.length());
+            for (int i = 0; i < slots.length(); i++) {
+                RequestTrace trace = slots.get(i);
+                if (trace != null) {
+                    traces.add(trace);
+                }
+            }
+            return traces;
+        }
+
+        boolean remove(Object trace) {
+            for (int i = 0; i < slots.length(); i++) {
+                if (trace != null && slots.compareAndSet(i, (RequestTrace) trace, null)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A view of the traces held by the reservoir. Removing a trace through the view empties its slot.
+     */
+    private static final class TraceView extends AbstractCollection<RequestTrace> {
+
+        private final Reservoir reservoir;
+        private final List<RequestTrace> traces;
+
+        TraceView(Reservoir reservoir) {
+            this.reservoir = reservoir;
+            this.traces = reservoir.traces();
+        }
+
+        @Override
+        public Iterator<RequestTrace> iterator() {
+            Iterator<RequestTrace> iterator = traces.iterator();
+            return new Iterator<RequestTrace>() {
+
+                private RequestTrace current;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public RequestTrace next() {
+                    current = iterator.next();
+                    return current;
+                }
+
+                @Override
+                public void remove() {
+                    reservoir.remove(current);
+                }
+            };
+        }
+
+        @Override
+        public boolean remove(Object trace) {
+            return reservoir.remove(trace);
+        }
+
+        @Override
+        public int size() {
+            return traces.size();
+        }
+    }
+
+}
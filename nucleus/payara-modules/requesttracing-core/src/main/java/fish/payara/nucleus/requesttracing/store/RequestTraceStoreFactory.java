@@ -75,23 +75,26 @@ public class RequestTraceStoreFactory {
             storeName = REQUEST_TRACE_STORE;
         }
 
-        // Determines a strategy for adding items to the store
-        TraceStorageStrategy strategy;
-        if (reservoirSamplingEnabled) {
-            strategy = new ReservoirTraceStorageStrategy();
-        } else {
-            strategy = new LongestTraceStorageStrategy();
-        }
-
         // Get a clustered store if possible
         ClusteredStore clusteredStore = Globals.getDefaultHabitat().getService(ClusteredStore.class);
         if (clusteredStore != null && clusteredStore.isEnabled()) {
+            // Determines a strategy for adding items to the store
+            TraceStorageStrategy strategy;
+            if (reservoirSamplingEnabled) {
+                strategy = new ReservoirTraceStorageStrategy();
+            } else {
+                strategy = new LongestTraceStorageStrategy();
+            }
+
             MultiMap<String, RequestTrace> store = (MultiMap) clusteredStore.getMultiMap(storeName);
             return new ClusteredRequestTraceStore(store, clusteredStore.getInstanceId(), strategy);
         }
 
-        // Otherwise get a local store
-        return new LocalRequestTraceStore(strategy);
+        // Otherwise get a local store, which does its own removal without scanning the stored traces
+        if (reservoirSamplingEnabled) {
+            return new ConcurrentReservoirRequestTraceStore();
+        }
+        return new ConcurrentLongestRequestTraceStore();
     }
 
 }
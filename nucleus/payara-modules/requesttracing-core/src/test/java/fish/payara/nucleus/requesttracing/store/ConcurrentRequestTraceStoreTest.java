@@ -0,0 +1,206 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.nucleus.requesttracing.store;
+
+import fish.payara.notification.requesttracing.EventType;
+import fish.payara.notification.requesttracing.RequestTrace;
+import fish.payara.notification.requesttracing.RequestTraceSpan;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentRequestTraceStoreTest {
+
+    private static final int STORE_SIZE = 20;
+    private static final int TRACES_PER_THREAD = 2000;
+
+    @Test
+    public void longestStoreKeepsLongestTraces() {
+        RequestTraceStoreInterface store = new ConcurrentLongestRequestTraceStore();
+        store.setSize(3);
+
+        assertNull(store.addTrace(createTrace(100, 0)));
+        assertNull(store.addTrace(createTrace(300, 1)));
+        assertNull(store.addTrace(createTrace(200, 2)));
+        RequestTrace removed = store.addTrace(createTrace(400, 3));
+
+        assertEquals(100, removed.getElapsedTime(), 5);
+        assertEquals(3, store.getStoreSize());
+        for (RequestTrace trace : store.getTraces()) {
+            assertTrue(trace.getElapsedTime() >= 200);
+        }
+    }
+
+    @Test
+    public void longestStoreRemovesRequestedTrace() {
+        RequestTraceStoreInterface store = new ConcurrentLongestRequestTraceStore();
+        store.setSize(2);
+        RequestTrace longest = createTrace(500, 0);
+        store.addTrace(longest);
+        store.addTrace(createTrace(100, 1));
+
+        assertEquals(longest, store.addTrace(createTrace(300, 2), longest));
+        assertFalse(store.getTraces().contains(longest));
+        assertEquals(2, store.getStoreSize());
+    }
+
+    @Test
+    public void removingThroughTracesUpdatesStoreSize() {
+        RequestTraceStoreInterface store = new ConcurrentLongestRequestTraceStore();
+        store.setSize(5);
+        RequestTrace trace = createTrace(100, 0);
+        store.addTrace(trace);
+        store.addTrace(createTrace(200, 1));
+
+        Collection<RequestTrace> traces = store.getTraces();
+        assertTrue(traces.remove(trace));
+        assertEquals(1, store.getStoreSize());
+        assertEquals(1, store.emptyStore().size());
+        assertEquals(0, store.getStoreSize());
+    }
+
+    @Test
+    public void reservoirStoreKeepsEveryTraceUntilFull() {
+        RequestTraceStoreInterface store = new ConcurrentReservoirRequestTraceStore();
+        store.setSize(3);
+
+        assertNull(store.addTrace(createTrace(100, 0)));
+        assertNull(store.addTrace(createTrace(200, 1)));
+        assertNull(store.addTrace(createTrace(300, 2)));
+        assertEquals(3, store.getStoreSize());
+
+        for (int i = 3; i < 100; i++) {
+            store.addTrace(createTrace(100, i));
+        }
+        assertEquals(3, store.getStoreSize());
+    }
+
+    @Test
+    public void reservoirStoreRemovesThroughTraces() {
+        RequestTraceStoreInterface store = new ConcurrentReservoirRequestTraceStore();
+        store.setSize(3);
+        RequestTrace trace = createTrace(100, 0);
+        store.addTrace(trace);
+        store.addTrace(createTrace(200, 1));
+
+        assertTrue(store.getTraces().remove(trace));
+        assertEquals(1, store.getStoreSize());
+        assertEquals(1, store.emptyStore().size());
+        assertEquals(0, store.getStoreSize());
+    }
+
+    @Test
+    public void longestStoreStaysBoundedUnderContention() throws Exception {
+        for (int threads : new int[]{1, 8, 64}) {
+            RequestTraceStoreInterface store = new ConcurrentLongestRequestTraceStore();
+            store.setSize(STORE_SIZE);
+            addConcurrently(store, threads);
+
+            assertEquals(STORE_SIZE, store.getStoreSize());
+            assertEquals(STORE_SIZE, store.getTraces().size());
+            // The slowest trace of each thread is the last one it adds
+            for (RequestTrace trace : store.getTraces()) {
+                assertTrue(trace.getElapsedTime() >= TRACES_PER_THREAD - STORE_SIZE);
+            }
+        }
+    }
+
+    @Test
+    public void reservoirStoreStaysBoundedUnderContention() throws Exception {
+        for (int threads : new int[]{1, 8, 64}) {
+            RequestTraceStoreInterface store = new ConcurrentReservoirRequestTraceStore();
+            store.setSize(STORE_SIZE);
+            addConcurrently(store, threads);
+
+            assertEquals(STORE_SIZE, store.getStoreSize());
+        }
+    }
+
+    private static void addConcurrently(RequestTraceStoreInterface store, int threads) throws Exception {
+        List<List<RequestTrace>> traces = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            List<RequestTrace> threadTraces = new ArrayList<>();
+            for (int i = 0; i < TRACES_PER_THREAD; i++) {
+                threadTraces.add(createTrace(i, thread * TRACES_PER_THREAD + i));
+            }
+            traces.add(threadTraces);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (List<RequestTrace> threadTraces : traces) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    threadTraces.forEach(store::addTrace);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static RequestTrace createTrace(long elapsedMillis, int id) {
+        RequestTraceSpan span = new RequestTraceSpan(EventType.TRACE_START, "Trace " + id);
+        span.setStartInstant(Instant.now().minusMillis(elapsedMillis).minusNanos(id));
+        RequestTrace trace = new RequestTrace();
+        trace.addEvent(span);
+        trace.endTrace();
+        return trace;
+    }
+}
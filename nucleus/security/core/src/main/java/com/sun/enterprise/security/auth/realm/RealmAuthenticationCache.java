@@ -0,0 +1,295 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.security.auth.realm;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded cache of authentication results for realms which check credentials against an external store, such as a
+ * database or a directory server.
+ * <p>
+ * Passwords are never kept: each entry holds a salted SHA-256 hash of the password that was checked, so a cached
+ * result is only returned for the same password. Failed authentications are cached too, for a shorter time, so
+ * repeated attempts with a wrong password don't reach the store either.
+ * <p>
+ * The cache is configured with the following realm properties:
+ * <ul>
+ * <li>auth-cache-ttl : seconds a successful authentication is kept, 0 disables the cache (default 0, so a realm only
+ * caches once this is set)
+ * <li>auth-cache-negative-ttl : seconds a failed authentication is kept when the cache is enabled (default 10)
+ * <li>auth-cache-size : maximum number of users kept (default 1000)
+ * </ul>
+ */
+public class RealmAuthenticationCache {
+
+    public static final String PARAM_CACHE_TTL = "auth-cache-ttl";
+    public static final String PARAM_CACHE_NEGATIVE_TTL = "auth-cache-negative-ttl";
+    public static final String PARAM_CACHE_SIZE = "auth-cache-size";
+
+    private static final long DEFAULT_CACHE_TTL = 0;
+    private static final long DEFAULT_CACHE_NEGATIVE_TTL = 10;
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final int SALT_LENGTH = 16;
+
+    private static final RealmsProbeProvider probeProvider = new RealmsProbeProvider();
+    private static final SecureRandom saltGenerator = new SecureRandom();
+    private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final String realmName;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final int maxSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache configured from the given realm properties.
+     *
+     * @param realmName name of the realm, used when reporting statistics
+     * @param props the realm properties
+     * @exception BadRealmException if one of the cache properties is not a number
+     */
+    public RealmAuthenticationCache(String realmName, Properties props) throws BadRealmException {
+        this(realmName,
+                getLongProperty(props, PARAM_CACHE_TTL, DEFAULT_CACHE_TTL) * 1000,
+                getLongProperty(props, PARAM_CACHE_NEGATIVE_TTL, DEFAULT_CACHE_NEGATIVE_TTL) * 1000,
+                (int) getLongProperty(props, PARAM_CACHE_SIZE, DEFAULT_CACHE_SIZE));
+    }
+
+    public RealmAuthenticationCache(String realmName, long ttlMillis, long negativeTtlMillis, int maxSize) {
+        this.realmName = realmName;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return ttlMillis > 0 && maxSize > 0;
+    }
+
+    /**
+     * Looks up the result of a previous authentication of the user with the same password.
+     *
+     * @param username name of the user
+     * @param password password given by the user
+     * @return the cached result, or null if the user wasn't authenticated with this password recently
+     */
+    public Result get(String username, char[] password) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = entries.get(username);
+        if (entry != null && entry.hash != null && !entry.isExpired(System.currentTimeMillis())
+                && MessageDigest.isEqual(entry.hash, hash(entry.salt, password))) {
+            probeProvider.authenticationCacheHitEvent(realmName);
+            return entry.result;
+        }
+        probeProvider.authenticationCacheMissEvent(realmName);
+        return null;
+    }
+
+    /**
+     * Caches the result of authenticating the user with the given password.
+     *
+     * @param username name of the user
+     * @param password password given by the user
+     * @param groups the groups of the user, or null if authentication failed
+     */
+    public void put(String username, char[] password, String[] groups) {
+        if (!isEnabled()) {
+            return;
+        }
+        byte[] salt = new byte[SALT_LENGTH];
+        saltGenerator.nextBytes(salt);
+        long ttl = groups == null ? negativeTtlMillis : ttlMillis;
+        if (ttl <= 0) {
+            return;
+        }
+        put(username, new Entry(salt, hash(salt, password), new Result(groups), System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Gets the groups of a user which authenticated successfully, or whose groups were cached with
+     * {@link #putGroups(String, String[])}, without checking a password.
+     *
+     * @param username name of the user
+     * @return the groups of the user, or null if they aren't cached
+     */
+    public String[] getGroups(String username) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = entries.get(username);
+        if (entry == null || entry.isExpired(System.currentTimeMillis()) || !entry.result.isAuthenticated()) {
+            return null;
+        }
+        return entry.result.getGroups();
+    }
+
+    /**
+     * Caches the groups of a user looked up without authentication.
+     *
+     * @param username name of the user
+     * @param groups the groups of the user
+     */
+    public void putGroups(String username, String[] groups) {
+        if (!isEnabled() || groups == null) {
+            return;
+        }
+        put(username, new Entry(null, null, new Result(groups), System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Removes a user from the cache, for example after the user was updated.
+     *
+     * @param username name of the user
+     */
+    public void remove(String username) {
+        entries.remove(username);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private void put(String username, Entry entry) {
+        if (entries.size() >= maxSize && !entries.containsKey(username)) {
+            evict();
+        }
+        entries.put(username, entry);
+    }
+
+    /**
+     * Makes room for a new entry: first drops expired entries and, if that isn't enough, an arbitrary tenth of the
+     * cache, which is cheaper than keeping track of the least recently used users.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        int toRemove = entries.size() - maxSize + Math.max(1, maxSize / 10);
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (toRemove-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static byte[] hash(byte[] salt, char[] password) {
+        ByteBuffer passwordBytes = UTF_8.encode(CharBuffer.wrap(password));
+        MessageDigest digest = digests.get();
+        digest.reset();
+        digest.update(salt);
+        digest.update(passwordBytes);
+        if (passwordBytes.hasArray()) {
+            Arrays.fill(passwordBytes.array(), (byte) 0);
+        }
+        return digest.digest();
+    }
+
+    private static long getLongProperty(Properties props, String name, long defaultValue) throws BadRealmException {
+        String value = props.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRealmException(e);
+        }
+    }
+
+    /**
+     * The cached result of an authentication.
+     */
+    public static final class Result {
+
+        private final String[] groups;
+
+        private Result(String[] groups) {
+            this.groups = groups;
+        }
+
+        public boolean isAuthenticated() {
+            return groups != null;
+        }
+
+        /**
+         * @return a copy of the groups of the user, or null if the authentication failed
+         */
+        public String[] getGroups() {
+            return groups == null ? null : groups.clone();
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] salt;
+        private final byte[] hash;
+        private final Result result;
+        private final long expiry;
+
+        private Entry(byte[] salt, byte[] hash, Result result, long expiry) {
+            this.salt = salt;
+            this.hash = hash;
+            this.result = result;
+            this.expiry = expiry;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiry;
+        }
+    }
+}
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2018] [Payara Foundation]
+// Portions Copyright [2016-2019] [Payara Foundation]
 package com.sun.enterprise.security.auth.realm;
 
 import org.glassfish.external.statistics.CountStatistic;
@@ -57,9 +57,15 @@ import org.glassfish.gmbal.*;
 public class RealmStatsProvider {
 
     private CountStatisticImpl realmCount;
+    private CountStatisticImpl authenticationCacheHitCount;
+    private CountStatisticImpl authenticationCacheMissCount;
 
     public RealmStatsProvider() {
         realmCount = new CountStatisticImpl("RealmCount", "realm", "No of Realms");
+        authenticationCacheHitCount = new CountStatisticImpl("AuthenticationCacheHitCount", CountStatisticImpl.UNIT_COUNT,
+                "No of authentications answered from the realm authentication caches");
+        authenticationCacheMissCount = new CountStatisticImpl("AuthenticationCacheMissCount", CountStatisticImpl.UNIT_COUNT,
+                "No of authentications not found in the realm authentication caches");
     }
 
     @ManagedAttribute
@@ -68,6 +74,18 @@ public class RealmStatsProvider {
         return realmCount;
     }
 
+    @ManagedAttribute
+    @Description("Realm Authentication Cache Hit Count")
+    public CountStatistic getAuthenticationCacheHitCount() {
+        return authenticationCacheHitCount;
+    }
+
+    @ManagedAttribute
+    @Description("Realm Authentication Cache Miss Count")
+    public CountStatistic getAuthenticationCacheMissCount() {
+        return authenticationCacheMissCount;
+    }
+
     @ProbeListener("glassfish:security:realm:realmAddedEvent")
     public void realmAddedEvent(@ProbeParam("realmName") String realmName) {
         realmCount.increment();
@@ -78,4 +96,14 @@ public class RealmStatsProvider {
         realmCount.decrement();
     }
 
+    @ProbeListener("glassfish:security:realm:authenticationCacheHitEvent")
+    public void authenticationCacheHitEvent(@ProbeParam("realmName") String realmName) {
+        authenticationCacheHitCount.increment();
+    }
+
+    @ProbeListener("glassfish:security:realm:authenticationCacheMissEvent")
+    public void authenticationCacheMissEvent(@ProbeParam("realmName") String realmName) {
+        authenticationCacheMissCount.increment();
+    }
+
 }
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2018-2019] [Payara Foundation and/or its affiliates]
 package com.sun.enterprise.security.auth.realm;
 
 import org.glassfish.external.probe.provider.annotations.ProbeProvider;
@@ -59,4 +59,12 @@ public class RealmsProbeProvider {
     public void realmRemovedEvent(@ProbeParam("realmName") String realmName) {
     }
 
+    @Probe(name = "authenticationCacheHitEvent")
+    public void authenticationCacheHitEvent(@ProbeParam("realmName") String realmName) {
+    }
+
+    @Probe(name = "authenticationCacheMissEvent")
+    public void authenticationCacheMissEvent(@ProbeParam("realmName") String realmName) {
+    }
+
 }
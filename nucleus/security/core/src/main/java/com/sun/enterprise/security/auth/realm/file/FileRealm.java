@@ -64,6 +64,7 @@ import com.sun.enterprise.security.auth.realm.BadRealmException;
 import com.sun.enterprise.security.auth.realm.InvalidOperationException;
 import com.sun.enterprise.security.auth.realm.NoSuchRealmException;
 import com.sun.enterprise.security.auth.realm.NoSuchUserException;
+import com.sun.enterprise.security.auth.realm.RealmAuthenticationCache;
 import com.sun.enterprise.security.auth.realm.User;
 
 /**
@@ -102,6 +103,8 @@ public final class FileRealm extends BaseRealm {
 
     private FileRealmStorageManager fileRealmStorageManager;
 
+    private RealmAuthenticationCache authenticationCache;
+
     /**
      * Returns a short (preferably less than fifteen characters) description of the kind of authentication which is
      * supported by this realm.
@@ -191,6 +194,9 @@ public final class FileRealm extends BaseRealm {
         } catch (IOException ioe) {
             throw new BadRealmException(sm.getString("filerealm.noaccess", ioe.toString()));
         }
+
+        // Saves hashing the password again with the iterated SSHA algorithm of the keyfile on every request
+        authenticationCache = new RealmAuthenticationCache(getName(), props);
     }
 
     /**
@@ -207,12 +213,18 @@ public final class FileRealm extends BaseRealm {
      *
      */
     public String[] authenticate(String user, char[] password) {
+        RealmAuthenticationCache.Result cachedResult = authenticationCache.get(user, password);
+        if (cachedResult != null) {
+            return cachedResult.getGroups();
+        }
+
         String groups[] = fileRealmStorageManager.authenticate(user, password);
 
         if (groups != null) {
             groups = addAssignGroups(groups);
         }
 
+        authenticationCache.put(user, password, groups);
         return groups;
     }
 
@@ -329,6 +341,8 @@ public final class FileRealm extends BaseRealm {
             newFileRealm.init(getProperties());
 
             updateInstance(newFileRealm, getName());
+            // Sessions still holding this instance must not authenticate against the old keyfile contents
+            authenticationCache.clear();
         } catch (Exception e) {
             throw new BadRealmException(e.toString());
         }
@@ -355,6 +369,8 @@ public final class FileRealm extends BaseRealm {
             newFileRealm.init(getProperties());
 
             updateInstance(configName, newFileRealm, getName());
+            // Sessions still holding this instance must not authenticate against the old keyfile contents
+            authenticationCache.clear();
         } catch (Exception e) {
             throw new BadRealmException(e.toString());
         }
@@ -372,6 +388,7 @@ public final class FileRealm extends BaseRealm {
     @Override
     public void addUser(String name, char[] password, String[] groupList) {
         fileRealmStorageManager.addUser(name, password, groupList);
+        authenticationCache.remove(name);
     }
 
     /**
@@ -384,6 +401,7 @@ public final class FileRealm extends BaseRealm {
     @Override
     public void removeUser(String name) {
         fileRealmStorageManager.removeUser(name);
+        authenticationCache.remove(name);
     }
 
     /**
@@ -402,6 +420,8 @@ public final class FileRealm extends BaseRealm {
     @Override
     public void updateUser(String name, String newName, char[] password, String[] groups) {
         fileRealmStorageManager.updateUser(name, newName, password, groups);
+        authenticationCache.remove(name);
+        authenticationCache.remove(newName);
     }
 
     /**
@@ -50,11 +50,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 
@@ -79,6 +79,7 @@ import com.sun.enterprise.security.auth.realm.BadRealmException;
 import com.sun.enterprise.security.auth.realm.InvalidOperationException;
 import com.sun.enterprise.security.auth.realm.NoSuchRealmException;
 import com.sun.enterprise.security.auth.realm.NoSuchUserException;
+import com.sun.enterprise.security.auth.realm.RealmAuthenticationCache;
 
 /**
  * Realm wrapper for supporting LDAP authentication.
@@ -111,6 +112,7 @@ import com.sun.enterprise.security.auth.realm.NoSuchUserException;
  *   <li>search-bind-dn - The dn of ldap user. optional and no default value.
  *   <li>search-bind-password - The password of search-bind-dn.optional and no default value.
  *   <li>pool-size - The JNDI ldap connection pool size.
+ *   <li>auth-cache-ttl, auth-cache-negative-ttl, auth-cache-size - See {@link RealmAuthenticationCache}.
  * </ul>
  *
  * @see com.sun.enterprise.security.auth.login.LDAPLoginModule
@@ -179,6 +181,7 @@ public final class LDAPRealm extends BaseRealm {
     public static final String SSL = "SSL";
 
     private Map<String, List<String>> groupCache;
+    private RealmAuthenticationCache authenticationCache;
     private Properties ldapBindProps = new Properties();
 
     /**
@@ -306,7 +309,8 @@ public final class LDAPRealm extends BaseRealm {
             _logger.log(FINE, "LDAPRealm : {0}", tempProps);
         }
 
-        groupCache = new HashMap<>();
+        groupCache = new ConcurrentHashMap<>();
+        authenticationCache = new RealmAuthenticationCache(getName(), props);
     }
 
     /**
@@ -442,7 +446,7 @@ public final class LDAPRealm extends BaseRealm {
     }
 
     /**
-     * Set group membership info for a user.
+     * Set group membership info for a user. This is kept whether or not the authentication cache is enabled.
      *
      * <P>
      * See bugs 4646133,4646270 on why this is here.
@@ -488,6 +492,14 @@ public final class LDAPRealm extends BaseRealm {
                 throw new LoginException(msg);
             }
 
+            // The directory always checks the password, only the group searches are skipped while the groups found at
+            // a previous login with the same password are still cached
+            RealmAuthenticationCache.Result cachedResult = authenticationCache.get(_username, _password);
+            if (cachedResult != null) {
+                setGroupNames(_username, cachedResult.getGroups());
+                return cachedResult.getGroups();
+            }
+
             // search groups using above connection, substituting %d (and %s)
             sb = new StringBuilder(getProperty(PARAM_GRP_SEARCH_FILTER));
             StringBuilder dynSb = new StringBuilder(getProperty(PARAM_DYNAMIC_GRP_FILTER));
@@ -538,6 +550,7 @@ public final class LDAPRealm extends BaseRealm {
         grpList = addAssignGroups(grpList);
         grpList = this.addMappedGroupNames(grpList);
         setGroupNames(_username, grpList);
+        authenticationCache.put(_username, _password, grpList);
 
         if (_logger.isLoggable(FINE)) {
             _logger.log(FINE, "LDAP: login succeeded for: {0}", _username);
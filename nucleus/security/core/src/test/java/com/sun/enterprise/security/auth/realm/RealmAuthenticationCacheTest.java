@@ -0,0 +1,116 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.security.auth.realm;
+
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class RealmAuthenticationCacheTest {
+
+    @Test
+    public void testResultOnlyReturnedForSamePassword() {
+        RealmAuthenticationCache cache = new RealmAuthenticationCache("test", 60_000, 10_000, 10);
+        cache.put("user", "secret".toCharArray(), new String[] { "admin" });
+
+        RealmAuthenticationCache.Result result = cache.get("user", "secret".toCharArray());
+        assertNotNull(result);
+        assertTrue(result.isAuthenticated());
+        assertArrayEquals(new String[] { "admin" }, result.getGroups());
+        assertNull(cache.get("user", "wrong".toCharArray()));
+        assertArrayEquals(new String[] { "admin" }, cache.getGroups("user"));
+    }
+
+    @Test
+    public void testFailedAuthenticationIsCached() {
+        RealmAuthenticationCache cache = new RealmAuthenticationCache("test", 60_000, 10_000, 10);
+        cache.put("user", "wrong".toCharArray(), null);
+
+        RealmAuthenticationCache.Result result = cache.get("user", "wrong".toCharArray());
+        assertNotNull(result);
+        assertFalse(result.isAuthenticated());
+        assertNull("Groups of a failed authentication should not be used", cache.getGroups("user"));
+    }
+
+    @Test
+    public void testExpiredAndDisabled() throws Exception {
+        RealmAuthenticationCache cache = new RealmAuthenticationCache("test", 1, 1, 10);
+        cache.put("user", "secret".toCharArray(), new String[0]);
+        Thread.sleep(5);
+        assertNull(cache.get("user", "secret".toCharArray()));
+
+        RealmAuthenticationCache disabled = new RealmAuthenticationCache("test", 0, 0, 10);
+        disabled.put("user", "secret".toCharArray(), new String[0]);
+        assertNull(disabled.get("user", "secret".toCharArray()));
+    }
+
+    @Test
+    public void testDisabledUnlessTtlConfigured() throws Exception {
+        RealmAuthenticationCache cache = new RealmAuthenticationCache("test", new Properties());
+        assertFalse(cache.isEnabled());
+        cache.put("user", "secret".toCharArray(), new String[0]);
+        assertNull(cache.get("user", "secret".toCharArray()));
+
+        Properties props = new Properties();
+        props.setProperty(RealmAuthenticationCache.PARAM_CACHE_TTL, "60");
+        cache = new RealmAuthenticationCache("test", props);
+        assertTrue(cache.isEnabled());
+        cache.put("user", "secret".toCharArray(), new String[0]);
+        assertNotNull(cache.get("user", "secret".toCharArray()));
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        RealmAuthenticationCache cache = new RealmAuthenticationCache("test", 60_000, 10_000, 10);
+        for (int i = 0; i < 100; i++) {
+            cache.putGroups("user" + i, new String[] { "group" });
+        }
+        int cached = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.getGroups("user" + i) != null) {
+                cached++;
+            }
+        }
+        assertTrue("Cache holds " + cached + " users", cached <= 10);
+        assertNotNull("Latest user should be cached", cache.getGroups("user99"));
+    }
+}
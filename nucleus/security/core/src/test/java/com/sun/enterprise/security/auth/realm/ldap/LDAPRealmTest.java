@@ -0,0 +1,176 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.security.auth.realm.ldap;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import javax.naming.AuthenticationException;
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.spi.InitialContextFactory;
+import javax.security.auth.login.LoginException;
+
+import org.junit.Test;
+
+import com.sun.enterprise.security.auth.realm.RealmAuthenticationCache;
+
+public class LDAPRealmTest {
+
+    private static final String BASE_DN = "dc=example,dc=com";
+    private static final String USER_DN = "uid=alice," + BASE_DN;
+
+    @Test
+    public void testGroupNamesAfterLoginWithCacheDisabled() throws Exception {
+        LDAPRealm realm = createRealm(new Properties());
+
+        assertEquals(asList("admins", "users"), asList(realm.findAndBind("alice", "secret".toCharArray())));
+        assertEquals(asList("admins", "users"), Collections.list(realm.getGroupNames("alice")));
+    }
+
+    @Test
+    public void testGroupNamesAfterRepeatedLoginWithCacheEnabled() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(RealmAuthenticationCache.PARAM_CACHE_TTL, "60");
+        LDAPRealm realm = createRealm(props);
+
+        realm.findAndBind("alice", "secret".toCharArray());
+        assertEquals(asList("admins", "users"), asList(realm.findAndBind("alice", "secret".toCharArray())));
+        assertEquals(asList("admins", "users"), Collections.list(realm.getGroupNames("alice")));
+    }
+
+    @Test(expected = LoginException.class)
+    public void testWrongPasswordIsRejected() throws Exception {
+        createRealm(new Properties()).findAndBind("alice", "wrong".toCharArray());
+    }
+
+    private static LDAPRealm createRealm(Properties props) throws Exception {
+        props.setProperty(LDAPRealm.PARAM_DIRURL, "ldap://localhost:389");
+        props.setProperty(LDAPRealm.PARAM_USERDN, BASE_DN);
+        props.setProperty(LDAPRealm.JAAS_CONTEXT_PARAM, "ldapRealm");
+        props.setProperty(LDAPRealm.PARAM_JNDICF, DirectoryContextFactory.class.getName());
+        LDAPRealm realm = new LDAPRealm();
+        realm.init(props);
+        return realm;
+    }
+
+    /**
+     * Directory with a single user, alice, who is a member of the admins and users groups.
+     */
+    public static class DirectoryContextFactory implements InitialContextFactory {
+
+        @Override
+        public Context getInitialContext(Hashtable<?, ?> environment) throws NamingException {
+            if (USER_DN.equals(environment.get(Context.SECURITY_PRINCIPAL))
+                    && !"secret".equals(environment.get(Context.SECURITY_CREDENTIALS))) {
+                throw new AuthenticationException("Invalid credentials");
+            }
+            return (DirContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DirContext.class },
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("search")) {
+                            return search((String) args[1], (SearchControls) args[2]);
+                        }
+                        return null;
+                    });
+        }
+
+        private static NamingEnumeration<SearchResult> search(String filter, SearchControls controls) {
+            List<String> attributes = asList(controls.getReturningAttributes());
+            if (attributes.contains("ismemberof")) {
+                return enumeration(Collections.emptyList());
+            }
+            if (filter.equals("uniquemember=" + USER_DN)) {
+                BasicAttribute groups = new BasicAttribute("cn");
+                groups.add("admins");
+                groups.add("users");
+                BasicAttributes groupAttributes = new BasicAttributes();
+                groupAttributes.put(groups);
+                return enumeration(asList(new SearchResult("cn=staff", null, groupAttributes)));
+            }
+            if (filter.equals("uid=alice")) {
+                return enumeration(asList(new SearchResult("uid=alice", null, new BasicAttributes())));
+            }
+            return enumeration(Collections.emptyList());
+        }
+
+        private static NamingEnumeration<SearchResult> enumeration(List<SearchResult> results) {
+            Iterator<SearchResult> iterator = results.iterator();
+            return new NamingEnumeration<SearchResult>() {
+
+                @Override
+                public SearchResult next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public boolean hasMore() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public boolean hasMoreElements() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public SearchResult nextElement() {
+                    return iterator.next();
+                }
+            };
+        }
+    }
+}